@@ -22,6 +22,7 @@ import java.beans.FeatureDescriptor;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -309,35 +310,69 @@ public class BeanELResolver extends ELResolver {
 		return null;
 	}
 	
+	/**
+	 * Size bounded cache that does not lock on reads of recently used
+	 * entries. Recently used entries are held in eden; when eden fills up it
+	 * becomes the survivor generation and the previous survivors are
+	 * dropped, unless they have been used since and promoted back to eden.
+	 * <p>
+	 * The survivors are held in a {@link WeakHashMap}, keyed by class name.
+	 * The name of a class is referenced by the class itself, which is in
+	 * turn referenced by its introspection data, so the data is only softly
+	 * referenced: otherwise the weak key could never be cleared, and the
+	 * classes of undeployed applications would stay loaded until eden
+	 * filled up twice.
+	 */
 	private final static class ConcurrentCache<K,V> {
 
 		private final int size;
-		private final Map<K,V> eden;
-		private final Map<K,V> longterm;
+		private volatile Map<K,V> eden;
+		private volatile Map<K,SoftReference<V>> survivor;
 		
 		public ConcurrentCache(int size) {
 			this.size = size;
 			this.eden = new ConcurrentHashMap<K,V>(size);
-			this.longterm = new WeakHashMap<K,V>(size);
+			this.survivor = new WeakHashMap<K,SoftReference<V>>(size);
 		}
 		
 		public V get(K key) {
 			V value = this.eden.get(key);
 			if (value == null) {
-				value = this.longterm.get(key);
-				if (value != null) {
-					this.eden.put(key, value);
+				Map<K,SoftReference<V>> survivor = this.survivor;
+				SoftReference<V> ref = null;
+				synchronized (survivor) {
+					ref = survivor.get(key);
+				}
+				if (ref != null) {
+					value = ref.get();
+					if (value != null) {
+						this.put(key, value);
+					}
 				}
 			}
 			return value;
 		}
 		
 		public void put(K key, V value) {
-			if (this.eden.size() >= this.size) {
-				this.longterm.putAll(this.eden);
-				this.eden.clear();
+			Map<K,V> eden = this.eden;
+			if (eden.size() >= this.size) {
+				synchronized (this) {
+					if (this.eden == eden) {
+						Map<K,SoftReference<V>> survivor =
+							new WeakHashMap<K,SoftReference<V>>(this.size);
+						for (Map.Entry<K,V> entry : eden.entrySet()) {
+							survivor.put(entry.getKey(),
+									new SoftReference<V>(entry.getValue()));
+						}
+						this.survivor = survivor;
+						eden = new ConcurrentHashMap<K,V>(this.size);
+						this.eden = eden;
+					} else {
+						eden = this.eden;
+					}
+				}
 			}
-			this.eden.put(key, value);
+			eden.put(key, value);
 		}
 
 	}
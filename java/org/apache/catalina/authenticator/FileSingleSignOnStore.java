@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.authenticator;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+
+/**
+ * Implementation of {@link SingleSignOnStore} that saves each entry in a
+ * file of its own in a directory, named after the single sign on
+ * identifier. Entries are written to a temporary file which is then renamed,
+ * so that a valve sharing the directory never reads a partial entry.
+ * <p>
+ * <b>The passwords of the users are saved in cleartext</b>, since they are
+ * needed to authenticate the users again. On Java 6 or later, the directory
+ * and the files are made accessible to their owner only; on other platforms,
+ * and in any case, the directory must be protected by the administrator.
+ */
+public class FileSingleSignOnStore implements SingleSignOnStore {
+
+
+    /**
+     * The extension to use for entry files.
+     */
+    private static final String FILE_EXT = ".sso";
+
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+
+    /**
+     * The <code>File.setReadable(boolean, boolean)</code>,
+     * <code>setWritable</code> and <code>setExecutable</code> methods, which
+     * are only available on Java 6 or later, or <code>null</code>.
+     */
+    private static final Method[] permissionMethods;
+
+    static {
+        Method[] methods = null;
+        try {
+            Class<?>[] paramTypes = new Class[] { Boolean.TYPE, Boolean.TYPE };
+            methods = new Method[] {
+                File.class.getMethod("setReadable", paramTypes),
+                File.class.getMethod("setWritable", paramTypes),
+                File.class.getMethod("setExecutable", paramTypes)
+            };
+        } catch (NoSuchMethodException e) {
+            // Java 5
+        }
+        permissionMethods = methods;
+    }
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    /**
+     * Create a store saving its entries in the specified directory, which
+     * is created if needed.
+     *
+     * @param directory The directory
+     */
+    public FileSingleSignOnStore(File directory) {
+
+        this.directory = directory;
+
+    }
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    /**
+     * The directory in which entries are saved.
+     */
+    private final File directory;
+
+
+    /**
+     * Has the directory been made accessible to its owner only?
+     */
+    private volatile boolean restricted = false;
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    /**
+     * Return the directory in which entries are saved.
+     */
+    public File getDirectory() {
+
+        return (directory);
+
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    public SingleSignOnEntry load(String ssoId) throws IOException {
+
+        File file = file(ssoId);
+        if (file == null) {
+            return (null);
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream
+                                     (new FileInputStream(file)));
+            if (in.readInt() != VERSION) {
+                return (null);
+            }
+            String authType = readString(in);
+            String username = readString(in);
+            String password = readString(in);
+            return (new SingleSignOnEntry(null, authType, username, password));
+        } catch (FileNotFoundException e) {
+            return (null);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+    }
+
+
+    public void save(String ssoId, SingleSignOnEntry entry) throws IOException {
+
+        File file = file(ssoId);
+        if (file == null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()
+                && !directory.isDirectory()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        if (!restricted) {
+            restrict(directory, true);
+            restricted = true;
+        }
+        // A file of its own, as the same entry may be saved by two threads
+        File temp = File.createTempFile(ssoId + FILE_EXT + "-", ".tmp",
+                                        directory);
+        // Before the password is written
+        restrict(temp, false);
+        DataOutputStream out = null;
+        boolean renamed = false;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream
+                                       (new FileOutputStream(temp)));
+            out.writeInt(VERSION);
+            writeString(out, entry.getAuthType());
+            writeString(out, entry.getUsername());
+            writeString(out, entry.getPassword());
+            out.close();
+            out = null;
+            if (!temp.renameTo(file)) {
+                // Not atomic, but some platforms cannot rename over a file
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Cannot rename " + temp);
+                }
+            }
+            renamed = true;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+            if (!renamed) {
+                temp.delete();
+            }
+        }
+
+    }
+
+
+    public void remove(String ssoId) throws IOException {
+
+        File file = file(ssoId);
+        if (file != null) {
+            file.delete();
+        }
+
+    }
+
+
+    public void expire(long time) throws IOException {
+
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].getName().endsWith(FILE_EXT)
+                    && files[i].lastModified() < time) {
+                files[i].delete();
+            }
+        }
+
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    /**
+     * Return the file of the specified single sign on identifier, or
+     * <code>null</code> if it is not a valid identifier. Identifiers come
+     * from a cookie sent by the client, so anything which is not a plain
+     * file name is rejected.
+     */
+    private File file(String ssoId) {
+
+        if (ssoId == null || ssoId.length() == 0 || ssoId.length() > 128
+                || ssoId.charAt(0) == '.') {
+            return (null);
+        }
+        for (int i = 0; i < ssoId.length(); i++) {
+            char c = ssoId.charAt(i);
+            if (!((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')
+                    || (c >= '0' && c <= '9') || c == '.' || c == '-'
+                    || c == '_')) {
+                return (null);
+            }
+        }
+        return (new File(directory, ssoId + FILE_EXT));
+
+    }
+
+
+    /**
+     * Make the specified file, or directory, accessible to its owner only,
+     * if the platform supports it.
+     */
+    private static void restrict(File file, boolean directory) {
+
+        if (permissionMethods == null) {
+            return;
+        }
+        for (int i = 0; i < permissionMethods.length; i++) {
+            boolean owner = (i < 2 || directory);
+            try {
+                permissionMethods[i].invoke
+                    (file, new Object[] { Boolean.FALSE, Boolean.FALSE });
+                if (owner) {
+                    permissionMethods[i].invoke
+                        (file, new Object[] { Boolean.TRUE, Boolean.TRUE });
+                }
+            } catch (IllegalAccessException e) {
+                // Ignore
+            } catch (InvocationTargetException e) {
+                // Ignore, the directory has to be protected otherwise
+            }
+        }
+
+    }
+
+
+    private static String readString(DataInputStream in) throws IOException {
+
+        return (in.readBoolean() ? in.readUTF() : null);
+
+    }
+
+
+    private static void writeString(DataOutputStream out, String value)
+        throws IOException {
+
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+
+    }
+
+
+}
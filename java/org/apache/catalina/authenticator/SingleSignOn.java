@@ -19,17 +19,21 @@
 package org.apache.catalina.authenticator;
 
 
+import java.io.File;
 import java.io.IOException;
 import java.security.Principal;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.Cookie;
 
+import org.apache.catalina.Context;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.Manager;
 import org.apache.catalina.Realm;
 import org.apache.catalina.Session;
 import org.apache.catalina.SessionEvent;
@@ -57,6 +61,13 @@ import org.apache.catalina.valves.ValveBase;
  *     Authenticators found in the
  *     <code>org.apache.catalina.authenticator</code> package.</li>
  * </ul>
+ * <p>
+ * Entries are kept in concurrent maps, indexed both by single sign on
+ * identifier and by session, so that the frequent lookups and the session
+ * events need no locking. Entries which have not been used for
+ * <code>maxInactiveInterval</code> seconds are removed by background
+ * processing. Entries may also be saved in a {@link SingleSignOnStore}, so
+ * that they survive a restart.</p>
  *
  * @author Craig R. McClanahan
  * @version $Revision: 536380 $ $Date: 2007-05-09 07:49:56 +0800 (Wed, 09 May 2007) $
@@ -74,8 +85,30 @@ public class SingleSignOn
      * The cache of SingleSignOnEntry instances for authenticated Principals,
      * keyed by the cookie value that is used to select them.
      */
-    protected Map<String,SingleSignOnEntry> cache =
-        new HashMap<String,SingleSignOnEntry>();
+    protected ConcurrentHashMap<String,SingleSignOnEntry> cache =
+        new ConcurrentHashMap<String,SingleSignOnEntry>();
+
+
+    /**
+     * The single sign on identifiers recently looked up in the store without
+     * success, with the time of the lookup, so that a client presenting an
+     * unknown or stale cookie on every request does not cause a store access
+     * each time.
+     */
+    protected ConcurrentHashMap<String,Long> misses =
+        new ConcurrentHashMap<String,Long>();
+
+
+    /**
+     * The maximum number of identifiers kept in {@link #misses}.
+     */
+    protected static final int MAX_MISSES = 1000;
+
+
+    /**
+     * The time in milliseconds an identifier is kept in {@link #misses}.
+     */
+    protected static final long MISS_TIME_TO_LIVE = 10000L;
 
 
     /**
@@ -101,7 +134,8 @@ public class SingleSignOn
      * The cache of single sign on identifiers, keyed by the Session that is
      * associated with them.
      */
-    protected Map<Session,String> reverse = new HashMap<Session,String>();
+    protected ConcurrentHashMap<Session,String> reverse =
+        new ConcurrentHashMap<Session,String>();
 
 
     /**
@@ -121,6 +155,30 @@ public class SingleSignOn
      */
     private String cookieDomain;
 
+    /**
+     * The time in seconds an entry may remain unused before it is removed,
+     * or a negative value if entries are only removed with their sessions.
+     */
+    private int maxInactiveInterval = -1;
+
+    /**
+     * The time in seconds an entry may remain unused when there is a store
+     * and no maximum inactive interval is set. Saved entries are not
+     * removed with the sessions, so they must expire.
+     */
+    protected static final int DEFAULT_STORE_MAX_INACTIVE_INTERVAL = 1800;
+
+    /**
+     * The optional backing store of the entries.
+     */
+    private SingleSignOnStore store = null;
+
+    /**
+     * The directory of the file store created when this valve is started,
+     * if no store was set.
+     */
+    private String storeDirectory = null;
+
     // ------------------------------------------------------------- Properties
 
     /**
@@ -213,6 +271,62 @@ public class SingleSignOn
     }
 
 
+    /**
+     * Return the time in seconds an entry may remain unused before it is
+     * removed.
+     */
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    /**
+     * Set the time in seconds an entry may remain unused, with no request
+     * presenting its cookie, before it is removed by background processing,
+     * along with its saved copy if there is a store. The sessions of the
+     * entry are not expired. A negative value, the default, disables this,
+     * unless there is a store, in which case
+     * {@link #DEFAULT_STORE_MAX_INACTIVE_INTERVAL} is used.
+     *
+     * @param maxInactiveInterval The new maximum inactive interval
+     */
+    public void setMaxInactiveInterval(int maxInactiveInterval) {
+        this.maxInactiveInterval = maxInactiveInterval;
+    }
+
+    /**
+     * Return the backing store of the entries, if any.
+     */
+    public SingleSignOnStore getStore() {
+        return store;
+    }
+
+    /**
+     * Set the backing store of the entries.
+     *
+     * @param store The new store, or <code>null</code> for none
+     */
+    public void setStore(SingleSignOnStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Return the directory of the file store.
+     */
+    public String getStoreDirectory() {
+        return storeDirectory;
+    }
+
+    /**
+     * Set the directory in which a {@link FileSingleSignOnStore} saves the
+     * entries, when no other store is set. A relative path is resolved
+     * against <code>$CATALINA_BASE</code>.
+     *
+     * @param storeDirectory The new directory
+     */
+    public void setStoreDirectory(String storeDirectory) {
+        this.storeDirectory = storeDirectory;
+    }
+
     // ------------------------------------------------------ Lifecycle Methods
 
 
@@ -268,6 +382,15 @@ public class SingleSignOn
         lifecycle.fireLifecycleEvent(START_EVENT, null);
         started = true;
 
+        if (store == null && storeDirectory != null) {
+            File directory = new File(storeDirectory);
+            if (!directory.isAbsolute()) {
+                directory = new File(System.getProperty("catalina.base"),
+                                     storeDirectory);
+            }
+            store = new FileSingleSignOnStore(directory);
+        }
+
     }
 
 
@@ -311,21 +434,20 @@ public class SingleSignOn
         if (containerLog.isDebugEnabled())
             containerLog.debug("Process session destroyed on " + session);
 
-        String ssoId = null;
-        synchronized (reverse) {
-            ssoId = (String) reverse.get(session);
-        }
+        String ssoId = reverse.get(session);
         if (ssoId == null)
             return;
 
-        // Was the session destroyed as the result of a timeout?
-        // If so, we'll just remove the expired session from the
-        // SSO.  If the session was logged out, we'll log out
-        // of all session associated with the SSO.
+        // Was the session destroyed as the result of a timeout, or
+        // passivated or expired because its web application is stopping?
+        // If so, we'll just remove the session from the SSO.  If the
+        // session was logged out, we'll log out of all session associated
+        // with the SSO.
         if (((session.getMaxInactiveInterval() > 0)
             && (System.currentTimeMillis() - session.getLastAccessedTimeInternal() >=
                 session.getMaxInactiveInterval() * 1000)) 
-            || (Session.SESSION_PASSIVATED_EVENT.equals(event.getType()))) {
+            || (Session.SESSION_PASSIVATED_EVENT.equals(event.getType()))
+            || isStopping(session)) {
             removeSession(ssoId, session);
         } else {
             // The session was logged out.
@@ -400,13 +522,14 @@ public class SingleSignOn
             containerLog.debug(" Checking for cached principal for " + cookie.getValue());
         SingleSignOnEntry entry = lookup(cookie.getValue());
         if (entry != null) {
+            entry.access();
             if (containerLog.isDebugEnabled())
                 containerLog.debug(" Found cached principal '" +
                     (entry.getPrincipal() != null ? entry.getPrincipal().getName() : "") + "' with auth type '" +
                     entry.getAuthType() + "'");
             request.setNote(Constants.REQ_SSOID_NOTE, cookie.getValue());
             // Only set security elements if reauthentication is not required
-            if (!getRequireReauthentication()) {
+            if (!getRequireReauthentication() && entry.getPrincipal() != null) {
                 request.setAuthType(entry.getAuthType());
                 request.setUserPrincipal(entry.getPrincipal());
             }
@@ -442,6 +565,48 @@ public class SingleSignOn
     }
 
 
+    /**
+     * Remove the entries which have not been used for longer than the
+     * maximum inactive interval, together with the saved entries which have
+     * not been saved again for as long.
+     */
+    public void backgroundProcess() {
+
+        int maxInactiveInterval = this.maxInactiveInterval;
+        if (maxInactiveInterval < 0 && store != null)
+            maxInactiveInterval = DEFAULT_STORE_MAX_INACTIVE_INTERVAL;
+        if (maxInactiveInterval < 0)
+            return;
+
+        long now = System.currentTimeMillis();
+        long oldest = now - maxInactiveInterval * 1000L;
+        Iterator<Map.Entry<String,SingleSignOnEntry>> entries =
+            cache.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String,SingleSignOnEntry> entry = entries.next();
+            SingleSignOnEntry sso = entry.getValue();
+            if (sso.getLastAccessedTime() < oldest) {
+                expire(entry.getKey(), sso);
+            } else if (store != null && sso.getCanReauthenticate()
+                       && sso.getLastAccessedTime() > sso.lastSavedTime
+                       && now - sso.lastSavedTime > maxInactiveInterval * 500L) {
+                // Still in use, so save it again before half the interval
+                // has passed to keep the saved copy from expiring
+                save(entry.getKey(), sso);
+            }
+        }
+
+        if (store != null) {
+            try {
+                store.expire(oldest);
+            } catch (IOException e) {
+                containerLog.warn(sm.getString("singleSignOn.storeError"), e);
+            }
+        }
+
+    }
+
+
     // ------------------------------------------------------ Protected Methods
 
 
@@ -458,39 +623,36 @@ public class SingleSignOn
             containerLog.debug("Associate sso id " + ssoId + " with session " + session);
 
         SingleSignOnEntry sso = lookup(ssoId);
-        if (sso != null)
+        if (sso != null) {
+            sso.access();
             sso.addSession(this, session);
-        synchronized (reverse) {
-            reverse.put(session, ssoId);
         }
+        reverse.put(session, ssoId);
 
     }
 
     /**
      * Deregister the specified session.  If it is the last session,
-     * then also get rid of the single sign on identifier
+     * then also get rid of the single sign on identifier, keeping its
+     * saved copy, if any
      *
      * @param ssoId Single sign on identifier
      * @param session Session to be deregistered
      */
     protected void deregister(String ssoId, Session session) {
 
-        synchronized (reverse) {
-            reverse.remove(session);
-        }
+        reverse.remove(session);
 
-        SingleSignOnEntry sso = lookup(ssoId);
+        SingleSignOnEntry sso = cache.get(ssoId);
         if ( sso == null )
             return;
 
         sso.removeSession( session );
 
-        // see if we are the last session, if so blow away ssoId
-        Session sessions[] = sso.findSessions();
-        if ( sessions == null || sessions.length == 0 ) {
-            synchronized (cache) {
-                sso = (SingleSignOnEntry) cache.remove(ssoId);
-            }
+        // see if we are the last session, if so blow away ssoId, but keep
+        // the saved copy, if any, for a later request presenting the cookie
+        if (sso.isEmpty()) {
+            cache.remove(ssoId, sso);
         }
 
     }
@@ -498,7 +660,8 @@ public class SingleSignOn
 
     /**
      * Deregister the specified single sign on identifier, and invalidate
-     * any associated sessions.
+     * any associated sessions.  Called when the user logs out, so the saved
+     * copy of the entry, if any, is removed as well.
      *
      * @param ssoId Single sign on identifier to deregister
      */
@@ -508,10 +671,8 @@ public class SingleSignOn
             containerLog.debug("Deregistering sso id '" + ssoId + "'");
 
         // Look up and remove the corresponding SingleSignOnEntry
-        SingleSignOnEntry sso = null;
-        synchronized (cache) {
-            sso = (SingleSignOnEntry) cache.remove(ssoId);
-        }
+        SingleSignOnEntry sso = cache.remove(ssoId);
+        remove(ssoId);
 
         if (sso == null)
             return;
@@ -522,9 +683,7 @@ public class SingleSignOn
             if (containerLog.isTraceEnabled())
                 containerLog.trace(" Invalidating session " + sessions[i]);
             // Remove from reverse cache first to avoid recursion
-            synchronized (reverse) {
-                reverse.remove(sessions[i]);
-            }
+            reverse.remove(sessions[i]);
             // Invalidate this session
             sessions[i].expire();
         }
@@ -574,6 +733,11 @@ public class SingleSignOn
                         realm.authenticate(username, entry.getPassword());                
                 if (reauthPrincipal != null) {                    
                     reauthenticated = true;                    
+                    if (entry.getPrincipal() == null) {
+                        // Loaded from the store
+                        update(ssoId, reauthPrincipal, entry.getAuthType(),
+                               username, entry.getPassword());
+                    }
                     // Bind the authorization credentials to the request
                     request.setAuthType(entry.getAuthType());
                     request.setUserPrincipal(reauthPrincipal);
@@ -603,10 +767,11 @@ public class SingleSignOn
             containerLog.debug("Registering sso id '" + ssoId + "' for user '" +
                 (principal != null ? principal.getName() : "") + "' with auth type '" + authType + "'");
 
-        synchronized (cache) {
-            cache.put(ssoId, new SingleSignOnEntry(principal, authType,
-                                                   username, password));
-        }
+        SingleSignOnEntry sso =
+            new SingleSignOnEntry(principal, authType, username, password);
+        cache.put(ssoId, sso);
+        if (sso.getCanReauthenticate())
+            save(ssoId, sso);
 
     }
 
@@ -640,7 +805,8 @@ public class SingleSignOn
                           String username, String password) {
 
         SingleSignOnEntry sso = lookup(ssoId);
-        if (sso != null && !sso.getCanReauthenticate()) {
+        if (sso != null && (!sso.getCanReauthenticate()
+                            || sso.getPrincipal() == null)) {
             if (containerLog.isDebugEnabled())
                 containerLog.debug("Update sso id " + ssoId + " to auth type " + authType);
 
@@ -648,20 +814,128 @@ public class SingleSignOn
                 sso.updateCredentials(principal, authType, username, password);
             }
 
+            if (sso.getCanReauthenticate())
+                save(ssoId, sso);
         }
     }
 
 
     /**
      * Look up and return the cached SingleSignOn entry associated with this
-     * sso id value, if there is one; otherwise return <code>null</code>.
+     * sso id value, if there is one; otherwise load it from the store, if
+     * any, or return <code>null</code>. Identifiers which were not found in
+     * the store are not looked up again for {@link #MISS_TIME_TO_LIVE}
+     * milliseconds.
      *
      * @param ssoId Single sign on identifier to look up
      */
     protected SingleSignOnEntry lookup(String ssoId) {
 
-        synchronized (cache) {
-            return ((SingleSignOnEntry) cache.get(ssoId));
+        SingleSignOnEntry sso = cache.get(ssoId);
+        if (sso != null || store == null || ssoId == null)
+            return (sso);
+
+        long now = System.currentTimeMillis();
+        Long missed = misses.get(ssoId);
+        if (missed != null) {
+            if (now - missed.longValue() < MISS_TIME_TO_LIVE)
+                return (null);
+            misses.remove(ssoId, missed);
+        }
+
+        try {
+            sso = store.load(ssoId);
+        } catch (IOException e) {
+            containerLog.warn(sm.getString("singleSignOn.storeError"), e);
+            return (null);
+        }
+        if (sso == null || !sso.getCanReauthenticate()) {
+            miss(ssoId, now);
+            return (null);
+        }
+        if (containerLog.isDebugEnabled())
+            containerLog.debug("Loaded sso id " + ssoId + " from the store");
+        SingleSignOnEntry previous = cache.putIfAbsent(ssoId, sso);
+        return (previous != null ? previous : sso);
+
+    }
+
+
+    /**
+     * Remove an entry which has not been used for longer than the maximum
+     * inactive interval. Its sessions are left to expire on their own.
+     *
+     * @param ssoId Single sign on identifier of the entry
+     * @param sso The entry
+     */
+    protected void expire(String ssoId, SingleSignOnEntry sso) {
+
+        if (containerLog.isDebugEnabled())
+            containerLog.debug("Expiring sso id " + ssoId);
+
+        if (!cache.remove(ssoId, sso))
+            return;
+        remove(ssoId);
+
+        Session sessions[] = sso.findSessions();
+        for (int i = 0; i < sessions.length; i++) {
+            reverse.remove(sessions[i]);
+            sessions[i].removeSessionListener(this);
+        }
+
+    }
+
+
+    /**
+     * Remember that the specified identifier was not found in the store.
+     * When there are too many such identifiers, the expired ones are
+     * forgotten first, then all of them.
+     */
+    private void miss(String ssoId, long now) {
+
+        if (misses.size() >= MAX_MISSES) {
+            Iterator<Long> times = misses.values().iterator();
+            while (times.hasNext()) {
+                if (now - times.next().longValue() >= MISS_TIME_TO_LIVE)
+                    times.remove();
+            }
+            if (misses.size() >= MAX_MISSES)
+                misses.clear();
+        }
+        misses.put(ssoId, Long.valueOf(now));
+
+    }
+
+
+    /**
+     * Save an entry in the store, if any.
+     */
+    private void save(String ssoId, SingleSignOnEntry sso) {
+
+        if (store == null)
+            return;
+        misses.remove(ssoId);
+        try {
+            sso.lastSavedTime = System.currentTimeMillis();
+            store.save(ssoId, sso);
+        } catch (IOException e) {
+            containerLog.warn(sm.getString("singleSignOn.storeError"), e);
+        }
+
+    }
+
+
+    /**
+     * Remove an entry from the store, if any.
+     */
+    private void remove(String ssoId) {
+
+        if (store == null)
+            return;
+        try {
+            store.remove(ssoId);
+        } catch (IOException e) {
+            containerLog.warn(sm.getString("singleSignOn.storeError"), e);
         }
 
     }
@@ -669,7 +943,9 @@ public class SingleSignOn
     
     /**
      * Remove a single Session from a SingleSignOn.  Called when
-     * a session is timed out and no longer active.
+     * a session is timed out or passivated and no longer active. If it is
+     * the last session, the entry is removed from memory, but its saved
+     * copy, if any, is kept so that the user remains signed on.
      *
      * @param ssoId Single sign on identifier from which to remove the session.
      * @param session the session to be removed.
@@ -681,7 +957,7 @@ public class SingleSignOn
                 ssoId );
 
         // Get a reference to the SingleSignOn
-        SingleSignOnEntry entry = lookup(ssoId);
+        SingleSignOnEntry entry = cache.get(ssoId);
         if (entry == null)
             return;
 
@@ -689,15 +965,30 @@ public class SingleSignOn
         entry.removeSession(session);
 
         // Remove the inactive session from the 'reverse' Map.
-        synchronized(reverse) {
-            reverse.remove(session);
-        }
+        reverse.remove(session);
 
         // If there are not sessions left in the SingleSignOnEntry,
-        // deregister the entry.
-        if (entry.findSessions().length == 0) {
-            deregister(ssoId);
+        // forget the entry.
+        if (entry.isEmpty()) {
+            if (containerLog.isDebugEnabled())
+                containerLog.debug("Removing sso id " + ssoId + " from memory");
+            cache.remove(ssoId, entry);
         }
     }
 
+
+    /**
+     * Return <code>true</code> if the specified session belongs to a web
+     * application which is being stopped, so that it is expired by its
+     * manager rather than by the user logging out.
+     */
+    private boolean isStopping(Session session) {
+
+        Manager manager = session.getManager();
+        if (manager == null || !(manager.getContainer() instanceof Context))
+            return (false);
+        return (!((Context) manager.getContainer()).getAvailable());
+
+    }
+
 }
@@ -17,6 +17,8 @@
 package org.apache.catalina.authenticator;
 
 import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.catalina.Session;
 import org.apache.catalina.authenticator.Constants;
@@ -43,12 +45,24 @@ public class SingleSignOnEntry
 
     protected Principal principal = null;
 
-    protected Session sessions[] = new Session[0];
+    /**
+     * The sessions associated with this SSO, each mapped to itself.
+     */
+    protected Map<Session,Session> sessions =
+        new ConcurrentHashMap<Session,Session>();
 
     protected String username = null;
 
     protected boolean canReauthenticate = false;
 
+    protected volatile long lastAccessedTime = System.currentTimeMillis();
+
+    /**
+     * The time this SSO was last saved in the store of the
+     * <code>SingleSignOn</code> valve, if any.
+     */
+    protected volatile long lastSavedTime = 0;
+
     // ---------------------------------------------------------  Constructors
 
     /**
@@ -80,16 +94,10 @@ public class SingleSignOnEntry
      *                  the SSO session.
      * @param session   The <code>Session</code> being associated with the SSO.
      */
-    public synchronized void addSession(SingleSignOn sso, Session session) {
-        for (int i = 0; i < sessions.length; i++) {
-            if (session == sessions[i])
-                return;
+    public void addSession(SingleSignOn sso, Session session) {
+        if (sessions.put(session, session) == null) {
+            session.addSessionListener(sso);
         }
-        Session results[] = new Session[sessions.length + 1];
-        System.arraycopy(sessions, 0, results, 0, sessions.length);
-        results[sessions.length] = session;
-        sessions = results;
-        session.addSessionListener(sso);
     }
 
     /**
@@ -98,21 +106,38 @@ public class SingleSignOnEntry
      *
      * @param session  the <code>Session</code> to remove.
      */
-    public synchronized void removeSession(Session session) {
-        Session[] nsessions = new Session[sessions.length - 1];
-        for (int i = 0, j = 0; i < sessions.length; i++) {
-            if (session == sessions[i])
-                continue;
-            nsessions[j++] = sessions[i];
-        }
-        sessions = nsessions;
+    public void removeSession(Session session) {
+        sessions.remove(session);
     }
 
     /**
      * Returns the <code>Session</code>s associated with this SSO.
      */
-    public synchronized Session[] findSessions() {
-        return (this.sessions);
+    public Session[] findSessions() {
+        return (sessions.keySet().toArray(new Session[0]));
+    }
+
+    /**
+     * Returns <code>true</code> if no <code>Session</code> is associated
+     * with this SSO.
+     */
+    public boolean isEmpty() {
+        return (sessions.isEmpty());
+    }
+
+    /**
+     * Gets the time this SSO was last used, either by a request or by the
+     * association of a session.
+     */
+    public long getLastAccessedTime() {
+        return (this.lastAccessedTime);
+    }
+
+    /**
+     * Records that this SSO has just been used.
+     */
+    public void access() {
+        this.lastAccessedTime = System.currentTimeMillis();
     }
 
     /**
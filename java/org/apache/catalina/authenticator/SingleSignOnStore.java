@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.authenticator;
+
+
+import java.io.IOException;
+
+
+/**
+ * A backing store for the entries of a {@link SingleSignOn} valve, so that
+ * users who signed on with a username and password stay signed on when the
+ * valve is restarted or when their request is handled by another instance
+ * sharing the same store.
+ * <p>
+ * Only entries which can be used for reauthentication are saved. An entry
+ * loaded from the store has no <code>Principal</code> and no sessions; the
+ * user is reauthenticated against the <code>Realm</code> with the saved
+ * username and password on the first request which needs it.
+ * <p>
+ * Entries hold the credentials of the users, so the store must be protected
+ * accordingly.
+ */
+public interface SingleSignOnStore {
+
+
+    /**
+     * Load the entry saved for the specified single sign on identifier,
+     * or return <code>null</code> if there is none.
+     *
+     * @param ssoId Single sign on identifier, as presented by the client
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    public SingleSignOnEntry load(String ssoId) throws IOException;
+
+
+    /**
+     * Save the specified entry, replacing any entry saved for the same
+     * single sign on identifier.
+     *
+     * @param ssoId Single sign on identifier
+     * @param entry The entry to save
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    public void save(String ssoId, SingleSignOnEntry entry) throws IOException;
+
+
+    /**
+     * Remove the entry saved for the specified single sign on identifier,
+     * if any.
+     *
+     * @param ssoId Single sign on identifier
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    public void remove(String ssoId) throws IOException;
+
+
+    /**
+     * Remove the entries which were last saved before the specified time.
+     *
+     * @param time Time in milliseconds since the epoch
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    public void expire(long time) throws IOException;
+
+
+}
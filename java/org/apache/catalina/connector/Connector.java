@@ -21,6 +21,7 @@ package org.apache.catalina.connector;
 import java.lang.reflect.Method;
 import java.net.URLEncoder;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.MBeanRegistration;
 import javax.management.MBeanServer;
@@ -65,10 +66,19 @@ public class Connector
     private static Log log = LogFactory.getLog(Connector.class);
 
 
+    /**
+     * Flag to enable the detection of the use of facades after their request
+     * has been recycled, and the timing of the recycling of requests. This
+     * implies the recycling of facades.
+     */
+    public static final boolean TRACK_FACADES =
+        Boolean.valueOf(System.getProperty("org.apache.catalina.connector.TRACK_FACADES", "false")).booleanValue();
+
+
     /**
      * Alternate flag to enable recycling of facades.
      */
-    public static final boolean RECYCLE_FACADES =
+    public static final boolean RECYCLE_FACADES = TRACK_FACADES ||
         Boolean.valueOf(System.getProperty("org.apache.catalina.connector.RECYCLE_FACADES", "false")).booleanValue();
 
 
@@ -303,10 +313,27 @@ public class Connector
      protected Mapper mapper = new Mapper();
 
 
+     /**
+      * Cache of the mapping of the most recently requested URIs.
+      */
+     protected MappingCache mappingCache = new MappingCache();
+
+
      /**
       * Mapper listener.
       */
-     protected MapperListener mapperListener = new MapperListener(mapper);
+     protected MapperListener mapperListener =
+         new MapperListener(mapper, mappingCache);
+
+
+    /**
+     * Statistics of the recycling of requests and of the use of recycled
+     * facades, if facades are tracked.
+     */
+    protected AtomicLong recycleCount = new AtomicLong();
+    protected AtomicLong recycleTime = new AtomicLong();
+    protected AtomicLong maxRecycleTime = new AtomicLong();
+    protected AtomicLong recycledFacadeUseCount = new AtomicLong();
 
 
      /**
@@ -563,6 +590,112 @@ public class Connector
      }
 
 
+     /**
+      * Return the cache of the mapping of the most recently requested URIs.
+      */
+     public MappingCache getMappingCache() {
+
+         return (mappingCache);
+
+     }
+
+
+    /**
+     * Return the maximum number of URIs whose mapping is cached.
+     */
+    public int getMappingCacheSize() {
+
+        return (mappingCache.getSize());
+
+    }
+
+
+    /**
+     * Set the maximum number of URIs whose mapping is cached. A value of 0
+     * disables the cache.
+     *
+     * @param mappingCacheSize The new maximum number of cached URIs
+     */
+    public void setMappingCacheSize(int mappingCacheSize) {
+
+        mappingCache.setSize(mappingCacheSize);
+
+    }
+
+
+    /**
+     * Return the number of recycled requests, if facades are tracked.
+     */
+    public long getRecycleCount() {
+
+        return (recycleCount.get());
+
+    }
+
+
+    /**
+     * Return the total time spent recycling requests and responses, in
+     * nanoseconds, if facades are tracked.
+     */
+    public long getRecycleTime() {
+
+        return (recycleTime.get());
+
+    }
+
+
+    /**
+     * Return the maximum time spent recycling a request and its response, in
+     * nanoseconds, if facades are tracked.
+     */
+    public long getMaxRecycleTime() {
+
+        return (maxRecycleTime.get());
+
+    }
+
+
+    /**
+     * Return the number of uses of a request or response facade after its
+     * request was recycled, if facades are tracked.
+     */
+    public long getRecycledFacadeUseCount() {
+
+        return (recycledFacadeUseCount.get());
+
+    }
+
+
+    /**
+     * Discard the statistics of the recycling of requests.
+     */
+    public void resetRecycleStatistics() {
+
+        recycleCount.set(0L);
+        recycleTime.set(0L);
+        maxRecycleTime.set(0L);
+        recycledFacadeUseCount.set(0L);
+
+    }
+
+
+    /**
+     * Record the time spent recycling a request and its response.
+     *
+     * @param time The recycling time, in nanoseconds
+     */
+    public void recycled(long time) {
+
+        recycleCount.incrementAndGet();
+        recycleTime.addAndGet(time);
+        long max = maxRecycleTime.get();
+        while (time > max && !maxRecycleTime.compareAndSet(max, time)) {
+            max = maxRecycleTime.get();
+        }
+
+    }
+
+
     /**
      * Return the maximum size of a POST which will be automatically
      * parsed by the container.
@@ -36,6 +36,7 @@ import org.apache.tomcat.util.buf.CharChunk;
 import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.http.Cookies;
 import org.apache.tomcat.util.http.ServerCookie;
+import org.apache.tomcat.util.http.mapper.MappingData;
 import org.apache.tomcat.util.net.SocketStatus;
 
 
@@ -233,9 +234,13 @@ public class CoyoteAdapter
                 req.getRequestProcessor().setWorkerThreadName(null);
                 // Recycle the wrapper request and response
                 if (error || response.isClosed() || !request.isComet()) {
+                    long start = Connector.TRACK_FACADES ? System.nanoTime() : 0L;
                     request.recycle();
                     request.setFilterChain(null);
                     response.recycle();
+                    if (Connector.TRACK_FACADES) {
+                        connector.recycled(System.nanoTime() - start);
+                    }
                 }
             }
             
@@ -326,8 +331,12 @@ public class CoyoteAdapter
             req.getRequestProcessor().setWorkerThreadName(null);
             // Recycle the wrapper request and response
             if (!comet) {
+                long start = Connector.TRACK_FACADES ? System.nanoTime() : 0L;
                 request.recycle();
                 response.recycle();
+                if (Connector.TRACK_FACADES) {
+                    connector.recycled(System.nanoTime() - start);
+                }
             } else {
                 // Clear converters so that the minimum amount of memory 
                 // is used by this processor
@@ -383,51 +392,81 @@ public class CoyoteAdapter
         // Parse session Id
         parseSessionId(req, request);
 
-        // URI decoding
-        MessageBytes decodedURI = req.decodedURI();
-        decodedURI.duplicate(req.requestURI());
-
-        if (decodedURI.getType() == MessageBytes.T_BYTES) {
-            // Remove any path parameters
-            ByteChunk uriBB = decodedURI.getByteChunk();
-            int semicolon = uriBB.indexOf(';', 0);
-            if (semicolon > 0) {
-                decodedURI.setBytes
-                    (uriBB.getBuffer(), uriBB.getStart(), semicolon);
-            }
-            // %xx decoding of the URL
-            try {
-                req.getURLDecoder().convert(decodedURI, false);
-            } catch (IOException ioe) {
-                res.setStatus(400);
-                res.setMessage("Invalid URI: " + ioe.getMessage());
-                return false;
-            }
-            // Normalization
-            if (!normalize(req.decodedURI())) {
-                res.setStatus(400);
-                res.setMessage("Invalid URI");
-                return false;
+        // Server name used for the request mapping
+        MessageBytes serverName;
+        if (connector.getUseIPVHosts()) {
+            serverName = req.localName();
+            if (serverName.isNull()) {
+                // well, they did ask for it
+                res.action(ActionCode.ACTION_REQ_LOCAL_NAME_ATTRIBUTE, null);
             }
-            // Character decoding
-            convertURI(decodedURI, request);
-            // Check that the URI is still normalized
-            if (!checkNormalize(req.decodedURI())) {
-                res.setStatus(400);
-                res.setMessage("Invalid URI character encoding");
-                return false;
+        } else {
+            serverName = req.serverName();
+        }
+
+        // Look for a previous mapping of the same URI; the character
+        // decoding must not depend on the request for it to be reused
+        MappingCache.Entry[] mappingCacheTable = null;
+        MappingCache.Entry cachedMapping = null;
+        if ((req.requestURI().getType() == MessageBytes.T_BYTES)
+                && !serverName.isNull()
+                && !connector.getUseBodyEncodingForURI()) {
+            mappingCacheTable = connector.getMappingCache().getTable();
+            if (mappingCacheTable != null) {
+                cachedMapping = MappingCache.get(mappingCacheTable,
+                        req.requestURI().getByteChunk(), serverName);
             }
+        }
+
+        // URI decoding
+        MessageBytes decodedURI = req.decodedURI();
+        if (cachedMapping != null) {
+            cachedMapping.apply(decodedURI, request.getMappingData());
         } else {
-            // The URL is chars or String, and has been sent using an in-memory
-            // protocol handler, we have to assume the URL has been properly
-            // decoded already
-            decodedURI.toChars();
-            // Remove any path parameters
-            CharChunk uriCC = decodedURI.getCharChunk();
-            int semicolon = uriCC.indexOf(';');
-            if (semicolon > 0) {
-                decodedURI.setChars
-                    (uriCC.getBuffer(), uriCC.getStart(), semicolon);
+            decodedURI.duplicate(req.requestURI());
+
+            if (decodedURI.getType() == MessageBytes.T_BYTES) {
+                // Remove any path parameters
+                ByteChunk uriBB = decodedURI.getByteChunk();
+                int semicolon = uriBB.indexOf(';', 0);
+                if (semicolon > 0) {
+                    decodedURI.setBytes
+                        (uriBB.getBuffer(), uriBB.getStart(), semicolon);
+                }
+                // %xx decoding of the URL
+                try {
+                    req.getURLDecoder().convert(decodedURI, false);
+                } catch (IOException ioe) {
+                    res.setStatus(400);
+                    res.setMessage("Invalid URI: " + ioe.getMessage());
+                    return false;
+                }
+                // Normalization
+                if (!normalize(req.decodedURI())) {
+                    res.setStatus(400);
+                    res.setMessage("Invalid URI");
+                    return false;
+                }
+                // Character decoding
+                convertURI(decodedURI, request);
+                // Check that the URI is still normalized
+                if (!checkNormalize(req.decodedURI())) {
+                    res.setStatus(400);
+                    res.setMessage("Invalid URI character encoding");
+                    return false;
+                }
+            } else {
+                // The URL is chars or String, and has been sent using an in-memory
+                // protocol handler, we have to assume the URL has been properly
+                // decoded already
+                decodedURI.toChars();
+                // Remove any path parameters
+                CharChunk uriCC = decodedURI.getCharChunk();
+                int semicolon = uriCC.indexOf(';');
+                if (semicolon > 0) {
+                    decodedURI.setChars
+                        (uriCC.getBuffer(), uriCC.getStart(), semicolon);
+                }
             }
         }
 
@@ -444,18 +483,16 @@ public class CoyoteAdapter
         }
 
         // Request mapping.
-        MessageBytes serverName;
-        if (connector.getUseIPVHosts()) {
-            serverName = req.localName();
-            if (serverName.isNull()) {
-                // well, they did ask for it
-                res.action(ActionCode.ACTION_REQ_LOCAL_NAME_ATTRIBUTE, null);
+        if (cachedMapping == null) {
+            connector.getMapper().map(serverName, decodedURI, 
+                                      request.getMappingData());
+            if ((mappingCacheTable != null)
+                    && isCacheable(req, request.getMappingData())) {
+                MappingCache.put(mappingCacheTable,
+                        req.requestURI().getByteChunk(), serverName,
+                        decodedURI, request.getMappingData());
             }
-        } else {
-            serverName = req.serverName();
         }
-        connector.getMapper().map(serverName, decodedURI, 
-                                  request.getMappingData());
         request.setContext((Context) request.getMappingData().context);
         request.setWrapper((Wrapper) request.getMappingData().wrapper);
 
@@ -512,6 +549,51 @@ public class CoyoteAdapter
     }
 
 
+    /**
+     * Return <code>true</code> if the mapping of the request URI may be
+     * reused for later requests for the same URI. URIs with path parameters,
+     * which are usually specific to a client, are not cached, nor are
+     * redirects and directory URIs, whose mapping depends on the welcome
+     * files found in the resources of the context. Neither are URIs mapped
+     * to the default servlet, which are redirected instead once a directory
+     * of that name exists.
+     */
+    protected boolean isCacheable(org.apache.coyote.Request req,
+                                  MappingData mappingData) {
+
+        if ((mappingData.context == null) || (mappingData.wrapper == null)
+                || !mappingData.redirectPath.isNull()) {
+            return false;
+        }
+        if (req.requestURI().getByteChunk().indexOf(';', 0) >= 0) {
+            return false;
+        }
+        CharChunk uriCC = req.decodedURI().getCharChunk();
+        if ((req.decodedURI().getType() != MessageBytes.T_CHARS)
+                || (uriCC.getLength() == 0)
+                || (uriCC.getBuffer()[uriCC.getEnd() - 1] == '/')) {
+            return false;
+        }
+        if (isDefaultServlet(mappingData)) {
+            return false;
+        }
+        return true;
+
+    }
+
+
+    /**
+     * Is the request mapped to the default servlet of its context?
+     */
+    protected static boolean isDefaultServlet(MappingData mappingData) {
+
+        Context context = (Context) mappingData.context;
+        String name = context.findServletMapping("/");
+        return (name != null) && (mappingData.wrapper == context.findChild(name));
+
+    }
+
+
     /**
      * Parse session id in URL.
      */
@@ -568,9 +650,9 @@ public class CoyoteAdapter
         if (context != null && !context.getCookies())
             return;
 
-        // Parse session id from cookies
+        // Parse session id from cookies, leaving the other cookies alone
         Cookies serverCookies = req.getCookies();
-        int count = serverCookies.getCookieCount();
+        int count = serverCookies.getCookieCount(Globals.SESSION_COOKIE_NAME);
         if (count <= 0)
             return;
 
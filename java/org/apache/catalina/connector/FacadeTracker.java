@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.connector;
+
+
+import org.apache.catalina.util.StringManager;
+
+
+/**
+ * What a request or response facade remembers of its request once it has
+ * been cleared, when facades are tracked, so that a later use of the facade
+ * can be reported with the URI of the request it belonged to and the number
+ * of times the request object has been recycled since then.
+ * <p>
+ * The recycled request is kept only to read its generation, which is
+ * incremented each time it is recycled, and is never used otherwise.
+ */
+public final class FacadeTracker {
+
+
+    private static org.apache.juli.logging.Log log=
+        org.apache.juli.logging.LogFactory.getLog( FacadeTracker.class );
+
+
+    /**
+     * The string manager for this package.
+     */
+    private static StringManager sm =
+        StringManager.getManager(Constants.Package);
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    /**
+     * Remember the specified request, which has just been recycled.
+     */
+    public FacadeTracker(Request request) {
+        this.request = request;
+        // The generation of the request the facade belonged to
+        this.generation = request.getGeneration() - 1;
+        this.requestURI = request.getRequestURI();
+    }
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    private final Request request;
+    private final int generation;
+    private final String requestURI;
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Report a use of the facade, and return the exception to be thrown.
+     *
+     * @param key Key of the message, which is given the URI of the request
+     *  and the number of times the request object was recycled since the
+     *  facade was used for it
+     */
+    public IllegalStateException used(String key) {
+        Connector connector = request.getConnector();
+        if (connector != null) {
+            connector.recycledFacadeUseCount.incrementAndGet();
+        }
+        IllegalStateException e = new IllegalStateException(sm.getString(key,
+                requestURI,
+                String.valueOf(request.getGeneration() - generation)));
+        log.warn(e.getMessage(), e);
+        return e;
+    }
+
+
+}
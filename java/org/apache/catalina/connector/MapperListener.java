@@ -63,6 +63,12 @@ public class MapperListener
      */
     protected Mapper mapper = null;
 
+    /**
+     * Cache of the mapping results of the associated connector, cleared
+     * whenever the mapper is modified.
+     */
+    protected MappingCache mappingCache = null;
+
     /**
      * MBean server.
      */
@@ -90,6 +96,16 @@ public class MapperListener
     }
 
 
+    /**
+     * Create mapper listener, which clears the specified cache of mapping
+     * results whenever the mapper is modified.
+     */
+    public MapperListener(Mapper mapper, MappingCache mappingCache) {
+        this.mapper = mapper;
+        this.mappingCache = mappingCache;
+    }
+
+
     // --------------------------------------------------------- Public Methods
 
     public String getDomain() {
@@ -270,6 +286,7 @@ public class MapperListener
         } else if (event.getType() == Host.REMOVE_ALIAS_EVENT) {
             mapper.removeHostAlias(event.getData().toString());
         }
+        clearMappingCache();
     }
 
     
@@ -318,6 +335,7 @@ public class MapperListener
         // This should probably be called later 
         if( defaultHost != null ) {
             mapper.setDefaultHostName(defaultHost);
+            clearMappingCache();
         }
     }
 
@@ -334,6 +352,7 @@ public class MapperListener
         
             String[] aliases = host.findAliases();
             mapper.addHost(name, aliases, objectName);
+            clearMappingCache();
             host.addContainerListener(this);
             if(log.isDebugEnabled())
                 log.debug(sm.getString
@@ -353,6 +372,7 @@ public class MapperListener
                 domain).getContainer().findChild(name);
         
             mapper.removeHost(name);
+            clearMappingCache();
             host.removeContainerListener(this);
             if(log.isDebugEnabled())
                 log.debug(sm.getString
@@ -417,6 +437,7 @@ public class MapperListener
 
         mapper.addContext(hostName, contextName, context, 
                           welcomeFiles, resources);
+        clearMappingCache();
 
     }
 
@@ -479,6 +500,7 @@ public class MapperListener
                   ("mapperListener.unregisterContext", contextName));
 
         mapper.removeContext(hostName, contextName);
+        clearMappingCache();
 
     }
 
@@ -540,10 +562,20 @@ public class MapperListener
             mapper.addWrapper(hostName, contextName, mappings[i], wrapper,
                               jspWildCard);
         }
+        clearMappingCache();
 
     }
 
 
+    /**
+     * Discard the cached mapping results, after the mapper has been
+     * modified.
+     */
+    private void clearMappingCache() {
+        if (mappingCache != null) {
+            mappingCache.clear();
+        }
+    }
 
 
 }
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.connector;
+
+import org.apache.tomcat.util.buf.ByteChunk;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.apache.tomcat.util.http.mapper.MappingData;
+
+
+/**
+ * Cache of the decoded URI and of the mapping of the most recently requested
+ * URIs of a connector, keyed by the undecoded request URI and the server
+ * name, so that requests for the same URIs do not need to be decoded,
+ * normalized and mapped again.
+ * <p>
+ * The cache is a fixed size table in which each URI may only use one slot,
+ * a new URI replacing the one which used the slot before. Entries are
+ * immutable, and the table is replaced as a whole when the cache is
+ * cleared, so that lookups need no locking. The cache must be cleared
+ * whenever the mapper is modified, which is done by the
+ * {@link MapperListener}.
+ */
+public class MappingCache {
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    public MappingCache() {
+        setSize(1024);
+    }
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    /**
+     * Maximum number of cached URIs, rounded up to a power of two. A value
+     * of 0 disables the cache.
+     */
+    protected int size = 0;
+
+
+    /**
+     * The current table, or <code>null</code> if the cache is disabled.
+     */
+    protected volatile Entry[] table = null;
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    /**
+     * Return the maximum number of cached URIs.
+     */
+    public int getSize() {
+        return size;
+    }
+
+
+    /**
+     * Set the maximum number of cached URIs, which is rounded up to a power
+     * of two. A value of 0 or less disables the cache.
+     */
+    public synchronized void setSize(int size) {
+        int capacity = 0;
+        if (size > 0) {
+            capacity = 1;
+            while (capacity < size) {
+                capacity <<= 1;
+            }
+        }
+        this.size = capacity;
+        table = (capacity > 0) ? new Entry[capacity] : null;
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Discard all cached mappings.
+     */
+    public synchronized void clear() {
+        if (size > 0) {
+            table = new Entry[size];
+        }
+    }
+
+
+    /**
+     * Return the current table, which must be given to
+     * {@link #get(Entry[], ByteChunk, MessageBytes)} and
+     * {@link #put(Entry[], ByteChunk, MessageBytes, MessageBytes, MappingData)}.
+     * Storing a mapping in the table it was looked up in ensures that a
+     * mapping done before the cache was cleared is never stored in the new
+     * table. Return <code>null</code> if the cache is disabled.
+     */
+    public Entry[] getTable() {
+        return table;
+    }
+
+
+    /**
+     * Return the cached entry for the specified request URI and server
+     * name, or <code>null</code> if there is none.
+     */
+    public static Entry get(Entry[] table, ByteChunk uri,
+                            MessageBytes serverName) {
+        int hash = hash(uri, serverName);
+        Entry entry = table[hash & (table.length - 1)];
+        if ((entry != null) && (entry.hash == hash)
+                && uri.equals(entry.uri, 0, entry.uri.length)
+                && serverName.equals(entry.serverName)) {
+            return entry;
+        }
+        return null;
+    }
+
+
+    /**
+     * Cache the decoded URI and the mapping of the specified request URI
+     * and server name.
+     */
+    public static void put(Entry[] table, ByteChunk uri,
+                           MessageBytes serverName, MessageBytes decodedURI,
+                           MappingData mappingData) {
+        int hash = hash(uri, serverName);
+        table[hash & (table.length - 1)] =
+            new Entry(hash, uri, serverName, decodedURI, mappingData);
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private static int hash(ByteChunk uri, MessageBytes serverName) {
+        int hash = uri.hash() * 31 + serverName.hashCode();
+        // Spread the higher bits, as only the lower bits select the slot
+        return hash ^ (hash >>> 16);
+    }
+
+
+    private static void setString(MessageBytes mb, String value) {
+        if (value != null) {
+            mb.setString(value);
+        }
+    }
+
+
+    // ---------------------------------------------------------- Inner Classes
+
+
+    /**
+     * A cached mapping.
+     */
+    public static final class Entry {
+
+        private final int hash;
+        private final byte[] uri;
+        private final String serverName;
+        private final String decodedURI;
+        private final Object host;
+        private final Object context;
+        private final Object wrapper;
+        private final boolean jspWildCard;
+        private final String contextPath;
+        private final String requestPath;
+        private final String wrapperPath;
+        private final String pathInfo;
+
+        Entry(int hash, ByteChunk uri, MessageBytes serverName,
+              MessageBytes decodedURI, MappingData mappingData) {
+            this.hash = hash;
+            this.uri = new byte[uri.getLength()];
+            System.arraycopy(uri.getBytes(), uri.getStart(), this.uri, 0,
+                             this.uri.length);
+            this.serverName = serverName.toString();
+            this.decodedURI = decodedURI.toString();
+            this.host = mappingData.host;
+            this.context = mappingData.context;
+            this.wrapper = mappingData.wrapper;
+            this.jspWildCard = mappingData.jspWildCard;
+            this.contextPath = mappingData.contextPath.toString();
+            this.requestPath = mappingData.requestPath.toString();
+            this.wrapperPath = mappingData.wrapperPath.toString();
+            this.pathInfo = mappingData.pathInfo.toString();
+        }
+
+        /**
+         * Set the cached decoded URI and mapping on a request.
+         */
+        public void apply(MessageBytes decodedURI, MappingData mappingData) {
+            decodedURI.setString(this.decodedURI);
+            mappingData.host = host;
+            mappingData.context = context;
+            mappingData.wrapper = wrapper;
+            mappingData.jspWildCard = jspWildCard;
+            setString(mappingData.contextPath, contextPath);
+            setString(mappingData.requestPath, requestPath);
+            setString(mappingData.wrapperPath, wrapperPath);
+            setString(mappingData.pathInfo, pathInfo);
+        }
+
+    }
+
+
+}
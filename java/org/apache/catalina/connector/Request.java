@@ -389,6 +389,8 @@ public class Request
      */
     public void recycle() {
 
+        generation++;
+
         context = null;
         wrapper = null;
 
@@ -613,6 +615,21 @@ public class Request
      */
     protected RequestFacade facade = null;
 
+
+    /**
+     * Number of times this request has been recycled, which allows a facade
+     * used after its request was recycled to tell how long ago it was.
+     */
+    protected int generation = 0;
+
+
+    /**
+     * Return the number of times this request has been recycled.
+     */
+    public int getGeneration() {
+        return (generation);
+    }
+
     /**
      * Return the <code>ServletRequest</code> for which this object
      * is the facade.  This method must be implemented by a subclass.
@@ -226,6 +226,13 @@ public class RequestFacade implements HttpServletRequest {
     protected Request request = null;
 
 
+    /**
+     * The recycled request, if facades are tracked and this facade has been
+     * cleared.
+     */
+    protected FacadeTracker tracker = null;
+
+
     /**
      * The string manager for this package.
      */
@@ -240,10 +247,25 @@ public class RequestFacade implements HttpServletRequest {
      * Clear facade.
      */
     public void clear() {
+        if (Connector.TRACK_FACADES && request != null) {
+            tracker = new FacadeTracker(request);
+        }
         request = null;
     }
 
     
+    /**
+     * Return the exception thrown when this facade is used after it has been
+     * cleared.
+     */
+    protected IllegalStateException nullRequest() {
+        if (tracker != null) {
+            return tracker.used("requestFacade.recycled");
+        }
+        return new IllegalStateException(sm.getString("requestFacade.nullRequest"));
+    }
+
+
     /**
      * Prevent cloning the facade.
      */
@@ -259,8 +281,7 @@ public class RequestFacade implements HttpServletRequest {
     public Object getAttribute(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getAttribute(name);
@@ -270,8 +291,7 @@ public class RequestFacade implements HttpServletRequest {
     public Enumeration getAttributeNames() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -286,8 +306,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getCharacterEncoding() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -303,8 +322,7 @@ public class RequestFacade implements HttpServletRequest {
             throws java.io.UnsupportedEncodingException {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         request.setCharacterEncoding(env);
@@ -314,8 +332,7 @@ public class RequestFacade implements HttpServletRequest {
     public int getContentLength() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getContentLength();
@@ -325,8 +342,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getContentType() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getContentType();
@@ -336,8 +352,7 @@ public class RequestFacade implements HttpServletRequest {
     public ServletInputStream getInputStream() throws IOException {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getInputStream();
@@ -347,8 +362,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getParameter(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -363,8 +377,7 @@ public class RequestFacade implements HttpServletRequest {
     public Enumeration getParameterNames() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -379,8 +392,7 @@ public class RequestFacade implements HttpServletRequest {
     public String[] getParameterValues(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         String[] ret = null;
@@ -406,8 +418,7 @@ public class RequestFacade implements HttpServletRequest {
     public Map getParameterMap() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -422,8 +433,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getProtocol() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getProtocol();
@@ -433,8 +443,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getScheme() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getScheme();
@@ -444,8 +453,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getServerName() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getServerName();
@@ -455,8 +463,7 @@ public class RequestFacade implements HttpServletRequest {
     public int getServerPort() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getServerPort();
@@ -466,8 +473,7 @@ public class RequestFacade implements HttpServletRequest {
     public BufferedReader getReader() throws IOException {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getReader();
@@ -477,8 +483,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getRemoteAddr() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRemoteAddr();
@@ -488,8 +493,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getRemoteHost() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRemoteHost();
@@ -499,8 +503,7 @@ public class RequestFacade implements HttpServletRequest {
     public void setAttribute(String name, Object o) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         request.setAttribute(name, o);
@@ -510,8 +513,7 @@ public class RequestFacade implements HttpServletRequest {
     public void removeAttribute(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         request.removeAttribute(name);
@@ -521,8 +523,7 @@ public class RequestFacade implements HttpServletRequest {
     public Locale getLocale() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -537,8 +538,7 @@ public class RequestFacade implements HttpServletRequest {
     public Enumeration getLocales() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -553,8 +553,7 @@ public class RequestFacade implements HttpServletRequest {
     public boolean isSecure() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.isSecure();
@@ -564,8 +563,7 @@ public class RequestFacade implements HttpServletRequest {
     public RequestDispatcher getRequestDispatcher(String path) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -579,8 +577,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getRealPath(String path) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRealPath(path);
@@ -590,8 +587,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getAuthType() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getAuthType();
@@ -601,8 +597,7 @@ public class RequestFacade implements HttpServletRequest {
     public Cookie[] getCookies() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         Cookie[] ret = null;
@@ -628,8 +623,7 @@ public class RequestFacade implements HttpServletRequest {
     public long getDateHeader(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getDateHeader(name);
@@ -639,8 +633,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getHeader(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getHeader(name);
@@ -650,8 +643,7 @@ public class RequestFacade implements HttpServletRequest {
     public Enumeration getHeaders(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -666,8 +658,7 @@ public class RequestFacade implements HttpServletRequest {
     public Enumeration getHeaderNames() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (Globals.IS_SECURITY_ENABLED){
@@ -682,8 +673,7 @@ public class RequestFacade implements HttpServletRequest {
     public int getIntHeader(String name) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getIntHeader(name);
@@ -693,8 +683,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getMethod() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getMethod();
@@ -704,8 +693,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getPathInfo() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getPathInfo();
@@ -715,8 +703,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getPathTranslated() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getPathTranslated();
@@ -726,8 +713,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getContextPath() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getContextPath();
@@ -737,8 +723,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getQueryString() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getQueryString();
@@ -748,8 +733,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getRemoteUser() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRemoteUser();
@@ -759,8 +743,7 @@ public class RequestFacade implements HttpServletRequest {
     public boolean isUserInRole(String role) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.isUserInRole(role);
@@ -770,8 +753,7 @@ public class RequestFacade implements HttpServletRequest {
     public java.security.Principal getUserPrincipal() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getUserPrincipal();
@@ -781,8 +763,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getRequestedSessionId() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRequestedSessionId();
@@ -792,8 +773,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getRequestURI() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRequestURI();
@@ -803,8 +783,7 @@ public class RequestFacade implements HttpServletRequest {
     public StringBuffer getRequestURL() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRequestURL();
@@ -814,8 +793,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getServletPath() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getServletPath();
@@ -825,8 +803,7 @@ public class RequestFacade implements HttpServletRequest {
     public HttpSession getSession(boolean create) {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         if (SecurityUtil.isPackageProtectionEnabled()){
@@ -840,8 +817,7 @@ public class RequestFacade implements HttpServletRequest {
     public HttpSession getSession() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return getSession(true);
@@ -851,8 +827,7 @@ public class RequestFacade implements HttpServletRequest {
     public boolean isRequestedSessionIdValid() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.isRequestedSessionIdValid();
@@ -862,8 +837,7 @@ public class RequestFacade implements HttpServletRequest {
     public boolean isRequestedSessionIdFromCookie() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.isRequestedSessionIdFromCookie();
@@ -873,8 +847,7 @@ public class RequestFacade implements HttpServletRequest {
     public boolean isRequestedSessionIdFromURL() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.isRequestedSessionIdFromURL();
@@ -884,8 +857,7 @@ public class RequestFacade implements HttpServletRequest {
     public boolean isRequestedSessionIdFromUrl() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.isRequestedSessionIdFromURL();
@@ -895,8 +867,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getLocalAddr() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getLocalAddr();
@@ -906,8 +877,7 @@ public class RequestFacade implements HttpServletRequest {
     public String getLocalName() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getLocalName();
@@ -917,8 +887,7 @@ public class RequestFacade implements HttpServletRequest {
     public int getLocalPort() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getLocalPort();
@@ -928,8 +897,7 @@ public class RequestFacade implements HttpServletRequest {
     public int getRemotePort() {
 
         if (request == null) {
-            throw new IllegalStateException(
-                            sm.getString("requestFacade.nullRequest"));
+            throw nullRequest();
         }
 
         return request.getRemotePort();
@@ -120,6 +120,13 @@ public class ResponseFacade
     protected Response response = null;
 
 
+    /**
+     * The recycled request, if facades are tracked and this facade has been
+     * cleared.
+     */
+    protected FacadeTracker tracker = null;
+
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -127,10 +134,26 @@ public class ResponseFacade
      * Clear facade.
      */
     public void clear() {
+        if (Connector.TRACK_FACADES && response != null
+                && response.getRequest() != null) {
+            tracker = new FacadeTracker(response.getRequest());
+        }
         response = null;
     }
 
 
+    /**
+     * Return the exception thrown when this facade is used after it has been
+     * cleared.
+     */
+    protected IllegalStateException nullResponse() {
+        if (tracker != null) {
+            return tracker.used("responseFacade.recycled");
+        }
+        return new IllegalStateException(sm.getString("responseFacade.nullResponse"));
+    }
+
+
     /**
      * Prevent cloning the facade.
      */
@@ -143,8 +166,7 @@ public class ResponseFacade
     public void finish() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         response.setSuspended(true);
@@ -154,8 +176,7 @@ public class ResponseFacade
     public boolean isFinished() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.isSuspended();
@@ -168,8 +189,7 @@ public class ResponseFacade
     public String getCharacterEncoding() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.getCharacterEncoding();
@@ -243,8 +263,7 @@ public class ResponseFacade
     public int getBufferSize() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.getBufferSize();
@@ -299,8 +318,7 @@ public class ResponseFacade
     public boolean isCommitted() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return (response.isAppCommitted());
@@ -330,8 +348,7 @@ public class ResponseFacade
     public Locale getLocale() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.getLocale();
@@ -351,8 +368,7 @@ public class ResponseFacade
     public boolean containsHeader(String name) {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.containsHeader(name);
@@ -362,8 +378,7 @@ public class ResponseFacade
     public String encodeURL(String url) {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.encodeURL(url);
@@ -373,8 +388,7 @@ public class ResponseFacade
     public String encodeRedirectURL(String url) {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.encodeRedirectURL(url);
@@ -384,8 +398,7 @@ public class ResponseFacade
     public String encodeUrl(String url) {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.encodeURL(url);
@@ -395,8 +408,7 @@ public class ResponseFacade
     public String encodeRedirectUrl(String url) {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.encodeRedirectURL(url);
@@ -537,8 +549,7 @@ public class ResponseFacade
     public String getContentType() {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         return response.getContentType();
@@ -548,8 +559,7 @@ public class ResponseFacade
     public void setCharacterEncoding(String arg0) {
 
         if (response == null) {
-            throw new IllegalStateException(
-                            sm.getString("responseFacade.nullResponse"));
+            throw nullResponse();
         }
 
         response.setCharacterEncoding(arg0);
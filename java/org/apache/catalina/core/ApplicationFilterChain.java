@@ -75,6 +75,10 @@ final class ApplicationFilterChain implements FilterChain, CometFilterChain {
     public static final int INCREMENT = 10;
 
 
+    private static final ApplicationFilterConfig[] NO_FILTERS =
+        new ApplicationFilterConfig[0];
+
+
     // ----------------------------------------------------------- Constructors
 
 
@@ -98,6 +102,13 @@ final class ApplicationFilterChain implements FilterChain, CometFilterChain {
         new ApplicationFilterConfig[0];
 
 
+    /**
+     * Is the filters array shared with other chains, in which case it must
+     * be copied before being modified?
+     */
+    private boolean filtersShared = false;
+
+
     /**
      * The int which is used to maintain the current position 
      * in the filter chain.
@@ -513,24 +524,51 @@ final class ApplicationFilterChain implements FilterChain, CometFilterChain {
      */
     void addFilter(ApplicationFilterConfig filterConfig) {
 
-        if (n == filters.length) {
+        if (filtersShared || (n == filters.length)) {
             ApplicationFilterConfig[] newFilters =
                 new ApplicationFilterConfig[n + INCREMENT];
             System.arraycopy(filters, 0, newFilters, 0, n);
             filters = newFilters;
+            filtersShared = false;
         }
         filters[n++] = filterConfig;
 
     }
 
 
+    /**
+     * Set the filters that will be executed in this chain. The array is
+     * not modified, and may be shared with other chains.
+     *
+     * @param filters The FilterConfigs of the filters to be executed
+     */
+    void setFilters(ApplicationFilterConfig[] filters) {
+
+        if (!filtersShared) {
+            for (int i = 0; i < n; i++) {
+                this.filters[i] = null;
+            }
+        }
+        this.filters = filters;
+        this.filtersShared = true;
+        n = filters.length;
+        pos = 0;
+
+    }
+
+
     /**
      * Release references to the filters and wrapper executed by this chain.
      */
     void release() {
 
-        for (int i = 0; i < n; i++) {
-            filters[i] = null;
+        if (filtersShared) {
+            filters = NO_FILTERS;
+            filtersShared = false;
+        } else {
+            for (int i = 0; i < n; i++) {
+                filters[i] = null;
+            }
         }
         n = 0;
         pos = 0;
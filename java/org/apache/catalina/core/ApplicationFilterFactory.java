@@ -19,6 +19,11 @@
 package org.apache.catalina.core;
 
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.servlet.Servlet;
 import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
@@ -28,6 +33,7 @@ import org.apache.catalina.Globals;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Request;
 import org.apache.catalina.deploy.FilterMap;
+import org.apache.catalina.util.InstanceSupport;
 
 /**
  * Factory for the creation and caching of Filters and creationg 
@@ -58,6 +64,20 @@ public final class ApplicationFilterFactory {
     public static final String DISPATCHER_REQUEST_PATH_ATTR = 
         Globals.DISPATCHER_REQUEST_PATH_ATTR;
 
+    /**
+     * Maximum number of request paths for which the filters applied to a
+     * servlet are cached, for each dispatcher type. A value of 0 disables
+     * the cache.
+     */
+    public static final int CACHE_SIZE = Integer.parseInt(System.getProperty(
+            "org.apache.catalina.core.ApplicationFilterFactory.CACHE_SIZE",
+            "256"));
+
+    /**
+     * Cache key used for dispatches without a request path.
+     */
+    private static final String NO_REQUEST_PATH = "\u0000";
+
     private static ApplicationFilterFactory factory = null;;
 
 
@@ -144,19 +164,107 @@ public final class ApplicationFilterFactory {
 
         filterChain.setServlet(servlet);
 
-        filterChain.setSupport
-            (((StandardWrapper)wrapper).getInstanceSupport());
+        if (wrapper instanceof StandardWrapper) {
+            filterChain.setSupport
+                (((StandardWrapper)wrapper).getInstanceSupport());
+        } else {
+            filterChain.setSupport(new InstanceSupport(wrapper));
+        }
 
         // Acquire the filter mappings for this Context
         StandardContext context = (StandardContext) wrapper.getParent();
+        int generation = context.getFilterMapsGeneration();
         FilterMap filterMaps[] = context.findFilterMaps();
 
         // If there are no filter mappings, we are done
         if ((filterMaps == null) || (filterMaps.length == 0))
             return (filterChain);
 
-        // Acquire the information we will need to match filter mappings
-        String servletName = wrapper.getName();
+        // Comet requests only use the Comet filters, and are not cached,
+        // and neither are those of a custom wrapper class, which has no
+        // cache
+        ApplicationFilterConfig[] filters = null;
+        if (comet || (CACHE_SIZE <= 0)
+                || !(wrapper instanceof StandardWrapper)) {
+            filters = matchFilters(context, filterMaps, dispatcher,
+                                   requestPath, wrapper.getName(), comet);
+        } else {
+            filters = findFilters(context, (StandardWrapper) wrapper,
+                                  generation, filterMaps, dispatcher,
+                                  requestPath);
+        }
+        filterChain.setFilters(filters);
+
+        // Return the completed filter chain
+        return (filterChain);
+
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    /**
+     * Return the filters applied to the specified request path and
+     * dispatcher type for the specified wrapper, computing them on the first
+     * request and caching them on the wrapper until the filter mappings or
+     * the filters of the context change.
+     *
+     * @param context Context of the wrapper
+     * @param wrapper Wrapper of the servlet which is executed
+     * @param generation Version of the filter mappings of the context, read
+     *  before the filter mappings
+     * @param filterMaps Filter mappings of the context
+     * @param dispatcher Dispatcher type of the request
+     * @param requestPath Context-relative request path of this request
+     */
+    private ApplicationFilterConfig[] findFilters
+        (StandardContext context, StandardWrapper wrapper, int generation,
+         FilterMap[] filterMaps, int dispatcher, String requestPath) {
+
+        FilterCache cache = wrapper.filterCache;
+        if ((cache == null) || (cache.generation != generation)) {
+            cache = new FilterCache(generation);
+            wrapper.filterCache = cache;
+        }
+        Map<String, ApplicationFilterConfig[]> paths =
+            cache.getPaths(dispatcher);
+        String key = (requestPath == null) ? NO_REQUEST_PATH : requestPath;
+        ApplicationFilterConfig[] filters = paths.get(key);
+        if (filters == null) {
+            filters = matchFilters(context, filterMaps, dispatcher,
+                                   requestPath, wrapper.getName(), false);
+            // Servlets mapped by prefix may see any number of paths
+            if (paths.size() >= CACHE_SIZE) {
+                paths.clear();
+            }
+            paths.put(key, filters);
+        }
+        return filters;
+
+    }
+
+
+    /**
+     * Return the filters applied to the specified request path and
+     * dispatcher type for the specified servlet: first the filters mapped
+     * to a matching URL pattern, then the filters mapped to the servlet
+     * name, in the order of the filter mappings.
+     *
+     * @param context Context of the servlet
+     * @param filterMaps Filter mappings of the context
+     * @param dispatcher Dispatcher type of the request
+     * @param requestPath Context-relative request path of this request
+     * @param servletName Name of the servlet
+     * @param comet Is the request a Comet request, in which case only the
+     *  Comet filters are applied?
+     */
+    private ApplicationFilterConfig[] matchFilters
+        (StandardContext context, FilterMap[] filterMaps, int dispatcher,
+         String requestPath, String servletName, boolean comet) {
+
+        ArrayList<ApplicationFilterConfig> filters =
+            new ArrayList<ApplicationFilterConfig>();
 
         // Add the relevant path-mapped filters to this filter chain
         for (int i = 0; i < filterMaps.length; i++) {
@@ -165,27 +273,7 @@ public final class ApplicationFilterFactory {
             }
             if (!matchFiltersURL(filterMaps[i], requestPath))
                 continue;
-            ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
-                context.findFilterConfig(filterMaps[i].getFilterName());
-            if (filterConfig == null) {
-                ;       // FIXME - log configuration problem
-                continue;
-            }
-            boolean isCometFilter = false;
-            if (comet) {
-                try {
-                    isCometFilter = filterConfig.getFilter() instanceof CometFilter;
-                } catch (Exception e) {
-                    // Note: The try catch is there because getFilter has a lot of 
-                    // declared exceptions. However, the filter is allocated much
-                    // earlier
-                }
-                if (isCometFilter) {
-                    filterChain.addFilter(filterConfig);
-                }
-            } else {
-                filterChain.addFilter(filterConfig);
-            }
+            addFilter(context, filterMaps[i], comet, filters);
         }
 
         // Add filters that match on servlet name second
@@ -195,36 +283,45 @@ public final class ApplicationFilterFactory {
             }
             if (!matchFiltersServlet(filterMaps[i], servletName))
                 continue;
-            ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
-                context.findFilterConfig(filterMaps[i].getFilterName());
-            if (filterConfig == null) {
-                ;       // FIXME - log configuration problem
-                continue;
-            }
-            boolean isCometFilter = false;
-            if (comet) {
-                try {
-                    isCometFilter = filterConfig.getFilter() instanceof CometFilter;
-                } catch (Exception e) {
-                    // Note: The try catch is there because getFilter has a lot of 
-                    // declared exceptions. However, the filter is allocated much
-                    // earlier
-                }
-                if (isCometFilter) {
-                    filterChain.addFilter(filterConfig);
-                }
-            } else {
-                filterChain.addFilter(filterConfig);
-            }
+            addFilter(context, filterMaps[i], comet, filters);
         }
 
-        // Return the completed filter chain
-        return (filterChain);
+        return filters.toArray(new ApplicationFilterConfig[filters.size()]);
 
     }
 
 
-    // -------------------------------------------------------- Private Methods
+    /**
+     * Add the filter of the specified filter mapping to the list of filters
+     * of a chain.
+     */
+    private void addFilter(StandardContext context, FilterMap filterMap,
+                           boolean comet,
+                           List<ApplicationFilterConfig> filters) {
+
+        ApplicationFilterConfig filterConfig = (ApplicationFilterConfig)
+            context.findFilterConfig(filterMap.getFilterName());
+        if (filterConfig == null) {
+            ;       // FIXME - log configuration problem
+            return;
+        }
+        boolean isCometFilter = false;
+        if (comet) {
+            try {
+                isCometFilter = filterConfig.getFilter() instanceof CometFilter;
+            } catch (Exception e) {
+                // Note: The try catch is there because getFilter has a lot of 
+                // declared exceptions. However, the filter is allocated much
+                // earlier
+            }
+            if (isCometFilter) {
+                filters.add(filterConfig);
+            }
+        } else {
+            filters.add(filterConfig);
+        }
+
+    }
 
 
     /**
@@ -404,4 +501,50 @@ public final class ApplicationFilterFactory {
     }
 
 
+
+    // ---------------------------------------------------------- Inner Classes
+
+
+    /**
+     * The filters applied to the requests for a servlet, by dispatcher type
+     * and request path, for a given version of the filter mappings of the
+     * context. The filter arrays are shared by the filter chains, and must
+     * not be modified.
+     */
+    static final class FilterCache {
+
+        final int generation;
+        private final Map<String, ApplicationFilterConfig[]> error =
+            new ConcurrentHashMap<String, ApplicationFilterConfig[]>();
+        private final Map<String, ApplicationFilterConfig[]> forward =
+            new ConcurrentHashMap<String, ApplicationFilterConfig[]>();
+        private final Map<String, ApplicationFilterConfig[]> include =
+            new ConcurrentHashMap<String, ApplicationFilterConfig[]>();
+        private final Map<String, ApplicationFilterConfig[]> request =
+            new ConcurrentHashMap<String, ApplicationFilterConfig[]>();
+        private final Map<String, ApplicationFilterConfig[]> other =
+            new ConcurrentHashMap<String, ApplicationFilterConfig[]>();
+
+        FilterCache(int generation) {
+            this.generation = generation;
+        }
+
+        Map<String, ApplicationFilterConfig[]> getPaths(int dispatcher) {
+            switch (dispatcher) {
+            case REQUEST:
+                return request;
+            case FORWARD:
+                return forward;
+            case INCLUDE:
+                return include;
+            case ERROR:
+                return error;
+            default:
+                return other;
+            }
+        }
+
+    }
+
+
 }
@@ -29,6 +29,16 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.MBeanRegistration;
 import javax.management.MBeanServer;
@@ -287,6 +297,18 @@ public abstract class ContainerBase
      */
     protected boolean startChildren = true;
 
+    /**
+     * The number of threads available to start and stop the children of this
+     * container in parallel.
+     */
+    protected int startStopThreads = 1;
+
+    /**
+     * The executor used to start and stop children, if
+     * <code>startStopThreads</code> allows more than one thread.
+     */
+    protected ThreadPoolExecutor startStopExecutor = null;
+
     /**
      * The property change support for this component.
      */
@@ -595,6 +617,64 @@ public abstract class ContainerBase
     }
 
 
+    /**
+     * Return the number of threads available for starting and stopping the
+     * children of this container.
+     */
+    public int getStartStopThreads() {
+
+        return (startStopThreads);
+
+    }
+
+
+    /**
+     * Set the number of threads available for starting and stopping the
+     * children of this container. A value of <code>0</code> uses one thread
+     * per available processor, and negative values leave that many
+     * processors free, with a minimum of one thread. Changes take effect the
+     * next time the container is started.
+     *
+     * @param startStopThreads The new number of threads
+     */
+    public void setStartStopThreads(int startStopThreads) {
+
+        int oldStartStopThreads = this.startStopThreads;
+        this.startStopThreads = startStopThreads;
+        support.firePropertyChange("startStopThreads", oldStartStopThreads,
+                this.startStopThreads);
+
+    }
+
+
+    /**
+     * Return the executor used to start and stop the children of this
+     * container, or <code>null</code> if they are handled one at a time by
+     * the calling thread.
+     */
+    public ExecutorService getStartStopExecutor() {
+
+        return (startStopExecutor);
+
+    }
+
+
+    /**
+     * Return the effective number of start and stop threads.
+     */
+    protected int getStartStopThreadsInternal() {
+        int result = getStartStopThreads();
+        if (result > 0) {
+            return result;
+        }
+        result = Runtime.getRuntime().availableProcessors() + result;
+        if (result < 1) {
+            result = 1;
+        }
+        return result;
+    }
+
+
     /**
      * Return the Container for which this Container is a child, if there is
      * one.  If there is no defined parent, return <code>null</code>.
@@ -820,27 +900,30 @@ public abstract class ContainerBase
                                                    "' is not unique");
             child.setParent(this);  // May throw IAE
             children.put(child.getName(), child);
+        }
 
-            // Start child
-            if (started && startChildren && (child instanceof Lifecycle)) {
-                boolean success = false;
-                try {
-                    ((Lifecycle) child).start();
-                    success = true;
-                } catch (LifecycleException e) {
-                    log.error("ContainerBase.addChild: start: ", e);
-                    throw new IllegalStateException
-                        ("ContainerBase.addChild: start: " + e);
-                } finally {
-                    if (!success) {
+        // Start child outside of the lock, so that children added from
+        // several threads can start concurrently
+        if (started && startChildren && (child instanceof Lifecycle)) {
+            boolean success = false;
+            try {
+                ((Lifecycle) child).start();
+                success = true;
+            } catch (LifecycleException e) {
+                log.error("ContainerBase.addChild: start: ", e);
+                throw new IllegalStateException
+                    ("ContainerBase.addChild: start: " + e);
+            } finally {
+                if (!success) {
+                    synchronized(children) {
                         children.remove(child.getName());
                     }
                 }
             }
-
-            fireContainerEvent(ADD_CHILD_EVENT, child);
         }
 
+        fireContainerEvent(ADD_CHILD_EVENT, child);
+
     }
 
 
@@ -1064,40 +1147,67 @@ public abstract class ContainerBase
         // Notify our interested LifecycleListeners
         lifecycle.fireLifecycleEvent(BEFORE_START_EVENT, null);
 
-        started = true;
-
-        // Start our subordinate components, if any
-        if ((loader != null) && (loader instanceof Lifecycle))
-            ((Lifecycle) loader).start();
-        logger = null;
-        getLogger();
-        if ((logger != null) && (logger instanceof Lifecycle))
-            ((Lifecycle) logger).start();
-        if ((manager != null) && (manager instanceof Lifecycle))
-            ((Lifecycle) manager).start();
-        if ((cluster != null) && (cluster instanceof Lifecycle))
-            ((Lifecycle) cluster).start();
-        if ((realm != null) && (realm instanceof Lifecycle))
-            ((Lifecycle) realm).start();
-        if ((resources != null) && (resources instanceof Lifecycle))
-            ((Lifecycle) resources).start();
-
-        // Start our child containers, if any
-        Container children[] = findChildren();
-        for (int i = 0; i < children.length; i++) {
-            if (children[i] instanceof Lifecycle)
-                ((Lifecycle) children[i]).start();
+        int threads = getStartStopThreadsInternal();
+        if (threads > 1) {
+            startStopExecutor = new ThreadPoolExecutor(threads, threads, 10,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new StartStopThreadFactory(getName() + "-startStop-"));
         }
 
-        // Start the Valves in our pipeline (including the basic), if any
-        if (pipeline instanceof Lifecycle)
-            ((Lifecycle) pipeline).start();
+        boolean success = false;
+        try {
+            started = true;
 
-        // Notify our interested LifecycleListeners
-        lifecycle.fireLifecycleEvent(START_EVENT, null);
+            // Start our subordinate components, if any
+            if ((loader != null) && (loader instanceof Lifecycle))
+                ((Lifecycle) loader).start();
+            logger = null;
+            getLogger();
+            if ((logger != null) && (logger instanceof Lifecycle))
+                ((Lifecycle) logger).start();
+            if ((manager != null) && (manager instanceof Lifecycle))
+                ((Lifecycle) manager).start();
+            if ((cluster != null) && (cluster instanceof Lifecycle))
+                ((Lifecycle) cluster).start();
+            if ((realm != null) && (realm instanceof Lifecycle))
+                ((Lifecycle) realm).start();
+            if ((resources != null) && (resources instanceof Lifecycle))
+                ((Lifecycle) resources).start();
+
+            // Start our child containers, if any
+            Container children[] = findChildren();
+            if (startStopExecutor == null) {
+                for (int i = 0; i < children.length; i++) {
+                    if (children[i] instanceof Lifecycle)
+                        ((Lifecycle) children[i]).start();
+                }
+            } else {
+                List<Future<Void>> results = new ArrayList<Future<Void>>();
+                for (int i = 0; i < children.length; i++) {
+                    if (children[i] instanceof Lifecycle)
+                        results.add(startStopExecutor.submit(
+                                new StartChild((Lifecycle) children[i])));
+                }
+                waitForChildren(results, "containerBase.threadedStartFailed");
+            }
 
-        // Start our thread
-        threadStart();
+            // Start the Valves in our pipeline (including the basic), if any
+            if (pipeline instanceof Lifecycle)
+                ((Lifecycle) pipeline).start();
+
+            // Notify our interested LifecycleListeners
+            lifecycle.fireLifecycleEvent(START_EVENT, null);
+
+            // Start our thread
+            threadStart();
+            success = true;
+        } finally {
+            // Do not leave the threads running if the start failed
+            if (!success && startStopExecutor != null) {
+                startStopExecutor.shutdown();
+                startStopExecutor = null;
+            }
+        }
 
         // Notify our interested LifecycleListeners
         lifecycle.fireLifecycleEvent(AFTER_START_EVENT, null);
@@ -1137,9 +1247,24 @@ public abstract class ContainerBase
 
         // Stop our child containers, if any
         Container children[] = findChildren();
-        for (int i = 0; i < children.length; i++) {
-            if (children[i] instanceof Lifecycle)
-                ((Lifecycle) children[i]).stop();
+        if (startStopExecutor == null) {
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] instanceof Lifecycle)
+                    ((Lifecycle) children[i]).stop();
+            }
+        } else {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < children.length; i++) {
+                if (children[i] instanceof Lifecycle)
+                    results.add(startStopExecutor.submit(
+                            new StopChild((Lifecycle) children[i])));
+            }
+            try {
+                waitForChildren(results, "containerBase.threadedStopFailed");
+            } finally {
+                startStopExecutor.shutdown();
+                startStopExecutor = null;
+            }
         }
         // Remove children - so next start can work
         children = findChildren();
@@ -1269,6 +1394,21 @@ public abstract class ContainerBase
     public ObjectName[] getValveObjectNames() {
         return ((StandardPipeline)pipeline).getValveObjectNames();
     }
+
+    /**
+     * Return a summary of the times recorded for each valve of the pipeline,
+     * if valve timing is enabled.
+     */
+    public String[] getValveTimings() {
+        return ((StandardPipeline)pipeline).getValveTimings();
+    }
+
+    /**
+     * Discard the times recorded for the valves of the pipeline.
+     */
+    public void resetValveTimings() {
+        ((StandardPipeline)pipeline).resetValveTimings();
+    }
     
     /**
      * <p>Return the Valve instance that has been distinguished as the basic
@@ -1626,6 +1766,103 @@ public abstract class ContainerBase
     }
 
 
+    /**
+     * Wait for the start or stop of the children submitted to the start and
+     * stop executor. Failures are logged in the order the children were
+     * submitted, whatever order they completed in, and the first one is
+     * reported once all the children are done.
+     *
+     * @param results The results of the submitted tasks
+     * @param key The message key to use if a child failed
+     */
+    protected void waitForChildren(List<Future<Void>> results, String key)
+        throws LifecycleException {
+
+        Throwable failure = null;
+        Iterator<Future<Void>> iterator = results.iterator();
+        while (iterator.hasNext()) {
+            Throwable t = null;
+            try {
+                iterator.next().get();
+            } catch (ExecutionException e) {
+                t = e.getCause();
+            } catch (InterruptedException e) {
+                t = e;
+            }
+            if (t != null) {
+                log.error(sm.getString(key), t);
+                if (failure == null) {
+                    failure = t;
+                }
+            }
+        }
+        if (failure != null) {
+            throw new LifecycleException(sm.getString(key), failure);
+        }
+
+    }
+
+
+    // ------------------------------------------ StartStopExecutor Inner Classes
+
+
+    /**
+     * Task starting a child container.
+     */
+    protected static class StartChild implements Callable<Void> {
+
+        private Lifecycle child;
+
+        public StartChild(Lifecycle child) {
+            this.child = child;
+        }
+
+        public Void call() throws LifecycleException {
+            child.start();
+            return null;
+        }
+    }
+
+
+    /**
+     * Task stopping a child container.
+     */
+    protected static class StopChild implements Callable<Void> {
+
+        private Lifecycle child;
+
+        public StopChild(Lifecycle child) {
+            this.child = child;
+        }
+
+        public Void call() throws LifecycleException {
+            child.stop();
+            return null;
+        }
+    }
+
+
+    /**
+     * Factory for the daemon threads used to start and stop children.
+     */
+    protected static class StartStopThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public StartStopThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,
+                    namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+
     // -------------------------------------- ContainerExecuteDelay Inner Class
 
 
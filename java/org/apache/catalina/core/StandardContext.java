@@ -33,6 +33,7 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.AttributeNotFoundException;
 import javax.management.ListenerNotFoundException;
@@ -83,6 +84,7 @@ import org.apache.catalina.deploy.MessageDestinationRef;
 import org.apache.catalina.deploy.NamingResources;
 import org.apache.catalina.deploy.SecurityCollection;
 import org.apache.catalina.deploy.SecurityConstraint;
+import org.apache.catalina.loader.WebappClassLoader;
 import org.apache.catalina.loader.WebappLoader;
 import org.apache.catalina.session.StandardManager;
 import org.apache.catalina.startup.ContextConfig;
@@ -100,6 +102,7 @@ import org.apache.naming.resources.DirContextURLStreamHandler;
 import org.apache.naming.resources.FileDirContext;
 import org.apache.naming.resources.ProxyDirContext;
 import org.apache.naming.resources.WARDirContext;
+import org.apache.tomcat.util.StartupProfiler;
 import org.apache.tomcat.util.modeler.Registry;
 
 /**
@@ -183,6 +186,14 @@ public class StandardContext
     private AnnotationProcessor annotationProcessor = null;
 
 
+    /**
+     * Was the annotation processor created by this context when it started?
+     * Such a processor refers to the classes of the web application, and
+     * is discarded when the context stops.
+     */
+    private boolean defaultAnnotationProcessor = false;
+
+
    /**
      * Associated host name.
      * 
@@ -382,6 +393,14 @@ public class StandardContext
     private final Object filterMapsLock = new Object();
 
 
+    /**
+     * Version of the filter mappings and filter configurations, incremented
+     * whenever they change, so that the filters matched for each servlet
+     * may be cached.
+     */
+    private AtomicInteger filterMapsGeneration = new AtomicInteger();
+
+
     /**
      * Ignore annotations.
      * 忽略注释
@@ -742,6 +761,7 @@ public class StandardContext
 
     public void setAnnotationProcessor(AnnotationProcessor annotationProcessor) {
        this.annotationProcessor = annotationProcessor;
+       this.defaultAnnotationProcessor = false;
     }
 
     
@@ -2292,6 +2312,7 @@ public class StandardContext
             results[filterMaps.length] = filterMap;
             filterMaps = results;
         }
+        filterMapsGeneration.incrementAndGet();
         fireContainerEvent("addFilterMap", filterMap);
 
     }
@@ -2821,6 +2842,17 @@ public class StandardContext
     }
 
 
+    /**
+     * Return the version of the filter mappings and filter configurations
+     * of this Context, which changes whenever they are modified.
+     */
+    public int getFilterMapsGeneration() {
+
+        return (filterMapsGeneration.get());
+
+    }
+
+
     /**
      * Return the set of filter mappings for this Context.
      */
@@ -3441,6 +3473,7 @@ public class StandardContext
             filterMaps = results;
 
         }
+        filterMapsGeneration.incrementAndGet();
 
         // Inform interested listeners
         fireContainerEvent("removeFilterMap", filterMap);
@@ -3843,6 +3876,7 @@ public class StandardContext
                 }
             }
         }
+        filterMapsGeneration.incrementAndGet();
 
         return (ok);
 
@@ -3872,6 +3906,7 @@ public class StandardContext
             }
             filterConfigs.clear();
         }
+        filterMapsGeneration.incrementAndGet();
         return (true);
 
     }
@@ -4181,6 +4216,7 @@ public class StandardContext
             Iterator wrappers = list.iterator();
             while (wrappers.hasNext()) {
                 Wrapper wrapper = (Wrapper) wrappers.next();
+                long begin = StartupProfiler.begin();
                 try {
                     wrapper.load();
                 } catch (ServletException e) {
@@ -4190,6 +4226,8 @@ public class StandardContext
                     // UnavailableException from tht init() method) are NOT
                     // fatal to application startup
                 }
+                StartupProfiler.record(toString(), "load " + wrapper.getName(),
+                        begin, wrapper.getServletClass());
             }
         }
 
@@ -4218,6 +4256,9 @@ public class StandardContext
         if(log.isDebugEnabled())
             log.debug("Starting " + ("".equals(getName()) ? "ROOT" : getName()));
 
+        long startupBegin = System.currentTimeMillis();
+        long profilerBegin = StartupProfiler.begin();
+
         // Set JMX object name for proper pipeline registration
         preRegisterJMX();
 
@@ -4437,12 +4478,19 @@ public class StandardContext
         // Initialize annotation processor
         if (ok && !getIgnoreAnnotations()) {
             if (annotationProcessor == null) {
+                // Only the classes of the web application are cached, not
+                // those of the JSP pages, which are replaced when the pages
+                // are compiled again
+                ClassLoader classLoader = (getLoader() != null)
+                    ? getLoader().getClassLoader() : null;
                 if (isUseNaming() && namingContextListener != null) {
-                    annotationProcessor = 
-                        new DefaultAnnotationProcessor(namingContextListener.getEnvContext());
+                    annotationProcessor = new DefaultAnnotationProcessor
+                        (namingContextListener.getEnvContext(), classLoader);
                 } else {
-                    annotationProcessor = new DefaultAnnotationProcessor(null);
+                    annotationProcessor =
+                        new DefaultAnnotationProcessor(null, classLoader);
                 }
+                defaultAnnotationProcessor = true;
             }
             getServletContext().setAttribute
                 (AnnotationProcessor.class.getName(), annotationProcessor);
@@ -4518,6 +4566,21 @@ public class StandardContext
         registerJMX();
 
         startTime=System.currentTimeMillis();
+        startupTime = startTime - startupBegin;
+        if (StartupProfiler.ENABLED) {
+            if ((getLoader() != null)
+                    && (getLoader().getClassLoader() instanceof WebappClassLoader)) {
+                WebappClassLoader classLoader =
+                    (WebappClassLoader) getLoader().getClassLoader();
+                StartupProfiler.record(toString(), "class loading",
+                        profilerBegin, classLoader.getClassLoadingTime(),
+                        classLoader.getLoadedClassCount() + " classes");
+            }
+            StartupProfiler.record(toString(), "start", profilerBegin, null);
+        }
+        if (log.isDebugEnabled())
+            log.debug("Started " + ("".equals(getName()) ? "ROOT" : getName())
+                    + " in " + startupTime + " ms");
         
         // Send j2ee.state.running notification 
         if (ok && (this.getObjectName() != null)) {
@@ -4665,6 +4728,12 @@ public class StandardContext
         // Reset application context
         context = null;
 
+        // Release the classes examined by our annotation processor
+        if (defaultAnnotationProcessor) {
+            annotationProcessor = null;
+            defaultAnnotationProcessor = false;
+        }
+
         // This object will no longer be visible or used. 
         try {
             resetContext();
@@ -20,6 +20,8 @@ package org.apache.catalina.core;
 
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import javax.management.ObjectName;
 
@@ -137,12 +139,29 @@ public class StandardPipeline
 
 
     /**
-     * The first valve associated with this Pipeline.
+     * The first valve invoked by this Pipeline, which is the timer of the
+     * first valve if valve timing is enabled, or <code>null</code> if the
+     * basic valve is invoked directly.
      * 第一个vavle.没有的话. 
      */
     protected Valve first = null;
 
 
+    /**
+     * The valves of this Pipeline, in order, excluding the basic valve. The
+     * valves are linked to each other by {@link #relink()}.
+     */
+    protected Valve[] valves = new Valve[0];
+
+
+    /**
+     * The timers placed in front of the valves, including the basic valve,
+     * if valve timing is enabled.
+     */
+    protected Map<Valve, ValveTimer> timers =
+        new IdentityHashMap<Valve, ValveTimer>();
+
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -247,15 +266,11 @@ public class StandardPipeline
 
         // Start the Valves in our pipeline (including the basic), if any
         //启动vavle. 包括basic
-        Valve current = first;
-        if (current == null) {
-        	current = basic;
-        }
-        while (current != null) {
-            if (current instanceof Lifecycle)
-                ((Lifecycle) current).start();
-            registerValve(current);
-        	current = current.getNext();
+        Valve[] current = getValves();
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] instanceof Lifecycle)
+                ((Lifecycle) current[i]).start();
+            registerValve(current[i]);
         }
 
         // Notify our interested LifecycleListeners
@@ -289,16 +304,12 @@ public class StandardPipeline
         started = false;
 
         // Stop the Valves in our pipeline (including the basic), if any
-        Valve current = first;
-        if (current == null) {
-        	current = basic;
-        }
+        Valve[] current = getValves();
         // 各组件stop
-        while (current != null) {
-            if (current instanceof Lifecycle)
-                ((Lifecycle) current).stop();
-            unregisterValve(current);
-        	current = current.getNext();
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] instanceof Lifecycle)
+                ((Lifecycle) current[i]).stop();
+            unregisterValve(current[i]);
         }
 
         // Notify our interested LifecycleListeners
@@ -425,16 +436,11 @@ public class StandardPipeline
         }
 
         // Update the pipeline
-        Valve current = first;
-        while (current != null) {
-        	if (current.getNext() == oldBasic) {
-        		current.setNext(valve);
-        		break;
-        	}
-        	current = current.getNext();
+        synchronized (this) {
+            timers.remove(oldBasic);
+            this.basic = valve;
+            relink();
         }
-        
-        this.basic = valve;
 
     }
 
@@ -478,19 +484,12 @@ public class StandardPipeline
         }
 
         // Add this Valve to the set associated with this Pipeline
-        if (first == null) {
-        	first = valve;
-        	valve.setNext(basic);
-        } else {
-            Valve current = first;
-            while (current != null) {
-				if (current.getNext() == basic) {
-					current.setNext(valve);
-					valve.setNext(basic);
-					break;
-				}
-				current = current.getNext();
-			}
+        synchronized (this) {
+            Valve[] results = new Valve[valves.length + 1];
+            System.arraycopy(valves, 0, results, 0, valves.length);
+            results[valves.length] = valve;
+            valves = results;
+            relink();
         }
 
     }
@@ -501,37 +500,29 @@ public class StandardPipeline
      * Container, including the basic Valve (if any).  If there are no
      * such Valves, a zero-length array is returned.
      */
-    public Valve[] getValves() {
+    public synchronized Valve[] getValves() {
 
-    	ArrayList valveList = new ArrayList();
-        Valve current = first;
-        if (current == null) {
-        	current = basic;
-        }
-        while (current != null) {
-        	valveList.add(current);
-        	current = current.getNext();
+        if (basic == null) {
+            return (valves.clone());
         }
-
-        return ((Valve[]) valveList.toArray(new Valve[0]));
+        Valve[] results = new Valve[valves.length + 1];
+        System.arraycopy(valves, 0, results, 0, valves.length);
+        results[valves.length] = basic;
+        return (results);
 
     }
 
     public ObjectName[] getValveObjectNames() {
 
-    	ArrayList valveList = new ArrayList();
-        Valve current = first;
-        if (current == null) {
-        	current = basic;
-        }
-        while (current != null) {
-        	if (current instanceof ValveBase) {
-        		valveList.add(((ValveBase) current).getObjectName());
+    	ArrayList<ObjectName> valveList = new ArrayList<ObjectName>();
+        Valve[] current = getValves();
+        for (int i = 0; i < current.length; i++) {
+        	if (current[i] instanceof ValveBase) {
+        		valveList.add(((ValveBase) current[i]).getObjectName());
         	}
-        	current = current.getNext();
         }
 
-        return ((ObjectName[]) valveList.toArray(new ObjectName[0]));
+        return (valveList.toArray(new ObjectName[valveList.size()]));
 
     }
 
@@ -545,23 +536,21 @@ public class StandardPipeline
      */
     public void removeValve(Valve valve) {
 
-        Valve current;
-        if(first == valve) {
-            first = first.getNext();
-            current = null;
-        } else {
-            current = first;
-        }
-        while (current != null) {
-            if (current.getNext() == valve) {
-                current.setNext(valve.getNext());
-                break;
+        synchronized (this) {
+            for (int i = 0; i < valves.length; i++) {
+                if (valves[i] == valve) {
+                    Valve[] results = new Valve[valves.length - 1];
+                    System.arraycopy(valves, 0, results, 0, i);
+                    System.arraycopy(valves, i + 1, results, i,
+                                     valves.length - i - 1);
+                    valves = results;
+                    timers.remove(valve);
+                    relink();
+                    break;
+                }
             }
-            current = current.getNext();
         }
 
-        if (first == basic) first = null;
-
         if (valve instanceof Contained)
             ((Contained) valve).setContainer(null);
 
@@ -592,4 +581,77 @@ public class StandardPipeline
     }
 
 
+    /**
+     * Return a summary of the times recorded for each valve, including the
+     * basic valve, if valve timing is enabled.
+     */
+    public synchronized String[] getValveTimings() {
+
+        Valve[] current = getValves();
+        ArrayList<String> results = new ArrayList<String>();
+        for (int i = 0; i < current.length; i++) {
+            ValveTimer timer = timers.get(current[i]);
+            if (timer != null) {
+                results.add(timer.toString());
+            }
+        }
+        return results.toArray(new String[results.size()]);
+
+    }
+
+
+    /**
+     * Discard the times recorded for the valves.
+     */
+    public synchronized void resetValveTimings() {
+
+        Valve[] current = getValves();
+        for (int i = 0; i < current.length; i++) {
+            ValveTimer timer = timers.get(current[i]);
+            if (timer != null) {
+                timer.reset();
+            }
+        }
+
+    }
+
+
+    // ------------------------------------------------------ Protected Methods
+
+
+    /**
+     * Link each valve to the next one, and the last one to the basic valve,
+     * placing a timer in front of each valve if valve timing is enabled.
+     */
+    protected synchronized void relink() {
+
+        Valve next = link(basic);
+        for (int i = valves.length - 1; i >= 0; i--) {
+            valves[i].setNext(next);
+            next = link(valves[i]);
+        }
+        first = (next != basic) ? next : null;
+
+    }
+
+
+    /**
+     * Return the valve through which the specified valve is invoked, which
+     * is either the valve itself or its timer.
+     */
+    private Valve link(Valve valve) {
+
+        if (valve == null || ValveTimer.SAMPLE_RATE <= 0) {
+            return valve;
+        }
+        ValveTimer timer = timers.get(valve);
+        if (timer == null) {
+            timer = new ValveTimer(valve, ValveTimer.SAMPLE_RATE);
+            timers.put(valve, timer);
+        }
+        return timer;
+
+    }
+
+
 }
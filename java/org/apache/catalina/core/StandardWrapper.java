@@ -179,6 +179,13 @@ public class StandardWrapper
     protected InstanceSupport instanceSupport = new InstanceSupport(this);
 
 
+    /**
+     * The filters applied to the requests for this servlet, cached by the
+     * ApplicationFilterFactory.
+     */
+    transient volatile ApplicationFilterFactory.FilterCache filterCache = null;
+
+
     /**
      * The context-relative URI of the JSP file for this servlet.
      */
@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.core;
+
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.servlet.ServletException;
+
+import org.apache.catalina.CometEvent;
+import org.apache.catalina.Valve;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+
+
+/**
+ * Valve placed by {@link StandardPipeline} in front of each of its valves
+ * when the <code>SAMPLE_RATE</code> system property is set, which records a
+ * latency histogram for the valve.
+ * <p>
+ * One request out of the sample rate is timed in each thread, the decision
+ * being taken by the first timed valve the request goes through, usually
+ * the basic valve of the engine. The recorded time of a valve is
+ * its own time, excluding the time spent in the valves it invokes, so that
+ * the times of the engine, host, context and wrapper valves of a request
+ * add up to the time of the request. Histogram buckets are powers of two
+ * of microseconds.
+ */
+public final class ValveTimer implements Valve {
+
+
+    /**
+     * One request out of this number is timed in each thread. A value of 0
+     * disables the timing of the valves of the pipelines.
+     */
+    public static final int SAMPLE_RATE = Integer.parseInt(System.getProperty(
+            "org.apache.catalina.core.ValveTimer.SAMPLE_RATE",
+            "0"));
+
+
+    /**
+     * Number of histogram buckets. The last bucket holds the times of more
+     * than 2^(BUCKETS - 2) microseconds.
+     */
+    private static final int BUCKETS = 32;
+
+
+    /**
+     * Timing state of the request being processed by each thread.
+     */
+    private static final ThreadLocal<Sample> samples =
+        new ThreadLocal<Sample>() {
+            protected Sample initialValue() {
+                return new Sample();
+            }
+        };
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    /**
+     * Create a timer for the specified valve.
+     *
+     * @param valve The timed valve
+     * @param sampleRate One request out of this number is timed in each
+     *  thread, if this timer is the first one the request goes through
+     */
+    public ValveTimer(Valve valve, int sampleRate) {
+        this.valve = valve;
+        this.sampleRate = Math.max(1, sampleRate);
+    }
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    /**
+     * The timed valve.
+     */
+    private final Valve valve;
+
+
+    /**
+     * One request out of this number is timed in each thread.
+     */
+    private final int sampleRate;
+
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    /**
+     * Return the timed valve.
+     */
+    public Valve getValve() {
+        return valve;
+    }
+
+
+    /**
+     * Return the number of timed requests.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+
+    /**
+     * Return the total time of the timed requests, in nanoseconds.
+     */
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+
+    /**
+     * Return the maximum time of a timed request, in nanoseconds.
+     */
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+
+    /**
+     * Return the number of timed requests in each bucket of the histogram.
+     * Bucket 0 holds the times of less than one microsecond, and bucket
+     * <code>i</code> the times from 2^(i-1) to 2^i microseconds.
+     */
+    public long[] getHistogram() {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+
+    /**
+     * Return the time, in microseconds, below which the specified fraction
+     * of the timed requests completed, rounded up to a bucket boundary.
+     */
+    public long getPercentile(double fraction) {
+        long[] histogram = getHistogram();
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += histogram[i];
+        }
+        long threshold = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= threshold && seen > 0) {
+                return (i == 0) ? 1L : (1L << i);
+            }
+        }
+        return 0L;
+    }
+
+
+    /**
+     * Discard the recorded times.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0L);
+        }
+        count.set(0L);
+        totalTime.set(0L);
+        maxTime.set(0L);
+    }
+
+
+    /**
+     * Return a one line summary of the recorded times.
+     */
+    public String toString() {
+        long n = getCount();
+        StringBuilder sb = new StringBuilder();
+        sb.append(valve.getClass().getName());
+        sb.append(": count=").append(n);
+        if (n > 0) {
+            sb.append(", mean=").append(getTotalTime() / n / 1000).append("us");
+            sb.append(", p50<=").append(getPercentile(0.5)).append("us");
+            sb.append(", p90<=").append(getPercentile(0.9)).append("us");
+            sb.append(", p99<=").append(getPercentile(0.99)).append("us");
+            sb.append(", max=").append(getMaxTime() / 1000).append("us");
+        }
+        return sb.toString();
+    }
+
+
+    // ---------------------------------------------------------- Valve Methods
+
+
+    public String getInfo() {
+        return valve.getInfo();
+    }
+
+
+    /**
+     * Return the valve following the timed valve. The pipeline links the
+     * timed valve to the timer of the next valve.
+     */
+    public Valve getNext() {
+        return valve.getNext();
+    }
+
+
+    public void setNext(Valve next) {
+        valve.setNext(next);
+    }
+
+
+    public void backgroundProcess() {
+        valve.backgroundProcess();
+    }
+
+
+    public void invoke(Request request, Response response)
+        throws IOException, ServletException {
+
+        Sample sample = samples.get();
+        if (sample.depth++ == 0) {
+            sample.timed = (++sample.requests % sampleRate == 0);
+        }
+        try {
+            if (!sample.timed) {
+                valve.invoke(request, response);
+                return;
+            }
+            long outerTime = sample.innerTime;
+            sample.innerTime = 0L;
+            long start = System.nanoTime();
+            try {
+                valve.invoke(request, response);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                record(elapsed - sample.innerTime);
+                sample.innerTime = outerTime + elapsed;
+            }
+        } finally {
+            sample.depth--;
+        }
+
+    }
+
+
+    public void event(Request request, Response response, CometEvent event)
+        throws IOException, ServletException {
+        valve.event(request, response, event);
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private void record(long time) {
+        if (time < 0L) {
+            time = 0L;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(time / 1000);
+        if (bucket >= BUCKETS) {
+            bucket = BUCKETS - 1;
+        }
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalTime.addAndGet(time);
+        long max = maxTime.get();
+        while (time > max && !maxTime.compareAndSet(max, time)) {
+            max = maxTime.get();
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Classes
+
+
+    private static final class Sample {
+        int depth;
+        boolean timed;
+        long requests;
+        long innerTime;
+    }
+
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.loader;
+
+
+/**
+ * Fixed size Bloom filter over strings, used by {@link WebappClassLoader} to
+ * rule out JARs which cannot contain a given entry without asking the JAR.
+ * A negative answer is always correct, while a positive answer is wrong for
+ * about one percent of the names which were not added.
+ * <p>
+ * The filter is filled once before being published, and is not modified
+ * afterwards, so that it can be read without synchronization.
+ */
+public final class BloomFilter {
+
+
+    /**
+     * Number of bits per expected element, and number of hash functions
+     * giving a false positive rate of about one percent.
+     */
+    private static final int BITS_PER_ELEMENT = 10;
+    private static final int HASH_COUNT = 7;
+
+
+    private final long[] bits;
+    private final int mask;
+
+
+    /**
+     * Create a filter sized for the specified number of elements. The number
+     * of bits is rounded up to a power of two.
+     *
+     * @param expectedElements Number of elements which will be added
+     */
+    public BloomFilter(int expectedElements) {
+        int bitCount = Math.max(64, expectedElements * BITS_PER_ELEMENT);
+        int size = Integer.highestOneBit(bitCount);
+        if (size < bitCount) {
+            size <<= 1;
+        }
+        this.bits = new long[size >>> 6];
+        this.mask = size - 1;
+    }
+
+
+    /**
+     * Add the specified name to the filter.
+     */
+    public void add(String name) {
+        int h1 = name.hashCode();
+        int h2 = secondaryHash(name);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+
+    /**
+     * Return <code>false</code> if the specified name has definitely not
+     * been added to the filter.
+     */
+    public boolean mightContain(String name) {
+        int h1 = name.hashCode();
+        int h2 = secondaryHash(name);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (h1 + i * h2) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * FNV-1a hash, which is independent enough from String.hashCode for
+     * double hashing. The result is forced to be odd: as the number of bits
+     * is a power of two, the probes of a name then fall on distinct bits.
+     */
+    private static int secondaryHash(String name) {
+        int h = 0x811c9dc5;
+        int length = name.length();
+        for (int i = 0; i < length; i++) {
+            h ^= name.charAt(i);
+            h *= 0x01000193;
+        }
+        return h | 1;
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.loader;
+
+
+import java.io.File;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import org.apache.naming.resources.FileDirContext;
+import org.apache.naming.resources.ProxyDirContext;
+import org.apache.naming.resources.ResourceAttributes;
+
+
+/**
+ * Keeps track of the last modified dates of the resources loaded by a
+ * {@link WebappClassLoader}, so that modifications can be detected.
+ * <p>
+ * When the resources are plain files, their dates are read directly from
+ * the file system rather than through the JNDI resources, which avoids the
+ * lookup and the attribute objects for each resource. The resources may also
+ * be checked a batch at a time, each call continuing where the previous one
+ * stopped, so that the cost of a check does not grow with the number of
+ * loaded classes.
+ * <p>
+ * Resources are only ever added, and the tracked data is never modified once
+ * added, which allows checks to run without holding the lock used to add
+ * resources.
+ */
+public class ModificationTracker {
+
+
+    protected static org.apache.juli.logging.Log log=
+        org.apache.juli.logging.LogFactory.getLog( ModificationTracker.class );
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    /**
+     * Create a tracker for resources found in the specified directory
+     * context.
+     */
+    public ModificationTracker(DirContext resources) {
+        this.resources = resources;
+        this.base = getBase(resources);
+    }
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    /**
+     * The resources of the web application.
+     */
+    protected DirContext resources;
+
+
+    /**
+     * The directory the resources are read from, or <code>null</code> if
+     * they are not plain files.
+     */
+    protected File base;
+
+
+    /**
+     * The paths of the tracked resources.
+     */
+    protected String[] paths = new String[16];
+
+
+    /**
+     * The files corresponding to <code>paths</code>, if the resources are
+     * plain files.
+     */
+    protected File[] files = new File[16];
+
+
+    /**
+     * The last modified dates of the tracked resources.
+     */
+    protected long[] lastModifiedDates = new long[16];
+
+
+    /**
+     * Number of tracked resources.
+     */
+    protected int size = 0;
+
+
+    /**
+     * Position where the next batch check will start.
+     */
+    protected int cursor = 0;
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Start tracking the specified resource.
+     *
+     * @param path Path of the resource in the resources
+     * @param lastModified Current last modified date of the resource
+     */
+    public synchronized void add(String path, long lastModified) {
+        if (size == paths.length) {
+            int capacity = size * 2;
+            String[] newPaths = new String[capacity];
+            System.arraycopy(paths, 0, newPaths, 0, size);
+            File[] newFiles = new File[capacity];
+            System.arraycopy(files, 0, newFiles, 0, size);
+            long[] newDates = new long[capacity];
+            System.arraycopy(lastModifiedDates, 0, newDates, 0, size);
+            paths = newPaths;
+            files = newFiles;
+            lastModifiedDates = newDates;
+        }
+        paths[size] = path;
+        if (base != null) {
+            files[size] = new File(base, path);
+        }
+        lastModifiedDates[size] = lastModified;
+        size++;
+    }
+
+
+    /**
+     * Return the number of tracked resources.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+
+    /**
+     * Return the paths of the tracked resources.
+     */
+    public synchronized String[] getPaths() {
+        String[] result = new String[size];
+        System.arraycopy(paths, 0, result, 0, size);
+        return result;
+    }
+
+
+    /**
+     * Return the directory the resources are read from, or
+     * <code>null</code> if they are not plain files.
+     */
+    public File getBase() {
+        return base;
+    }
+
+
+    /**
+     * Check the tracked resources for modifications.
+     *
+     * @param batchSize Maximum number of resources to check, or a value
+     *  less than 1 to check all of them
+     * @return the path of a modified or removed resource, or
+     *  <code>null</code> if no modification was found
+     */
+    public String findModified(int batchSize) {
+
+        String[] paths;
+        File[] files;
+        long[] lastModifiedDates;
+        int size;
+        int start;
+        synchronized (this) {
+            paths = this.paths;
+            files = this.files;
+            lastModifiedDates = this.lastModifiedDates;
+            size = this.size;
+            start = this.cursor;
+        }
+        if (size == 0) {
+            return null;
+        }
+
+        int count = size;
+        if (batchSize > 0 && batchSize < size) {
+            count = batchSize;
+        }
+        if (start >= size) {
+            start = 0;
+        }
+
+        int i = start;
+        for (int n = 0; n < count; n++) {
+            long lastModified;
+            File file = files[i];
+            if (file != null) {
+                lastModified = file.lastModified();
+                if (lastModified == 0L && !file.exists()) {
+                    log.error("    Resource '" + paths[i] + "' is missing");
+                    return paths[i];
+                }
+            } else {
+                try {
+                    lastModified =
+                        ((ResourceAttributes) resources.getAttributes(paths[i]))
+                        .getLastModified();
+                } catch (NamingException e) {
+                    log.error("    Resource '" + paths[i] + "' is missing");
+                    return paths[i];
+                }
+            }
+            if (lastModified != lastModifiedDates[i]) {
+                if (log.isDebugEnabled())
+                    log.debug("  Resource '" + paths[i]
+                              + "' was modified; Date is now: "
+                              + new java.util.Date(lastModified) + " Was: "
+                              + new java.util.Date(lastModifiedDates[i]));
+                return paths[i];
+            }
+            i++;
+            if (i == size) {
+                i = 0;
+            }
+        }
+
+        synchronized (this) {
+            cursor = i;
+        }
+        return null;
+
+    }
+
+
+    // ------------------------------------------------------ Protected Methods
+
+
+    /**
+     * Return the directory the specified resources are read from, if they
+     * are plain files which may be accessed directly.
+     */
+    protected static File getBase(DirContext resources) {
+        DirContext dirContext = resources;
+        if (dirContext instanceof ProxyDirContext) {
+            dirContext = ((ProxyDirContext) dirContext).getDirContext();
+        }
+        // Subclasses such as VirtualDirContext may map some paths elsewhere
+        if (dirContext == null
+                || dirContext.getClass() != FileDirContext.class) {
+            return null;
+        }
+        String docBase = ((FileDirContext) dirContext).getDocBase();
+        if (docBase == null) {
+            return null;
+        }
+        File base = new File(docBase);
+        if (!base.isDirectory()) {
+            return null;
+        }
+        return base;
+    }
+
+
+}
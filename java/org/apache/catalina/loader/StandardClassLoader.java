@@ -18,8 +18,11 @@
 
 package org.apache.catalina.loader;
 
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Subclass implementation of <b>java.net.URLClassLoader</b>. There are no
@@ -27,6 +30,9 @@ import java.net.URLClassLoader;
  *
  * java.net.URLClassLoader 子类. ,功能和java.net.URLClassLoader没有差异
  *
+ * The names of the classes defined by the loader may be recorded, so that
+ * they can be preloaded on the next startup.
+ *
  * @author Craig R. McClanahan
  * @author Remy Maucherat
  * @version $Revision: 476989 $ $Date: 2006-11-20 08:13:26 +0800 (Mon, 20 Nov 2006) $
@@ -36,6 +42,28 @@ public class StandardClassLoader
     extends URLClassLoader
     implements StandardClassLoaderMBean {
 
+    /**
+     * Register this class loader as parallel capable when the JVM supports
+     * it (Java 7 and later), so that classes may be preloaded by several
+     * threads.
+     */
+    static {
+        try {
+            Method registerAsParallelCapable =
+                ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            registerAsParallelCapable.setAccessible(true);
+            registerAsParallelCapable.invoke(null);
+        } catch (Throwable t) {
+            // Ignore: the JVM does not support parallel capable class loaders
+        }
+    }
+
+    /**
+     * Names of the classes defined by this loader since recording started,
+     * or <code>null</code> if they are not recorded.
+     */
+    protected volatile List<String> recordedClasses = null;
+
 	public StandardClassLoader(URL repositories[]) {
         super(repositories);
     }
@@ -44,5 +72,38 @@ public class StandardClassLoader
         super(repositories, parent);
     }
 
-}
+    /**
+     * Start recording the names of the classes defined by this loader.
+     */
+    public synchronized void startRecording() {
+        if (recordedClasses == null) {
+            recordedClasses = new ArrayList<String>();
+        }
+    }
 
+    /**
+     * Return the names of the classes defined by this loader since recording
+     * started, in the order they were defined.
+     */
+    public String[] getRecordedClasses() {
+        List<String> recorded = recordedClasses;
+        if (recorded == null) {
+            return new String[0];
+        }
+        synchronized (recorded) {
+            return recorded.toArray(new String[recorded.size()]);
+        }
+    }
+
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = super.findClass(name);
+        List<String> recorded = recordedClasses;
+        if (recorded != null) {
+            synchronized (recorded) {
+                recorded.add(name);
+            }
+        }
+        return clazz;
+    }
+
+}
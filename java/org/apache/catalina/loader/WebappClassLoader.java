@@ -25,6 +25,7 @@ import java.io.FilePermission;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -43,7 +44,11 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.jar.Attributes;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
@@ -64,6 +69,7 @@ import org.apache.naming.JndiPermission;
 import org.apache.naming.resources.Resource;
 import org.apache.naming.resources.ResourceAttributes;
 import org.apache.tomcat.util.IntrospectionUtils;
+import org.apache.tomcat.util.StartupProfiler;
 
 /**
  * Specialized web application class loader.
@@ -116,6 +122,9 @@ public class WebappClassLoader
 
     public static final boolean ENABLE_CLEAR_REFERENCES = 
         Boolean.valueOf(System.getProperty("org.apache.catalina.loader.WebappClassLoader.ENABLE_CLEAR_REFERENCES", "true")).booleanValue();
+
+    public static final int MODIFICATION_CHECK_BATCH_SIZE = 
+        Integer.valueOf(System.getProperty("org.apache.catalina.loader.WebappClassLoader.MODIFICATION_CHECK_BATCH_SIZE", "0")).intValue();
     
     protected class PrivilegedFindResource
         implements PrivilegedAction {
@@ -186,6 +195,23 @@ public class WebappClassLoader
     protected static final StringManager sm =
         StringManager.getManager(Constants.Package);
 
+
+    /**
+     * Register as a parallel capable class loader when running on a JVM
+     * which supports it (Java 7 and later), so that the JVM locks on the
+     * name of the class being loaded rather than on the loader itself.
+     */
+    static {
+        try {
+            Method registerAsParallelCapable =
+                ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+            registerAsParallelCapable.setAccessible(true);
+            registerAsParallelCapable.invoke(null);
+        } catch (Throwable t) {
+            // Ignore: the JVM does not support parallel capable class loaders
+        }
+    }
+
     
     /**
      * Use anti JAR locking code, which does URL rerouting when accessing
@@ -252,14 +278,57 @@ public class WebappClassLoader
      * 
      * cache 我们已经加载的资源.  key是 资源name
      */
-    protected HashMap resourceEntries = new HashMap();
+    protected Map<String, ResourceEntry> resourceEntries =
+        new ConcurrentHashMap<String, ResourceEntry>();
+
+
+    /**
+     * Locks used when defining classes, keyed by class name, so that
+     * unrelated classes can be defined concurrently. A lock is removed once
+     * the class has been defined or found missing.
+     */
+    protected ConcurrentHashMap<String, Object> classLoadingLocks =
+        new ConcurrentHashMap<String, Object>();
 
 
     /**
      * The list of not found resources.
      * 没有找到的资源.  也会缓存. 防止每次的查找. 提高命中(是jar包的资源内容)
      */
-    protected HashMap notFoundResources = new HashMap();
+    protected Map<String, String> notFoundResources =
+        new ConcurrentHashMap<String, String>();
+
+
+    /**
+     * Number of lookups answered by <code>notFoundResources</code>.
+     */
+    protected AtomicLong notFoundResourcesHitCount = new AtomicLong(0);
+
+
+    /**
+     * Number of JAR lookups avoided thanks to <code>jarFilters</code>.
+     */
+    protected AtomicLong jarFilterRejectCount = new AtomicLong(0);
+
+
+    /**
+     * Number of classes loaded by this class loader, and time spent loading
+     * them in nanoseconds, for the startup timeline. Nested loads, such as
+     * the loading of superclasses, are not counted twice in the time.
+     */
+    protected AtomicLong loadedClassCount = new AtomicLong(0);
+    protected AtomicLong classLoadingTime = new AtomicLong(0);
+
+
+    /**
+     * Depth of the nested calls to findClass in the current thread.
+     */
+    protected static final ThreadLocal<int[]> findClassDepth =
+        new ThreadLocal<int[]>() {
+            protected int[] initialValue() {
+                return new int[1];
+            }
+        };
 
 
     /**
@@ -276,7 +345,7 @@ public class WebappClassLoader
     /**
      * Last time a JAR was accessed.
      */
-    protected long lastJarAccessed = 0L;
+    protected volatile long lastJarAccessed = 0L;
 
 
     /**
@@ -315,6 +384,34 @@ public class WebappClassLoader
     protected JarFile[] jarFiles = new JarFile[0];
 
 
+    /**
+     * Lock guarding the use of the open JARs. Lookups hold the read lock
+     * while they read from <code>jarFiles</code>, so that they can proceed
+     * concurrently, and the JARs are only closed under the write lock.
+     * Opening the JARs is synchronized on <code>jarFiles</code>.
+     */
+    protected ReentrantReadWriteLock jarFilesLock =
+        new ReentrantReadWriteLock();
+
+
+    /**
+     * Index of the JARs which contain entries in a given directory, keyed by
+     * directory name (without trailing '/'). The values are indexes in
+     * <code>jarFiles</code>, in search order. The index is built when the
+     * JARs are added, and allows looking up a resource with a single hash
+     * probe rather than asking each JAR in turn.
+     */
+    protected Map<String, int[]> jarIndex =
+        new ConcurrentHashMap<String, int[]>();
+
+
+    /**
+     * Bloom filters of the entry names of each JAR, in the same order as
+     * <code>jarFiles</code>.
+     */
+    protected BloomFilter[] jarFilters = new BloomFilter[0];
+
+
     /**
      * The list of JARs, in the order they should be searched
      * for locally loaded classes or resources.
@@ -342,21 +439,20 @@ public class WebappClassLoader
 
 
     /**
-     * The list of JARs last modified dates, in the order they should be
-     * searched for locally loaded classes or resources.
+     * The resources which should be checked when checking for
+     * modifications, with their last modified dates.
      * 
-     * 每个jar的最后修改时间
+     * 被检查是否修改的资源
      */
-    protected long[] lastModifiedDates = new long[0];
+    protected ModificationTracker modificationTracker =
+        new ModificationTracker(null);
 
 
     /**
-     * The list of resources which should be checked when checking for
-     * modifications.
-     * 
-     * 被检查是否修改的地址 数组
+     * Last modified date of the JAR directory when it was last found to
+     * contain the expected JARs.
      */
-    protected String[] paths = new String[0];
+    protected long jarPathLastModified = 0L;
 
 
     /**
@@ -440,6 +536,7 @@ public class WebappClassLoader
     public void setResources(DirContext resources) {
 
         this.resources = resources;
+        this.modificationTracker = new ModificationTracker(resources);
 
     }
 
@@ -481,6 +578,50 @@ public class WebappClassLoader
         this.antiJARLocking = antiJARLocking;
     }
 
+
+    /**
+     * Return the number of resource names which are known not to exist.
+     */
+    public int getNotFoundResourcesSize() {
+        return notFoundResources.size();
+    }
+
+
+    /**
+     * Return the number of lookups which were answered by the cache of
+     * resources which do not exist.
+     */
+    public long getNotFoundResourcesHitCount() {
+        return notFoundResourcesHitCount.get();
+    }
+
+
+    /**
+     * Return the number of JAR lookups which were avoided because the JAR
+     * was known not to contain the resource.
+     */
+    public long getJarFilterRejectCount() {
+        return jarFilterRejectCount.get();
+    }
+
+
+    /**
+     * Return the number of classes loaded by this class loader. Only
+     * maintained while the startup timeline is recorded.
+     */
+    public long getLoadedClassCount() {
+        return loadedClassCount.get();
+    }
+
+
+    /**
+     * Return the time spent loading classes, in nanoseconds. Only
+     * maintained while the startup timeline is recorded.
+     */
+    public long getClassLoadingTime() {
+        return classLoadingTime.get();
+    }
+
     
     /**
      * If there is a Java SecurityManager create a read FilePermission
@@ -650,6 +791,9 @@ public class WebappClassLoader
         result2[files.length] = file;
         files = result2;
 
+        // Resources which were not found may now be available
+        notFoundResources.clear();
+
     }
 
 
@@ -691,19 +835,7 @@ public class WebappClassLoader
                 ((ResourceAttributes) resources.getAttributes(jar))
                 .getLastModified();
 
-            String[] result = new String[paths.length + 1];
-            for (i = 0; i < paths.length; i++) {
-                result[i] = paths[i];
-            }
-            result[paths.length] = jar;
-            paths = result;
-
-            long[] result3 = new long[lastModifiedDates.length + 1];
-            for (i = 0; i < lastModifiedDates.length; i++) {
-                result3[i] = lastModifiedDates[i];
-            }
-            result3[lastModifiedDates.length] = lastModified;
-            lastModifiedDates = result3;
+            modificationTracker.add(jar, lastModified);
 
         } catch (NamingException e) {
             // Ignore
@@ -728,6 +860,12 @@ public class WebappClassLoader
         }
         result4[jarRealFiles.length] = file;
         jarRealFiles = result4;
+
+        // Only make the JAR visible to lookups once it is fully registered
+        indexJar(jarFile, jarFiles.length - 1);
+
+        // Resources which were not found may now be available
+        notFoundResources.clear();
     }
 
 
@@ -754,39 +892,29 @@ public class WebappClassLoader
             log.debug("modified()");
 
         // Checking for modified loaded resources
-        int length = paths.length;
-
-        // A rare race condition can occur in the updates of the two arrays
-        // It's totally ok if the latest class added is not checked (it will
-        // be checked the next time
-        int length2 = lastModifiedDates.length;
-        if (length > length2)
-            length = length2;
-
-        for (int i = 0; i < length; i++) {
-            try {
-                long lastModified =
-                    ((ResourceAttributes) resources.getAttributes(paths[i]))
-                    .getLastModified();
-                if (lastModified != lastModifiedDates[i]) {
-                    if( log.isDebugEnabled() ) 
-                        log.debug("  Resource '" + paths[i]
-                                  + "' was modified; Date is now: "
-                                  + new java.util.Date(lastModified) + " Was: "
-                                  + new java.util.Date(lastModifiedDates[i]));
-                    return (true);
-                }
-            } catch (NamingException e) {
-                log.error("    Resource '" + paths[i] + "' is missing");
-                return (true);
-            }
+        if (modificationTracker.findModified(MODIFICATION_CHECK_BATCH_SIZE)
+                != null) {
+            return (true);
         }
 
-        length = jarNames.length;
+        int length = jarNames.length;
 
         // Check if JARs have been added or removed
         if (getJarPath() != null) {
 
+            // Adding or removing a JAR changes the date of the directory, so
+            // the listing can be skipped as long as the date is unchanged
+            File jarDir = null;
+            long jarDirLastModified = 0L;
+            if (modificationTracker.getBase() != null) {
+                jarDir = new File(modificationTracker.getBase(), getJarPath());
+                jarDirLastModified = jarDir.lastModified();
+                if (jarDirLastModified != 0L
+                        && jarDirLastModified == jarPathLastModified) {
+                    return (false);
+                }
+            }
+
             try {
                 NamingEnumeration enumeration = resources.listBindings(getJarPath());
                 int i = 0;
@@ -821,6 +949,13 @@ public class WebappClassLoader
                     log.info("    Additional JARs have been added");
                     return (true);
                 }
+                // Only trust the date once it is old enough that a JAR
+                // added within the file system time granularity would have
+                // changed it
+                if (jarDir != null && jarDirLastModified
+                        < System.currentTimeMillis() - 2000L) {
+                    jarPathLastModified = jarDirLastModified;
+                }
             } catch (NamingException e) {
                 if (log.isDebugEnabled())
                     log.debug("    Failed tracking modifications of '"
@@ -888,6 +1023,34 @@ public class WebappClassLoader
      */
     public Class findClass(String name) throws ClassNotFoundException {
 
+        if (!StartupProfiler.ENABLED) {
+            return findClassLocal(name);
+        }
+        int[] depth = findClassDepth.get();
+        long begin = (depth[0]++ == 0) ? System.nanoTime() : 0L;
+        try {
+            Class clazz = findClassLocal(name);
+            loadedClassCount.incrementAndGet();
+            return clazz;
+        } finally {
+            if (--depth[0] == 0) {
+                classLoadingTime.addAndGet(System.nanoTime() - begin);
+            }
+        }
+
+    }
+
+
+    /**
+     * Find the specified class in our local repositories, if possible.
+     * If not found, throw <code>ClassNotFoundException</code>.
+     *
+     * @param name Name of the class to be loaded
+     *
+     * @exception ClassNotFoundException if the class was not found
+     */
+    protected Class findClassLocal(String name) throws ClassNotFoundException {
+
         if (log.isDebugEnabled())
             log.debug("    findClass(" + name + ")");
 
@@ -932,9 +1095,13 @@ public class WebappClassLoader
                 throw e;
             }
             if ((clazz == null) && hasExternalRepositories) {
+                Object lock = getClassLoadingLock(name);
                 try {
-                    synchronized (this) {
-                        clazz = super.findClass(name);
+                    synchronized (lock) {
+                        clazz = findLoadedClass(name);
+                        if (clazz == null) {
+                            clazz = super.findClass(name);
+                        }
                     }
                 } catch(AccessControlException ace) {
                     throw new ClassNotFoundException(name, ace);
@@ -942,6 +1109,8 @@ public class WebappClassLoader
                     if (log.isTraceEnabled())
                         log.trace("      -->RuntimeException Rethrown", e);
                     throw e;
+                } finally {
+                    classLoadingLocks.remove(name, lock);
                 }
             }
             if (clazz == null) {
@@ -1026,7 +1195,6 @@ public class WebappClassLoader
 
         Vector result = new Vector();
 
-        int jarFilesLength = jarFiles.length;
         int repositoriesLength = repositories.length;
 
         int i;
@@ -1048,9 +1216,18 @@ public class WebappClassLoader
         }
 
         // Looking at the JAR files
-        synchronized (jarFiles) {
+        jarFilesLock.readLock().lock();
+        try {
             if (openJARs()) {
-                for (i = 0; i < jarFilesLength; i++) {
+                int[] candidates = jarIndex.get(getJarIndexKey(name));
+                int candidatesLength =
+                    (candidates == null) ? 0 : candidates.length;
+                for (int j = 0; j < candidatesLength; j++) {
+                    i = candidates[j];
+                    if (!jarFilters[i].mightContain(name)) {
+                        jarFilterRejectCount.incrementAndGet();
+                        continue;
+                    }
                     JarEntry jarEntry = jarFiles[i].getJarEntry(name);
                     if (jarEntry != null) {
                         try {
@@ -1063,6 +1240,8 @@ public class WebappClassLoader
                     }
                 }
             }
+        } finally {
+            jarFilesLock.readLock().unlock();
         }
 
         // Adding the results of a call to the superclass
@@ -1562,20 +1741,28 @@ public class WebappClassLoader
             files[i] = null;
         }
 
-        length = jarFiles.length;
-        for (int i = 0; i < length; i++) {
-            try {
-                if (jarFiles[i] != null) {
-                    jarFiles[i].close();
+        jarFilesLock.writeLock().lock();
+        try {
+            length = jarFiles.length;
+            for (int i = 0; i < length; i++) {
+                try {
+                    if (jarFiles[i] != null) {
+                        jarFiles[i].close();
+                    }
+                } catch (IOException e) {
+                    // Ignore
                 }
-            } catch (IOException e) {
-                // Ignore
+                jarFiles[i] = null;
             }
-            jarFiles[i] = null;
+            jarIndex.clear();
+            jarFilters = new BloomFilter[0];
+        } finally {
+            jarFilesLock.writeLock().unlock();
         }
 
         notFoundResources.clear();
         resourceEntries.clear();
+        classLoadingLocks.clear();
         resources = null;
         repositories = null;
         repositoryURLs = null;
@@ -1584,8 +1771,7 @@ public class WebappClassLoader
         jarRealFiles = null;
         jarPath = null;
         jarNames = null;
-        lastModifiedDates = null;
-        paths = null;
+        modificationTracker = null;
         hasExternalRepositories = false;
         parent = null;
 
@@ -1605,6 +1791,13 @@ public class WebappClassLoader
      */
     public void closeJARs(boolean force) {
         if (jarFiles.length > 0) {
+            // Unless forced, leave the JARs open while they are being used
+            if (force) {
+                jarFilesLock.writeLock().lock();
+            } else if (!jarFilesLock.writeLock().tryLock()) {
+                return;
+            }
+            try {
                 synchronized (jarFiles) {
                     if (force || (System.currentTimeMillis() 
                                   > (lastJarAccessed + 90000))) {
@@ -1622,6 +1815,9 @@ public class WebappClassLoader
                         }
                     }
                 }
+            } finally {
+                jarFilesLock.writeLock().unlock();
+            }
         }
     }
 
@@ -1650,7 +1846,7 @@ public class WebappClassLoader
         // Null out any static or final fields from loaded classes,
         // as a workaround for apparent garbage collection bugs
         if (ENABLE_CLEAR_REFERENCES) {
-            Iterator loadedClasses = ((HashMap) resourceEntries.clone()).values().iterator();
+            Iterator loadedClasses = resourceEntries.values().iterator();
             while (loadedClasses.hasNext()) {
                 ResourceEntry entry = (ResourceEntry) loadedClasses.next();
                 if (entry.loadedClass != null) {
@@ -1782,15 +1978,17 @@ public class WebappClassLoader
     protected boolean openJARs() {
         if (started && (jarFiles.length > 0)) {
             lastJarAccessed = System.currentTimeMillis();
-            if (jarFiles[0] == null) {
-                for (int i = 0; i < jarFiles.length; i++) {
-                    try {
-                        jarFiles[i] = new JarFile(jarRealFiles[i]);
-                    } catch (IOException e) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Failed to open JAR", e);
+            synchronized (jarFiles) {
+                if (jarFiles[0] == null) {
+                    for (int i = 0; i < jarFiles.length; i++) {
+                        try {
+                            jarFiles[i] = new JarFile(jarRealFiles[i]);
+                        } catch (IOException e) {
+                            if (log.isDebugEnabled()) {
+                                log.debug("Failed to open JAR", e);
+                            }
+                            return false;
                         }
-                        return false;
                     }
                 }
             }
@@ -1799,6 +1997,81 @@ public class WebappClassLoader
     }
 
 
+    /**
+     * Return the lock to use when defining the class with the specified
+     * name. Classes with different names may be defined concurrently.
+     *
+     * @param className Name of the class
+     */
+    protected Object getClassLoadingLock(String className) {
+        Object lock = new Object();
+        Object existingLock = classLoadingLocks.putIfAbsent(className, lock);
+        return (existingLock == null) ? lock : existingLock;
+    }
+
+
+    /**
+     * Add the entries of the specified JAR to the JAR index.
+     *
+     * @param jarFile The JAR file
+     * @param index Position of the JAR in <code>jarFiles</code>
+     */
+    protected void indexJar(JarFile jarFile, int index) {
+        HashMap<String, String> keys = new HashMap<String, String>();
+        BloomFilter filter = new BloomFilter(jarFile.size());
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            filter.add(name);
+            if (name.endsWith("/")) {
+                // getJarEntry also finds directories without the trailing '/'
+                filter.add(name.substring(0, name.length() - 1));
+            }
+            String key = getJarIndexKey(name);
+            keys.put(key, key);
+        }
+
+        BloomFilter[] filters = new BloomFilter[index + 1];
+        System.arraycopy(jarFilters, 0, filters, 0,
+                Math.min(jarFilters.length, index));
+        filters[index] = filter;
+        jarFilters = filters;
+
+        Iterator<String> iterator = keys.keySet().iterator();
+        while (iterator.hasNext()) {
+            String key = iterator.next();
+            int[] current = jarIndex.get(key);
+            int[] result;
+            if (current == null) {
+                result = new int[] { index };
+            } else {
+                result = new int[current.length + 1];
+                System.arraycopy(current, 0, result, 0, current.length);
+                result[current.length] = index;
+            }
+            jarIndex.put(key, result);
+        }
+    }
+
+
+    /**
+     * Return the key under which the specified JAR entry name is indexed,
+     * which is the name of its parent directory. A trailing '/' is ignored,
+     * so that "a/b" and "a/b/" both map to the entry for directory "a".
+     */
+    protected static String getJarIndexKey(String name) {
+        int end = name.length();
+        if (end > 0 && name.charAt(end - 1) == '/') {
+            end--;
+        }
+        int pos = name.lastIndexOf('/', end - 1);
+        if (pos < 0) {
+            return "";
+        }
+        return name.substring(0, pos);
+    }
+
+
     /**
      * Find specified class in local repositories.
      *
@@ -1824,76 +2097,81 @@ public class WebappClassLoader
         if (clazz != null)
             return clazz;
 
-        synchronized (this) {
-            clazz = entry.loadedClass;
-            if (clazz != null)
-                return clazz;
-
-            if (entry.binaryContent == null)
-                throw new ClassNotFoundException(name);
-
-            // Looking up the package
-            String packageName = null;
-            int pos = name.lastIndexOf('.');
-            if (pos != -1)
-                packageName = name.substring(0, pos);
+        Object lock = getClassLoadingLock(name);
+        try {
+            synchronized (lock) {
+                clazz = entry.loadedClass;
+                if (clazz != null)
+                    return clazz;
+
+                if (entry.binaryContent == null)
+                    throw new ClassNotFoundException(name);
+
+                // Looking up the package
+                String packageName = null;
+                int pos = name.lastIndexOf('.');
+                if (pos != -1)
+                    packageName = name.substring(0, pos);
         
-            Package pkg = null;
+                Package pkg = null;
         
-            if (packageName != null) {
-                pkg = getPackage(packageName);
-                // Define the package (if null)
-                if (pkg == null) {
-                    try {
-                        if (entry.manifest == null) {
-                            definePackage(packageName, null, null, null, null,
-                                    null, null, null);
-                        } else {
-                            definePackage(packageName, entry.manifest,
-                                    entry.codeBase);
+                if (packageName != null) {
+                    pkg = getPackage(packageName);
+                    // Define the package (if null)
+                    if (pkg == null) {
+                        try {
+                            if (entry.manifest == null) {
+                                definePackage(packageName, null, null, null, null,
+                                        null, null, null);
+                            } else {
+                                definePackage(packageName, entry.manifest,
+                                        entry.codeBase);
+                            }
+                        } catch (IllegalArgumentException e) {
+                            // Ignore: normal error due to dual definition of package
                         }
-                    } catch (IllegalArgumentException e) {
-                        // Ignore: normal error due to dual definition of package
+                        pkg = getPackage(packageName);
                     }
-                    pkg = getPackage(packageName);
                 }
-            }
     
-            if (securityManager != null) {
-
-                // Checking sealing
-                if (pkg != null) {
-                    boolean sealCheck = true;
-                    if (pkg.isSealed()) {
-                        sealCheck = pkg.isSealed(entry.codeBase);
-                    } else {
-                        sealCheck = (entry.manifest == null)
-                            || !isPackageSealed(packageName, entry.manifest);
+                if (securityManager != null) {
+
+                    // Checking sealing
+                    if (pkg != null) {
+                        boolean sealCheck = true;
+                        if (pkg.isSealed()) {
+                            sealCheck = pkg.isSealed(entry.codeBase);
+                        } else {
+                            sealCheck = (entry.manifest == null)
+                                || !isPackageSealed(packageName, entry.manifest);
+                        }
+                        if (!sealCheck)
+                            throw new SecurityException
+                                ("Sealing violation loading " + name + " : Package "
+                                 + packageName + " is sealed.");
                     }
-                    if (!sealCheck)
-                        throw new SecurityException
-                            ("Sealing violation loading " + name + " : Package "
-                             + packageName + " is sealed.");
-                }
     
-            }
+                }
 
-            try {
-                clazz = defineClass(name, entry.binaryContent, 0,
-                        entry.binaryContent.length, 
-                        new CodeSource(entry.codeBase, entry.certificates));
-            } catch (UnsupportedClassVersionError ucve) {
-                throw new UnsupportedClassVersionError(
-                        ucve.getLocalizedMessage() + " " +
-                        sm.getString("webappClassLoader.wrongVersion",
-                                name));
+                try {
+                    clazz = defineClass(name, entry.binaryContent, 0,
+                            entry.binaryContent.length, 
+                            new CodeSource(entry.codeBase, entry.certificates));
+                } catch (UnsupportedClassVersionError ucve) {
+                    throw new UnsupportedClassVersionError(
+                            ucve.getLocalizedMessage() + " " +
+                            sm.getString("webappClassLoader.wrongVersion",
+                                    name));
+                }
+                entry.loadedClass = clazz;
+                entry.binaryContent = null;
+                entry.source = null;
+                entry.codeBase = null;
+                entry.manifest = null;
+                entry.certificates = null;
             }
-            entry.loadedClass = clazz;
-            entry.binaryContent = null;
-            entry.source = null;
-            entry.codeBase = null;
-            entry.manifest = null;
-            entry.certificates = null;
+        } finally {
+            classLoadingLocks.remove(name, lock);
         }
         
         return clazz;
@@ -1938,11 +2216,15 @@ public class WebappClassLoader
         ResourceEntry entry = (ResourceEntry) resourceEntries.get(name);
         if (entry != null)
             return entry;
+        /// 如果在 没有找到的资源里面. 就不进行下一步了.
+        if (notFoundResources.containsKey(name)) {
+            notFoundResourcesHitCount.incrementAndGet();
+            return null;
+        }
         
         int contentLength = -1;
         InputStream binaryStream = null;
 
-        int jarFilesLength = jarFiles.length;
         int repositoriesLength = repositories.length;
 
         int i;
@@ -1994,46 +2276,31 @@ public class WebappClassLoader
                     }
 
                     // Register the full path for modification checking
-                    // Note: Only syncing on a 'constant' object is needed
-                    synchronized (allPermission) {
-
-                        int j;
-
-                        long[] result2 = 
-                            new long[lastModifiedDates.length + 1];
-                        for (j = 0; j < lastModifiedDates.length; j++) {
-                            result2[j] = lastModifiedDates[j];
-                        }
-                        result2[lastModifiedDates.length] = entry.lastModified;
-                        lastModifiedDates = result2;
-
-                        String[] result = new String[paths.length + 1];
-                        for (j = 0; j < paths.length; j++) {
-                            result[j] = paths[j];
-                        }
-                        result[paths.length] = fullPath;
-                        paths = result;
-
-                    }
+                    modificationTracker.add(fullPath, entry.lastModified);
 
                 }
 
             } catch (NamingException e) {
             }
         }
-        /// 如果在 没有找到的资源里面. 就不进行下一步了.
-        if ((entry == null) && (notFoundResources.containsKey(name)))
-            return null;
-
         JarEntry jarEntry = null;
 
-        synchronized (jarFiles) {
+        jarFilesLock.readLock().lock();
+        try {
 
             if (!openJARs()) {
                 return null;
             }
-            for (i = 0; (entry == null) && (i < jarFilesLength); i++) {
-
+            int[] candidates = jarIndex.get(getJarIndexKey(path));
+            int candidatesLength =
+                (candidates == null) ? 0 : candidates.length;
+            for (int j = 0; (entry == null) && (j < candidatesLength); j++) {
+
+                i = candidates[j];
+                if (!jarFilters[i].mightContain(path)) {
+                    jarFilterRejectCount.incrementAndGet();
+                    continue;
+                }
                 jarEntry = jarFiles[i].getJarEntry(path);
 
                 if (jarEntry != null) {
@@ -2058,48 +2325,50 @@ public class WebappClassLoader
 
                     // Extract resources contained in JAR to the workdir
                     if (antiJARLocking && !(path.endsWith(".class"))) {
-                        byte[] buf = new byte[1024];
-                        File resourceFile = new File
-                            (loaderDir, jarEntry.getName());
-                        if (!resourceFile.exists()) {
-                            Enumeration entries = jarFiles[i].entries();
-                            while (entries.hasMoreElements()) {
-                                JarEntry jarEntry2 = 
-                                    (JarEntry) entries.nextElement();
-                                if (!(jarEntry2.isDirectory()) 
-                                    && (!jarEntry2.getName().endsWith
-                                        (".class"))) {
-                                    resourceFile = new File
-                                        (loaderDir, jarEntry2.getName());
-                                    resourceFile.getParentFile().mkdirs();
-                                    FileOutputStream os = null;
-                                    InputStream is = null;
-                                    try {
-                                        is = jarFiles[i].getInputStream
-                                            (jarEntry2);
-                                        os = new FileOutputStream
-                                            (resourceFile);
-                                        while (true) {
-                                            int n = is.read(buf);
-                                            if (n <= 0) {
-                                                break;
-                                            }
-                                            os.write(buf, 0, n);
-                                        }
-                                    } catch (IOException e) {
-                                        // Ignore
-                                    } finally {
+                        synchronized (jarFiles) {
+                            byte[] buf = new byte[1024];
+                            File resourceFile = new File
+                                (loaderDir, jarEntry.getName());
+                            if (!resourceFile.exists()) {
+                                Enumeration entries = jarFiles[i].entries();
+                                while (entries.hasMoreElements()) {
+                                    JarEntry jarEntry2 = 
+                                        (JarEntry) entries.nextElement();
+                                    if (!(jarEntry2.isDirectory()) 
+                                        && (!jarEntry2.getName().endsWith
+                                            (".class"))) {
+                                        resourceFile = new File
+                                            (loaderDir, jarEntry2.getName());
+                                        resourceFile.getParentFile().mkdirs();
+                                        FileOutputStream os = null;
+                                        InputStream is = null;
                                         try {
-                                            if (is != null) {
-                                                is.close();
+                                            is = jarFiles[i].getInputStream
+                                                (jarEntry2);
+                                            os = new FileOutputStream
+                                                (resourceFile);
+                                            while (true) {
+                                                int n = is.read(buf);
+                                                if (n <= 0) {
+                                                    break;
+                                                }
+                                                os.write(buf, 0, n);
                                             }
                                         } catch (IOException e) {
-                                        }
-                                        try {
-                                            if (os != null) {
-                                                os.close();
+                                            // Ignore
+                                        } finally {
+                                            try {
+                                                if (is != null) {
+                                                    is.close();
+                                                }
+                                            } catch (IOException e) {
+                                            }
+                                            try {
+                                                if (os != null) {
+                                                    os.close();
+                                                }
+                                            } catch (IOException e) {
                                             }
-                                        } catch (IOException e) {
                                         }
                                     }
                                 }
@@ -2112,10 +2381,8 @@ public class WebappClassLoader
             }
 
             if (entry == null) {
-                synchronized (notFoundResources) {
-                	// 如果未命中.  就存入 hash .防止下次的查找
-                    notFoundResources.put(name, name);
-                }
+                // 如果未命中.  就存入 hash .防止下次的查找
+                notFoundResources.put(name, name);
                 return null;
             }
 
@@ -2160,6 +2427,8 @@ public class WebappClassLoader
 
             }
 
+        } finally {
+            jarFilesLock.readLock().unlock();
         }
 
         // Add the entry in the local resource repository
@@ -490,6 +490,30 @@ public class WebappLoader
         return res;
     }
 
+    /**
+     * Number of resource names the class loader knows do not exist.
+     */
+    public int getNotFoundResourcesSize() {
+        if (classLoader == null) return 0;
+        return classLoader.getNotFoundResourcesSize();
+    }
+
+    /**
+     * Number of lookups answered by the class loader negative cache.
+     */
+    public long getNotFoundResourcesHitCount() {
+        if (classLoader == null) return 0;
+        return classLoader.getNotFoundResourcesHitCount();
+    }
+
+    /**
+     * Number of JAR lookups the class loader avoided using its JAR filters.
+     */
+    public long getJarFilterRejectCount() {
+        if (classLoader == null) return 0;
+        return classLoader.getJarFilterRejectCount();
+    }
+
     public String getLoaderRepositoriesString() {
         String repositories[]=getLoaderRepositories();
         StringBuffer sb=new StringBuffer();
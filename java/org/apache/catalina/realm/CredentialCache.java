@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.catalina.realm;
+
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Cache of the principals recently authenticated by a {@link RealmBase},
+ * so that clients sending their username and password on every request do
+ * not cause a round-trip to the user database each time.
+ * <p>
+ * The credentials are never kept: each entry holds a SHA-256 hash of the
+ * credentials, salted with a random value chosen when the cache is created,
+ * and a principal is only returned for credentials which hash to the same
+ * value. Entries expire after a fixed time to live, after which the user
+ * database is consulted again, and the number of entries is bounded; when
+ * the cache is full, expired entries are removed first, then arbitrary
+ * entries until it is three quarters full.
+ * <p>
+ * Realms obtain their cache from {@link RealmBase#createCredentialCache()},
+ * which can be overridden to plug in a different implementation.
+ */
+public class CredentialCache {
+
+
+    // ----------------------------------------------------------- Constructors
+
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize Maximum number of cached principals
+     * @param timeToLive Time in milliseconds a principal is cached for
+     */
+    public CredentialCache(int maxSize, long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        new SecureRandom().nextBytes(salt);
+    }
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    /**
+     * Per-thread digests used to hash the credentials.
+     */
+    private static final ThreadLocal<MessageDigest> digests =
+        new ThreadLocal<MessageDigest>() {
+            protected MessageDigest initialValue() {
+                try {
+                    return MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException e) {
+                    throw new IllegalStateException(e.getMessage());
+                }
+            }
+        };
+
+
+    /**
+     * The cached entries, keyed by username.
+     */
+    protected final ConcurrentHashMap<String, Entry> entries =
+        new ConcurrentHashMap<String, Entry>();
+
+
+    /**
+     * Maximum number of cached principals.
+     */
+    protected final int maxSize;
+
+
+    /**
+     * Time in milliseconds a principal is cached for.
+     */
+    protected final long timeToLive;
+
+
+    /**
+     * Salt prepended to the credentials before they are hashed.
+     */
+    protected final byte[] salt = new byte[16];
+
+
+    /**
+     * Number of lookups which found a principal.
+     */
+    protected final AtomicLong hitCount = new AtomicLong();
+
+
+    /**
+     * Number of lookups which did not find a principal.
+     */
+    protected final AtomicLong missCount = new AtomicLong();
+
+
+    /**
+     * Number of entries removed to make room for new ones.
+     */
+    protected final AtomicLong evictionCount = new AtomicLong();
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+
+    /**
+     * Return the number of cached principals.
+     */
+    public int getSize() {
+        return entries.size();
+    }
+
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Return the principal cached for the specified username, if the
+     * specified credentials are the ones it was authenticated with and it
+     * has not expired; otherwise return <code>null</code>.
+     *
+     * @param username Username of the principal
+     * @param credentials Credentials presented for this username
+     */
+    public Principal get(String username, String credentials) {
+
+        Entry entry = null;
+        if (username != null && credentials != null) {
+            entry = entries.get(username);
+        }
+        if (entry != null && entry.expires < System.currentTimeMillis()) {
+            entries.remove(username, entry);
+            entry = null;
+        }
+        if (entry == null
+                || !MessageDigest.isEqual(entry.hash, hash(credentials))) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.principal;
+
+    }
+
+
+    /**
+     * Cache the principal which has been authenticated with the specified
+     * username and credentials.
+     *
+     * @param username Username of the principal
+     * @param credentials Credentials the principal was authenticated with
+     * @param principal The authenticated principal
+     */
+    public void put(String username, String credentials, Principal principal) {
+
+        if (username == null || credentials == null || principal == null) {
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            purge();
+        }
+        entries.put(username, new Entry(principal, hash(credentials),
+                System.currentTimeMillis() + timeToLive));
+
+    }
+
+
+    /**
+     * Remove the principal cached for the specified username, if any.
+     */
+    public void remove(String username) {
+        entries.remove(username);
+    }
+
+
+    /**
+     * Remove all the cached principals.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+
+    // ------------------------------------------------------ Protected Methods
+
+
+    /**
+     * Remove the expired entries, then as many other entries as needed to
+     * bring the cache down to three quarters of its maximum size.
+     */
+    protected synchronized void purge() {
+
+        if (entries.size() < maxSize) {
+            // Another thread made room already
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Entry> values = entries.values().iterator();
+        while (values.hasNext()) {
+            if (values.next().expires < now) {
+                values.remove();
+            }
+        }
+        int target = maxSize - (maxSize / 4) - 1;
+        values = entries.values().iterator();
+        while (entries.size() > target && values.hasNext()) {
+            values.next();
+            values.remove();
+            evictionCount.incrementAndGet();
+        }
+
+    }
+
+
+    /**
+     * Return the salted hash of the specified credentials.
+     */
+    protected byte[] hash(String credentials) {
+
+        MessageDigest md = digests.get();
+        md.reset();
+        md.update(salt);
+        try {
+            md.update(credentials.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            // Should never happen
+            throw new IllegalStateException(e.getMessage());
+        }
+        return md.digest();
+
+    }
+
+
+    // ---------------------------------------------------------- Entry Class
+
+
+    /**
+     * A cached principal.
+     */
+    protected static final class Entry {
+
+        protected final Principal principal;
+        protected final byte[] hash;
+        protected final long expires;
+
+        protected Entry(Principal principal, byte[] hash, long expires) {
+            this.principal = principal;
+            this.hash = hash;
+            this.expires = expires;
+        }
+
+    }
+
+
+}
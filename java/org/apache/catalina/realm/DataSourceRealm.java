@@ -275,6 +275,11 @@ public class DataSourceRealm
     	if (username == null || credentials == null) {
     		return null;
     	}
+
+        Principal principal = getCachedPrincipal(username, credentials);
+        if (principal != null) {
+            return principal;
+        }
         
     	Connection dbConnection = null;
 
@@ -288,7 +293,9 @@ public class DataSourceRealm
             }
             
             // Acquire a Principal object for this user
-            return authenticate(dbConnection, username, credentials);
+            principal = authenticate(dbConnection, username, credentials);
+            cachePrincipal(username, credentials, principal);
+            return principal;
             
         } catch (SQLException e) {
             // Log the problem for posterity
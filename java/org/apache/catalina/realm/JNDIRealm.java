@@ -20,12 +20,17 @@ package org.apache.catalina.realm;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.MessageDigest;
 import java.security.Principal;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.naming.Context;
 import javax.naming.CommunicationException;
@@ -140,9 +145,13 @@ import org.apache.tomcat.util.buf.CharChunk;
  *     directory server itself.</li>
  * </ul>
  *
- * <p><strong>TODO</strong> - Support connection pooling (including message
- * format objects) so that <code>authenticate()</code> does not have to be
- * synchronized.</p>
+ * <p>Connections to the directory server are pooled: up to
+ * <code>connectionPoolSize</code> authentications are performed in parallel,
+ * each on its own connection, and further requests wait for a connection to
+ * be released, for up to <code>connectionPoolTimeout</code> seconds.
+ * Pooled connections which have been idle for longer than
+ * <code>connectionValidationInterval</code> seconds are checked before they
+ * are used again.</p>
  *
  * <p><strong>WARNING</strong> - There is a reported bug against the Netscape
  * provider code (com.netscape.jndi.ldap.LdapContextFactory) with respect to
@@ -186,6 +195,9 @@ public class JNDIRealm extends RealmBase {
 
     /**
      * The directory context linking us to our directory server.
+     *
+     * @deprecated Unused, connections are taken from a pool by
+     *  {@link #open()} and given back by {@link #release(DirContext)}
      */
     protected DirContext context = null;
 
@@ -345,9 +357,30 @@ public class JNDIRealm extends RealmBase {
     protected int connectionAttempt = 0;
 
     /**
-     * The current user pattern to be used for lookup and binding of a user.
+     * The maximum number of connections to the directory server open at the
+     * same time, which is also the number of authentications performed in
+     * parallel.
+     */
+    protected int connectionPoolSize = 1;
+
+    /**
+     * The time in seconds a pooled connection may stay idle before it is
+     * checked when it is next used, or zero if pooled connections are never
+     * checked.
+     */
+    protected int connectionValidationInterval = 0;
+
+    /**
+     * The time in seconds to wait for a pooled connection to be released
+     * when all of them are in use, before the authentication fails.
      */
-    protected int curUserPattern = 0;
+    protected int connectionPoolTimeout = 30;
+
+    /**
+     * The pool of connections to the directory server, while this Realm is
+     * started.
+     */
+    private volatile ConnectionPool connectionPool = null;
 
     // ------------------------------------------------------------- Properties
 
@@ -437,6 +470,78 @@ public class JNDIRealm extends RealmBase {
     }
 
 
+    /**
+     * Return the maximum number of connections to the directory server.
+     */
+    public int getConnectionPoolSize() {
+
+        return connectionPoolSize;
+
+    }
+
+
+    /**
+     * Set the maximum number of connections to the directory server, and so
+     * of authentications performed in parallel. Takes effect when the Realm
+     * is started.
+     *
+     * @param connectionPoolSize The new maximum number of connections
+     */
+    public void setConnectionPoolSize(int connectionPoolSize) {
+
+        this.connectionPoolSize = Math.max(1, connectionPoolSize);
+
+    }
+
+
+    /**
+     * Return the time in seconds to wait for a pooled connection.
+     */
+    public int getConnectionPoolTimeout() {
+
+        return connectionPoolTimeout;
+
+    }
+
+
+    /**
+     * Set the time in seconds to wait for a pooled connection to be
+     * released when all of them are in use, before the authentication
+     * fails. Takes effect when the Realm is started.
+     *
+     * @param connectionPoolTimeout The new timeout
+     */
+    public void setConnectionPoolTimeout(int connectionPoolTimeout) {
+
+        this.connectionPoolTimeout = connectionPoolTimeout;
+
+    }
+
+
+    /**
+     * Return the time in seconds a pooled connection may stay idle before
+     * it is checked.
+     */
+    public int getConnectionValidationInterval() {
+
+        return connectionValidationInterval;
+
+    }
+
+
+    /**
+     * Set the time in seconds a pooled connection may stay idle before it is
+     * checked when it is next used. Zero disables the checks.
+     *
+     * @param connectionValidationInterval The new validation interval
+     */
+    public void setConnectionValidationInterval(int connectionValidationInterval) {
+
+        this.connectionValidationInterval = connectionValidationInterval;
+
+    }
+
+
     /**
      * Return the JNDI context factory for this Realm.
      */
@@ -797,7 +902,10 @@ public class JNDIRealm extends RealmBase {
     public Principal authenticate(String username, String credentials) {
 
         DirContext context = null;
-        Principal principal = null;
+        Principal principal = getCachedPrincipal(username, credentials);
+        if (principal != null) {
+            return principal;
+        }
 
         try {
 
@@ -821,6 +929,7 @@ public class JNDIRealm extends RealmBase {
                 // close the connection so we know it will be reopened.
                 if (context != null)
                     close(context);
+                context = null;
 
                 // open a new directory context.
                 context = open();
@@ -836,6 +945,7 @@ public class JNDIRealm extends RealmBase {
                 // close the connection so we know it will be reopened.
                 if (context != null)
                     close(context);
+                context = null;
 
                 // open a new directory context.
                 context = open();
@@ -851,6 +961,7 @@ public class JNDIRealm extends RealmBase {
                 // close the connection so we know it will be reopened.
                 if (context != null)
                     close(context);
+                context = null;
 
                 // open a new directory context.
                 context = open();
@@ -863,6 +974,9 @@ public class JNDIRealm extends RealmBase {
 
             // Release this context
             release(context);
+            context = null;
+
+            cachePrincipal(username, credentials, principal);
 
             // Return the authenticated Principal (if any)
             return (principal);
@@ -875,10 +989,18 @@ public class JNDIRealm extends RealmBase {
             // Close the connection so that it gets reopened next time
             if (context != null)
                 close(context);
+            context = null;
 
             // Return "not authenticated" for this request
             return (null);
 
+        } finally {
+
+            // Give back a connection which failed with an unexpected
+            // exception, so that its place in the pool is not lost
+            if (context != null)
+                close(context);
+
         }
 
     }
@@ -901,9 +1023,9 @@ public class JNDIRealm extends RealmBase {
      *
      * @exception NamingException if a directory server error occurs
      */
-    public synchronized Principal authenticate(DirContext context,
-                                               String username,
-                                               String credentials)
+    public Principal authenticate(DirContext context,
+                                  String username,
+                                  String credentials)
         throws NamingException {
 
         if (username == null || username.equals("")
@@ -911,11 +1033,11 @@ public class JNDIRealm extends RealmBase {
             return (null);
 
         if (userPatternArray != null) {
-            for (curUserPattern = 0;
+            for (int curUserPattern = 0;
                  curUserPattern < userPatternFormatArray.length;
                  curUserPattern++) {
                 // Retrieve user information
-                User user = getUser(context, username);
+                User user = getUser(context, username, curUserPattern);
                 if (user != null) {
                     try {
                         // Check the user's credentials
@@ -966,7 +1088,8 @@ public class JNDIRealm extends RealmBase {
      * specified, the value of that attribute is retrieved from the
      * user's directory entry. If the <code>userRoleName</code>
      * configuration attribute is specified, all values of that
-     * attribute are retrieved from the directory entry.
+     * attribute are retrieved from the directory entry. If user patterns
+     * are configured, they are tried in turn.
      *
      * @param context The directory context
      * @param username Username to be looked up
@@ -976,6 +1099,37 @@ public class JNDIRealm extends RealmBase {
     protected User getUser(DirContext context, String username)
         throws NamingException {
 
+        if (userPatternFormatArray == null)
+            return getUser(context, username, 0);
+
+        for (int curUserPattern = 0;
+             curUserPattern < userPatternFormatArray.length;
+             curUserPattern++) {
+            User user = getUser(context, username, curUserPattern);
+            if (user != null)
+                return (user);
+        }
+        return (null);
+
+    }
+
+
+    /**
+     * Return a User object containing information about the user
+     * with the specified username, if found in the directory;
+     * otherwise return <code>null</code>.
+     *
+     * @param context The directory context
+     * @param username Username to be looked up
+     * @param curUserPattern Index of the user pattern to use, if user
+     *  patterns are configured
+     *
+     * @exception NamingException if a directory server error occurs
+     */
+    protected User getUser(DirContext context, String username,
+                           int curUserPattern)
+        throws NamingException {
+
         User user = null;
 
         // Get attributes to retrieve from user entry
@@ -989,7 +1143,8 @@ public class JNDIRealm extends RealmBase {
 
         // Use pattern or search for user entry
         if (userPatternFormatArray != null) {
-            user = getUserByPattern(context, username, attrIds);
+            user = getUserByPattern(context, username, attrIds,
+                                    curUserPattern);
         } else {
             user = getUserBySearch(context, username, attrIds);
         }
@@ -1002,7 +1157,7 @@ public class JNDIRealm extends RealmBase {
      * Use the <code>UserPattern</code> configuration attribute to
      * locate the directory entry for the user with the specified
      * username and return a User object; otherwise return
-     * <code>null</code>.
+     * <code>null</code>. The user patterns are tried in turn.
      *
      * @param context The directory context
      * @param username The username
@@ -1016,11 +1171,44 @@ public class JNDIRealm extends RealmBase {
                                               String[] attrIds)
         throws NamingException {
 
-        if (username == null || userPatternFormatArray[curUserPattern] == null)
+        for (int curUserPattern = 0;
+             curUserPattern < userPatternFormatArray.length;
+             curUserPattern++) {
+            User user = getUserByPattern(context, username, attrIds,
+                                         curUserPattern);
+            if (user != null)
+                return (user);
+        }
+        return (null);
+
+    }
+
+
+    /**
+     * Use the user pattern with the specified index to locate the
+     * directory entry for the user with the specified username and
+     * return a User object; otherwise return <code>null</code>.
+     *
+     * @param context The directory context
+     * @param username The username
+     * @param attrIds String[]containing names of attributes to
+     * retrieve.
+     * @param curUserPattern Index of the user pattern to use
+     *
+     * @exception NamingException if a directory server error occurs
+     */
+    protected User getUserByPattern(DirContext context,
+                                    String username,
+                                    String[] attrIds,
+                                    int curUserPattern)
+        throws NamingException {
+
+        MessageFormat format = userPatternFormatArray[curUserPattern];
+        if (username == null || format == null)
             return (null);
 
         // Form the dn from the user pattern
-        String dn = userPatternFormatArray[curUserPattern].format(new String[] { username });
+        String dn = format(format, new String[] { username });
 
         // Get required attributes from user entry
         Attributes attrs = null;
@@ -1066,7 +1254,7 @@ public class JNDIRealm extends RealmBase {
             return (null);
 
         // Form the search filter
-        String filter = userSearchFormat.format(new String[] { username });
+        String filter = format(userSearchFormat, new String[] { username });
 
         // Set up the search controls
         SearchControls constraints = new SearchControls();
@@ -1210,53 +1398,47 @@ public class JNDIRealm extends RealmBase {
             // The string is in a format compatible with Base64.encode not
             // the Hex encoding of the parent class.
             if (password.startsWith("{SHA}")) {
-                /* sync since super.digest() does this same thing */
-                synchronized (this) {
-                    password = password.substring(5);
-                    md.reset();
-                    md.update(credentials.getBytes());
-                    String digestedPassword =
-                        new String(Base64.encode(md.digest()));
-                    validated = password.equals(digestedPassword);
-                }
+                password = password.substring(5);
+                MessageDigest md = getMessageDigest();
+                md.update(credentials.getBytes());
+                String digestedPassword =
+                    new String(Base64.encode(md.digest()));
+                validated = password.equals(digestedPassword);
             } else if (password.startsWith("{SSHA}")) {
                 // Bugzilla 32938
-                /* sync since super.digest() does this same thing */
-                synchronized (this) {
-                    password = password.substring(6);
-
-                    md.reset();
-                    md.update(credentials.getBytes());
-
-                    // Decode stored password.
-                    ByteChunk pwbc = new ByteChunk(password.length());
-                    try {
-                        pwbc.append(password.getBytes(), 0, password.length());
-                    } catch (IOException e) {
-                        // Should never happen
-                        containerLog.error("Could not append password bytes to chunk: ", e);
-                    }
+                password = password.substring(6);
+
+                MessageDigest md = getMessageDigest();
+                md.update(credentials.getBytes());
+
+                // Decode stored password.
+                ByteChunk pwbc = new ByteChunk(password.length());
+                try {
+                    pwbc.append(password.getBytes(), 0, password.length());
+                } catch (IOException e) {
+                    // Should never happen
+                    containerLog.error("Could not append password bytes to chunk: ", e);
+                }
 
-                    CharChunk decoded = new CharChunk();
-                    Base64.decode(pwbc, decoded);
-                    char[] pwarray = decoded.getBuffer();
+                CharChunk decoded = new CharChunk();
+                Base64.decode(pwbc, decoded);
+                char[] pwarray = decoded.getBuffer();
 
-                    // Split decoded password into hash and salt.
-                    final int saltpos = 20;
-                    byte[] hash = new byte[saltpos];
-                    for (int i=0; i< hash.length; i++) {
-                        hash[i] = (byte) pwarray[i];
-                    }
+                // Split decoded password into hash and salt.
+                final int saltpos = 20;
+                byte[] hash = new byte[saltpos];
+                for (int i=0; i< hash.length; i++) {
+                    hash[i] = (byte) pwarray[i];
+                }
 
-                    byte[] salt = new byte[pwarray.length - saltpos];
-                    for (int i=0; i< salt.length; i++)
-                        salt[i] = (byte)pwarray[i+saltpos];
+                byte[] salt = new byte[pwarray.length - saltpos];
+                for (int i=0; i< salt.length; i++)
+                    salt[i] = (byte)pwarray[i+saltpos];
 
-                    md.update(salt);
-                    byte[] dp = md.digest();
+                md.update(salt);
+                byte[] dp = md.digest();
 
-                    validated = Arrays.equals(dp, hash);
-                } // End synchronized(this) block
+                validated = Arrays.equals(dp, hash);
             } else {
                 // Hex hashes should be compared case-insensitive
                 validated = (digest(credentials).equalsIgnoreCase(password));
@@ -1371,7 +1553,8 @@ public class JNDIRealm extends RealmBase {
             return (list);
 
         // Set up parameters for an appropriate search
-        String filter = roleFormat.format(new String[] { doRFC2254Encoding(dn), username });
+        String filter = format(roleFormat,
+                new String[] { doRFC2254Encoding(dn), username });
         SearchControls controls = new SearchControls();
         if (roleSubtree)
             controls.setSearchScope(SearchControls.SUBTREE_SCOPE);
@@ -1484,6 +1667,12 @@ public class JNDIRealm extends RealmBase {
         if (context == null)
             return;
 
+        // Make room in the pool for another connection
+        ConnectionPool pool = connectionPool;
+        if (pool != null) {
+            pool.discard(context);
+        }
+
         // Close our opened connection
         try {
             if (containerLog.isDebugEnabled())
@@ -1492,7 +1681,6 @@ public class JNDIRealm extends RealmBase {
         } catch (NamingException e) {
             containerLog.error(sm.getString("jndiRealm.close"), e);
         }
-        this.context = null;
 
     }
 
@@ -1544,6 +1732,7 @@ public class JNDIRealm extends RealmBase {
                 // close the connection so we know it will be reopened.
                 if (context != null)
                     close(context);
+                context = null;
 
                 // open a new directory context.
                 context = open();
@@ -1559,6 +1748,7 @@ public class JNDIRealm extends RealmBase {
                 // close the connection so we know it will be reopened.
                 if (context != null)
                     close(context);
+                context = null;
 
                 // open a new directory context.
                 context = open();
@@ -1571,6 +1761,7 @@ public class JNDIRealm extends RealmBase {
 
             // Release this context
             release(context);
+            context = null;
 
             // Return the authenticated Principal (if any)
             return (principal);
@@ -1583,10 +1774,18 @@ public class JNDIRealm extends RealmBase {
             // Close the connection so that it gets reopened next time
             if (context != null)
                 close(context);
+            context = null;
 
             // Return "not authenticated" for this request
             return (null);
 
+        } finally {
+
+            // Give back a connection which failed with an unexpected
+            // exception, so that its place in the pool is not lost
+            if (context != null)
+                close(context);
+
         }
 
 
@@ -1596,27 +1795,72 @@ public class JNDIRealm extends RealmBase {
     /**
      * Return the Principal associated with the given user name.
      */
-    protected synchronized Principal getPrincipal(DirContext context,
-                                                  String username)
+    protected Principal getPrincipal(DirContext context,
+                                     String username)
         throws NamingException {
         
         User user = getUser(context, username);
-        
+        if (user == null)
+            return (null);
+
         return new GenericPrincipal(this, user.username, user.password ,
                 getRoles(context, user));
     }
 
     /**
-     * Open (if necessary) and return a connection to the configured
-     * directory server for this Realm.
+     * Return a connection to the configured directory server for this
+     * Realm, taken from the pool or opened if none is idle, waiting up to
+     * <code>connectionPoolTimeout</code> seconds for another thread to
+     * release one if the pool is exhausted. The
+     * connection must be given back with {@link #release(DirContext)}, or
+     * with {@link #close(DirContext)} if it failed.
      *
      * @exception NamingException if a directory server error occurs
      */
     protected DirContext open() throws NamingException {
 
-        // Do nothing if there is a directory server connection already open
-        if (context != null)
-            return (context);
+        ConnectionPool pool = connectionPool;
+        if (pool == null) {
+            // Not started, use a connection of our own
+            return createDirContext();
+        }
+
+        IdleConnection idle = pool.acquire();
+        DirContext context = null;
+        boolean success = false;
+        try {
+            if (idle != null) {
+                context = idle.context;
+                if (pool.isStale(idle) && !validate(context)) {
+                    containerLog.info(sm.getString("jndiRealm.invalidConnection"));
+                    close(context);
+                    context = null;
+                }
+            }
+            if (context == null) {
+                context = createDirContext();
+            }
+            pool.borrowed(context);
+            success = true;
+        } finally {
+            if (!success) {
+                pool.cancel();
+            }
+        }
+        return (context);
+
+    }
+
+    /**
+     * Open a new connection to the configured directory server for this
+     * Realm, trying the alternate URL if the connection URL fails.
+     *
+     * @exception NamingException if a directory server error occurs
+     */
+    protected synchronized DirContext createDirContext()
+        throws NamingException {
+
+        DirContext context = null;
 
         try {
 
@@ -1689,7 +1933,65 @@ public class JNDIRealm extends RealmBase {
      */
     protected void release(DirContext context) {
 
-        ; // NO-OP since we are not pooling anything
+        ConnectionPool pool = connectionPool;
+        if (pool != null && pool.release(context)) {
+            if (!pool.isOpen()) {
+                // Stopped while the connection was in use
+                closeIdle(pool);
+            }
+            return;
+        }
+
+        // Not a pooled connection, or the pool it came from has been closed
+        close(context);
+
+    }
+
+
+    /**
+     * Check that a pooled connection which has been idle for a while still
+     * works, by reading the entry it is attached to. Return
+     * <code>false</code> if it does not, in which case it is closed and
+     * replaced.
+     *
+     * @param context The directory context to check
+     */
+    protected boolean validate(DirContext context) {
+
+        try {
+            context.getAttributes("", new String[0]);
+            return true;
+        } catch (NamingException e) {
+            if (containerLog.isDebugEnabled())
+                containerLog.debug("Pooled directory context failed", e);
+            return false;
+        }
+
+    }
+
+
+    /**
+     * Format the specified arguments with one of the message formats of this
+     * Realm, which are shared by the threads authenticating in parallel.
+     */
+    protected String format(MessageFormat format, Object[] arguments) {
+
+        synchronized (format) {
+            return format.format(arguments);
+        }
+
+    }
+
+
+    /**
+     * Close the idle connections of the specified pool.
+     */
+    private void closeIdle(ConnectionPool pool) {
+
+        DirContext context = null;
+        while ((context = pool.poll()) != null) {
+            close(context);
+        }
 
     }
 
@@ -1708,9 +2010,13 @@ public class JNDIRealm extends RealmBase {
         // Perform normal superclass initialization
         super.start();
 
+        connectionPool = new ConnectionPool(connectionPoolSize,
+                connectionValidationInterval * 1000L,
+                connectionPoolTimeout * 1000L);
+
         // Validate that we can open our connection
         try {
-            open();
+            release(open());
         } catch (NamingException e) {
             throw new LifecycleException(sm.getString("jndiRealm.open"), e);
         }
@@ -1729,8 +2035,14 @@ public class JNDIRealm extends RealmBase {
         // Perform normal superclass finalization
         super.stop();
 
-        // Close any open directory server connection
-        close(this.context);
+        // Close the idle directory server connections, the others are
+        // closed when they are released
+        ConnectionPool pool = connectionPool;
+        connectionPool = null;
+        if (pool != null) {
+            pool.close();
+            closeIdle(pool);
+        }
 
     }
 
@@ -1879,6 +2191,129 @@ public class JNDIRealm extends RealmBase {
     }
 
 
+    // ------------------------------------------------- ConnectionPool Class
+
+
+    /**
+     * The pool of connections to the directory server. A permit is taken
+     * for each connection in use, so that no more than the pool size are
+     * open at the same time, and given back when the connection is released
+     * or closed. The connections in use are remembered so that a connection
+     * closed or released twice, or released after the pool was closed, does
+     * not give back a permit it does not hold.
+     */
+    private static final class ConnectionPool {
+
+        private final Semaphore permits;
+        private final long validationInterval;
+        private final long timeout;
+        private final ConcurrentLinkedQueue<IdleConnection> idle =
+            new ConcurrentLinkedQueue<IdleConnection>();
+        private final ConcurrentHashMap<DirContext, Boolean> active =
+            new ConcurrentHashMap<DirContext, Boolean>();
+        private volatile boolean open = true;
+
+        ConnectionPool(int size, long validationInterval, long timeout) {
+            this.permits = new Semaphore(size, true);
+            this.validationInterval = validationInterval;
+            this.timeout = timeout;
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+
+        /**
+         * Wait for a permit, and return an idle connection or
+         * <code>null</code> if a new one should be opened.
+         *
+         * @exception ServiceUnavailableException if no permit was given
+         *  back before the timeout, or the thread was interrupted
+         */
+        IdleConnection acquire() throws ServiceUnavailableException {
+            boolean acquired = false;
+            try {
+                acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!acquired) {
+                throw new ServiceUnavailableException
+                    (sm.getString("jndiRealm.poolTimeout"));
+            }
+            return idle.poll();
+        }
+
+        /**
+         * Has the specified connection been idle for longer than the
+         * validation interval?
+         */
+        boolean isStale(IdleConnection connection) {
+            return validationInterval > 0 && System.currentTimeMillis()
+                - connection.time > validationInterval;
+        }
+
+        /**
+         * Give back the permit acquired for a connection which could not be
+         * opened.
+         */
+        void cancel() {
+            permits.release();
+        }
+
+        void borrowed(DirContext context) {
+            active.put(context, Boolean.TRUE);
+        }
+
+        /**
+         * Put a connection in use back in the pool, unless it does not come
+         * from this pool.
+         */
+        boolean release(DirContext context) {
+            if (active.remove(context) == null) {
+                return false;
+            }
+            idle.offer(new IdleConnection(context));
+            permits.release();
+            return true;
+        }
+
+        /**
+         * Forget a connection in use which is being closed.
+         */
+        void discard(DirContext context) {
+            if (active.remove(context) != null) {
+                permits.release();
+            }
+        }
+
+        DirContext poll() {
+            IdleConnection connection = idle.poll();
+            return (connection == null) ? null : connection.context;
+        }
+
+        void close() {
+            open = false;
+        }
+
+    }
+
+
+    /**
+     * A connection waiting in the pool, and the time it was released.
+     */
+    private static final class IdleConnection {
+
+        final DirContext context;
+        final long time = System.currentTimeMillis();
+
+        IdleConnection(DirContext context) {
+            this.context = context;
+        }
+
+    }
+
+
 }
 
 // ------------------------------------------------------ Private Classes
@@ -85,6 +85,26 @@ public abstract class RealmBase
     protected Log containerLog = null;
 
 
+    /**
+     * The cache of recently authenticated principals, or <code>null</code>
+     * if authenticated principals are not cached.
+     */
+    protected CredentialCache credentialCache = null;
+
+
+    /**
+     * Maximum number of authenticated principals to cache, or zero to
+     * disable the cache.
+     */
+    protected int credentialCacheSize = 0;
+
+
+    /**
+     * Time in seconds an authenticated principal is cached for.
+     */
+    protected int credentialCacheTTL = 60;
+
+
     /**
      * Digest algorithm used in storing passwords in a non-plaintext format.
      * Valid values are those accepted for the algorithm name by the
@@ -114,10 +134,34 @@ public abstract class RealmBase
 
     /**
      * The MessageDigest object for digesting user credentials (passwords).
+     * It is only used as a prototype for the per-thread digests returned by
+     * {@link #getMessageDigest()}.
      */
     protected MessageDigest md = null;
 
 
+    /**
+     * Per-thread copies of {@link #md}.
+     */
+    protected ThreadLocal<MessageDigest> digests = null;
+
+
+    /**
+     * Per-thread MD5 digests.
+     */
+    protected static final ThreadLocal<MessageDigest> md5Digests =
+        new ThreadLocal<MessageDigest>() {
+            protected MessageDigest initialValue() {
+                try {
+                    return MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    log.error("Couldn't get MD5 digest: ", e);
+                    throw new IllegalStateException(e.getMessage());
+                }
+            }
+        };
+
+
     /**
      * The MD5 helper object for this class.
      */
@@ -126,6 +170,8 @@ public abstract class RealmBase
 
     /**
      * MD5 message digest provider.
+     *
+     * @deprecated No longer used, {@link #md5Digests} are used instead
      */
     protected static MessageDigest md5Helper;
 
@@ -206,6 +252,86 @@ public abstract class RealmBase
 
     }
 
+    /**
+     * Return the maximum number of authenticated principals to cache.
+     */
+    public int getCredentialCacheSize() {
+
+        return credentialCacheSize;
+
+    }
+
+
+    /**
+     * Set the maximum number of authenticated principals to cache. Zero,
+     * the default, disables the cache. Takes effect when the realm is
+     * started.
+     *
+     * @param credentialCacheSize The new cache size
+     */
+    public void setCredentialCacheSize(int credentialCacheSize) {
+
+        this.credentialCacheSize = credentialCacheSize;
+
+    }
+
+
+    /**
+     * Return the time in seconds an authenticated principal is cached for.
+     */
+    public int getCredentialCacheTTL() {
+
+        return credentialCacheTTL;
+
+    }
+
+
+    /**
+     * Set the time in seconds an authenticated principal is cached for.
+     * Takes effect when the realm is started.
+     *
+     * @param credentialCacheTTL The new time to live
+     */
+    public void setCredentialCacheTTL(int credentialCacheTTL) {
+
+        this.credentialCacheTTL = credentialCacheTTL;
+
+    }
+
+
+    /**
+     * Return the number of authentications answered from the cache.
+     */
+    public long getCredentialCacheHitCount() {
+
+        CredentialCache cache = credentialCache;
+        return (cache == null) ? 0 : cache.getHitCount();
+
+    }
+
+
+    /**
+     * Return the number of authentications not answered from the cache.
+     */
+    public long getCredentialCacheMissCount() {
+
+        CredentialCache cache = credentialCache;
+        return (cache == null) ? 0 : cache.getMissCount();
+
+    }
+
+
+    /**
+     * Return the number of principals currently cached.
+     */
+    public int getCredentialCacheCount() {
+
+        CredentialCache cache = credentialCache;
+        return (cache == null) ? 0 : cache.getSize();
+
+    }
+
+
     /**
      * Return the digest algorithm  used for storing credentials.
      */
@@ -283,6 +409,21 @@ public abstract class RealmBase
 
 
     
+    /**
+     * Remove all the principals from the cache of authenticated principals,
+     * so that the next authentication of each user consults the user
+     * database again.
+     */
+    public void clearCredentialCache() {
+
+        CredentialCache cache = credentialCache;
+        if (cache != null) {
+            cache.clear();
+        }
+
+    }
+
+
     /**
      * Add a property change listener to this component.
      *
@@ -305,6 +446,11 @@ public abstract class RealmBase
      */
     public Principal authenticate(String username, String credentials) {
 
+        Principal principal = getCachedPrincipal(username, credentials);
+        if (principal != null) {
+            return principal;
+        }
+
         String serverCredentials = getPassword(username);
 
         boolean validated ;
@@ -327,7 +473,9 @@ public abstract class RealmBase
                                             username));
         }
 
-        return getPrincipal(username);
+        principal = getPrincipal(username);
+        cachePrincipal(username, credentials, principal);
+        return principal;
     }
 
 
@@ -382,11 +530,8 @@ public abstract class RealmBase
             }
         }
 
-        String serverDigest = null;
-        // Bugzilla 32137
-        synchronized(md5Helper) {
-            serverDigest = md5Encoder.encode(md5Helper.digest(valueBytes));
-        }
+        String serverDigest =
+            md5Encoder.encode(md5Digests.get().digest(valueBytes));
 
         if (log.isDebugEnabled()) {
             log.debug("Digest : " + clientDigest + " Username:" + username 
@@ -1047,6 +1192,12 @@ public abstract class RealmBase
                 throw new LifecycleException
                     (sm.getString("realmBase.algorithm", digest), e);
             }
+            digests = new ThreadLocal<MessageDigest>();
+        }
+
+        // Create the cache of authenticated principals, if desired
+        if (credentialCacheSize > 0) {
+            credentialCache = createCredentialCache();
         }
 
     }
@@ -1075,6 +1226,8 @@ public abstract class RealmBase
 
         // Clean up allocated resources
         md = null;
+        digests = null;
+        credentialCache = null;
         
         destroy();
     
@@ -1113,28 +1266,26 @@ public abstract class RealmBase
             return (credentials);
 
         // Digest the user credentials and return as hexadecimal
-        synchronized (this) {
-            try {
-                md.reset();
-    
-                byte[] bytes = null;
-                if(getDigestEncoding() == null) {
-                    bytes = credentials.getBytes();
-                } else {
-                    try {
-                        bytes = credentials.getBytes(getDigestEncoding());
-                    } catch (UnsupportedEncodingException uee) {
-                        log.error("Illegal digestEncoding: " + getDigestEncoding(), uee);
-                        throw new IllegalArgumentException(uee.getMessage());
-                    }
-                }
-                md.update(bytes);
+        try {
+            MessageDigest md = getMessageDigest();
 
-                return (HexUtils.convert(md.digest()));
-            } catch (Exception e) {
-                log.error(sm.getString("realmBase.digest"), e);
-                return (credentials);
+            byte[] bytes = null;
+            if(getDigestEncoding() == null) {
+                bytes = credentials.getBytes();
+            } else {
+                try {
+                    bytes = credentials.getBytes(getDigestEncoding());
+                } catch (UnsupportedEncodingException uee) {
+                    log.error("Illegal digestEncoding: " + getDigestEncoding(), uee);
+                    throw new IllegalArgumentException(uee.getMessage());
+                }
             }
+            md.update(bytes);
+
+            return (HexUtils.convert(md.digest()));
+        } catch (Exception e) {
+            log.error(sm.getString("realmBase.digest"), e);
+            return (credentials);
         }
 
     }
@@ -1144,18 +1295,85 @@ public abstract class RealmBase
     }
 
     /**
-     * Return the digest associated with given principal's user name.
+     * Return the MessageDigest of the current thread for digesting user
+     * credentials, reset and ready for use. The digest is only used by the
+     * current thread, so no synchronization is needed.
+     *
+     * @exception IllegalStateException if no digest algorithm is configured
+     *  or the realm is not started
      */
-    protected String getDigest(String username, String realmName) {
-        if (md5Helper == null) {
+    protected MessageDigest getMessageDigest() {
+
+        MessageDigest prototype = md;
+        ThreadLocal<MessageDigest> digests = this.digests;
+        if (prototype == null || digests == null) {
+            throw new IllegalStateException(sm.getString("realmBase.notStarted"));
+        }
+        MessageDigest result = digests.get();
+        if (result == null) {
             try {
-                md5Helper = MessageDigest.getInstance("MD5");
-            } catch (NoSuchAlgorithmException e) {
-                log.error("Couldn't get MD5 digest: ", e);
-                throw new IllegalStateException(e.getMessage());
+                result = (MessageDigest) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                try {
+                    result = MessageDigest.getInstance(prototype.getAlgorithm(),
+                                                       prototype.getProvider());
+                } catch (NoSuchAlgorithmException nsae) {
+                    throw new IllegalStateException(nsae.getMessage());
+                }
             }
+            digests.set(result);
+        } else {
+            result.reset();
         }
+        return result;
 
+    }
+
+    /**
+     * Create the cache of authenticated principals used by this realm when
+     * it is started with a <code>credentialCacheSize</code> greater than
+     * zero. Subclasses may override this method to use a different cache.
+     */
+    protected CredentialCache createCredentialCache() {
+        return new CredentialCache(credentialCacheSize,
+                                   credentialCacheTTL * 1000L);
+    }
+
+    /**
+     * Return the principal cached as authenticated with the specified
+     * username and credentials, or <code>null</code> if there is none or
+     * the cache is disabled.
+     *
+     * @param username Username of the Principal to look up
+     * @param credentials Password or other credentials presented
+     */
+    protected Principal getCachedPrincipal(String username, String credentials) {
+        CredentialCache cache = credentialCache;
+        return (cache == null) ? null : cache.get(username, credentials);
+    }
+
+    /**
+     * Cache the principal which has just been authenticated with the
+     * specified username and credentials, if the cache is enabled.
+     *
+     * @param username Username of the Principal
+     * @param credentials Password or other credentials it was authenticated
+     *  with
+     * @param principal The authenticated Principal, or <code>null</code> if
+     *  authentication failed
+     */
+    protected void cachePrincipal(String username, String credentials,
+                                  Principal principal) {
+        CredentialCache cache = credentialCache;
+        if (cache != null && principal != null) {
+            cache.put(username, credentials, principal);
+        }
+    }
+
+    /**
+     * Return the digest associated with given principal's user name.
+     */
+    protected String getDigest(String username, String realmName) {
     	if (hasMessageDigest()) {
     		// Use pre-generated digest
     		return getPassword(username);
@@ -1176,13 +1394,7 @@ public abstract class RealmBase
             }
         }
 
-        byte[] digest = null;
-        // Bugzilla 32137
-        synchronized(md5Helper) {
-            digest = md5Helper.digest(valueBytes);
-        }
-
-        return md5Encoder.encode(digest);
+        return md5Encoder.encode(md5Digests.get().digest(valueBytes));
     }
 
 
@@ -19,17 +19,26 @@
 package org.apache.catalina.startup;
 
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.MBeanServer;
 import javax.management.MBeanServerFactory;
 import javax.management.ObjectName;
 
+import org.apache.catalina.loader.StandardClassLoader;
 import org.apache.catalina.security.SecurityClassLoad;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -67,6 +76,35 @@ public final class Bootstrap {
     protected static final String CATALINA_BASE_TOKEN = "${catalina.base}";
 
 
+    /**
+     * File listing the classes defined by the common, server and shared
+     * class loaders during startup, relative to <code>catalina.base</code>.
+     * The classes it lists are preloaded, unless the list is being trained.
+     */
+    protected static final String CLASS_LIST =
+        System.getProperty("org.apache.catalina.startup.Bootstrap.CLASS_LIST");
+
+
+    /**
+     * Record the classes defined during startup, and write them to
+     * <code>CLASS_LIST</code> once the server has started.
+     */
+    protected static final boolean TRAIN_CLASS_LIST = Boolean.valueOf(
+            System.getProperty(
+                    "org.apache.catalina.startup.Bootstrap.TRAIN_CLASS_LIST",
+                    "false")).booleanValue();
+
+
+    /**
+     * Number of threads preloading the classes of <code>CLASS_LIST</code>.
+     * A value of 0 uses one thread per processor.
+     */
+    protected static final int PRELOAD_THREADS = Integer.parseInt(
+            System.getProperty(
+                    "org.apache.catalina.startup.Bootstrap.PRELOAD_THREADS",
+                    "0"));
+
+
     // ------------------------------------------------------- Static Variables
 
 
@@ -118,6 +156,180 @@ public final class Bootstrap {
             log.error("Class loader creation threw exception", t);
             System.exit(1);
         }
+        if (CLASS_LIST != null) {
+            if (TRAIN_CLASS_LIST) {
+                StandardClassLoader[] loaders = getClassListLoaders();
+                for (int i = 0; i < loaders.length; i++) {
+                    if (loaders[i] != null) {
+                        loaders[i].startRecording();
+                    }
+                }
+            } else {
+                preloadClasses();
+            }
+        }
+    }
+
+
+    /**
+     * Return the class loaders whose classes are listed in the class list,
+     * in the order of <code>CLASS_LIST_LOADERS</code>. A loader which is
+     * not a <code>StandardClassLoader</code>, or which is the same as a
+     * previous loader, is <code>null</code>.
+     */
+    private StandardClassLoader[] getClassListLoaders() {
+        ClassLoader[] loaders =
+            new ClassLoader[] { commonLoader, catalinaLoader, sharedLoader };
+        StandardClassLoader[] result =
+            new StandardClassLoader[loaders.length];
+        for (int i = 0; i < loaders.length; i++) {
+            if (!(loaders[i] instanceof StandardClassLoader)) {
+                continue;
+            }
+            boolean duplicate = false;
+            for (int j = 0; j < i; j++) {
+                if (loaders[j] == loaders[i]) {
+                    duplicate = true;
+                }
+            }
+            if (!duplicate) {
+                result[i] = (StandardClassLoader) loaders[i];
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Names of the class loaders in the class list.
+     */
+    private static final String[] CLASS_LIST_LOADERS =
+        new String[] { "common", "server", "shared" };
+
+
+    /**
+     * Return the class list file.
+     */
+    private static File getClassListFile() {
+        File file = new File(CLASS_LIST);
+        if (!file.isAbsolute()) {
+            file = new File(getCatalinaBase(), CLASS_LIST);
+        }
+        return file;
+    }
+
+
+    /**
+     * Write the classes recorded by the class loaders to the class list.
+     * The list has one internal class name per line, with a comment line
+     * naming the class loader before its classes.
+     */
+    public void writeClassList()
+        throws IOException {
+
+        if (CLASS_LIST == null || !TRAIN_CLASS_LIST) {
+            return;
+        }
+        File file = getClassListFile();
+        StandardClassLoader[] loaders = getClassListLoaders();
+        int count = 0;
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8"));
+        try {
+            for (int i = 0; i < loaders.length; i++) {
+                if (loaders[i] == null) {
+                    continue;
+                }
+                writer.println("# " + CLASS_LIST_LOADERS[i]);
+                String[] classes = loaders[i].getRecordedClasses();
+                for (int j = 0; j < classes.length; j++) {
+                    writer.println(classes[j].replace('.', '/'));
+                }
+                count += classes.length;
+            }
+        } finally {
+            writer.close();
+        }
+        log.info("Wrote " + count + " classes to the class list "
+                + file.getAbsolutePath());
+
+    }
+
+
+    /**
+     * Load the classes of the class list in the background, using several
+     * threads. The classes are not initialized.
+     */
+    private void preloadClasses() {
+
+        File file = getClassListFile();
+        if (!file.isFile()) {
+            if (log.isDebugEnabled())
+                log.debug("Class list " + file + " not found");
+            return;
+        }
+
+        final ArrayList<String> names = new ArrayList<String>();
+        final ArrayList<ClassLoader> loaders = new ArrayList<ClassLoader>();
+        StandardClassLoader[] classListLoaders = getClassListLoaders();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(file), "UTF-8"));
+            try {
+                StandardClassLoader loader = null;
+                String line = null;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.startsWith("#")) {
+                        String name = line.substring(1).trim();
+                        loader = null;
+                        for (int i = 0; i < CLASS_LIST_LOADERS.length; i++) {
+                            if (CLASS_LIST_LOADERS[i].equals(name)) {
+                                loader = classListLoaders[i];
+                            }
+                        }
+                    } else if ((loader != null) && (line.length() > 0)) {
+                        names.add(line.replace('/', '.'));
+                        loaders.add(loader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            log.warn("Error reading the class list " + file, e);
+            return;
+        }
+
+        int threads = PRELOAD_THREADS;
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (log.isDebugEnabled())
+            log.debug("Preloading " + names.size() + " classes using "
+                    + threads + " threads");
+        final AtomicInteger next = new AtomicInteger();
+        Runnable preloader = new Runnable() {
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < names.size()) {
+                    String name = names.get(i);
+                    try {
+                        Class.forName(name, false, loaders.get(i));
+                    } catch (Throwable t) {
+                        // The class is no longer available
+                        if (log.isDebugEnabled())
+                            log.debug("Error preloading class " + name, t);
+                    }
+                }
+            }
+        };
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(preloader, "ClassPreloader-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
     }
 
     /**
@@ -345,6 +557,18 @@ public final class Bootstrap {
     }
 
 
+    /**
+     * Wait for the shutdown command of the Catalina daemon.
+     */
+    public void await()
+        throws Exception {
+
+        Method method = catalinaDaemon.getClass().getMethod("await", (Class [] ) null);
+        method.invoke(catalinaDaemon, (Object [] ) null);
+
+    }
+
+
     /**
      * Stop the Catalina Daemon.
      * 停止Catalina线程 调用的是stop方法
@@ -484,6 +708,14 @@ public final class Bootstrap {
             } else if (command.equals("stopd")) {
                 args[0] = "stop";
                 daemon.stop();
+            } else if (command.equals("start") && TRAIN_CLASS_LIST) {
+                // Write the class list once started, before waiting
+                daemon.setAwait(false);
+                daemon.load(args);
+                daemon.start();
+                daemon.writeClassList();
+                daemon.await();
+                daemon.stop();
             } else if (command.equals("start")) {
             	// 设置 Catalina 的 await 属性.这样,调用 start 方法时候.就会 wait 
                 daemon.setAwait(true);
@@ -35,6 +35,7 @@ import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleException;
 import org.apache.catalina.Server;
 import org.apache.catalina.core.StandardServer;
+import org.apache.tomcat.util.StartupProfiler;
 import org.apache.tomcat.util.digester.Digester;
 import org.apache.tomcat.util.digester.Rule;
 import org.xml.sax.Attributes;
@@ -595,6 +596,7 @@ public class Catalina extends Embedded {
         long t2 = System.nanoTime();
         if(log.isInfoEnabled())
             log.info("Initialization processed in " + ((t2 - t1) / 1000000) + " ms");
+        StartupProfiler.record("Catalina", "load", t1, t2 - t1, null);
 
     }
 
@@ -651,6 +653,8 @@ public class Catalina extends Embedded {
         long t2 = System.nanoTime();
         if(log.isInfoEnabled())
             log.info("Server startup in " + ((t2 - t1) / 1000000) + " ms");
+        StartupProfiler.record("Catalina", "start", t1, t2 - t1, null);
+        StartupProfiler.export();
 
         try {
             // Register shutdown hook
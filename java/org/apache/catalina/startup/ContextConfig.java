@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.ServletContext;
 
@@ -53,6 +54,7 @@ import org.apache.catalina.deploy.LoginConfig;
 import org.apache.catalina.deploy.SecurityConstraint;
 import org.apache.catalina.util.StringManager;
 import org.apache.tomcat.util.digester.Digester;
+import org.apache.tomcat.util.digester.RecordedDocument;
 import org.apache.tomcat.util.digester.RuleSet;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
@@ -86,6 +88,8 @@ public class ContextConfig
      * The set of Authenticators that we know how to configure.  The key is
      * the name of the implemented authentication method, and the value is
      * the fully qualified Java class name of the corresponding Valve.
+     * Contexts may be started in parallel, so it is loaded and read while
+     * holding the lock of this class.
      */
     protected static Properties authenticators = null;
 
@@ -152,6 +156,15 @@ public class ContextConfig
      */
     protected static WebRuleSet webRuleSet = new WebRuleSet();
 
+
+    /**
+     * The default web.xml files which have already been parsed, keyed by
+     * system id, so that they are only parsed once rather than once for each
+     * context.
+     */
+    protected static Map<String, DefaultWebXml> defaultWebXmlCache =
+        new ConcurrentHashMap<String, DefaultWebXml>();
+
     /**
      * Attribute value used to turn on/off XML validation
      */
@@ -165,7 +178,7 @@ public class ContextConfig
 
     
     /**
-     * Deployment count.
+     * Deployment count, updated while holding the lock of this class.
      */
     protected static long deploymentCount = 0L;
     
@@ -381,6 +394,7 @@ public class ContextConfig
                 ok = false;
             } finally {
                 webDigester.reset();
+                webRuleSet.recycle();
                 parseException = null;
                 try {
                     if (stream != null) {
@@ -391,7 +405,6 @@ public class ContextConfig
                 }
             }
         }
-        webRuleSet.recycle();
 
         long t2=System.currentTimeMillis();
         if (context instanceof StandardContext) {
@@ -454,30 +467,33 @@ public class ContextConfig
         }
         if (authenticator == null) {
             // Load our mapping properties if necessary
-            if (authenticators == null) {
-                try {
-                    InputStream is=this.getClass().getClassLoader().getResourceAsStream("org/apache/catalina/startup/Authenticators.properties");
-                    if( is!=null ) {
-                        authenticators = new Properties();
-                        authenticators.load(is);
-                    } else {
+            String authenticatorName = null;
+            synchronized (ContextConfig.class) {
+                if (authenticators == null) {
+                    try {
+                        InputStream is=this.getClass().getClassLoader().getResourceAsStream("org/apache/catalina/startup/Authenticators.properties");
+                        if( is!=null ) {
+                            Properties properties = new Properties();
+                            properties.load(is);
+                            authenticators = properties;
+                        } else {
+                            log.error(sm.getString(
+                                    "contextConfig.authenticatorResources"));
+                            ok=false;
+                            return;
+                        }
+                    } catch (IOException e) {
                         log.error(sm.getString(
-                                "contextConfig.authenticatorResources"));
-                        ok=false;
+                                    "contextConfig.authenticatorResources"), e);
+                        ok = false;
                         return;
                     }
-                } catch (IOException e) {
-                    log.error(sm.getString(
-                                "contextConfig.authenticatorResources"), e);
-                    ok = false;
-                    return;
                 }
-            }
 
-            // Identify the class name of the Valve we should configure
-            String authenticatorName = null;
-            authenticatorName =
+                // Identify the class name of the Valve we should configure
+                authenticatorName =
                     authenticators.getProperty(loginConfig.getAuthMethod());
+            }
             if (authenticatorName == null) {
                 log.error(sm.getString("contextConfig.authenticatorMissing",
                                  loginConfig.getAuthMethod()));
@@ -622,7 +638,6 @@ public class ContextConfig
 
         if (stream != null) {
             processDefaultWebConfig(webDigester, stream, source);
-            webRuleSet.recycle();
         }
 
         long t2=System.currentTimeMillis();
@@ -657,7 +672,6 @@ public class ContextConfig
 
         if (stream != null) {
             processDefaultWebConfig(webDigester, stream, source);
-            webRuleSet.recycle();
         }
 
     }
@@ -673,18 +687,37 @@ public class ContextConfig
             log.debug("Processing context [" + context.getName() 
                     + "] web configuration resource " + source.getSystemId());
 
+        String systemId = source.getSystemId();
+        long lastModified = getLastModified(systemId);
+        DefaultWebXml cached = null;
+        if (systemId != null) {
+            cached = defaultWebXmlCache.get(systemId);
+            if (cached != null && cached.lastModified != lastModified) {
+                cached = null;
+            }
+        }
+
         // Process the default web.xml file
         synchronized (digester) {
             try {
-                source.setByteStream(stream);
-                
                 if (context instanceof StandardContext)
                     ((StandardContext) context).setReplaceWelcomeFiles(true);
                 digester.setClassLoader(this.getClass().getClassLoader());
                 digester.setUseContextClassLoader(false);
                 digester.push(context);
                 digester.setErrorHandler(new ContextErrorHandler());
-                digester.parse(source);
+                if (cached != null) {
+                    digester.parse(cached.document);
+                } else {
+                    source.setByteStream(stream);
+                    RecordedDocument document = new RecordedDocument();
+                    digester.parse(source, document);
+                    if (parseException == null && systemId != null
+                            && document.isComplete()) {
+                        defaultWebXmlCache.put(systemId,
+                                new DefaultWebXml(lastModified, document));
+                    }
+                }
                 if (parseException != null) {
                     ok = false;
                 }
@@ -699,6 +732,7 @@ public class ContextConfig
                 ok = false;
             } finally {
                 digester.reset();
+                webRuleSet.recycle();
                 parseException = null;
                 try {
                     if (stream != null) {
@@ -712,6 +746,18 @@ public class ContextConfig
     }
 
 
+    /**
+     * Return the last modified date of the specified default web.xml, or
+     * <code>0</code> if it is not a file.
+     */
+    protected static long getLastModified(String systemId) {
+        if (systemId != null && systemId.startsWith("file://")) {
+            return new File(systemId.substring(7)).lastModified();
+        }
+        return 0L;
+    }
+
+
     /**
      * Process the default configuration file, if it exists.
      */
@@ -961,13 +1007,17 @@ public class ContextConfig
                 }
             }
 
+            long count = 0L;
+            synchronized (ContextConfig.class) {
+                count = deploymentCount++;
+            }
             File file = null;
             if (docBase.toLowerCase().endsWith(".war")) {
                 file = new File(System.getProperty("java.io.tmpdir"),
-                        deploymentCount++ + "-" + docBase + ".war");
+                        count + "-" + docBase + ".war");
             } else {
                 file = new File(System.getProperty("java.io.tmpdir"), 
-                        deploymentCount++ + "-" + docBase);
+                        count + "-" + docBase);
             }
             
             if (log.isDebugEnabled())
@@ -991,14 +1041,18 @@ public class ContextConfig
     protected void init() {
         // Called from StandardContext.init()
 
-        if (webDigester == null){
-            webDigester = createWebDigester();
-            webDigester.getParser();
-        }
-        
-        if (contextDigester == null){
-            contextDigester = createContextDigester();
-            contextDigester.getParser();
+        // Contexts may be initialized concurrently by the start and stop
+        // threads of the host
+        synchronized (ContextConfig.class) {
+            if (webDigester == null){
+                webDigester = createWebDigester();
+                webDigester.getParser();
+            }
+            
+            if (contextDigester == null){
+                contextDigester = createContextDigester();
+                contextDigester.getParser();
+            }
         }
 
         if (log.isDebugEnabled())
@@ -1381,4 +1435,20 @@ public class ContextConfig
     }
 
 
+    /**
+     * A parsed default web.xml, with the date of the file it was read from.
+     */
+    protected static class DefaultWebXml {
+
+        protected long lastModified;
+        protected RecordedDocument document;
+
+        public DefaultWebXml(long lastModified, RecordedDocument document) {
+            this.lastModified = lastModified;
+            this.document = document;
+        }
+
+    }
+
+
 }
@@ -18,20 +18,32 @@
 
 package org.apache.catalina.startup;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.CRC32;
 
 import org.apache.catalina.Host;
+import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.util.StringManager;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -56,6 +68,24 @@ public class ExpandWar {
         StringManager.getManager(Constants.Package);
 
 
+    /**
+     * Number of threads used to expand the entries of a WAR. A value of 0
+     * uses one thread per processor, and a negative value leaves that many
+     * processors unused.
+     */
+    protected static final int EXPAND_THREADS = Integer.parseInt(
+            System.getProperty(
+                    "org.apache.catalina.startup.ExpandWar.EXPAND_THREADS",
+                    "1"));
+
+
+    /**
+     * Suffix of the files recording the checksums of the entries of the
+     * expanded WARs.
+     */
+    protected static final String CHECKSUMS_SUFFIX = ".war.checksums";
+
+
     /**
      * Expand the WAR file found at the specified URL into an unpacked
      * directory structure, and return the absolute pathname to the expanded
@@ -136,48 +166,95 @@ public class ExpandWar {
         JarURLConnection juc = (JarURLConnection) war.openConnection();
         juc.setUseCaches(false);
         JarFile jarFile = null;
-        InputStream input = null;
+        File checksumFile = getChecksumFile(host, pathname);
         try {
             jarFile = juc.getJarFile();
-            Enumeration jarEntries = jarFile.entries();
-            while (jarEntries.hasMoreElements()) {
-                JarEntry jarEntry = (JarEntry) jarEntries.nextElement();
-                String name = jarEntry.getName();
-                int last = name.lastIndexOf('/');
-                if (last >= 0) {
-                    File parent = new File(docBase,
-                                           name.substring(0, last));
-                    parent.mkdirs();
-                }
-                if (name.endsWith("/")) {
-                    continue;
-                }
-                input = jarFile.getInputStream(jarEntry);
-
-                // Bugzilla 33636
-                File expandedFile = expand(input, docBase, name);
-                long lastModified = jarEntry.getTime();
-                if ((lastModified != -1) && (lastModified != 0) && (expandedFile != null)) {
-                    expandedFile.setLastModified(lastModified);
-                }
-
-                input.close();
-                input = null;
-            }
+            Properties checksums = new Properties();
+            expand(jarFile, docBase, null, checksums, null);
+            storeChecksums(checksumFile, checksums);
         } catch (IOException e) {
             // If something went wrong, delete expanded dir to keep things 
             // clean
             deleteDir(docBase);
+            checksumFile.delete();
             throw e;
         } finally {
-            if (input != null) {
+            if (jarFile != null) {
                 try {
-                    input.close();
+                    jarFile.close();
                 } catch (Throwable t) {
                     ;
                 }
-                input = null;
+                jarFile = null;
             }
+        }
+
+        // Return the absolute path to our new document base directory
+        return (docBase.getAbsolutePath());
+
+    }
+
+
+    /**
+     * Bring the directory into which the WAR file found at the specified URL
+     * was previously expanded up to date with the WAR. Only the entries whose
+     * checksum or size differ from the expanded files are written again, and
+     * the files of the entries which were removed from the WAR are deleted.
+     * The directory is fully expanded if it does not exist.
+     *
+     * @param host Host war is being installed for
+     * @param war URL of the web application archive to be expanded
+     *  (must start with "jar:")
+     * @param pathname Context path name for web application
+     * @return the names of the entries which were written or deleted, or
+     *  <code>null</code> if the checksums of the last expansion are not
+     *  available, in which case the files of the removed entries cannot be
+     *  identified and the directory is left untouched
+     *
+     * @exception IllegalArgumentException if this is not a "jar:" URL
+     * @exception IOException if an input/output error was encountered
+     *  during expansion
+     */
+    public static List<String> update(Host host, URL war, String pathname)
+        throws IOException {
+
+        File appBase = new File(host.getAppBase());
+        if (!appBase.isAbsolute()) {
+            appBase = new File(System.getProperty("catalina.base"),
+                               host.getAppBase());
+        }
+        File docBase = new File(appBase, pathname);
+        if (!docBase.isDirectory()) {
+            expand(host, war, pathname);
+            List<String> changed = new ArrayList<String>();
+            changed.add("/");
+            return changed;
+        }
+        if (host.getLogger().isDebugEnabled()) {
+            host.getLogger().debug("update(" + war.toString() + ")");
+        }
+
+        File checksumFile = getChecksumFile(host, pathname);
+        Properties previous = loadChecksums(checksumFile);
+        if (previous == null) {
+            return null;
+        }
+
+        JarURLConnection juc = (JarURLConnection) war.openConnection();
+        juc.setUseCaches(false);
+        JarFile jarFile = null;
+        try {
+            jarFile = juc.getJarFile();
+            Properties checksums = new Properties();
+            List<String> changed = new ArrayList<String>();
+            expand(jarFile, docBase, previous, checksums, changed);
+            storeChecksums(checksumFile, checksums);
+            return changed;
+        } catch (IOException e) {
+            // The expanded files no longer match the recorded checksums
+            checksumFile.delete();
+            throw e;
+        } finally {
             if (jarFile != null) {
                 try {
                     jarFile.close();
@@ -188,9 +265,6 @@ public class ExpandWar {
             }
         }
 
-        // Return the absolute path to our new document base directory
-        return (docBase.getAbsolutePath());
-
     }
 
 
@@ -332,4 +406,282 @@ public class ExpandWar {
     }
 
 
+    /**
+     * Expand the entries of the specified WAR into the specified directory.
+     * An entry is skipped when the expanded file has the size and CRC-32
+     * recorded for the entry in the WAR. The CRC-32 of the file is only
+     * computed when its date or the previously recorded checksum differ from
+     * those of the entry, so that an unchanged WAR is checked without reading
+     * the files.
+     *
+     * @param jarFile WAR to be expanded
+     * @param docBase Document base directory into which we are expanding
+     * @param previous Checksums recorded when the directory was last updated,
+     *  or <code>null</code> if the directory is empty
+     * @param checksums Checksums of the entries of the WAR, filled by this
+     *  method
+     * @param changed Names of the entries which were written or deleted,
+     *  filled by this method if not <code>null</code>
+     *
+     * @exception IOException if an input/output error occurs
+     */
+    protected static void expand(final JarFile jarFile, final File docBase,
+            Properties previous, Properties checksums, List<String> changed)
+        throws IOException {
+
+        ArrayList<JarEntry> entries = new ArrayList<JarEntry>();
+        Enumeration<JarEntry> jarEntries = jarFile.entries();
+        while (jarEntries.hasMoreElements()) {
+            JarEntry jarEntry = jarEntries.nextElement();
+            String name = jarEntry.getName();
+            int last = name.lastIndexOf('/');
+            if (last >= 0) {
+                File parent = new File(docBase,
+                                       name.substring(0, last));
+                parent.mkdirs();
+            }
+            if (name.endsWith("/")) {
+                continue;
+            }
+            String checksum = Long.toHexString(jarEntry.getCrc()) + ":"
+                + jarEntry.getSize();
+            checksums.setProperty(name, checksum);
+            if (previous != null && isExpanded(jarEntry, docBase,
+                    checksum.equals(previous.getProperty(name)))) {
+                continue;
+            }
+            entries.add(jarEntry);
+            if (changed != null) {
+                changed.add(name);
+            }
+        }
+
+        // Remove the files of the entries no longer in the WAR
+        if (previous != null) {
+            Enumeration<?> names = previous.propertyNames();
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
+                if (checksums.getProperty(name) == null) {
+                    File file = new File(docBase, name);
+                    if (file.isFile()) {
+                        file.delete();
+                    }
+                    if (changed != null) {
+                        changed.add(name);
+                    }
+                }
+            }
+        }
+
+        int threads = getExpandThreads();
+        if (threads > entries.size()) {
+            threads = entries.size();
+        }
+        if (threads < 2) {
+            for (int i = 0; i < entries.size(); i++) {
+                expand(jarFile, entries.get(i), docBase);
+            }
+            return;
+        }
+
+        // Entries are inflated in parallel, the JAR file being thread safe
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (int i = 0; i < entries.size(); i++) {
+                final JarEntry jarEntry = entries.get(i);
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        expand(jarFile, jarEntry, docBase);
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new IOException(String.valueOf(cause));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+    }
+
+
+    /**
+     * Expand the specified entry of the WAR into the specified directory.
+     */
+    protected static void expand(JarFile jarFile, JarEntry jarEntry,
+            File docBase)
+        throws IOException {
+
+        InputStream input = jarFile.getInputStream(jarEntry);
+        try {
+            // Bugzilla 33636
+            File expandedFile = expand(input, docBase, jarEntry.getName());
+            long lastModified = jarEntry.getTime();
+            if ((lastModified != -1) && (lastModified != 0) && (expandedFile != null)) {
+                expandedFile.setLastModified(lastModified);
+            }
+        } finally {
+            try {
+                input.close();
+            } catch (Throwable t) {
+                ;
+            }
+        }
+
+    }
+
+
+    /**
+     * Is the specified entry already expanded in the specified directory?
+     *
+     * @param jarEntry Entry of the WAR
+     * @param docBase Document base directory
+     * @param recorded Was the checksum of the entry recorded when the
+     *  directory was last updated?
+     */
+    protected static boolean isExpanded(JarEntry jarEntry, File docBase,
+            boolean recorded)
+        throws IOException {
+
+        File file = new File(docBase, jarEntry.getName());
+        if (file.length() != jarEntry.getSize() || !file.isFile()) {
+            return false;
+        }
+        long lastModified = jarEntry.getTime();
+        if (recorded && (lastModified == -1 || lastModified == 0
+                || file.lastModified() == lastModified)) {
+            return true;
+        }
+        CRC32 crc = new CRC32();
+        InputStream input = new FileInputStream(file);
+        try {
+            byte buffer[] = new byte[8192];
+            while (true) {
+                int n = input.read(buffer);
+                if (n <= 0)
+                    break;
+                crc.update(buffer, 0, n);
+            }
+        } finally {
+            try {
+                input.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+        return (crc.getValue() == jarEntry.getCrc());
+
+    }
+
+
+    /**
+     * Return the number of threads used to expand the entries of a WAR.
+     */
+    protected static int getExpandThreads() {
+        if (EXPAND_THREADS > 0) {
+            return EXPAND_THREADS;
+        }
+        return Math.max(1,
+                Runtime.getRuntime().availableProcessors() + EXPAND_THREADS);
+    }
+
+
+    /**
+     * Return the file recording the checksums of the entries of the WAR
+     * expanded under the specified name, which is kept in the work
+     * directory of the host.
+     */
+    protected static File getChecksumFile(Host host, String pathname) {
+        String workDir = null;
+        if (host instanceof StandardHost) {
+            workDir = ((StandardHost) host).getWorkDir();
+        }
+        if (workDir == null || workDir.length() == 0) {
+            String engineName = null;
+            if (host.getParent() != null) {
+                engineName = host.getParent().getName();
+            }
+            if ((engineName == null) || (engineName.length() < 1))
+                engineName = "_";
+            workDir = "work" + File.separator + engineName +
+                File.separator + host.getName();
+        }
+        File dir = new File(workDir);
+        if (!dir.isAbsolute()) {
+            dir = new File(System.getProperty("catalina.base"), workDir);
+        }
+        return new File(dir, pathname + CHECKSUMS_SUFFIX);
+    }
+
+
+    /**
+     * Load the checksums recorded in the specified file, or return
+     * <code>null</code> if it does not exist or cannot be read.
+     */
+    protected static Properties loadChecksums(File file) {
+        Properties checksums = new Properties();
+        if (!file.isFile()) {
+            return null;
+        }
+        InputStream input = null;
+        try {
+            input = new BufferedInputStream(new FileInputStream(file));
+            checksums.load(input);
+        } catch (IOException e) {
+            log.warn(sm.getString("expandWar.checksums", file), e);
+            checksums = null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+        return checksums;
+    }
+
+
+    /**
+     * Record the specified checksums in the specified file. A failure only
+     * means that the next update will expand the whole WAR again.
+     */
+    protected static void storeChecksums(File file, Properties checksums) {
+        OutputStream output = null;
+        try {
+            file.getParentFile().mkdirs();
+            output = new BufferedOutputStream(new FileOutputStream(file));
+            checksums.store(output, null);
+        } catch (IOException e) {
+            log.warn(sm.getString("expandWar.checksums", file), e);
+            file.delete();
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+
 }
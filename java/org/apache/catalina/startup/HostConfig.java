@@ -26,9 +26,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -45,6 +51,8 @@ import org.apache.catalina.core.ContainerBase;
 import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.util.IOTools;
 import org.apache.catalina.util.StringManager;
+import org.apache.naming.resources.ProxyDirContext;
+import org.apache.naming.resources.ResourceCache;
 import org.apache.tomcat.util.digester.Digester;
 import org.apache.tomcat.util.modeler.Registry;
 
@@ -63,6 +71,14 @@ public class HostConfig
     protected static org.apache.juli.logging.Log log=
          org.apache.juli.logging.LogFactory.getLog( HostConfig.class );
 
+
+    /**
+     * Extensions of the JSP pages, fragments and tag files, which are
+     * compiled by the application and are never updated without a redeploy.
+     */
+    protected static final String[] JSP_EXTENSIONS =
+        { "jsp", "jspx", "jspf", "tag", "tagx" };
+
     // ----------------------------------------------------- Instance Variables
 
 
@@ -123,7 +139,8 @@ public class HostConfig
 
 
     /**
-     * Map of deployed applications.
+     * Map of deployed applications. Applications may be deployed in
+     * parallel, so it is accessed while holding its lock.
      */
     protected HashMap deployed = new HashMap();
 
@@ -349,7 +366,10 @@ public class HostConfig
      * on which the application was deployed
      */
     public long getDeploymentTime(String name) {
-    	DeployedApplication app = (DeployedApplication) deployed.get(name);
+    	DeployedApplication app = null;
+    	synchronized (deployed) {
+    		app = (DeployedApplication) deployed.get(name);
+    	}
     	if (app == null) {
     		return 0L;
     	} else {
@@ -366,7 +386,10 @@ public class HostConfig
      * exist
      */
     public boolean isDeployed(String name) {
-        DeployedApplication app = (DeployedApplication) deployed.get(name);
+        DeployedApplication app = null;
+        synchronized (deployed) {
+            app = (DeployedApplication) deployed.get(name);
+        }
         if (app == null) {
             return false;
         } else {
@@ -532,6 +555,8 @@ public class HostConfig
         if (files == null)
             return;
         
+        List<Future<?>> results = new ArrayList<Future<?>>();
+
         for (int i = 0; i < files.length; i++) {
 
             if (files[i].equalsIgnoreCase("META-INF"))
@@ -553,12 +578,15 @@ public class HostConfig
                 
                 String file = files[i];
 
-                deployDescriptor(contextPath, contextXml, file);
+                results.add(submit(new DeployDescriptor(this, contextPath,
+                        contextXml, file)));
                 
             }
 
         }
 
+        waitForDeployments(results);
+
     }
 
 
@@ -686,7 +714,9 @@ public class HostConfig
         }
 
         if (context != null && host.findChild(context.getName()) != null) {
-            deployed.put(contextPath, deployedApp);
+            synchronized (deployed) {
+                deployed.put(contextPath, deployedApp);
+            }
         }
     }
 
@@ -699,6 +729,8 @@ public class HostConfig
         if (files == null)
             return;
         
+        List<Future<?>> results = new ArrayList<Future<?>>();
+
         for (int i = 0; i < files.length; i++) {
             
             if (files[i].equalsIgnoreCase("META-INF"))
@@ -721,12 +753,15 @@ public class HostConfig
                 
                 String file = files[i];
                 
-                deployWAR(contextPath, dir, file);
+                results.add(submit(new DeployWar(this, contextPath, dir,
+                        file)));
                 
             }
             
         }
         
+        waitForDeployments(results);
+
     }
 
 
@@ -877,7 +912,9 @@ public class HostConfig
             log.error(sm.getString("hostConfig.deployJar.error", file), t);
         }
         
-        deployed.put(contextPath, deployedApp);
+        synchronized (deployed) {
+            deployed.put(contextPath, deployedApp);
+        }
     }
 
 
@@ -889,6 +926,8 @@ public class HostConfig
         if (files == null)
             return;
         
+        List<Future<?>> results = new ArrayList<Future<?>>();
+
         for (int i = 0; i < files.length; i++) {
 
             if (files[i].equalsIgnoreCase("META-INF"))
@@ -906,12 +945,61 @@ public class HostConfig
                 if (isServiced(contextPath))
                     continue;
 
-                deployDirectory(contextPath, dir, files[i]);
+                results.add(submit(new DeployDirectory(this, contextPath,
+                        dir, files[i])));
             
             }
 
         }
 
+        waitForDeployments(results);
+
+    }
+
+
+    /**
+     * Run the specified deployment task, using the start and stop executor
+     * of the host if it has one, so that independent applications are
+     * deployed concurrently.
+     */
+    protected Future<?> submit(Runnable task) {
+
+        ExecutorService executor = null;
+        if (host instanceof ContainerBase) {
+            executor = ((ContainerBase) host).getStartStopExecutor();
+        }
+        if (executor != null) {
+            return executor.submit(task);
+        }
+        task.run();
+        return null;
+
+    }
+
+
+    /**
+     * Wait for the completion of the specified deployment tasks. Each
+     * deployment reports its own errors, so this only logs failures which
+     * escaped it, in the order the tasks were submitted.
+     */
+    protected void waitForDeployments(List<Future<?>> results) {
+
+        Iterator<Future<?>> iterator = results.iterator();
+        while (iterator.hasNext()) {
+            Future<?> result = iterator.next();
+            if (result == null) {
+                continue;
+            }
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                log.error(sm.getString("hostConfig.deployApps.error"),
+                        e.getCause());
+            } catch (InterruptedException e) {
+                log.error(sm.getString("hostConfig.deployApps.error"), e);
+            }
+        }
+
     }
 
     
@@ -992,7 +1080,9 @@ public class HostConfig
             log.error(sm.getString("hostConfig.deployDir.error", file), t);
         }
 
-        deployed.put(contextPath, deployedApp);
+        synchronized (deployed) {
+            deployed.put(contextPath, deployedApp);
+        }
     }
 
     
@@ -1002,7 +1092,11 @@ public class HostConfig
      * @param contextPath of the context which will be checked
      */
     protected boolean deploymentExists(String contextPath) {
-        return (deployed.containsKey(contextPath) || (host.findChild(contextPath) != null));
+        synchronized (deployed) {
+            if (deployed.containsKey(contextPath))
+                return (true);
+        }
+        return (host.findChild(contextPath) != null);
     }
     
 
@@ -1055,6 +1149,23 @@ public class HostConfig
             if (resource.exists()) {
                 long lastModified = ((Long) app.redeployResources.get(resources[i])).longValue();
                 if ((!resource.isDirectory()) && resource.lastModified() > lastModified) {
+                    // Update the files expanded from a WAR in place
+                    File expandedDocBase = null;
+                    if (unpackWARs && resources[i].toLowerCase().endsWith(".war")) {
+                        List<String> changed = new ArrayList<String>();
+                        expandedDocBase = updateExpandedWar(app, resource, changed);
+                        if ((expandedDocBase != null) && isStaticUpdate(
+                                (Context) host.findChild(app.name), changed)) {
+                            if (log.isInfoEnabled())
+                                log.info(sm.getString("hostConfig.updateResources",
+                                        app.name, new Integer(changed.size())));
+                            invalidateResources(app, changed);
+                            app.redeployResources.put(resources[i],
+                                    new Long(resource.lastModified()));
+                            app.timestamp = System.currentTimeMillis();
+                            continue;
+                        }
+                    }
                     // Undeploy application
                     if (log.isInfoEnabled())
                         log.info(sm.getString("hostConfig.undeploy", app.name));
@@ -1071,11 +1182,15 @@ public class HostConfig
                         log.warn(sm.getString
                                  ("hostConfig.context.destroy", app.name), t);
                     }
-                    // Delete other redeploy resources
+                    // Delete other redeploy resources, except the up to date
+                    // expanded WAR which will be reused by the new deployment
                     for (int j = i + 1; j < resources.length; j++) {
                         try {
                             File current = new File(resources[j]);
                             current = current.getCanonicalFile();
+                            if (current.equals(expandedDocBase)) {
+                                continue;
+                            }
                             if ((current.getAbsolutePath().startsWith(appBase().getAbsolutePath() + File.separator))
                                     || (current.getAbsolutePath().startsWith(configBase().getAbsolutePath()))) {
                                 if (log.isDebugEnabled())
@@ -1087,7 +1202,9 @@ public class HostConfig
                                     ("hostConfig.canonicalizing", app.name), e);
                         }
                     }
-                    deployed.remove(app.name);
+                    synchronized (deployed) {
+                        deployed.remove(app.name);
+                    }
                     return;
                 }
             } else {
@@ -1145,7 +1262,9 @@ public class HostConfig
                                 ("hostConfig.canonicalizing", app.name), e);
                     }
                 }
-                deployed.remove(app.name);
+                synchronized (deployed) {
+                    deployed.remove(app.name);
+                }
                 return;
             }
         }
@@ -1184,6 +1303,123 @@ public class HostConfig
     }
     
     
+    /**
+     * Bring the directory into which a modified WAR was expanded up to date
+     * with the WAR, rewriting only the entries which changed.
+     *
+     * @param app The application deployed from the WAR
+     * @param war The modified WAR
+     * @param changed Filled with the names of the entries which were
+     *  written or deleted
+     * @return the canonical expanded directory, or <code>null</code> if the
+     *  application does not run from a directory expanded in the appBase,
+     *  or if the directory could not be updated, in which case the
+     *  application has to be redeployed from a freshly expanded directory
+     */
+    protected File updateExpandedWar(DeployedApplication app, File war,
+            List<String> changed) {
+        Context context = (Context) host.findChild(app.name);
+        if ((context == null) || (context.getDocBase() == null)) {
+            return null;
+        }
+        try {
+            File docBase = new File(context.getDocBase());
+            if (!docBase.isAbsolute()) {
+                docBase = new File(appBase(), context.getDocBase());
+            }
+            docBase = docBase.getCanonicalFile();
+            if (!docBase.isDirectory()
+                    || !appBase().getCanonicalFile().equals(docBase.getParentFile())) {
+                return null;
+            }
+            URL url = new URL("jar:" + war.toURI().toURL() + "!/");
+            List<String> updated = ExpandWar.update(host, url, docBase.getName());
+            if (updated == null) {
+                return null;
+            }
+            changed.addAll(updated);
+            return docBase;
+        } catch (IOException e) {
+            log.warn(sm.getString("hostConfig.updateExpandedWar.error",
+                    war.getAbsolutePath()), e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Can the specified changes to an expanded WAR be applied without
+     * redeploying the application? This is the case when only static
+     * resources changed, outside of WEB-INF and META-INF. JSP pages and
+     * other files the application processes are not static: the classes
+     * compiled from them are only discarded by a redeploy.
+     *
+     * @param context The context deployed from the WAR, if any
+     * @param changed The names of the entries which were written or deleted
+     */
+    protected boolean isStaticUpdate(Context context, List<String> changed) {
+        for (int i = 0; i < changed.size(); i++) {
+            String name = changed.get(i);
+            String upperName = name.toUpperCase();
+            if (name.equals("/") || upperName.startsWith("WEB-INF/")
+                    || upperName.startsWith("META-INF/")
+                    || isProcessedResource(context, name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Is the specified entry a JSP page, fragment or tag file, or does its
+     * extension map it to a servlet of the context?
+     */
+    protected boolean isProcessedResource(Context context, String name) {
+        int period = name.lastIndexOf('.');
+        if (period <= name.lastIndexOf('/')) {
+            return false;
+        }
+        String extension = name.substring(period + 1);
+        for (int i = 0; i < JSP_EXTENSIONS.length; i++) {
+            if (JSP_EXTENSIONS[i].equalsIgnoreCase(extension)) {
+                return true;
+            }
+        }
+        return (context != null)
+            && (context.findServletMapping("*." + extension) != null);
+    }
+
+
+    /**
+     * Remove the specified resources, and their parent directories, from
+     * the resources cache of the application.
+     */
+    protected void invalidateResources(DeployedApplication app,
+            List<String> changed) {
+        Context context = (Context) host.findChild(app.name);
+        if ((context == null)
+                || !(context.getResources() instanceof ProxyDirContext)) {
+            return;
+        }
+        ResourceCache cache =
+            ((ProxyDirContext) context.getResources()).getCache();
+        if (cache == null) {
+            return;
+        }
+        synchronized (cache) {
+            for (int i = 0; i < changed.size(); i++) {
+                String name = "/" + changed.get(i);
+                while (name.length() > 0) {
+                    cache.unload(name);
+                    name = name.substring(0, name.lastIndexOf('/'));
+                }
+                cache.unload("/");
+            }
+        }
+    }
+
+
     /**
      * Process a "start" event for this Host.
      */
@@ -1241,8 +1477,11 @@ public class HostConfig
             log.debug(sm.getString("hostConfig.undeploying"));
 
         // Soft undeploy all contexts we have deployed
-        DeployedApplication[] apps = 
-            (DeployedApplication[]) deployed.values().toArray(new DeployedApplication[0]);
+        DeployedApplication[] apps = null;
+        synchronized (deployed) {
+            apps = (DeployedApplication[])
+                deployed.values().toArray(new DeployedApplication[0]);
+        }
         for (int i = 0; i < apps.length; i++) {
             try {
                 host.removeChild(host.findChild(apps[i].name));
@@ -1252,7 +1491,9 @@ public class HostConfig
             }
         }
         
-        deployed.clear();
+        synchronized (deployed) {
+            deployed.clear();
+        }
 
     }
 
@@ -1264,8 +1505,11 @@ public class HostConfig
 
         if (host.getAutoDeploy()) {
             // Check for resources modification to trigger redeployment
-            DeployedApplication[] apps = 
-                (DeployedApplication[]) deployed.values().toArray(new DeployedApplication[0]);
+            DeployedApplication[] apps = null;
+            synchronized (deployed) {
+                apps = (DeployedApplication[])
+                    deployed.values().toArray(new DeployedApplication[0]);
+            }
             for (int i = 0; i < apps.length; i++) {
                 if (!isServiced(apps[i].name))
                     checkResources(apps[i]);
@@ -1281,7 +1525,10 @@ public class HostConfig
      * Check status of a specific webapp, for use with stuff like management webapps.
      */
     public void check(String name) {
-        DeployedApplication app = (DeployedApplication) deployed.get(name);
+        DeployedApplication app = null;
+        synchronized (deployed) {
+            app = (DeployedApplication) deployed.get(name);
+        }
         if (app != null) {
             checkResources(app);
         } else {
@@ -1297,8 +1544,10 @@ public class HostConfig
 
         String contextPath = context.getPath();
         
-        if (deployed.containsKey(contextPath))
-            return;
+        synchronized (deployed) {
+            if (deployed.containsKey(contextPath))
+                return;
+        }
 
         DeployedApplication deployedApp = new DeployedApplication(contextPath);
         
@@ -1340,7 +1589,9 @@ public class HostConfig
         } else {
             addWatchedResources(deployedApp, null, context);
         }
-        deployed.put(contextPath, deployedApp);
+        synchronized (deployed) {
+            deployed.put(contextPath, deployedApp);
+        }
     }
 
     /**
@@ -1349,7 +1600,9 @@ public class HostConfig
      */
     public void unmanageApp(String contextPath) {
         if(isServiced(contextPath)) {
-            deployed.remove(contextPath);
+            synchronized (deployed) {
+                deployed.remove(contextPath);
+            }
             host.removeChild(host.findChild(contextPath));
         }
     }
@@ -1396,4 +1649,70 @@ public class HostConfig
     	public long timestamp = System.currentTimeMillis();
     }
 
+
+    // ---------------------------------------------- Deployment Inner Classes
+
+
+    protected static class DeployDescriptor implements Runnable {
+
+        private HostConfig config;
+        private String contextPath;
+        private File contextXml;
+        private String file;
+
+        public DeployDescriptor(HostConfig config, String contextPath,
+                File contextXml, String file) {
+            this.config = config;
+            this.contextPath = contextPath;
+            this.contextXml = contextXml;
+            this.file = file;
+        }
+
+        public void run() {
+            config.deployDescriptor(contextPath, contextXml, file);
+        }
+    }
+
+
+    protected static class DeployWar implements Runnable {
+
+        private HostConfig config;
+        private String contextPath;
+        private File war;
+        private String file;
+
+        public DeployWar(HostConfig config, String contextPath, File war,
+                String file) {
+            this.config = config;
+            this.contextPath = contextPath;
+            this.war = war;
+            this.file = file;
+        }
+
+        public void run() {
+            config.deployWAR(contextPath, war, file);
+        }
+    }
+
+
+    protected static class DeployDirectory implements Runnable {
+
+        private HostConfig config;
+        private String contextPath;
+        private File dir;
+        private String file;
+
+        public DeployDirectory(HostConfig config, String contextPath,
+                File dir, String file) {
+            this.config = config;
+            this.contextPath = contextPath;
+            this.dir = dir;
+            this.file = file;
+        }
+
+        public void run() {
+            config.deployDirectory(contextPath, dir, file);
+        }
+    }
+
 }
\ No newline at end of file
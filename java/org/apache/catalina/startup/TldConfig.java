@@ -54,6 +54,7 @@ import org.apache.catalina.LifecycleListener;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.util.StringManager;
+import org.apache.tomcat.util.StartupProfiler;
 import org.apache.tomcat.util.digester.Digester;
 import org.xml.sax.InputSource;
 
@@ -146,6 +147,13 @@ public final class TldConfig  implements LifecycleListener {
     private static Digester tldDigester = null;
 
 
+    /**
+     * Lock guarding the creation and the use of <code>tldDigester</code>,
+     * which is shared by the contexts being started in parallel.
+     */
+    private static final Object tldDigesterLock = new Object();
+
+
     /**
      * Attribute value used to turn on/off TLD validation
      */
@@ -254,6 +262,7 @@ public final class TldConfig  implements LifecycleListener {
      */
     public void execute() throws Exception {
         long t1=System.currentTimeMillis();
+        long begin = StartupProfiler.begin();
 
         File tldCache=null;
 
@@ -330,6 +339,8 @@ public final class TldConfig  implements LifecycleListener {
         if( context instanceof StandardContext ) {
             ((StandardContext)context).setTldScanTime(t2-t1);
         }
+        StartupProfiler.record(String.valueOf(context), "tld scan", begin,
+                list.length + " listeners");
 
     }
 
@@ -498,7 +509,7 @@ public final class TldConfig  implements LifecycleListener {
     private void tldScanStream(InputSource resourceStream)
         throws Exception {
 
-        synchronized (tldDigester) {
+        synchronized (tldDigesterLock) {
             try {
                 tldDigester.push(this);
                 tldDigester.parse(resourceStream);
@@ -745,28 +756,30 @@ public final class TldConfig  implements LifecycleListener {
     }
     
     private void init() {
-        if (tldDigester == null){
-            // (1)  check if the attribute has been defined
-            //      on the context element.
-            setTldValidation(context.getTldValidation());
-            setTldNamespaceAware(context.getTldNamespaceAware());
+        synchronized (tldDigesterLock) {
+            if (tldDigester == null){
+                // (1)  check if the attribute has been defined
+                //      on the context element.
+                setTldValidation(context.getTldValidation());
+                setTldNamespaceAware(context.getTldNamespaceAware());
     
-            // (2) if the attribute wasn't defined on the context
-            //     try the host.
-            if (!tldValidation) {
-              setTldValidation(
-                      ((StandardHost) context.getParent()).getXmlValidation());
-            }
+                // (2) if the attribute wasn't defined on the context
+                //     try the host.
+                if (!tldValidation) {
+                  setTldValidation(
+                          ((StandardHost) context.getParent()).getXmlValidation());
+                }
     
-            if (!tldNamespaceAware) {
-              setTldNamespaceAware(
-                      ((StandardHost) context.getParent()).getXmlNamespaceAware());
-            }
+                if (!tldNamespaceAware) {
+                  setTldNamespaceAware(
+                          ((StandardHost) context.getParent()).getXmlNamespaceAware());
+                }
 
-            tldDigester = DigesterFactory.newDigester(tldValidation, 
-                    tldNamespaceAware, 
-                    new TldRuleSet());
-            tldDigester.getParser();
+                tldDigester = DigesterFactory.newDigester(tldValidation, 
+                        tldNamespaceAware, 
+                        new TldRuleSet());
+                tldDigester.getParser();
+            }
         }
     }
 }
@@ -104,6 +104,7 @@ public class WebAnnotationSet {
                     continue;
                 }
                 
+                classClass = null;
                 try {
                     classClass = classLoader.loadClass(wrapper.getServletClass());
                 } catch (ClassNotFoundException e) {
@@ -116,7 +117,7 @@ public class WebAnnotationSet {
                     continue;
                 }
                 
-                loadClassAnnotation(context, wrapper.getServletClass());
+                loadClassAnnotation(context, classClass);
                 /* Process RunAs annotation which can be only on servlets.
                  * Ref JSR 250, equivalent to the run-as element in
                  * the deployment descriptor
@@ -153,6 +154,17 @@ public class WebAnnotationSet {
             return;
         }
         
+        loadClassAnnotation(context, classClass);
+        
+    }
+    
+    
+    /**
+     * Process the annotations on a context for a given class, which has
+     * already been loaded.
+     */
+    protected static void loadClassAnnotation(Context context, Class classClass) {
+        
         // Initialize the annotations
         
         if (classClass.isAnnotationPresent(Resource.class)) {
@@ -17,12 +17,16 @@
 
 package org.apache.catalina.util;
 
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -39,6 +43,15 @@ import org.apache.catalina.Globals;
 
 /**
  * Verify the annotation and Process it.
+ * <p>
+ * The annotations of a class are only examined the first time an instance
+ * of the class is processed. The resulting fields and methods, which are
+ * made accessible once, and the names under which the resources are looked
+ * up are kept for the following instances of the class, if the class is
+ * loaded by the class loader of the web application or by one of its
+ * parents. The classes of other loaders, such as those of the JSP pages,
+ * which are replaced when the pages are compiled again, are examined for
+ * each instance.
  *
  * @author Fabien Carrion
  * @author Remy Maucherat
@@ -48,8 +61,32 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
     
     protected javax.naming.Context context = null;
     
+    /**
+     * The class loader of the web application, or <code>null</code> if the
+     * metadata of every class is cached.
+     */
+    protected ClassLoader classLoader = null;
+    
+    /**
+     * Annotation metadata of the classes processed so far. The metadata
+     * refers to the classes, which are therefore held for as long as this
+     * processor is: a context discards its processor when it stops.
+     */
+    protected Map<Class<?>, AnnotationMetadata> metadataCache =
+        new HashMap<Class<?>, AnnotationMetadata>();
+    
     public DefaultAnnotationProcessor(javax.naming.Context context) {
+        this(context, null);
+    }
+    
+    /**
+     * Create a processor which only caches the metadata of the classes
+     * loaded by the specified class loader or by one of its parents.
+     */
+    public DefaultAnnotationProcessor(javax.naming.Context context,
+                                      ClassLoader classLoader) {
         this.context = context;
+        this.classLoader = classLoader;
     }
 
 
@@ -59,45 +96,16 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
     public void postConstruct(Object instance)
         throws IllegalAccessException, InvocationTargetException {
         
-        Class<?> clazz = instance.getClass();
-        
-        while (clazz != null) {
-            Method[] methods = null;
-            if (Globals.IS_SECURITY_ENABLED) {
-                final Class<?> clazz2 = clazz;
-                methods = AccessController.doPrivileged(
-                        new PrivilegedAction<Method[]>(){
-                    public Method[] run(){
-                        return clazz2.getDeclaredMethods();
-                    }
-                });
-            } else {
-                methods = clazz.getDeclaredMethods();
-            }
-            Method postConstruct = null;
-            for (int i = 0; i < methods.length; i++) {
-                if (methods[i].isAnnotationPresent(PostConstruct.class)) {
-                    if ((postConstruct != null) 
-                            || (methods[i].getParameterTypes().length != 0)
-                            || (Modifier.isStatic(methods[i].getModifiers())) 
-                            || (methods[i].getExceptionTypes().length > 0)
-                            || (!methods[i].getReturnType().getName().equals("void"))) {
-                        throw new IllegalArgumentException("Invalid PostConstruct annotation");
-                    }
-                    postConstruct = methods[i];
-                }
-            }
-    
-            // At the end the postconstruct annotated 
-            // method is invoked
-            if (postConstruct != null) {
-                boolean accessibility = postConstruct.isAccessible();
-                postConstruct.setAccessible(true);
-                postConstruct.invoke(instance);
-                postConstruct.setAccessible(accessibility);
-            }
+        AnnotationMetadata metadata = getMetadata(instance.getClass());
+        if (metadata.invalidPostConstruct) {
+            throw new IllegalArgumentException("Invalid PostConstruct annotation");
+        }
         
-            clazz = clazz.getSuperclass();
+        // At the end the postconstruct annotated 
+        // methods are invoked
+        Method[] methods = metadata.postConstructMethods;
+        for (int i = 0; i < methods.length; i++) {
+            methods[i].invoke(instance);
         }
     }
     
@@ -108,34 +116,14 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
     public void preDestroy(Object instance)
         throws IllegalAccessException, InvocationTargetException {
         
-        Class<?> clazz = instance.getClass();
+        AnnotationMetadata metadata = getMetadata(instance.getClass());
+        if (metadata.invalidPreDestroy) {
+            throw new IllegalArgumentException("Invalid PreDestroy annotation");
+        }
         
-        while (clazz != null) {
-            Method[] methods = clazz.getDeclaredMethods();
-            Method preDestroy = null;
-            for (int i = 0; i < methods.length; i++) {
-                if (methods[i].isAnnotationPresent(PreDestroy.class)) {
-                    if ((preDestroy != null) 
-                            || (methods[i].getParameterTypes().length != 0)
-                            || (Modifier.isStatic(methods[i].getModifiers())) 
-                            || (methods[i].getExceptionTypes().length > 0)
-                            || (!methods[i].getReturnType().getName().equals("void"))) {
-                        throw new IllegalArgumentException("Invalid PreDestroy annotation");
-                    }
-                    preDestroy = methods[i];
-                }
-            }
-    
-            // At the end the postconstruct annotated 
-            // method is invoked
-            if (preDestroy != null) {
-                boolean accessibility = preDestroy.isAccessible();
-                preDestroy.setAccessible(true);
-                preDestroy.invoke(instance);
-                preDestroy.setAccessible(accessibility);
-            }
-
-            clazz = clazz.getSuperclass();
+        Method[] methods = metadata.preDestroyMethods;
+        for (int i = 0; i < methods.length; i++) {
+            methods[i].invoke(instance);
         }
     }
     
@@ -151,157 +139,252 @@ public class DefaultAnnotationProcessor implements AnnotationProcessor {
             return;
         }
         
-        Class<?> clazz = instance.getClass();
+        AnnotationMetadata metadata = getMetadata(instance.getClass());
+        if (metadata.invalidInjection) {
+            throw new IllegalArgumentException("Invalid method resource injection annotation");
+        }
         
-        while (clazz != null) {
-            // Initialize fields annotations
-            Field[] fields = null;
-            if (Globals.IS_SECURITY_ENABLED) {
-                final Class<?> clazz2 = clazz;
-                fields = AccessController.doPrivileged(
-                        new PrivilegedAction<Field[]>(){
-                    public Field[] run(){
-                        return clazz2.getDeclaredFields();
-                    }
-                });
+        InjectionTarget[] targets = metadata.injectionTargets;
+        for (int i = 0; i < targets.length; i++) {
+            Object lookedupResource = context.lookup(targets[i].name);
+            if (targets[i].field != null) {
+                targets[i].field.set(instance, lookedupResource);
             } else {
-                fields = clazz.getDeclaredFields();
+                targets[i].method.invoke(instance, lookedupResource);
             }
-            for (int i = 0; i < fields.length; i++) {
-                if (fields[i].isAnnotationPresent(Resource.class)) {
-                    Resource annotation =
-                        fields[i].getAnnotation(Resource.class);
-                    lookupFieldResource(context, instance, fields[i],
-                            annotation.name(), clazz);
-                }
-                if (fields[i].isAnnotationPresent(EJB.class)) {
-                    EJB annotation = fields[i].getAnnotation(EJB.class);
-                    lookupFieldResource(context, instance, fields[i],
-                            annotation.name(), clazz);
+        }
+    }
+    
+    
+    /**
+     * Return the annotation metadata of the specified class, examining the
+     * class if it has not been processed before.
+     */
+    protected AnnotationMetadata getMetadata(Class<?> clazz) {
+        AnnotationMetadata metadata = null;
+        synchronized (metadataCache) {
+            metadata = metadataCache.get(clazz);
+        }
+        if (metadata == null) {
+            // Several threads may examine the same class, with the same result
+            metadata = createMetadata(clazz);
+            if (isCacheable(clazz)) {
+                synchronized (metadataCache) {
+                    metadataCache.put(clazz, metadata);
                 }
-                if (fields[i].isAnnotationPresent(WebServiceRef.class)) {
-                    WebServiceRef annotation =
-                        fields[i].getAnnotation(WebServiceRef.class);
-                    lookupFieldResource(context, instance, fields[i],
-                            annotation.name(), clazz);
+            }
+        }
+        return metadata;
+    }
+    
+    
+    /**
+     * Is the specified class loaded by the class loader of the web
+     * application or by one of its parents, so that caching its metadata
+     * does not keep a class loader which is discarded sooner?
+     */
+    protected boolean isCacheable(Class<?> clazz) {
+        ClassLoader loader = clazz.getClassLoader();
+        if (classLoader == null || loader == null) {
+            return true;
+        }
+        try {
+            for (ClassLoader parent = classLoader; parent != null;
+                    parent = parent.getParent()) {
+                if (parent == loader) {
+                    return true;
                 }
-                if (fields[i].isAnnotationPresent(PersistenceContext.class)) {
-                    PersistenceContext annotation = 
-                        fields[i].getAnnotation(PersistenceContext.class);
-                    lookupFieldResource(context, instance, fields[i],
-                            annotation.name(), clazz);
+            }
+        } catch (SecurityException e) {
+            // Not cached
+        }
+        return false;
+    }
+    
+    
+    /**
+     * Examine the annotations of the specified class and of its
+     * superclasses.
+     */
+    protected AnnotationMetadata createMetadata(Class<?> clazz) {
+        
+        AnnotationMetadata metadata = new AnnotationMetadata();
+        ArrayList<Method> postConstructMethods = new ArrayList<Method>();
+        ArrayList<Method> preDestroyMethods = new ArrayList<Method>();
+        ArrayList<InjectionTarget> injectionTargets =
+            new ArrayList<InjectionTarget>();
+        
+        while (clazz != null) {
+            Field[] fields = getDeclaredFields(clazz);
+            Method[] methods = getDeclaredMethods(clazz);
+            
+            // Initialize fields annotations
+            for (int i = 0; i < fields.length; i++) {
+                String[] names = getResourceNames(fields[i]);
+                if (names.length > 0) {
+                    fields[i].setAccessible(true);
                 }
-                if (fields[i].isAnnotationPresent(PersistenceUnit.class)) {
-                    PersistenceUnit annotation = 
-                        fields[i].getAnnotation(PersistenceUnit.class);
-                    lookupFieldResource(context, instance, fields[i],
-                            annotation.name(), clazz);
+                for (int j = 0; j < names.length; j++) {
+                    String name = names[j];
+                    if (name.length() == 0) {
+                        name = clazz.getName() + "/" + fields[i].getName();
+                    }
+                    injectionTargets.add
+                        (new InjectionTarget(name, fields[i], null));
                 }
             }
             
             // Initialize methods annotations
-            Method[] methods = null;
-            if (Globals.IS_SECURITY_ENABLED) {
-                final Class<?> clazz2 = clazz;
-                methods = AccessController.doPrivileged(
-                        new PrivilegedAction<Method[]>(){
-                    public Method[] run(){
-                        return clazz2.getDeclaredMethods();
-                    }
-                });
-            } else {
-                methods = clazz.getDeclaredMethods();
-            }
+            Method postConstruct = null;
+            Method preDestroy = null;
             for (int i = 0; i < methods.length; i++) {
-                if (methods[i].isAnnotationPresent(Resource.class)) {
-                    Resource annotation = methods[i].getAnnotation(Resource.class);
-                    lookupMethodResource(context, instance, methods[i],
-                            annotation.name(), clazz);
-                }
-                if (methods[i].isAnnotationPresent(EJB.class)) {
-                    EJB annotation = methods[i].getAnnotation(EJB.class);
-                    lookupMethodResource(context, instance, methods[i],
-                            annotation.name(), clazz);
-                }
-                if (methods[i].isAnnotationPresent(WebServiceRef.class)) {
-                    WebServiceRef annotation = 
-                        methods[i].getAnnotation(WebServiceRef.class);
-                    lookupMethodResource(context, instance, methods[i],
-                            annotation.name(), clazz);
+                String[] names = getResourceNames(methods[i]);
+                if (names.length > 0) {
+                    if (!methods[i].getName().startsWith("set") 
+                            || methods[i].getParameterTypes().length != 1
+                            || !methods[i].getReturnType().getName().equals("void")) {
+                        metadata.invalidInjection = true;
+                    } else {
+                        methods[i].setAccessible(true);
+                        for (int j = 0; j < names.length; j++) {
+                            String name = names[j];
+                            if (name.length() == 0) {
+                                name = clazz.getName() + "/"
+                                    + methods[i].getName().substring(3);
+                            }
+                            injectionTargets.add
+                                (new InjectionTarget(name, null, methods[i]));
+                        }
+                    }
                 }
-                if (methods[i].isAnnotationPresent(PersistenceContext.class)) {
-                    PersistenceContext annotation = 
-                        methods[i].getAnnotation(PersistenceContext.class);
-                    lookupMethodResource(context, instance, methods[i],
-                            annotation.name(), clazz);
+                if (methods[i].isAnnotationPresent(PostConstruct.class)) {
+                    if ((postConstruct != null) || !isLifecycleMethod(methods[i])) {
+                        metadata.invalidPostConstruct = true;
+                    }
+                    postConstruct = methods[i];
                 }
-                if (methods[i].isAnnotationPresent(PersistenceUnit.class)) {
-                    PersistenceUnit annotation = 
-                        methods[i].getAnnotation(PersistenceUnit.class);
-                    lookupMethodResource(context, instance, methods[i],
-                            annotation.name(), clazz);
+                if (methods[i].isAnnotationPresent(PreDestroy.class)) {
+                    if ((preDestroy != null) || !isLifecycleMethod(methods[i])) {
+                        metadata.invalidPreDestroy = true;
+                    }
+                    preDestroy = methods[i];
                 }
             }
+            if (postConstruct != null) {
+                postConstruct.setAccessible(true);
+                postConstructMethods.add(postConstruct);
+            }
+            if (preDestroy != null) {
+                preDestroy.setAccessible(true);
+                preDestroyMethods.add(preDestroy);
+            }
             
             clazz = clazz.getSuperclass();
         }
+        
+        metadata.postConstructMethods =
+            postConstructMethods.toArray(new Method[postConstructMethods.size()]);
+        metadata.preDestroyMethods =
+            preDestroyMethods.toArray(new Method[preDestroyMethods.size()]);
+        metadata.injectionTargets = injectionTargets.toArray
+            (new InjectionTarget[injectionTargets.size()]);
+        return metadata;
+        
+    }
+    
+    
+    /**
+     * Return the names of the resources to inject in the specified field or
+     * method, one for each injection annotation in the order they are
+     * injected, with an empty string for an annotation which does not
+     * specify one.
+     */
+    protected static String[] getResourceNames(AnnotatedElement element) {
+        ArrayList<String> names = new ArrayList<String>(1);
+        if (element.isAnnotationPresent(Resource.class)) {
+            names.add(element.getAnnotation(Resource.class).name());
+        }
+        if (element.isAnnotationPresent(EJB.class)) {
+            names.add(element.getAnnotation(EJB.class).name());
+        }
+        if (element.isAnnotationPresent(WebServiceRef.class)) {
+            names.add(element.getAnnotation(WebServiceRef.class).name());
+        }
+        if (element.isAnnotationPresent(PersistenceContext.class)) {
+            names.add(element.getAnnotation(PersistenceContext.class).name());
+        }
+        if (element.isAnnotationPresent(PersistenceUnit.class)) {
+            names.add(element.getAnnotation(PersistenceUnit.class).name());
+        }
+        return names.toArray(new String[names.size()]);
     }
     
     
     /**
-     * Inject resources in specified field.
+     * Is the specified method a valid PostConstruct or PreDestroy method?
      */
-    protected static void lookupFieldResource(javax.naming.Context context, 
-            Object instance, Field field, String name, Class<?> clazz)
-        throws NamingException, IllegalAccessException {
+    protected static boolean isLifecycleMethod(Method method) {
+        return (method.getParameterTypes().length == 0)
+            && (!Modifier.isStatic(method.getModifiers())) 
+            && (method.getExceptionTypes().length == 0)
+            && (method.getReturnType().getName().equals("void"));
+    }
     
-        Object lookedupResource = null;
-        boolean accessibility = false;
-        
-        if ((name != null) &&
-                (name.length() > 0)) {
-            lookedupResource = context.lookup(name);
+    
+    protected static Field[] getDeclaredFields(final Class<?> clazz) {
+        if (Globals.IS_SECURITY_ENABLED) {
+            return AccessController.doPrivileged(
+                    new PrivilegedAction<Field[]>(){
+                public Field[] run(){
+                    return clazz.getDeclaredFields();
+                }
+            });
         } else {
-            lookedupResource = context.lookup(
-                    clazz.getName() + "/" + field.getName());
+            return clazz.getDeclaredFields();
+        }
+    }
+    
+    
+    protected static Method[] getDeclaredMethods(final Class<?> clazz) {
+        if (Globals.IS_SECURITY_ENABLED) {
+            return AccessController.doPrivileged(
+                    new PrivilegedAction<Method[]>(){
+                public Method[] run(){
+                    return clazz.getDeclaredMethods();
+                }
+            });
+        } else {
+            return clazz.getDeclaredMethods();
         }
-        
-        accessibility = field.isAccessible();
-        field.setAccessible(true);
-        field.set(instance, lookedupResource);
-        field.setAccessible(accessibility);
+    }
+    
+    
+    /**
+     * Annotation metadata of a class and of its superclasses.
+     */
+    protected static final class AnnotationMetadata {
+        Method[] postConstructMethods;
+        Method[] preDestroyMethods;
+        InjectionTarget[] injectionTargets;
+        boolean invalidPostConstruct = false;
+        boolean invalidPreDestroy = false;
+        boolean invalidInjection = false;
     }
 
 
     /**
-     * Inject resources in specified method.
+     * A field or setter method, and the name of the resource to inject.
      */
-    protected static void lookupMethodResource(javax.naming.Context context, 
-            Object instance, Method method, String name, Class<?> clazz)
-        throws NamingException, IllegalAccessException, InvocationTargetException {
-        
-        if (!method.getName().startsWith("set") 
-                || method.getParameterTypes().length != 1
-                || !method.getReturnType().getName().equals("void")) {
-            throw new IllegalArgumentException("Invalid method resource injection annotation");
-        }
-        
-        Object lookedupResource = null;
-        boolean accessibility = false;
-        
-        if ((name != null) &&
-                (name.length() > 0)) {
-            lookedupResource = context.lookup(name);
-        } else {
-            lookedupResource = context.lookup(
-                    clazz.getName() + "/" + method.getName().substring(3));
+    protected static final class InjectionTarget {
+        final String name;
+        final Field field;
+        final Method method;
+        InjectionTarget(String name, Field field, Method method) {
+            this.name = name;
+            this.field = field;
+            this.method = method;
         }
-        
-        accessibility = method.isAccessible();
-        method.setAccessible(true);
-        method.invoke(instance, lookedupResource);
-        method.setAccessible(accessibility);
     }
-    
+
 
 }
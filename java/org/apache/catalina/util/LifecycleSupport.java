@@ -22,6 +22,7 @@ package org.apache.catalina.util;
 import org.apache.catalina.Lifecycle;
 import org.apache.catalina.LifecycleEvent;
 import org.apache.catalina.LifecycleListener;
+import org.apache.tomcat.util.StartupProfiler;
 
 
 /**
@@ -129,6 +130,17 @@ public final class LifecycleSupport {
 
         LifecycleEvent event = new LifecycleEvent(lifecycle, type, data);
         LifecycleListener interested[] = listeners;
+        if (StartupProfiler.ENABLED && !Lifecycle.PERIODIC_EVENT.equals(type)) {
+            // Record the time spent in each listener, such as the
+            // configuration or naming listeners
+            for (int i = 0; i < interested.length; i++) {
+                long begin = StartupProfiler.begin();
+                interested[i].lifecycleEvent(event);
+                StartupProfiler.record(String.valueOf(lifecycle), type + " "
+                        + interested[i].getClass().getName(), begin, null);
+            }
+            return;
+        }
         for (int i = 0; i < interested.length; i++)
             interested[i].lifecycleEvent(event);
 
@@ -217,11 +217,56 @@ public abstract class ELArithmetic {
 
     private final static Long ZERO = new Long(0);
 
+    private final static int FAST_NONE = 0;
+
+    private final static int FAST_LONG = 1;
+
+    private final static int FAST_DOUBLE = 2;
+
+    /**
+     * Operands that are both boxed primitives are handled without going
+     * through the delegates: integral operands with long arithmetic, any
+     * other combination with double arithmetic. This gives the same results
+     * as the delegates would.
+     */
+    private final static int fastType(final Object obj0, final Object obj1) {
+        if (obj0 == null || obj1 == null) {
+            return FAST_NONE;
+        }
+        int type0 = fastType(obj0.getClass());
+        int type1 = fastType(obj1.getClass());
+        if (type0 == FAST_NONE || type1 == FAST_NONE) {
+            return FAST_NONE;
+        }
+        return (type0 == FAST_LONG && type1 == FAST_LONG) ? FAST_LONG
+                : FAST_DOUBLE;
+    }
+
+    private final static int fastType(final Class<?> type) {
+        if (type == Long.class || type == Integer.class
+                || type == Short.class || type == Byte.class) {
+            return FAST_LONG;
+        }
+        if (type == Double.class || type == Float.class) {
+            return FAST_DOUBLE;
+        }
+        return FAST_NONE;
+    }
+
     public final static Number add(final Object obj0, final Object obj1) {
         if (obj0 == null && obj1 == null) {
             return new Long(0);
         }
 
+        int fastType = fastType(obj0, obj1);
+        if (fastType == FAST_LONG) {
+            return Long.valueOf(((Number) obj0).longValue() +
+                    ((Number) obj1).longValue());
+        } else if (fastType == FAST_DOUBLE) {
+            return new Double(((Number) obj0).doubleValue() +
+                    ((Number) obj1).doubleValue());
+        }
+
         final ELArithmetic delegate;
         if (BIGDECIMAL.matches(obj0, obj1))
             delegate = BIGDECIMAL;
@@ -243,6 +288,15 @@ public abstract class ELArithmetic {
             return new Long(0);
         }
 
+        int fastType = fastType(obj0, obj1);
+        if (fastType == FAST_LONG) {
+            return Long.valueOf(((Number) obj0).longValue() %
+                    ((Number) obj1).longValue());
+        } else if (fastType == FAST_DOUBLE) {
+            return new Double(((Number) obj0).doubleValue() %
+                    ((Number) obj1).doubleValue());
+        }
+
         final ELArithmetic delegate;
         if (BIGDECIMAL.matches(obj0, obj1))
             delegate = BIGDECIMAL;
@@ -264,6 +318,15 @@ public abstract class ELArithmetic {
             return new Long(0);
         }
 
+        int fastType = fastType(obj0, obj1);
+        if (fastType == FAST_LONG) {
+            return Long.valueOf(((Number) obj0).longValue() -
+                    ((Number) obj1).longValue());
+        } else if (fastType == FAST_DOUBLE) {
+            return new Double(((Number) obj0).doubleValue() -
+                    ((Number) obj1).doubleValue());
+        }
+
         final ELArithmetic delegate;
         if (BIGDECIMAL.matches(obj0, obj1))
             delegate = BIGDECIMAL;
@@ -285,6 +348,11 @@ public abstract class ELArithmetic {
             return ZERO;
         }
 
+        if (fastType(obj0, obj1) != FAST_NONE) {
+            return new Double(((Number) obj0).doubleValue() /
+                    ((Number) obj1).doubleValue());
+        }
+
         final ELArithmetic delegate;
         if (BIGDECIMAL.matches(obj0, obj1))
             delegate = BIGDECIMAL;
@@ -304,6 +372,15 @@ public abstract class ELArithmetic {
             return new Long(0);
         }
 
+        int fastType = fastType(obj0, obj1);
+        if (fastType == FAST_LONG) {
+            return Long.valueOf(((Number) obj0).longValue() *
+                    ((Number) obj1).longValue());
+        } else if (fastType == FAST_DOUBLE) {
+            return new Double(((Number) obj0).doubleValue() *
+                    ((Number) obj1).doubleValue());
+        }
+
         final ELArithmetic delegate;
         if (BIGDECIMAL.matches(obj0, obj1))
             delegate = BIGDECIMAL;
@@ -38,6 +38,61 @@ public class ELSupport {
 
     private final static Long ZERO = new Long(0L);
 
+    private final static int TYPE_OTHER = 0;
+    private final static int TYPE_STRING = 1;
+    private final static int TYPE_BOOLEAN = 2;
+    private final static int TYPE_CHARACTER = 3;
+    private final static int TYPE_BYTE = 4;
+    private final static int TYPE_SHORT = 5;
+    private final static int TYPE_INTEGER = 6;
+    private final static int TYPE_LONG = 7;
+    private final static int TYPE_FLOAT = 8;
+    private final static int TYPE_DOUBLE = 9;
+    private final static int TYPE_BIGINTEGER = 10;
+    private final static int TYPE_BIGDECIMAL = 11;
+
+    /**
+     * Classifies a coercion target, primitive types mapping to the same rule
+     * as their wrapper. Identity comparisons are cheaper here than a map
+     * lookup, so the most frequent targets are tested first.
+     */
+    private final static int typeOf(final Class type) {
+        if (type == String.class) {
+            return TYPE_STRING;
+        }
+        if (type == Long.class || type == Long.TYPE) {
+            return TYPE_LONG;
+        }
+        if (type == Integer.class || type == Integer.TYPE) {
+            return TYPE_INTEGER;
+        }
+        if (type == Boolean.class || type == Boolean.TYPE) {
+            return TYPE_BOOLEAN;
+        }
+        if (type == Double.class || type == Double.TYPE) {
+            return TYPE_DOUBLE;
+        }
+        if (type == BigDecimal.class) {
+            return TYPE_BIGDECIMAL;
+        }
+        if (type == BigInteger.class) {
+            return TYPE_BIGINTEGER;
+        }
+        if (type == Character.class || type == Character.TYPE) {
+            return TYPE_CHARACTER;
+        }
+        if (type == Float.class || type == Float.TYPE) {
+            return TYPE_FLOAT;
+        }
+        if (type == Short.class || type == Short.TYPE) {
+            return TYPE_SHORT;
+        }
+        if (type == Byte.class || type == Byte.TYPE) {
+            return TYPE_BYTE;
+        }
+        return TYPE_OTHER;
+    }
+
     public final static void throwUnhandled(Object base, Object property)
             throws ELException {
         if (base == null) {
@@ -210,16 +265,19 @@ public class ELSupport {
 
     protected final static Number coerceToNumber(final Number number,
             final Class type) throws IllegalArgumentException {
-        if (Long.TYPE == type || Long.class.equals(type)) {
-            return new Long(number.longValue());
+        int target = typeOf(type);
+        if (target != TYPE_OTHER && typeOf(number.getClass()) == target) {
+            // Already a wrapper of the right type
+            return number;
         }
-        if (Double.TYPE == type || Double.class.equals(type)) {
+        switch (target) {
+        case TYPE_LONG:
+            return new Long(number.longValue());
+        case TYPE_DOUBLE:
             return new Double(number.doubleValue());
-        }
-        if (Integer.TYPE == type || Integer.class.equals(type)) {
+        case TYPE_INTEGER:
             return new Integer(number.intValue());
-        }
-        if (BigInteger.class.equals(type)) {
+        case TYPE_BIGINTEGER:
             if (number instanceof BigDecimal) {
                 return ((BigDecimal) number).toBigInteger();
             }
@@ -227,8 +285,7 @@ public class ELSupport {
                 return number;
             }
             return BigInteger.valueOf(number.longValue());
-        }
-        if (BigDecimal.class.equals(type)) {
+        case TYPE_BIGDECIMAL:
             if (number instanceof BigDecimal) {
                 return number;
             }
@@ -236,14 +293,11 @@ public class ELSupport {
                 return new BigDecimal((BigInteger) number);
             }
             return new BigDecimal(number.doubleValue());
-        }
-        if (Byte.TYPE == type || Byte.class.equals(type)) {
+        case TYPE_BYTE:
             return new Byte(number.byteValue());
-        }
-        if (Short.TYPE == type || Short.class.equals(type)) {
+        case TYPE_SHORT:
             return new Short(number.shortValue());
-        }
-        if (Float.TYPE == type || Float.class.equals(type)) {
+        case TYPE_FLOAT:
             return new Float(number.floatValue());
         }
 
@@ -340,22 +394,26 @@ public class ELSupport {
 
     public final static Object coerceToType(final Object obj, final Class type)
             throws IllegalArgumentException {
-        if (type == null || Object.class.equals(type) ||
-                (obj != null && type.isAssignableFrom(obj.getClass()))) {
+        if (type == null || Object.class == type ||
+                (obj != null && (obj.getClass() == type ||
+                        type.isAssignableFrom(obj.getClass())))) {
             return obj;
         }
-        if (String.class.equals(type)) {
+        switch (typeOf(type)) {
+        case TYPE_STRING:
             return coerceToString(obj);
+        case TYPE_BOOLEAN:
+            return coerceToBoolean(obj);
+        case TYPE_CHARACTER:
+            return coerceToCharacter(obj);
+        case TYPE_OTHER:
+            break;
+        default:
+            return coerceToNumber(obj, type);
         }
         if (ELArithmetic.isNumberType(type)) {
             return coerceToNumber(obj, type);
         }
-        if (Character.class.equals(type) || Character.TYPE == type) {
-            return coerceToCharacter(obj);
-        }
-        if (Boolean.class.equals(type) || Boolean.TYPE == type) {
-            return coerceToBoolean(obj);
-        }
         if (type.isEnum()) {
             return coerceToEnum(obj, type);
         }
@@ -50,7 +50,11 @@ import org.apache.el.util.MessageFactory;
  */
 public final class ExpressionBuilder implements NodeVisitor {
 
-    private static final ConcurrentCache<String, Node> cache = new ConcurrentCache<String, Node>(5000);
+    private static final int CACHE_SIZE =
+        Integer.valueOf(System.getProperty(
+                "org.apache.el.ExpressionBuilder.CACHE_SIZE", "5000")).intValue();
+
+    private static final ConcurrentCache<String, Node> cache = new ConcurrentCache<String, Node>(CACHE_SIZE);
 
     private FunctionMapper fnMapper;
 
@@ -76,6 +80,25 @@ public final class ExpressionBuilder implements NodeVisitor {
         }
     }
 
+    /**
+     * Statistics of the parsed expression cache, for monitoring purposes.
+     */
+    public static int getCacheSize() {
+        return cache.size();
+    }
+
+    public static long getCacheHitCount() {
+        return cache.getHitCount();
+    }
+
+    public static long getCacheMissCount() {
+        return cache.getMissCount();
+    }
+
+    public static long getCacheEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
     public final static Node createNode(String expr) throws ELException {
         Node n = createNodeInternal(expr);
         return n;
@@ -18,8 +18,13 @@
 
 package org.apache.el.parser;
 
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
 
 import javax.el.ELException;
 import javax.el.ELResolver;
@@ -42,12 +47,50 @@ public final class AstValue extends SimpleNode {
         Boolean.valueOf(System.getProperty(
                 "org.apache.el.parser.COERCE_TO_ZERO", "true")).booleanValue();
     
+    /**
+     * When enabled, the read method a <code>.property</code> suffix resolved
+     * to is remembered and called directly the next time the base has the
+     * same class, instead of going through the whole ELResolver chain. This
+     * assumes that no application supplied ELResolver intercepts properties
+     * of plain beans.
+     */
+    protected static final boolean INLINE_PROPERTY_ACCESS =
+        Boolean.valueOf(System.getProperty(
+                "org.apache.el.parser.INLINE_PROPERTY_ACCESS", "false")).booleanValue();
+    
     protected static class Target {
         protected Object base;
 
         protected Object property;
     }
 
+    /**
+     * Read method cached for one property suffix, guarded by the class of
+     * the base it was resolved against. Parsed expressions are shared between
+     * web applications, so the class is only weakly referenced and the
+     * method, which refers to its class, is softly referenced: it survives
+     * ordinary collections but does not keep a web application loaded.
+     */
+    private static final class Accessor {
+        private final WeakReference<Class<?>> type;
+
+        private final SoftReference<Method> read;
+
+        private Accessor(Class<?> type, Method read) {
+            this.type = new WeakReference<Class<?>>(type);
+            this.read = new SoftReference<Method>(read);
+        }
+
+        private Method getReadMethod(Class<?> type) {
+            if (this.type.get() != type) {
+                return null;
+            }
+            return this.read.get();
+        }
+    }
+
+    private volatile Accessor[] accessors;
+
     public AstValue(int id) {
         super(id);
     }
@@ -104,6 +147,11 @@ public final class AstValue extends SimpleNode {
     }
 
     public Object getValue(EvaluationContext ctx) throws ELException {
+        return getValue(ctx, INLINE_PROPERTY_ACCESS);
+    }
+
+    Object getValue(EvaluationContext ctx, boolean inline)
+            throws ELException {
         Object base = this.children[0].getValue(ctx);
         int propCount = this.jjtGetNumChildren();
         int i = 1;
@@ -115,13 +163,53 @@ public final class AstValue extends SimpleNode {
                 return null;
             } else {
                 ctx.setPropertyResolved(false);
-                base = resolver.getValue(ctx, base, property);
+                if (inline && this.children[i] instanceof AstDotSuffix) {
+                    base = getValueInline(ctx, resolver, base, property, i);
+                } else {
+                    base = resolver.getValue(ctx, base, property);
+                }
             }
             i++;
         }
         return base;
     }
 
+    private Object getValueInline(EvaluationContext ctx, ELResolver resolver,
+            Object base, Object property, int index) throws ELException {
+        Accessor[] accessors = this.accessors;
+        if (accessors == null) {
+            accessors = new Accessor[this.jjtGetNumChildren()];
+            this.accessors = accessors;
+        }
+        Class<?> type = base.getClass();
+        Accessor accessor = accessors[index];
+        if (accessor != null) {
+            Method m = accessor.getReadMethod(type);
+            if (m != null) {
+                ctx.setPropertyResolved(true);
+                try {
+                    return m.invoke(base, (Object[]) null);
+                } catch (IllegalAccessException iae) {
+                    throw new ELException(iae);
+                } catch (InvocationTargetException ite) {
+                    throw new ELException(ite.getCause());
+                }
+            }
+        }
+
+        // Guard failed or first evaluation, use the resolver chain
+        Object value = resolver.getValue(ctx, base, property);
+        if (ctx.isPropertyResolved() && !(base instanceof Map)
+                && !(base instanceof List) && !(base instanceof ResourceBundle)
+                && !type.isArray()) {
+            Method m = ReflectionUtil.getReadMethod(type, property.toString());
+            if (m != null) {
+                accessors[index] = new Accessor(type, m);
+            }
+        }
+        return value;
+    }
+
     public boolean isReadOnly(EvaluationContext ctx) throws ELException {
         Target t = getTarget(ctx);
         ctx.setPropertyResolved(false);
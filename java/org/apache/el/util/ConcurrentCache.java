@@ -19,37 +19,103 @@ package org.apache.el.util;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Size bounded cache that does not lock on reads of recently used entries.
+ * Entries are first placed in the eden generation. When eden is full it
+ * becomes the survivor generation and the previous survivors are dropped,
+ * unless they have been used since and promoted back to eden. At most twice
+ * <code>size</code> entries are kept.
+ * <p>
+ * The survivors are held in a {@link WeakHashMap}, so that an entry whose
+ * key is no longer used elsewhere, such as an expression of a web
+ * application which has been undeployed, is released without waiting for
+ * eden to fill up.
+ */
 public final class ConcurrentCache<K,V> {
 
     private final int size;
 
-    private final Map<K,V> eden;
+    private volatile Map<K,V> eden;
+
+    private volatile Map<K,V> survivor;
+
+    private final AtomicLong hitCount = new AtomicLong(0);
+
+    private final AtomicLong missCount = new AtomicLong(0);
 
-    private final Map<K,V> longterm;
+    private final AtomicLong evictionCount = new AtomicLong(0);
 
     public ConcurrentCache(int size) {
         this.size = size;
         this.eden = new ConcurrentHashMap<K,V>(size);
-        this.longterm = new WeakHashMap<K,V>(size);
+        this.survivor = new WeakHashMap<K,V>(size);
     }
 
     public V get(K k) {
         V v = this.eden.get(k);
         if (v == null) {
-            v = this.longterm.get(k);
-            if (v != null) {
-                this.eden.put(k, v);
+            Map<K,V> survivor = this.survivor;
+            synchronized (survivor) {
+                v = survivor.get(k);
             }
+            if (v == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            put(k, v);
         }
+        hitCount.incrementAndGet();
         return v;
     }
 
     public void put(K k, V v) {
-        if (this.eden.size() >= size) {
-            this.longterm.putAll(this.eden);
-            this.eden.clear();
+        Map<K,V> eden = this.eden;
+        if (eden.size() >= size) {
+            synchronized (this) {
+                if (this.eden == eden) {
+                    Map<K,V> survivor = this.survivor;
+                    synchronized (survivor) {
+                        // Survivors promoted back to eden are kept
+                        int evicted = 0;
+                        for (K key : survivor.keySet()) {
+                            if (!eden.containsKey(key)) {
+                                evicted++;
+                            }
+                        }
+                        evictionCount.addAndGet(evicted);
+                    }
+                    this.survivor = new WeakHashMap<K,V>(eden);
+                    eden = new ConcurrentHashMap<K,V>(size);
+                    this.eden = eden;
+                } else {
+                    eden = this.eden;
+                }
+            }
         }
-        this.eden.put(k, v);
+        eden.put(k, v);
+    }
+
+    /**
+     * Approximate number of entries currently cached.
+     */
+    public int size() {
+        Map<K,V> survivor = this.survivor;
+        synchronized (survivor) {
+            return this.eden.size() + survivor.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
     }
 }
@@ -21,6 +21,7 @@ import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 
 import javax.el.ELException;
@@ -181,4 +182,56 @@ public class ReflectionUtil {
         throw new PropertyNotFoundException(MessageFactory.get(
                 "error.property.notfound", base, name));
     }
+
+    /**
+     * Returns the public read method of the named property, looked up the
+     * same way BeanELResolver does.
+     * @param type the class that owns the property
+     * @param name the name of the property
+     * @return the read method, or <code>null</code> if the property does not
+     *         exist or cannot be read through a public method
+     */
+    public static Method getReadMethod(Class<?> type, String name) {
+        try {
+            PropertyDescriptor[] desc = Introspector.getBeanInfo(type)
+                    .getPropertyDescriptors();
+            for (int i = 0; i < desc.length; i++) {
+                if (desc[i].getName().equals(name)) {
+                    return getPublicMethod(type, desc[i].getReadMethod());
+                }
+            }
+        } catch (IntrospectionException ie) {
+            // Fall through
+        }
+        return null;
+    }
+
+    private static Method getPublicMethod(Class<?> type, Method m) {
+        if (m == null || Modifier.isPublic(type.getModifiers())) {
+            return m;
+        }
+        Class<?>[] inf = type.getInterfaces();
+        Method mp = null;
+        for (int i = 0; i < inf.length; i++) {
+            try {
+                mp = inf[i].getMethod(m.getName(), m.getParameterTypes());
+                mp = getPublicMethod(mp.getDeclaringClass(), mp);
+                if (mp != null) {
+                    return mp;
+                }
+            } catch (NoSuchMethodException e) {
+                // Try the next one
+            }
+        }
+        Class<?> sup = type.getSuperclass();
+        if (sup != null) {
+            try {
+                mp = sup.getMethod(m.getName(), m.getParameterTypes());
+                return getPublicMethod(mp.getDeclaringClass(), mp);
+            } catch (NoSuchMethodException e) {
+                // Not accessible
+            }
+        }
+        return null;
+    }
 }
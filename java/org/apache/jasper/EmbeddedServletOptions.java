@@ -102,6 +102,12 @@ public final class EmbeddedServletOptions implements Options {
      */
     private boolean genStringAsCharArray = false;
     
+    /**
+     * Number of top level nodes generated into each helper method, zero if
+     * all are generated into _jspService.
+     */
+    private int pageChunkSize = 0;
+    
     private boolean errorOnUseBeanInvalidClassAttribute = true;
     
     /**
@@ -273,6 +279,13 @@ public final class EmbeddedServletOptions implements Options {
         return this.genStringAsCharArray;
     }
     
+    /**
+     * Number of top level nodes generated into each helper method.
+     */
+    public int getPageChunkSize() {
+        return this.pageChunkSize;
+    }
+    
     /**
      * Class ID for use in the plugin tag when the browser is IE. 
      */
@@ -548,6 +561,17 @@ public final class EmbeddedServletOptions implements Options {
             }
         }
         
+        String chunkSize = config.getInitParameter("pageChunkSize");
+        if (chunkSize != null) {
+            try {
+                pageChunkSize = Integer.parseInt(chunkSize);
+            } catch (NumberFormatException ex) {
+                if (log.isWarnEnabled()) {
+                    log.warn(Localizer.getMessage("jsp.warning.pageChunkSize"));
+                }
+            }
+        }
+        
         String errBeanClass =
             config.getInitParameter("errorOnUseBeanInvalidClassAttribute");
         if (errBeanClass != null) {
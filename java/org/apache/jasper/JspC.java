@@ -141,6 +141,7 @@ public class JspC implements Options {
     protected URLClassLoader loader = null;
     protected boolean trimSpaces = false;
     protected boolean genStringAsCharArray = false;
+    protected int pageChunkSize = 0;
     protected boolean xpoweredBy;
     protected boolean mappedFile = false;
     protected boolean poolingEnabled = true;
@@ -524,6 +525,25 @@ public class JspC implements Options {
         return genStringAsCharArray;
     }
 
+    /**
+     * Sets the maximum number of consecutive top level template text, EL
+     * expression and scriptless custom tag nodes generated into a helper
+     * method rather than into _jspService.
+     *
+     * @param pageChunkSize number of nodes per helper method, zero to
+     * generate everything into _jspService
+     */
+    public void setPageChunkSize(int pageChunkSize) {
+        this.pageChunkSize = pageChunkSize;
+    }
+
+    /**
+     * @see Options#getPageChunkSize()
+     */
+    public int getPageChunkSize() {
+        return pageChunkSize;
+    }
+
     /**
      * Sets the class-id value to be sent to Internet Explorer when using
      * <jsp:plugin> tags.
@@ -179,6 +179,17 @@ public interface Options {
      * Are Text strings to be generated as char arrays?
      */
     public boolean genStringAsCharArray();
+
+    /**
+     * Maximum number of consecutive top level template text, EL expression
+     * and scriptless custom tag nodes generated into a helper method rather
+     * than into _jspService. Zero disables the helper methods.
+     * <p>
+     * This method was added to an existing interface: classes implementing
+     * Options outside of Jasper no longer compile until they provide it, and
+     * fail with an AbstractMethodError if they were compiled before it.
+     */
+    public int getPageChunkSize();
     
     /**
      * Modification test interval.
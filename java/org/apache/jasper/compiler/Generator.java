@@ -764,6 +764,8 @@ class Generator {
 
         private HashMap textMap;
 
+        private int pageChunkCount;
+
         /**
          * Constructor.
          */
@@ -1660,6 +1662,120 @@ class Generator {
             // Don't visit body of this tag - we already did earlier.
         }
 
+        public void visit(Node.Root n) throws JasperException {
+            if (n.getParent() == null) {
+                visitPageBody(n);
+            } else {
+                visitBody(n);
+            }
+        }
+
+        public void visit(Node.JspRoot n) throws JasperException {
+            if (n.getParent() != null && n.getParent().getParent() == null) {
+                visitPageBody(n);
+            } else {
+                visitBody(n);
+            }
+        }
+
+        /**
+         * Visit the top level nodes of the page. If the pageChunkSize option
+         * is set, runs of nodes that do not depend on any local variable of
+         * _jspService are generated into separate methods, to keep the
+         * service method of large pages below the JVM method size limit and
+         * the JIT compilation thresholds.
+         */
+        private void visitPageBody(Node n) throws JasperException {
+            Node.Nodes body = n.getBody();
+            int chunkSize = ctxt.getOptions().getPageChunkSize();
+            if (body == null || chunkSize <= 0 || isTagFile
+                    || methodNesting > 0) {
+                visitBody(n);
+                return;
+            }
+
+            int size = body.size();
+            int start = 0;
+            while (start < size) {
+                int end = start;
+                while (end < size && end - start < chunkSize
+                        && isChunkable(body.getNode(end))) {
+                    end++;
+                }
+                if (end - start > 1) {
+                    generatePageChunk(body, start, end);
+                    start = end;
+                } else {
+                    body.getNode(start).accept(this);
+                    start++;
+                }
+            }
+        }
+
+        /**
+         * Can this top level node be generated outside of _jspService? Only
+         * template text, EL expressions and custom tags that are already
+         * generated into their own method qualify.
+         */
+        private boolean isChunkable(Node n) {
+            if (n instanceof Node.TemplateText
+                    || n instanceof Node.ELExpression) {
+                return true;
+            }
+            if (n instanceof Node.CustomTag) {
+                Node.CustomTag tag = (Node.CustomTag) n;
+                Node.ChildInfo ci = tag.getChildInfo();
+                return !tag.useTagPlugin() && ci.isScriptless()
+                        && !ci.hasScriptingVars();
+            }
+            return false;
+        }
+
+        private void generatePageChunk(Node.Nodes body, int start, int end)
+                throws JasperException {
+
+            String chunkMethod = "_jspx_chunk_" + pageChunkCount++;
+
+            // Generate a call to the chunk method
+            out.printil("if (" + chunkMethod + "(_jspx_page_context))");
+            out.pushIndent();
+            out.printil("return;");
+            out.popIndent();
+
+            Node.Nodes chunk = new Node.Nodes();
+            for (int i = start; i < end; i++) {
+                chunk.add(body.getNode(i));
+            }
+
+            // Set up new buffer for the method
+            ServletWriter outSave = out;
+            GenBuffer genBuffer = new GenBuffer(null, chunk);
+            methodsBuffered.add(genBuffer);
+            out = genBuffer.getOut();
+
+            methodNesting++;
+            out.println();
+            out.pushIndent();
+            out.printin("private boolean ");
+            out.print(chunkMethod);
+            out.println("(PageContext _jspx_page_context)");
+            out.printil("        throws Throwable {");
+            out.pushIndent();
+            out.printil("PageContext pageContext = _jspx_page_context;");
+            out.printil("JspWriter out = _jspx_page_context.getOut();");
+
+            chunk.visit(this);
+
+            out.printil("return false;");
+            out.popIndent();
+            out.printil("}");
+            out.popIndent();
+            methodNesting--;
+
+            // restore previous writer
+            out = outSave;
+        }
+
         public void visit(Node.CustomTag n) throws JasperException {
 
             // Use plugin to generate more efficient code if there is one.
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jasper.runtime;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jasper.Constants;
+
+/**
+ * Shared pool of the <code>char[]</code> buffers used by
+ * {@link BodyContentImpl}.
+ *
+ * <p>Buffers are grouped in size classes that are power of two multiples of
+ * {@link Constants#DEFAULT_TAG_BUFFER_SIZE}. Buffers larger than
+ * <code>MAX_POOLED_SIZE</code> are never pooled, so that a single page with
+ * an unusually large tag body does not keep a large array alive on the heap.
+ */
+public final class BodyContentBufferPool {
+
+    private static final boolean USE_POOL =
+        Boolean.valueOf(System.getProperty("org.apache.jasper.runtime.BodyContentBufferPool.USE_POOL", "true")).booleanValue();
+    private static final int POOL_SIZE =
+        Integer.valueOf(System.getProperty("org.apache.jasper.runtime.BodyContentBufferPool.POOL_SIZE", "32")).intValue();
+    private static final int MAX_POOLED_SIZE =
+        Integer.valueOf(System.getProperty("org.apache.jasper.runtime.BodyContentBufferPool.MAX_POOLED_SIZE", "65536")).intValue();
+
+    private static final int MIN_SIZE = Constants.DEFAULT_TAG_BUFFER_SIZE;
+
+    private static final int SIZE_CLASSES = sizeClass(MAX_POOLED_SIZE) + 1;
+
+    private static final ConcurrentLinkedQueue<char[]>[] buffers;
+    private static final AtomicInteger[] counts;
+
+    static {
+        buffers = new ConcurrentLinkedQueue[SIZE_CLASSES];
+        counts = new AtomicInteger[SIZE_CLASSES];
+        for (int i = 0; i < SIZE_CLASSES; i++) {
+            buffers[i] = new ConcurrentLinkedQueue<char[]>();
+            counts[i] = new AtomicInteger(0);
+        }
+    }
+
+    // Statistics
+    private static final AtomicLong allocated = new AtomicLong(0);
+    private static final AtomicLong reused = new AtomicLong(0);
+    private static final AtomicLong returned = new AtomicLong(0);
+    private static final AtomicLong discarded = new AtomicLong(0);
+
+
+    private BodyContentBufferPool() {
+    }
+
+
+    /**
+     * Obtain a buffer able to hold at least <code>size</code> characters.
+     * The returned buffer may be larger than requested, and its content is
+     * undefined.
+     */
+    public static char[] allocate(int size) {
+        if (size < MIN_SIZE) {
+            size = MIN_SIZE;
+        }
+        if (!USE_POOL || size > MAX_POOLED_SIZE) {
+            allocated.incrementAndGet();
+            return new char[size];
+        }
+        int sizeClass = sizeClass(size);
+        char[] buf = buffers[sizeClass].poll();
+        if (buf != null) {
+            counts[sizeClass].decrementAndGet();
+            reused.incrementAndGet();
+            return buf;
+        }
+        allocated.incrementAndGet();
+        return new char[MIN_SIZE << sizeClass];
+    }
+
+
+    /**
+     * Give a buffer back to the pool. The caller must not use the buffer
+     * afterwards. Buffers that do not belong to a size class, that are above
+     * the trim threshold or that do not fit into a full pool are dropped.
+     */
+    public static void release(char[] buf) {
+        if (buf == null) {
+            return;
+        }
+        int length = buf.length;
+        if (!USE_POOL || length > MAX_POOLED_SIZE || length < MIN_SIZE) {
+            discarded.incrementAndGet();
+            return;
+        }
+        int sizeClass = sizeClass(length);
+        if ((MIN_SIZE << sizeClass) != length) {
+            discarded.incrementAndGet();
+            return;
+        }
+        if (counts[sizeClass].incrementAndGet() > POOL_SIZE) {
+            counts[sizeClass].decrementAndGet();
+            discarded.incrementAndGet();
+            return;
+        }
+        buffers[sizeClass].offer(buf);
+        returned.incrementAndGet();
+    }
+
+
+    /**
+     * Number of buffers that had to be allocated.
+     */
+    public static long getAllocatedCount() {
+        return allocated.get();
+    }
+
+
+    /**
+     * Number of buffers that were served from the pool.
+     */
+    public static long getReusedCount() {
+        return reused.get();
+    }
+
+
+    /**
+     * Number of buffers that were given back to the pool.
+     */
+    public static long getReturnedCount() {
+        return returned.get();
+    }
+
+
+    /**
+     * Number of buffers that were dropped rather than pooled.
+     */
+    public static long getDiscardedCount() {
+        return discarded.get();
+    }
+
+
+    /**
+     * Index of the smallest size class able to hold <code>size</code>
+     * characters.
+     */
+    private static int sizeClass(int size) {
+        int sizeClass = 0;
+        while (sizeClass < 30 && (MIN_SIZE << sizeClass) < size) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+}
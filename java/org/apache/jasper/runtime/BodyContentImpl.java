@@ -56,8 +56,8 @@ public class BodyContentImpl extends BodyContent {
      */
     public BodyContentImpl(JspWriter enclosingWriter) {
         super(enclosingWriter);
-        bufferSize = Constants.DEFAULT_TAG_BUFFER_SIZE;
-        cb = new char[bufferSize];
+        cb = BodyContentBufferPool.allocate(Constants.DEFAULT_TAG_BUFFER_SIZE);
+        bufferSize = cb.length;
         nextChar = 0;
         closed = false;
     }
@@ -469,8 +469,9 @@ public class BodyContentImpl extends BodyContent {
         } else {
             nextChar = 0;
             if (LIMIT_BUFFER && (cb.length > Constants.DEFAULT_TAG_BUFFER_SIZE)) {
-                bufferSize = Constants.DEFAULT_TAG_BUFFER_SIZE;
-                cb = new char[bufferSize];
+                BodyContentBufferPool.release(cb);
+                cb = BodyContentBufferPool.allocate(Constants.DEFAULT_TAG_BUFFER_SIZE);
+                bufferSize = cb.length;
             }
         }
     }
@@ -569,10 +570,26 @@ public class BodyContentImpl extends BodyContent {
         this.writer = writer;
         closed = false;
         if (writer == null) {
+            if (cb == null) {
+                cb = BodyContentBufferPool.allocate(Constants.DEFAULT_TAG_BUFFER_SIZE);
+                bufferSize = cb.length;
+            }
             clearBody();
         }
     }
     
+    /**
+     * Gives the buffer back to the {@link BodyContentBufferPool}. A new
+     * buffer will be obtained the next time this body content is pushed.
+     */
+    void recycle() {
+        writer = null;
+        nextChar = 0;
+        BodyContentBufferPool.release(cb);
+        cb = null;
+        bufferSize = 0;
+    }
+    
     private void ensureOpen() throws IOException {
         if (closed) throw new IOException("Stream closed");
     }
@@ -591,10 +608,11 @@ public class BodyContentImpl extends BodyContent {
             len = cb.length;
         }
         
-        bufferSize = cb.length + len;
-        char[] tmp = new char[bufferSize];
+        char[] tmp = BodyContentBufferPool.allocate(cb.length + len);
+        bufferSize = tmp.length;
         
-        System.arraycopy(cb, 0, tmp, 0, cb.length);
+        System.arraycopy(cb, 0, tmp, 0, nextChar);
+        BodyContentBufferPool.release(cb);
         cb = tmp;
         tmp = null;
         
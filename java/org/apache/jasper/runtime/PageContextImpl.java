@@ -200,6 +200,9 @@ public class PageContextImpl extends PageContext {
 		    request = null;
 		    response = null;
 		    depth = -1;
+		    for (int i = 0; i < outs.length; i++) {
+		        outs[i].recycle();
+		    }
 		    baseOut.recycle();
 		    session = null;
 		    attributes.clear();
@@ -30,11 +30,13 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.PeriodicEventListener;
 
+import org.apache.el.lang.ExpressionBuilder;
 import org.apache.jasper.Constants;
 import org.apache.jasper.EmbeddedServletOptions;
 import org.apache.jasper.Options;
 import org.apache.jasper.compiler.JspRuntimeContext;
 import org.apache.jasper.compiler.Localizer;
+import org.apache.jasper.runtime.BodyContentBufferPool;
 import org.apache.jasper.security.SecurityUtil;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
@@ -147,6 +149,98 @@ public class JspServlet extends HttpServlet implements PeriodicEventListener {
     }
 
 
+    /**
+     * Gets the number of body content buffers that had to be allocated
+     * because none of the right size was available in the pool.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of body content buffers allocated
+     */
+    public long getBodyContentBufferAllocatedCount() {
+        return BodyContentBufferPool.getAllocatedCount();
+    }
+
+
+    /**
+     * Gets the number of body content buffers that were served from the
+     * pool.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of body content buffers reused
+     */
+    public long getBodyContentBufferReusedCount() {
+        return BodyContentBufferPool.getReusedCount();
+    }
+
+
+    /**
+     * Gets the number of body content buffers that were dropped rather than
+     * returned to the pool, either because they were larger than the trim
+     * threshold or because the pool was full.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of body content buffers discarded
+     */
+    public long getBodyContentBufferDiscardedCount() {
+        return BodyContentBufferPool.getDiscardedCount();
+    }
+
+
+    /**
+     * Gets the number of parsed EL expressions currently cached. The cache
+     * is shared by all the web applications using the same EL
+     * implementation.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of cached EL expressions
+     */
+    public int getExpressionCacheSize() {
+        return ExpressionBuilder.getCacheSize();
+    }
+
+
+    /**
+     * Gets the number of EL expressions found in the parsed expression cache.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of expression cache hits
+     */
+    public long getExpressionCacheHitCount() {
+        return ExpressionBuilder.getCacheHitCount();
+    }
+
+
+    /**
+     * Gets the number of EL expressions that had to be parsed because they
+     * were not found in the parsed expression cache.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of expression cache misses
+     */
+    public long getExpressionCacheMissCount() {
+        return ExpressionBuilder.getCacheMissCount();
+    }
+
+
+    /**
+     * Gets the number of parsed EL expressions dropped from the cache to
+     * keep it within its size limit.
+     *
+     * <p>This info may be used for monitoring purposes.
+     *
+     * @return The number of expression cache evictions
+     */
+    public long getExpressionCacheEvictionCount() {
+        return ExpressionBuilder.getCacheEvictionCount();
+    }
+
+
     /**
      * <p>Look for a <em>precompilation request</em> as described in
      * Section 8.4.2 of the JSP 1.2 Specification.  <strong>WARNING</strong> -
@@ -19,6 +19,8 @@
 package org.apache.naming;
 
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles the access control on the JNDI contexts.
@@ -36,7 +38,7 @@ public class ContextAccessController {
     /**
      * Catalina context names on which writing is not allowed.
      */
-    private static Hashtable readOnlyContexts = new Hashtable();
+    private static Map readOnlyContexts = new ConcurrentHashMap();
 
 
     /**
@@ -111,7 +113,7 @@ public class ContextAccessController {
      * @param name Name of the context
      */
     public static void setReadOnly(Object name) {
-        readOnlyContexts.put(name, name);
+        readOnlyContexts.put(name, new Object());
     }
 
 
@@ -125,5 +127,19 @@ public class ContextAccessController {
     }
 
 
+    /**
+     * Returns a token identifying the period during which a context has been
+     * read only, or <code>null</code> if the context is writable. A new
+     * token is used each time the context is set read only, so that what was
+     * computed from the bindings of a context while it was read only may be
+     * kept as long as the token is the same.
+     * 
+     * @param name Name of the context
+     */
+    public static Object getReadOnlyToken(Object name) {
+        return readOnlyContexts.get(name);
+    }
+
+
 }
 
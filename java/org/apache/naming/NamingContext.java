@@ -21,6 +21,7 @@ package org.apache.naming;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.naming.Context;
 import javax.naming.Name;
 import javax.naming.LinkRef;
@@ -119,6 +120,12 @@ public class NamingContext implements Context {
     protected String name;
 
 
+    /**
+     * Results of the lookups by name made while the context is read only.
+     */
+    protected volatile LookupCache lookupCache = null;
+
+
     // --------------------------------------------------------- Public Methods
 
 
@@ -150,7 +157,29 @@ public class NamingContext implements Context {
      */
     public Object lookup(String name)
         throws NamingException {
-        return lookup(new CompositeName(name), true);
+
+        // The bindings can only change while the context is writable
+        Object token = ContextAccessController.getReadOnlyToken(this.name);
+        if (token == null) {
+            return lookup(new CompositeName(name), true);
+        }
+
+        LookupCache cache = lookupCache;
+        if ((cache == null) || (cache.token != token)) {
+            cache = new LookupCache(token);
+            lookupCache = cache;
+        }
+        Object result = cache.entries.get(name);
+        if (result != null) {
+            return result;
+        }
+        Name compositeName = new CompositeName(name);
+        result = lookup(compositeName, true);
+        if ((result != null) && isCacheable(compositeName)) {
+            cache.entries.put(name, result);
+        }
+        return result;
+
     }
 
 
@@ -886,6 +915,35 @@ public class NamingContext implements Context {
     }
 
 
+    /**
+     * Returns true if the lookup of the specified name, which has just been
+     * looked up, always returns the same object: the name must be bound to
+     * a plain object or to a context, or to a reference which has been
+     * resolved, rather than to a link.
+     */
+    protected boolean isCacheable(Name name) {
+        while ((!name.isEmpty()) && (name.get(0).length() == 0))
+            name = name.getSuffix(1);
+        if (name.isEmpty()) {
+            // A new context is returned each time
+            return false;
+        }
+        NamingEntry entry = (NamingEntry) bindings.get(name.get(0));
+        if (entry == null) {
+            return false;
+        }
+        if (name.size() > 1) {
+            if (entry.value instanceof NamingContext) {
+                return ((NamingContext) entry.value).isCacheable
+                    (name.getSuffix(1));
+            }
+            return false;
+        }
+        return (entry.type == NamingEntry.ENTRY)
+            || (entry.type == NamingEntry.CONTEXT);
+    }
+
+
     /**
      * Returns true if writing is allowed on this context.
      */
@@ -904,5 +962,23 @@ public class NamingContext implements Context {
     }
 
 
+
+    // -------------------------------------------------------- Private Classes
+
+
+    /**
+     * Lookup results, valid as long as the context stays read only with the
+     * same token.
+     */
+    protected static final class LookupCache {
+        final Object token;
+        final ConcurrentHashMap<String, Object> entries =
+            new ConcurrentHashMap<String, Object>();
+        LookupCache(Object token) {
+            this.token = token;
+        }
+    }
+
+
 }
 
@@ -26,7 +26,10 @@ import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -265,7 +268,7 @@ public final class IntrospectionUtils {
         String setter = "set" + capitalize(name);
 
         try {
-            Method methods[] = findMethods(o.getClass());
+            Method methods[] = findMethods(o.getClass(), setter);
             Method setPropertyMethodVoid = null;
             Method setPropertyMethodBool = null;
 
@@ -332,15 +335,15 @@ public final class IntrospectionUtils {
                         return true;
                     }
                 }
+            }
 
-                // save "setProperty" for later
-                if ("setProperty".equals(methods[i].getName())) {
-                    if (methods[i].getReturnType()==Boolean.TYPE){
-                        setPropertyMethodBool = methods[i];
-                    }else {
-                        setPropertyMethodVoid = methods[i];    
-                    }
-                    
+            // save "setProperty" for later
+            methods = findMethods(o.getClass(), "setProperty");
+            for (int i = 0; i < methods.length; i++) {
+                if (methods[i].getReturnType()==Boolean.TYPE){
+                    setPropertyMethodBool = methods[i];
+                }else {
+                    setPropertyMethodVoid = methods[i];    
                 }
             }
 
@@ -786,6 +789,7 @@ public final class IntrospectionUtils {
     // -------------------- other utils --------------------
     public static void clear() {
         objectMethods.clear();
+        objectMethodsByName.clear();
     }
     
     public static String[] findVoidSetters(Class c) {
@@ -840,8 +844,44 @@ public final class IntrospectionUtils {
         return methods;
     }
 
+    static Hashtable objectMethodsByName = new Hashtable();
+
+    private static final Method[] NO_METHODS = new Method[0];
+
+    /**
+     * Return the public methods of the specified class with the specified
+     * name, in the order returned by <code>findMethods(Class)</code>. The
+     * methods are indexed by name once per class, so that looking up a
+     * setter does not scan all the methods of the class.
+     */
+    public static Method[] findMethods(Class c, String name) {
+        HashMap byName = (HashMap) objectMethodsByName.get(c);
+        if (byName == null) {
+            Method methods[] = findMethods(c);
+            HashMap lists = new HashMap();
+            for (int i = 0; i < methods.length; i++) {
+                ArrayList list = (ArrayList) lists.get(methods[i].getName());
+                if (list == null) {
+                    list = new ArrayList();
+                    lists.put(methods[i].getName(), list);
+                }
+                list.add(methods[i]);
+            }
+            byName = new HashMap();
+            Iterator names = lists.keySet().iterator();
+            while (names.hasNext()) {
+                String methodName = (String) names.next();
+                ArrayList list = (ArrayList) lists.get(methodName);
+                byName.put(methodName, list.toArray(new Method[list.size()]));
+            }
+            objectMethodsByName.put(c, byName);
+        }
+        Method methods[] = (Method[]) byName.get(name);
+        return (methods == null) ? NO_METHODS : methods;
+    }
+
     public static Method findMethod(Class c, String name, Class params[]) {
-        Method methods[] = findMethods(c);
+        Method methods[] = findMethods(c, name);
         if (methods == null)
             return null;
         for (int i = 0; i < methods.length; i++) {
@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.tomcat.util;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Timeline of the phases of the startup of the server and of its components,
+ * such as the lifecycle listeners, the parsing of the configuration files,
+ * the TLD scans or the initialization of the servlets loaded on startup.
+ * <p>
+ * The timeline is only recorded when enabled with the <code>ENABLED</code>
+ * or <code>FILE</code> system properties. Recording a phase then costs a few
+ * timer reads and the allocation of an event, and the number of recorded
+ * events is bounded. The timeline can be exported in JSON, or in the trace
+ * event format of the Chrome trace viewer, and is written to a file once
+ * the server has started if the <code>FILE</code> system property is set.
+ */
+public final class StartupProfiler {
+
+
+    private static org.apache.juli.logging.Log log=
+        org.apache.juli.logging.LogFactory.getLog( StartupProfiler.class );
+
+
+    /**
+     * File the timeline is written to once the server has started, or
+     * <code>null</code>. The Chrome trace format is used, unless the name
+     * ends with <code>.json</code>.
+     */
+    public static final String FILE = System.getProperty(
+            "org.apache.tomcat.util.StartupProfiler.FILE");
+
+
+    /**
+     * Is the timeline recorded? By default, only if it is to be written
+     * to a file.
+     */
+    public static final boolean ENABLED = Boolean.valueOf(System.getProperty(
+            "org.apache.tomcat.util.StartupProfiler.ENABLED",
+            String.valueOf(FILE != null))).booleanValue();
+
+
+    /**
+     * Maximum number of recorded events. Later events are dropped.
+     */
+    public static final int MAX_EVENTS = Integer.parseInt(System.getProperty(
+            "org.apache.tomcat.util.StartupProfiler.MAX_EVENTS",
+            "10000"));
+
+
+    /**
+     * Origin of the event times, in nanoseconds and in milliseconds since
+     * the epoch.
+     */
+    private static final long originNanos = System.nanoTime();
+    private static final long originMillis = System.currentTimeMillis();
+
+
+    private static final ConcurrentLinkedQueue<Event> events =
+        new ConcurrentLinkedQueue<Event>();
+    private static final AtomicInteger eventCount = new AtomicInteger();
+
+
+    private StartupProfiler() {
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Return the start time of a phase, to be given to
+     * {@link #record(String, String, long, String)} once the phase is
+     * complete.
+     */
+    public static long begin() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+
+    /**
+     * Record a completed phase.
+     *
+     * @param component Name of the component the phase belongs to
+     * @param phase Name of the phase
+     * @param begin Start time of the phase, as returned by {@link #begin()}
+     * @param detail Additional information about the phase, or
+     *  <code>null</code>
+     */
+    public static void record(String component, String phase, long begin,
+            String detail) {
+        if (ENABLED) {
+            record(component, phase, begin, System.nanoTime() - begin, detail);
+        }
+    }
+
+
+    /**
+     * Record a phase of the specified duration. This also allows recording
+     * the total time spent in activities, such as class loading, which are
+     * spread over a longer phase.
+     *
+     * @param component Name of the component the phase belongs to
+     * @param phase Name of the phase
+     * @param begin Start time of the phase, as returned by {@link #begin()}
+     * @param duration Duration of the phase, in nanoseconds
+     * @param detail Additional information about the phase, or
+     *  <code>null</code>
+     */
+    public static void record(String component, String phase, long begin,
+            long duration, String detail) {
+        if (ENABLED) {
+            add(component, phase, begin - originNanos, duration, detail);
+        }
+    }
+
+
+    /**
+     * Discard the recorded events.
+     */
+    public static void clear() {
+        events.clear();
+        eventCount.set(0);
+    }
+
+
+    /**
+     * Return the timeline as a JSON array of events, ordered by start time.
+     * Times are in milliseconds, relative to the time the profiler was
+     * loaded, which is given by the <code>origin</code> property, in
+     * milliseconds since the epoch.
+     */
+    public static String toJSON() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\"origin\":").append(originMillis);
+        buf.append(",\"events\":[");
+        Event[] sorted = getEvents();
+        for (int i = 0; i < sorted.length; i++) {
+            Event event = sorted[i];
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append("\n{\"component\":");
+            quote(buf, event.component);
+            buf.append(",\"phase\":");
+            quote(buf, event.phase);
+            buf.append(",\"thread\":");
+            quote(buf, event.threadName);
+            buf.append(",\"start\":");
+            millis(buf, event.start);
+            buf.append(",\"duration\":");
+            millis(buf, event.duration);
+            if (event.detail != null) {
+                buf.append(",\"detail\":");
+                quote(buf, event.detail);
+            }
+            buf.append('}');
+        }
+        buf.append("\n]}\n");
+        return buf.toString();
+    }
+
+
+    /**
+     * Return the timeline in the trace event format of the Chrome trace
+     * viewer, with the components as categories.
+     */
+    public static String toChromeTrace() {
+        StringBuilder buf = new StringBuilder();
+        buf.append("{\"traceEvents\":[");
+        Event[] sorted = getEvents();
+        Map<Long, String> threads = new HashMap<Long, String>();
+        for (int i = 0; i < sorted.length; i++) {
+            Event event = sorted[i];
+            threads.put(Long.valueOf(event.threadId), event.threadName);
+            if (i > 0) {
+                buf.append(',');
+            }
+            buf.append("\n{\"name\":");
+            quote(buf, event.phase);
+            buf.append(",\"cat\":");
+            quote(buf, event.component);
+            buf.append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(event.threadId);
+            buf.append(",\"ts\":").append(event.start / 1000);
+            buf.append(",\"dur\":").append(event.duration / 1000);
+            buf.append(",\"args\":{\"component\":");
+            quote(buf, event.component);
+            if (event.detail != null) {
+                buf.append(",\"detail\":");
+                quote(buf, event.detail);
+            }
+            buf.append("}}");
+        }
+        Iterator<Map.Entry<Long, String>> iterator =
+            threads.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, String> entry = iterator.next();
+            if (buf.charAt(buf.length() - 1) != '[') {
+                buf.append(',');
+            }
+            buf.append("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            buf.append(entry.getKey()).append(",\"args\":{\"name\":");
+            quote(buf, entry.getValue());
+            buf.append("}}");
+        }
+        buf.append("\n]}\n");
+        return buf.toString();
+    }
+
+
+    /**
+     * Write the timeline to the file given by the <code>FILE</code> system
+     * property, if it is set.
+     */
+    public static void export() {
+        if (!ENABLED || FILE == null) {
+            return;
+        }
+        File file = new File(FILE);
+        if (!file.isAbsolute()) {
+            file = new File(System.getProperty("catalina.base"), FILE);
+        }
+        String content = FILE.toLowerCase().endsWith(".json")
+            ? toJSON() : toChromeTrace();
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(content);
+        } catch (IOException e) {
+            log.warn("Error writing the startup timeline to " + file, e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+
+    // ------------------------------------------------------ Package Methods
+
+
+    /**
+     * Add an event of the current thread, unless <code>MAX_EVENTS</code>
+     * events have been recorded already.
+     *
+     * @param start Start time of the event, in nanoseconds since the
+     *  profiler was loaded
+     */
+    static void add(String component, String phase, long start,
+            long duration, String detail) {
+        int count;
+        do {
+            count = eventCount.get();
+            if (count >= MAX_EVENTS) {
+                return;
+            }
+        } while (!eventCount.compareAndSet(count, count + 1));
+        Thread thread = Thread.currentThread();
+        events.add(new Event(component, phase, start, duration,
+                thread.getId(), thread.getName(), detail));
+    }
+
+
+    /**
+     * Return the recorded events, ordered by start time.
+     */
+    static Event[] getEvents() {
+        Event[] result = events.toArray(new Event[0]);
+        Arrays.sort(result);
+        return result;
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private static void millis(StringBuilder buf, long nanos) {
+        buf.append(nanos / 1000000).append('.');
+        long fraction = (nanos / 1000) % 1000;
+        if (fraction < 100) {
+            buf.append('0');
+        }
+        if (fraction < 10) {
+            buf.append('0');
+        }
+        buf.append(fraction);
+    }
+
+
+    private static void quote(StringBuilder buf, String value) {
+        if (value == null) {
+            buf.append("null");
+            return;
+        }
+        buf.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            } else if (c < 0x20) {
+                buf.append("\\u00");
+                buf.append(Character.forDigit(c >> 4, 16));
+                buf.append(Character.forDigit(c & 0xf, 16));
+            } else {
+                buf.append(c);
+            }
+        }
+        buf.append('"');
+    }
+
+
+    // -------------------------------------------------------- Private Classes
+
+
+    static final class Event implements Comparable<Event> {
+        final String component;
+        final String phase;
+        final long start;
+        final long duration;
+        final long threadId;
+        final String threadName;
+        final String detail;
+
+        Event(String component, String phase, long start, long duration,
+                long threadId, String threadName, String detail) {
+            this.component = component;
+            this.phase = phase;
+            this.start = start;
+            this.duration = duration;
+            this.threadId = threadId;
+            this.threadName = threadName;
+            this.detail = detail;
+        }
+
+        public int compareTo(Event other) {
+            return (start < other.start) ? -1
+                : ((start == other.start) ? 0 : 1);
+        }
+    }
+
+}
@@ -39,6 +39,7 @@ import javax.xml.parsers.SAXParserFactory;
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
 import org.apache.tomcat.util.IntrospectionUtils;
+import org.apache.tomcat.util.StartupProfiler;
 import org.xml.sax.Attributes;
 import org.xml.sax.EntityResolver;
 import org.xml.sax.ErrorHandler;
@@ -216,6 +217,13 @@ public class Digester extends DefaultHandler {
     protected Locator locator = null;
 
 
+    /**
+     * The time the parsing of the current document started, for the
+     * startup timeline.
+     */
+    protected long parseBegin = 0L;
+
+
     /**
      * The current match pattern for nested element processing.
      */
@@ -1054,6 +1062,11 @@ public class Digester extends DefaultHandler {
             }
         }
 
+        if (StartupProfiler.ENABLED) {
+            StartupProfiler.record(String.valueOf(root), "parse", parseBegin,
+                    (locator == null) ? null : locator.getSystemId());
+        }
+
         // Perform final cleanup
         clear();
 
@@ -1289,6 +1302,8 @@ public class Digester extends DefaultHandler {
             saxLog.debug("startDocument()");
         }
 
+        parseBegin = StartupProfiler.begin();
+
         // ensure that the digester is properly configured, as 
         // the digester could be used as a SAX ContentHandler
         // rather than via the parse() methods.
@@ -1649,6 +1664,52 @@ public class Digester extends DefaultHandler {
     }
 
 
+    /**
+     * Parse the content of the specified input source using this Digester,
+     * and record the parsing events into the specified document, so that
+     * the same content can later be processed again with
+     * <code>parse(RecordedDocument)</code>.
+     *
+     * @param input Input source containing the XML data to be parsed
+     * @param document Document into which the events will be recorded
+     *
+     * @exception IOException if an input/output error occurs
+     * @exception SAXException if a parsing exception occurs
+     */
+    public Object parse(InputSource input, RecordedDocument document)
+        throws IOException, SAXException {
+
+        configure();
+        XMLReader reader = getXMLReader();
+        reader.setContentHandler(document.recorder(this));
+        try {
+            reader.parse(input);
+        } finally {
+            reader.setContentHandler(this);
+        }
+        return (root);
+
+    }
+
+
+    /**
+     * Process a document previously recorded with
+     * <code>parse(InputSource, RecordedDocument)</code>, without parsing it
+     * again.
+     *
+     * @param document The recorded document
+     *
+     * @exception SAXException if a processing exception occurs
+     */
+    public Object parse(RecordedDocument document) throws SAXException {
+
+        configure();
+        document.replay(this);
+        return (root);
+
+    }
+
+
     /**
      * Parse the content of the specified input stream using this Digester.
      * Returns the root element from the object stack (if any).
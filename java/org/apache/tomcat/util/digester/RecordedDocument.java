@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.tomcat.util.digester;
+
+
+import java.util.ArrayList;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+
+/**
+ * <p>The SAX content events of a document, recorded while the document is
+ * parsed by a {@link Digester}, so that the same document can later be
+ * processed again without reading, parsing and validating it.</p>
+ *
+ * <p>A recorded document is immutable once recording is complete, and may be
+ * replayed into several digesters, one at a time or concurrently.</p>
+ */
+public class RecordedDocument {
+
+
+    // ------------------------------------------------------- Event Types
+
+
+    private static final int START_PREFIX_MAPPING = 0;
+    private static final int END_PREFIX_MAPPING = 1;
+    private static final int START_ELEMENT = 2;
+    private static final int END_ELEMENT = 3;
+    private static final int CHARACTERS = 4;
+    private static final int IGNORABLE_WHITESPACE = 5;
+    private static final int PROCESSING_INSTRUCTION = 6;
+    private static final int SKIPPED_ENTITY = 7;
+
+
+    // ----------------------------------------------------- Instance Variables
+
+
+    /**
+     * The recorded events, in document order.
+     */
+    protected ArrayList<Event> events = new ArrayList<Event>();
+
+
+    /**
+     * The public identifier of the DTD or schema of the document, if the
+     * digester resolved one.
+     */
+    protected String publicId = null;
+
+
+    /**
+     * Has recording completed?
+     */
+    protected boolean complete = false;
+
+
+    // ------------------------------------------------------------- Properties
+
+
+    /**
+     * Return the public identifier of the DTD or schema of the document.
+     */
+    public String getPublicId() {
+        return publicId;
+    }
+
+
+    /**
+     * Return <code>true</code> once the whole document has been recorded.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+
+    // --------------------------------------------------------- Public Methods
+
+
+    /**
+     * Return a content handler which records the events it receives, and
+     * forwards them to the specified digester.
+     */
+    public ContentHandler recorder(Digester digester) {
+        return new Recorder(digester);
+    }
+
+
+    /**
+     * Send the recorded events to the specified digester, as if it were
+     * parsing the original document.
+     *
+     * @exception SAXException if the digester reports an error
+     */
+    public void replay(Digester digester) throws SAXException {
+
+        if (!complete) {
+            throw new IllegalStateException("Document recording is not complete");
+        }
+
+        LocatorImpl locator = new LocatorImpl();
+        digester.setDocumentLocator(locator);
+        digester.startDocument();
+        digester.setPublicId(publicId);
+        int size = events.size();
+        for (int i = 0; i < size; i++) {
+            Event event = events.get(i);
+            locator.setLineNumber(event.lineNumber);
+            locator.setColumnNumber(event.columnNumber);
+            switch (event.type) {
+            case START_PREFIX_MAPPING:
+                digester.startPrefixMapping(event.localName, event.uri);
+                break;
+            case END_PREFIX_MAPPING:
+                digester.endPrefixMapping(event.localName);
+                break;
+            case START_ELEMENT:
+                digester.startElement(event.uri, event.localName,
+                        event.qName, event.attributes);
+                break;
+            case END_ELEMENT:
+                digester.endElement(event.uri, event.localName, event.qName);
+                break;
+            case CHARACTERS:
+                digester.characters(event.text, 0, event.text.length);
+                break;
+            case IGNORABLE_WHITESPACE:
+                digester.ignorableWhitespace(event.text, 0,
+                        event.text.length);
+                break;
+            case PROCESSING_INSTRUCTION:
+                digester.processingInstruction(event.localName, event.uri);
+                break;
+            case SKIPPED_ENTITY:
+                digester.skippedEntity(event.localName);
+                break;
+            }
+        }
+        digester.endDocument();
+
+    }
+
+
+    // -------------------------------------------------------- Private Classes
+
+
+    /**
+     * A recorded event. The meaning of the fields depends on the type.
+     */
+    private static final class Event {
+        int type;
+        String uri;
+        String localName;
+        String qName;
+        Attributes attributes;
+        char[] text;
+        int lineNumber;
+        int columnNumber;
+    }
+
+
+    /**
+     * Content handler recording events before forwarding them to a digester.
+     */
+    private final class Recorder implements ContentHandler {
+
+        private final Digester digester;
+        private Locator locator = null;
+
+        Recorder(Digester digester) {
+            this.digester = digester;
+        }
+
+        private Event add(int type) {
+            Event event = new Event();
+            event.type = type;
+            if (locator != null) {
+                event.lineNumber = locator.getLineNumber();
+                event.columnNumber = locator.getColumnNumber();
+            }
+            events.add(event);
+            return event;
+        }
+
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+            digester.setDocumentLocator(locator);
+        }
+
+        public void startDocument() throws SAXException {
+            digester.startDocument();
+        }
+
+        public void endDocument() throws SAXException {
+            digester.endDocument();
+            publicId = digester.getPublicId();
+            complete = true;
+        }
+
+        public void startPrefixMapping(String prefix, String uri)
+            throws SAXException {
+            Event event = add(START_PREFIX_MAPPING);
+            event.localName = prefix;
+            event.uri = uri;
+            digester.startPrefixMapping(prefix, uri);
+        }
+
+        public void endPrefixMapping(String prefix) throws SAXException {
+            add(END_PREFIX_MAPPING).localName = prefix;
+            digester.endPrefixMapping(prefix);
+        }
+
+        public void startElement(String uri, String localName, String qName,
+                Attributes atts) throws SAXException {
+            Event event = add(START_ELEMENT);
+            event.uri = uri;
+            event.localName = localName;
+            event.qName = qName;
+            event.attributes = new AttributesImpl(atts);
+            digester.startElement(uri, localName, qName, atts);
+        }
+
+        public void endElement(String uri, String localName, String qName)
+            throws SAXException {
+            Event event = add(END_ELEMENT);
+            event.uri = uri;
+            event.localName = localName;
+            event.qName = qName;
+            digester.endElement(uri, localName, qName);
+        }
+
+        public void characters(char[] ch, int start, int length)
+            throws SAXException {
+            Event event = add(CHARACTERS);
+            event.text = new char[length];
+            System.arraycopy(ch, start, event.text, 0, length);
+            digester.characters(ch, start, length);
+        }
+
+        public void ignorableWhitespace(char[] ch, int start, int length)
+            throws SAXException {
+            Event event = add(IGNORABLE_WHITESPACE);
+            event.text = new char[length];
+            System.arraycopy(ch, start, event.text, 0, length);
+            digester.ignorableWhitespace(ch, start, length);
+        }
+
+        public void processingInstruction(String target, String data)
+            throws SAXException {
+            Event event = add(PROCESSING_INSTRUCTION);
+            event.localName = target;
+            event.uri = data;
+            digester.processingInstruction(target, data);
+        }
+
+        public void skippedEntity(String name) throws SAXException {
+            add(SKIPPED_ENTITY).localName = name;
+            digester.skippedEntity(name);
+        }
+    }
+
+}
@@ -82,6 +82,16 @@ public class RulesBase implements Rules {
     protected ArrayList rules = new ArrayList();
 
 
+    /**
+     * The result of <code>match()</code>, keyed by namespace URI and then by
+     * element path, so that the tail match patterns are only scanned once
+     * per distinct element path. The namespace URI is the empty string when
+     * none is specified. Cleared whenever the registered rules change.
+     */
+    protected HashMap<String, HashMap<String, List>> matchCache =
+        new HashMap<String, HashMap<String, List>>();
+
+
     // ------------------------------------------------------------- Properties
 
 
@@ -165,6 +175,7 @@ public class RulesBase implements Rules {
         }
         list.add(rule);
         rules.add(rule);
+        matchCache.clear();
         if (this.digester != null) {
             rule.setDigester(this.digester);
         }
@@ -183,6 +194,7 @@ public class RulesBase implements Rules {
 
         cache.clear();
         rules.clear();
+        matchCache.clear();
 
     }
 
@@ -218,6 +230,31 @@ public class RulesBase implements Rules {
      */
     public List match(String namespaceURI, String pattern) {
 
+        String key = (namespaceURI == null) ? "" : namespaceURI;
+        HashMap<String, List> matches = matchCache.get(key);
+        if (matches == null) {
+            matches = new HashMap<String, List>();
+            matchCache.put(key, matches);
+        }
+        List rulesList = matches.get(pattern);
+        if (rulesList == null) {
+            rulesList = matchInternal(namespaceURI, pattern);
+            matches.put(pattern, rulesList);
+        }
+        return (rulesList);
+
+    }
+
+
+    /**
+     * Compute the result of <code>match()</code>, without using the cache.
+     *
+     * @param namespaceURI Namespace URI for which to select matching rules,
+     *  or <code>null</code> to match regardless of namespace URI
+     * @param pattern Nesting pattern to be matched
+     */
+    protected List matchInternal(String namespaceURI, String pattern) {
+
         // List rulesList = (List) this.cache.get(pattern);
         List rulesList = lookup(namespaceURI, pattern);
         if ((rulesList == null) || (rulesList.size() < 1)) {
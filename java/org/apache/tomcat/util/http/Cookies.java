@@ -43,6 +43,8 @@ public final class Cookies { // extends MultiMap {
     ServerCookie scookies[]=new ServerCookie[INITIAL_SIZE];
     int cookieCount=0;
     boolean unprocessed=true;
+    // name of the only cookies parsed so far, if not all cookies are parsed
+    String filter=null;
 
     MimeHeaders headers;
 
@@ -111,6 +113,7 @@ public final class Cookies { // extends MultiMap {
         }
         cookieCount=0;
         unprocessed=true;
+        filter=null;
     }
 
     /**
@@ -130,7 +133,7 @@ public final class Cookies { // extends MultiMap {
     // -------------------- Indexed access --------------------
     
     public ServerCookie getCookie( int idx ) {
-        if( unprocessed ) {
+        if( unprocessed && filter==null ) {
             getCookieCount(); // will also update the cookies
         }
         return scookies[idx];
@@ -138,12 +141,40 @@ public final class Cookies { // extends MultiMap {
 
     public int getCookieCount() {
         if( unprocessed ) {
+            if( filter!=null ) {
+                // Only some cookies were parsed, start again
+                recycle();
+            }
             unprocessed=false;
             processCookies(headers);
         }
         return cookieCount;
     }
 
+    /**
+     * Make the cookies with the specified name available through
+     * {@link #getCookie(int)}, without creating ServerCookies for the
+     * other cookies of the headers if the cookies have not been parsed yet.
+     * The other cookies are still parsed, but only their names are
+     * compared, so that looking for a single cookie such as the session
+     * cookie stays cheap when requests carry many cookies.
+     *
+     * @param name Name of the cookies
+     * @return the number of cookies available through
+     *  {@link #getCookie(int)}, which include all the cookies with the
+     *  specified name, and may include other cookies if
+     *  {@link #getCookieCount()} was called before
+     */
+    public int getCookieCount( String name ) {
+        if( !unprocessed || name.equals(filter) ) {
+            return cookieCount;
+        }
+        recycle();
+        filter=name;
+        processCookies(headers);
+        return cookieCount;
+    }
+
     // -------------------- Adding cookies --------------------
 
     /** Register a new, unitialized cookie. Cookies are recycled, and
@@ -528,6 +559,12 @@ public final class Cookies { // extends MultiMap {
                 log("Unknown Special Cookie");
 
             } else { // Normal Cookie
+                if (filter != null && 
+                    !equals( filter, bytes, nameStart, nameEnd)) {
+                    // Not wanted, nor are its special avpairs
+                    sc = null;
+                    continue;
+                }
                 sc = addCookie();
                 sc.setVersion( version );
                 sc.getName().setBytes( bytes, nameStart,
@@ -537,6 +574,15 @@ public final class Cookies { // extends MultiMap {
                     sc.getValue().setBytes( bytes, valueStart,
                             valueEnd-valueStart);
                     if (isQuoted) {
+                        ByteChunk bc = sc.getValue().getByteChunk();
+                        if (filter != null && bc.indexOf('"', 0) >= 0) {
+                            // Unescaping modifies the bytes, which would
+                            // break parsing the header again later
+                            byte[] copy = new byte[bc.getLength()];
+                            System.arraycopy(bc.getBytes(), bc.getStart(),
+                                             copy, 0, copy.length);
+                            sc.getValue().setBytes(copy, 0, copy.length);
+                        }
                         // We know this is a byte value so this is safe
                         ServerCookie.unescapeDoubleQuotes(
                                 sc.getValue().getByteChunk());
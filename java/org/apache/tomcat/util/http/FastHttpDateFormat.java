@@ -23,11 +23,17 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility class to generate HTTP dates.
- * 
+ * <p>
+ * The current date is formatted once per second and published in an
+ * immutable holder, so that it is read without locking. Other dates are
+ * formatted, and dates in the RFC 1123, RFC 850 and asctime formats are
+ * parsed, without SimpleDateFormat. The formats are only used for the dates
+ * the hand written code does not handle, such as years before 1600 or time
+ * zones other than GMT, so that the results do not change.
+ *
  * @author Remy Maucherat
  */
 public final class FastHttpDateFormat {
@@ -36,14 +42,10 @@ public final class FastHttpDateFormat {
     // -------------------------------------------------------------- Variables
 
 
-    protected static final int CACHE_SIZE = 
-        Integer.parseInt(System.getProperty("org.apache.tomcat.util.http.FastHttpDateFormat.CACHE_SIZE", "1000"));
-
-    
     /**
      * HTTP date format.
      */
-    protected static final SimpleDateFormat format = 
+    protected static final SimpleDateFormat format =
         new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
 
 
@@ -75,29 +77,32 @@ public final class FastHttpDateFormat {
 
 
     /**
-     * Instant on which the currentDate object was generated.
+     * Day names, starting with the first of January 1970, a Thursday.
      */
-    protected static long currentDateGenerated = 0L;
+    private static final String[] DAYS =
+        { "Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed" };
 
 
-    /**
-     * Current formatted date.
-     */
-    protected static String currentDate = null;
+    private static final String[] MONTHS =
+        { "Jan", "Feb", "Mar", "Apr", "May", "Jun",
+          "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
 
 
     /**
-     * Formatter cache.
+     * Range of the dates which are formatted by hand, from 1600 to 9999, in
+     * which the Gregorian calendar used by SimpleDateFormat applies.
      */
-    protected static final ConcurrentHashMap<Long, String> formatCache = 
-        new ConcurrentHashMap<Long, String>(CACHE_SIZE);
+    private static final long MIN_DATE = -11676096000000L;
+    private static final long MAX_DATE = 253402300799999L;
+    private static final int MIN_YEAR = 1600;
+    private static final int MAX_YEAR = 9999;
 
 
     /**
-     * Parser cache.
+     * Current formatted date.
      */
-    protected static final ConcurrentHashMap<String, Long> parseCache = 
-        new ConcurrentHashMap<String, Long>(CACHE_SIZE);
+    protected static volatile CurrentDate currentDate =
+        new CurrentDate(System.currentTimeMillis() / 1000L);
 
 
     // --------------------------------------------------------- Public Methods
@@ -108,16 +113,15 @@ public final class FastHttpDateFormat {
      */
     public static final String getCurrentDate() {
 
-        long now = System.currentTimeMillis();
-        if ((now - currentDateGenerated) > 1000) {
-            synchronized (format) {
-                if ((now - currentDateGenerated) > 1000) {
-                    currentDateGenerated = now;
-                    currentDate = format.format(new Date(now));
-                }
-            }
+        long second = System.currentTimeMillis() / 1000L;
+        CurrentDate date = currentDate;
+        if (date.second != second) {
+            // Several threads may do this at the start of a second, which
+            // is harmless since they produce the same value
+            date = new CurrentDate(second);
+            currentDate = date;
         }
-        return currentDate;
+        return date.value;
 
     }
 
@@ -128,25 +132,17 @@ public final class FastHttpDateFormat {
     public static final String formatDate
         (long value, DateFormat threadLocalformat) {
 
-        Long longValue = new Long(value);
-        String cachedDate = formatCache.get(longValue);
-        if (cachedDate != null)
-            return cachedDate;
+        if (value >= MIN_DATE && value <= MAX_DATE) {
+            return format(value);
+        }
 
-        String newDate = null;
         Date dateValue = new Date(value);
         if (threadLocalformat != null) {
-            newDate = threadLocalformat.format(dateValue);
-            updateFormatCache(longValue, newDate);
-        } else {
-            synchronized (formatCache) {
-                synchronized (format) {
-                    newDate = format.format(dateValue);
-                }
-                updateFormatCache(longValue, newDate);
-            }
+            return threadLocalformat.format(dateValue);
+        }
+        synchronized (format) {
+            return format.format(dateValue);
         }
-        return newDate;
 
     }
 
@@ -154,32 +150,34 @@ public final class FastHttpDateFormat {
     /**
      * Try to parse the given date as a HTTP date.
      */
-    public static final long parseDate(String value, 
+    public static final long parseDate(String value,
                                        DateFormat[] threadLocalformats) {
 
-        Long cachedDate = parseCache.get(value);
-        if (cachedDate != null)
-            return cachedDate.longValue();
+        long date = parse(value);
+        if (date != -1L) {
+            return date;
+        }
 
-        Long date = null;
+        Long result = null;
         if (threadLocalformats != null) {
-            date = internalParseDate(value, threadLocalformats);
-            updateParseCache(value, date);
+            result = internalParseDate(value, threadLocalformats);
         } else {
-            synchronized (parseCache) {
-                date = internalParseDate(value, formats);
-                updateParseCache(value, date);
+            synchronized (formats) {
+                result = internalParseDate(value, formats);
             }
         }
-        if (date == null) {
+        if (result == null) {
             return (-1L);
         } else {
-            return date.longValue();
+            return result.longValue();
         }
 
     }
 
 
+    // -------------------------------------------------------- Private Methods
+
+
     /**
      * Parse date with given formatters.
      */
@@ -201,30 +199,280 @@ public final class FastHttpDateFormat {
 
 
     /**
-     * Update cache.
+     * Format the specified date, which must be between 1600 and 9999, in
+     * the RFC 1123 format.
      */
-    private static void updateFormatCache(Long key, String value) {
-        if (value == null) {
-            return;
+    private static String format(long value) {
+
+        long seconds = value / 1000L;
+        if (value % 1000L < 0) {
+            seconds--;
         }
-        if (formatCache.size() > CACHE_SIZE) {
-            formatCache.clear();
+        long days = seconds / 86400L;
+        int secondOfDay = (int) (seconds - days * 86400L);
+        if (secondOfDay < 0) {
+            days--;
+            secondOfDay += 86400;
         }
-        formatCache.put(key, value);
+        int dayOfWeek = (int) (days % 7L);
+        if (dayOfWeek < 0) {
+            dayOfWeek += 7;
+        }
+
+        // Civil date from the day number, in the proleptic Gregorian
+        // calendar, with years starting in March
+        long z = days + 719468L;
+        long era = (z >= 0 ? z : z - 146096L) / 146097L;
+        long dayOfEra = z - era * 146097L;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460L + dayOfEra / 36524L
+                          - dayOfEra / 146096L) / 365L;
+        long dayOfYear = dayOfEra
+            - (365L * yearOfEra + yearOfEra / 4L - yearOfEra / 100L);
+        int mp = (int) ((5L * dayOfYear + 2L) / 153L);
+        int day = (int) (dayOfYear - (153L * mp + 2L) / 5L) + 1;
+        int month = (mp < 10) ? mp + 3 : mp - 9;
+        int year = (int) (yearOfEra + era * 400L) + ((month <= 2) ? 1 : 0);
+
+        char[] buf = new char[29];
+        DAYS[dayOfWeek].getChars(0, 3, buf, 0);
+        buf[3] = ',';
+        buf[4] = ' ';
+        put2(buf, 5, day);
+        buf[7] = ' ';
+        MONTHS[month - 1].getChars(0, 3, buf, 8);
+        buf[11] = ' ';
+        put2(buf, 12, year / 100);
+        put2(buf, 14, year % 100);
+        buf[16] = ' ';
+        put2(buf, 17, secondOfDay / 3600);
+        buf[19] = ':';
+        put2(buf, 20, (secondOfDay / 60) % 60);
+        buf[22] = ':';
+        put2(buf, 23, secondOfDay % 60);
+        buf[25] = ' ';
+        buf[26] = 'G';
+        buf[27] = 'M';
+        buf[28] = 'T';
+        return new String(buf);
+
+    }
+
+
+    private static void put2(char[] buf, int pos, int value) {
+        buf[pos] = (char) ('0' + value / 10);
+        buf[pos + 1] = (char) ('0' + value % 10);
     }
 
 
     /**
-     * Update cache.
+     * Parse a date in the RFC 1123, RFC 850 or asctime format, in GMT.
+     *
+     * @return the date, or -1 if it is not in one of these formats or
+     *  should be left to SimpleDateFormat
      */
-    private static void updateParseCache(String key, Long value) {
-        if (value == null) {
-            return;
+    private static long parse(String value) {
+
+        int length = value.length();
+        int day;
+        int month;
+        int year;
+        int time;
+        int pos;
+        int start;
+
+        int comma = value.indexOf(',');
+        if (comma > 0) {
+
+            // RFC 1123 "Sun, 06 Nov 1994 08:49:37 GMT" or
+            // RFC 850 "Sunday, 06-Nov-94 08:49:37 GMT"
+            pos = comma + 1;
+            while (pos < length && value.charAt(pos) == ' ') {
+                pos++;
+            }
+            start = pos;
+            pos = skipDigits(value, pos);
+            if (pos - start < 1 || pos - start > 2 || pos >= length) {
+                return -1L;
+            }
+            day = parseInt(value, start, pos);
+            char separator = value.charAt(pos);
+            if (separator != ' ' && separator != '-') {
+                return -1L;
+            }
+            month = parseMonth(value, pos + 1);
+            pos += 4;
+            if (month < 0 || pos >= length
+                    || value.charAt(pos) != separator) {
+                return -1L;
+            }
+            start = ++pos;
+            pos = skipDigits(value, pos);
+            if (pos - start == 4) {
+                year = parseInt(value, start, pos);
+            } else if (pos - start == 2 && separator == '-') {
+                year = twoDigitYear(parseInt(value, start, pos));
+            } else {
+                return -1L;
+            }
+            if (pos + 13 != length || value.charAt(pos) != ' '
+                    || value.charAt(pos + 9) != ' '
+                    || !value.regionMatches(pos + 10, "GMT", 0, 3)) {
+                return -1L;
+            }
+            time = parseTime(value, pos + 1);
+
+        } else {
+
+            // asctime "Sun Nov  6 08:49:37 1994"
+            if (length < 24 || value.charAt(3) != ' ') {
+                return -1L;
+            }
+            month = parseMonth(value, 4);
+            pos = 7;
+            if (month < 0 || value.charAt(pos) != ' ') {
+                return -1L;
+            }
+            while (pos < length && value.charAt(pos) == ' ') {
+                pos++;
+            }
+            start = pos;
+            pos = skipDigits(value, pos);
+            if (pos - start < 1 || pos - start > 2
+                    || pos + 14 != length || value.charAt(pos) != ' '
+                    || value.charAt(pos + 9) != ' ') {
+                return -1L;
+            }
+            day = parseInt(value, start, pos);
+            time = parseTime(value, pos + 1);
+            start = pos + 10;
+            if (skipDigits(value, start) != length) {
+                return -1L;
+            }
+            year = parseInt(value, start, length);
+
         }
-        if (parseCache.size() > CACHE_SIZE) {
-            parseCache.clear();
+
+        if (time < 0 || year < MIN_YEAR || year > MAX_YEAR || day < 1
+                || day > daysInMonth(year, month)) {
+            return -1L;
+        }
+
+        // Day number from the civil date, with years starting in March
+        int y = (month <= 2) ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * ((month > 2) ? month - 3 : month + 9) + 2) / 5
+            + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+            + dayOfYear;
+        long days = era * 146097L + dayOfEra - 719468L;
+        return (days * 86400L + time) * 1000L;
+
+    }
+
+
+    /**
+     * Parse a time in the <code>HH:mm:ss</code> format.
+     *
+     * @return the second of the day, or -1
+     */
+    private static int parseTime(String value, int pos) {
+        if (value.charAt(pos + 2) != ':' || value.charAt(pos + 5) != ':'
+                || skipDigits(value, pos) != pos + 2
+                || skipDigits(value, pos + 3) != pos + 5
+                || skipDigits(value, pos + 6) != pos + 8) {
+            return -1;
+        }
+        int hours = parseInt(value, pos, pos + 2);
+        int minutes = parseInt(value, pos + 3, pos + 5);
+        int seconds = parseInt(value, pos + 6, pos + 8);
+        if (hours > 23 || minutes > 59 || seconds > 59) {
+            return -1;
+        }
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+
+
+    /**
+     * Return the month, from 1 to 12, whose name starts at the specified
+     * position, or -1.
+     */
+    private static int parseMonth(String value, int pos) {
+        if (pos + 3 > value.length()) {
+            return -1;
+        }
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (value.regionMatches(pos, MONTHS[i], 0, 3)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Return the year corresponding to a two digit year, as SimpleDateFormat
+     * does, by picking the year within 80 years before and 20 years after the
+     * current date. Return -1 for the year in which this depends on the
+     * rest of the date.
+     */
+    private static int twoDigitYear(int value) {
+        int start = Integer.parseInt(getCurrentDate().substring(12, 16)) - 80;
+        int year = (start / 100) * 100 + value;
+        if (year < start) {
+            year += 100;
+        }
+        return (year == start) ? -1 : year;
+    }
+
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0)
+                && ((year % 100 != 0) || (year % 400 == 0));
+            return leap ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11)
+            ? 30 : 31;
+    }
+
+
+    private static int skipDigits(String value, int pos) {
+        int length = value.length();
+        while (pos < length) {
+            char c = value.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+
+    private static int parseInt(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            result = result * 10 + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+
+    // -------------------------------------------------------- Private Classes
+
+
+    /**
+     * The current date, formatted for one second.
+     */
+    protected static final class CurrentDate {
+        final long second;
+        final String value;
+
+        CurrentDate(long second) {
+            this.second = second;
+            this.value = format(second * 1000L);
         }
-        parseCache.put(key, value);
     }
 
 
@@ -25,6 +25,8 @@ import org.apache.tomcat.util.buf.MessageBytes;
 import org.apache.tomcat.util.buf.Ascii;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  * Mapper, which implements the servlet API mapping rules (which are derived
@@ -46,7 +48,7 @@ public final class Mapper {
      * Array containing the virtual hosts definitions.
      * 包含主机定义的数组
      */
-    protected Host[] hosts = new Host[0];
+    protected volatile Host[] hosts = new Host[0];
 
 
     /**
@@ -93,25 +95,35 @@ public final class Mapper {
      */
     public synchronized void addHost(String name, String[] aliases,
                                      Object host) {
-        Host[] newHosts = new Host[hosts.length + 1];
-        Host newHost = new Host();
+        // The host and all its aliases are added with a single copy of the
+        // array, as hosts may have thousands of aliases
+        Host[] oldHosts = hosts;
+        Host[] newHosts = new Host[oldHosts.length + aliases.length + 1];
+        System.arraycopy(oldHosts, 0, newHosts, 0, oldHosts.length);
         ContextList contextList = new ContextList();
-        newHost.name = name;
-        newHost.contextList = contextList;
-        newHost.object = host;
-        if (insertMap(hosts, newHosts, newHost)) {
-            hosts = newHosts;
-        }
-        for (int i = 0; i < aliases.length; i++) {
-            newHosts = new Host[hosts.length + 1];
-            newHost = new Host();
-            newHost.name = aliases[i];
+        for (int i = -1; i < aliases.length; i++) {
+            Host newHost = new Host();
+            newHost.name = (i < 0) ? name : aliases[i];
             newHost.contextList = contextList;
             newHost.object = host;
-            if (insertMap(hosts, newHosts, newHost)) {
-                hosts = newHosts;
+            newHosts[oldHosts.length + i + 1] = newHost;
+        }
+        // The sort is stable, so that existing hosts, and the host name
+        // before its aliases, are kept when there are duplicates
+        Arrays.sort(newHosts, MAP_ELEMENT_COMPARATOR);
+        int count = 0;
+        for (int i = 0; i < newHosts.length; i++) {
+            if ((count == 0)
+                || !newHosts[i].name.equals(newHosts[count - 1].name)) {
+                newHosts[count++] = newHosts[i];
             }
         }
+        if (count < newHosts.length) {
+            Host[] compacted = new Host[count];
+            System.arraycopy(newHosts, 0, compacted, 0, count);
+            newHosts = compacted;
+        }
+        hosts = newHosts;
     }
 
 
@@ -249,6 +261,7 @@ public final class Mapper {
                 newContext.resources = resources;
                 if (insertMap(contexts, newContexts, newContext)) {
                     host.contextList.contexts = newContexts;
+                    host.contextList.tree = buildTree(newContexts);
                 }
             }
         }
@@ -278,6 +291,7 @@ public final class Mapper {
                 Context[] newContexts = new Context[contexts.length - 1];
                 if (removeMap(contexts, newContexts, path)) {
                     host.contextList.contexts = newContexts;
+                    host.contextList.tree = buildTree(newContexts);
                     // Recalculate nesting
                     host.contextList.nesting = 0;
                     for (int i = 0; i < newContexts.length; i++) {
@@ -395,6 +409,7 @@ public final class Mapper {
                     new Wrapper[oldWrappers.length + 1];
                 if (insertMap(oldWrappers, newWrappers, newWrapper)) {
                     context.wildcardWrappers = newWrappers;
+                    context.wildcardTree = buildTree(newWrappers);
                     int slashCount = slashCount(newWrapper.name);
                     if (slashCount > context.nesting) {
                         context.nesting = slashCount;
@@ -483,6 +498,7 @@ public final class Mapper {
                         }
                     }
                     context.wildcardWrappers = newWrappers;
+                    context.wildcardTree = buildTree(newWrappers);
                 }
             } else if (path.startsWith("*.")) {
                 // Extension wrapper
@@ -601,9 +617,8 @@ public final class Mapper {
 
         uri.setLimit(-1);
 
-        Context[] contexts = null;
+        ContextList contextList = null;
         Context context = null;
-        int nesting = 0;
 
         // Virtual host mapping
         if (mappingData.host == null) {
@@ -611,8 +626,7 @@ public final class Mapper {
             int pos = findIgnoreCase(hosts, host);
             if ((pos != -1) && (host.equalsIgnoreCase(hosts[pos].name))) {
                 mappingData.host = hosts[pos].object;
-                contexts = hosts[pos].contextList.contexts;
-                nesting = hosts[pos].contextList.nesting;
+                contextList = hosts[pos].contextList;
             } else {
                 if (defaultHostName == null) {
                     return;
@@ -620,8 +634,7 @@ public final class Mapper {
                 pos = find(hosts, defaultHostName);
                 if ((pos != -1) && (defaultHostName.equals(hosts[pos].name))) {
                     mappingData.host = hosts[pos].object;
-                    contexts = hosts[pos].contextList.contexts;
-                    nesting = hosts[pos].contextList.nesting;
+                    contextList = hosts[pos].contextList;
                 } else {
                     return;
                 }
@@ -630,43 +643,9 @@ public final class Mapper {
 
         // Context mapping
         if (mappingData.context == null) {
-            int pos = find(contexts, uri);
-            if (pos == -1) {
-                return;
-            }
-
-            int lastSlash = -1;
-            int uriEnd = uri.getEnd();
-            int length = -1;
-            boolean found = false;
-            while (pos >= 0) {
-                if (uri.startsWith(contexts[pos].name)) {
-                    length = contexts[pos].name.length();
-                    if (uri.getLength() == length) {
-                        found = true;
-                        break;
-                    } else if (uri.startsWithIgnoreCase("/", length)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (lastSlash == -1) {
-                    lastSlash = nthSlash(uri, nesting + 1);
-                } else {
-                    lastSlash = lastSlash(uri);
-                }
-                uri.setEnd(lastSlash);
-                pos = find(contexts, uri);
-            }
-            uri.setEnd(uriEnd);
-
-            if (!found) {
-                if (contexts[0].name.equals("")) {
-                    context = contexts[0];
-                }
-            } else {
-                context = contexts[pos];
-            }
+            // The longest context path which is a prefix of the URI, the
+            // root context being used if there is none
+            context = (Context) findLongestMatch(contextList.tree, uri);
             if (context != null) {
                 mappingData.context = context.object;
                 mappingData.contextPath.setString(context.name);
@@ -712,10 +691,9 @@ public final class Mapper {
 
         // Rule 2 -- Prefix Match
         boolean checkJspWelcomeFiles = false;
-        Wrapper[] wildcardWrappers = context.wildcardWrappers;
+        PathNode wildcardTree = context.wildcardTree;
         if (mappingData.wrapper == null) {
-            internalMapWildcardWrapper(wildcardWrappers, context.nesting, 
-                                       path, mappingData);
+            internalMapWildcardWrapper(wildcardTree, path, mappingData);
             if (mappingData.wrapper != null && mappingData.jspWildCard) {
                 char[] buf = path.getBuffer();
                 if (buf[pathEnd - 1] == '/') {
@@ -774,8 +752,7 @@ public final class Mapper {
                     // Rule 4b -- Welcome resources processing for prefix match
                     if (mappingData.wrapper == null) {
                         internalMapWildcardWrapper
-                            (wildcardWrappers, context.nesting, 
-                             path, mappingData);
+                            (wildcardTree, path, mappingData);
                     }
 
                     // Rule 4c -- Welcome resources processing
@@ -874,50 +851,22 @@ public final class Mapper {
      * Wildcard mapping.
      */
     private final void internalMapWildcardWrapper
-        (Wrapper[] wrappers, int nesting, CharChunk path, 
-         MappingData mappingData) {
-
-        int pathEnd = path.getEnd();
-        int pathOffset = path.getOffset();
-
-        int lastSlash = -1;
-        int length = -1;
-        int pos = find(wrappers, path);
-        if (pos != -1) {
-            boolean found = false;
-            while (pos >= 0) {
-                if (path.startsWith(wrappers[pos].name)) {
-                    length = wrappers[pos].name.length();
-                    if (path.getLength() == length) {
-                        found = true;
-                        break;
-                    } else if (path.startsWithIgnoreCase("/", length)) {
-                        found = true;
-                        break;
-                    }
-                }
-                if (lastSlash == -1) {
-                    lastSlash = nthSlash(path, nesting + 1);
-                } else {
-                    lastSlash = lastSlash(path);
-                }
-                path.setEnd(lastSlash);
-                pos = find(wrappers, path);
-            }
-            path.setEnd(pathEnd);
-            if (found) {
-                mappingData.wrapperPath.setString(wrappers[pos].name);
-                if (path.getLength() > length) {
-                    mappingData.pathInfo.setChars
-                        (path.getBuffer(),
-                         path.getOffset() + length,
-                         path.getLength() - length);
-                }
-                mappingData.requestPath.setChars
-                    (path.getBuffer(), path.getOffset(), path.getLength());
-                mappingData.wrapper = wrappers[pos].object;
-                mappingData.jspWildCard = wrappers[pos].jspWildCard;
+        (PathNode tree, CharChunk path, MappingData mappingData) {
+
+        Wrapper wrapper = (Wrapper) findLongestMatch(tree, path);
+        if (wrapper != null) {
+            int length = wrapper.name.length();
+            mappingData.wrapperPath.setString(wrapper.name);
+            if (path.getLength() > length) {
+                mappingData.pathInfo.setChars
+                    (path.getBuffer(),
+                     path.getOffset() + length,
+                     path.getLength() - length);
             }
+            mappingData.requestPath.setChars
+                (path.getBuffer(), path.getOffset(), path.getLength());
+            mappingData.wrapper = wrapper.object;
+            mappingData.jspWildCard = wrapper.jspWildCard;
         }
     }
 
@@ -930,21 +879,18 @@ public final class Mapper {
         char[] buf = path.getBuffer();
         int pathEnd = path.getEnd();
         int servletPath = path.getOffset();
+        // Find the last period of the last segment, in a single scan
         int slash = -1;
+        int period = -1;
         for (int i = pathEnd - 1; i >= servletPath; i--) {
             if (buf[i] == '/') {
                 slash = i;
                 break;
+            } else if ((buf[i] == '.') && (period == -1)) {
+                period = i;
             }
         }
         if (slash >= 0) {
-            int period = -1;
-            for (int i = pathEnd - 1; i > slash; i--) {
-                if (buf[i] == '.') {
-                    period = i;
-                    break;
-                }
-            }
             if (period >= 0) {
                 path.setOffset(period + 1);
                 path.setEnd(pathEnd);
@@ -1185,46 +1131,64 @@ public final class Mapper {
 
 
     /**
-     * Find the position of the last slash in the given char chunk.
+     * Find the element with the longest name which is a prefix of the given
+     * char chunk, ending at a slash or at the end of the chunk. The element
+     * with an empty name, if any, is returned when there is no other match.
      */
-    private static final int lastSlash(CharChunk name) {
+    private static final MapElement findLongestMatch(PathNode tree,
+                                                     CharChunk name) {
 
         char[] c = name.getBuffer();
         int end = name.getEnd();
-        int start = name.getStart();
-        int pos = end;
-
-        while (pos > start) {
-            if (c[--pos] == '/') {
+        int pos = name.getStart();
+        PathNode node = tree;
+        MapElement result = tree.element;
+
+        while ((pos < end) && (c[pos] == '/')) {
+            int next = pos + 1;
+            while ((next < end) && (c[next] != '/')) {
+                next++;
+            }
+            node = node.findChild(name, pos + 1, next);
+            if (node == null) {
                 break;
             }
+            if (node.element != null) {
+                result = node.element;
+            }
+            pos = next;
         }
 
-        return (pos);
+        return (result);
 
     }
 
 
     /**
-     * Find the position of the nth slash, in the given char chunk.
+     * Build the tree of the path segments of the names of the given
+     * elements. Names which are neither empty nor start with a slash can
+     * never match, and are left out.
      */
-    private static final int nthSlash(CharChunk name, int n) {
-
-        char[] c = name.getBuffer();
-        int end = name.getEnd();
-        int start = name.getStart();
-        int pos = start;
-        int count = 0;
-
-        while (pos < end) {
-            if ((c[pos++] == '/') && ((++count) == n)) {
-                pos--;
-                break;
+    private static final PathNode buildTree(MapElement[] elements) {
+        PathNode tree = new PathNode();
+        for (int i = 0; i < elements.length; i++) {
+            String name = elements[i].name;
+            if ((name.length() > 0) && (name.charAt(0) != '/')) {
+                continue;
+            }
+            PathNode node = tree;
+            int pos = 0;
+            while (pos < name.length()) {
+                int next = name.indexOf('/', pos + 1);
+                if (next == -1) {
+                    next = name.length();
+                }
+                node = node.addChild(name.substring(pos + 1, next));
+                pos = next;
             }
+            node.element = elements[i];
         }
-
-        return (pos);
-
+        return tree;
     }
 
 
@@ -1275,6 +1239,14 @@ public final class Mapper {
     }
 
 
+    private static final Comparator<MapElement> MAP_ELEMENT_COMPARATOR =
+        new Comparator<MapElement>() {
+            public int compare(MapElement e1, MapElement e2) {
+                return e1.name.compareTo(e2.name);
+            }
+        };
+
+
     // ------------------------------------------------- MapElement Inner Class
 
 
@@ -1302,7 +1274,8 @@ public final class Mapper {
 
     protected static final class ContextList {
 
-        public Context[] contexts = new Context[0];
+        public volatile Context[] contexts = new Context[0];
+        public volatile PathNode tree = new PathNode();
         public int nesting = 0;
 
     }
@@ -1320,6 +1293,7 @@ public final class Mapper {
         public Wrapper defaultWrapper = null;
         public Wrapper[] exactWrappers = new Wrapper[0];
         public Wrapper[] wildcardWrappers = new Wrapper[0];
+        public volatile PathNode wildcardTree = new PathNode();
         public Wrapper[] extensionWrappers = new Wrapper[0];
         public int nesting = 0;
 
@@ -1337,6 +1311,62 @@ public final class Mapper {
     }
 
 
+    // --------------------------------------------------- PathNode Inner Class
+
+
+    /**
+     * Node of a tree of path segments, used to find the longest path prefix
+     * of a URI in one pass over the URI. A tree is built whenever the
+     * elements change, and is never modified once published, so that it may
+     * be read without synchronization.
+     */
+    protected static final class PathNode {
+
+        public MapElement element = null;
+        public String[] names = new String[0];
+        public PathNode[] children = new PathNode[0];
+
+        PathNode findChild(CharChunk name, int start, int end) {
+            int a = 0;
+            int b = names.length - 1;
+            while (a <= b) {
+                int i = (a + b) >>> 1;
+                int result = compare(name, start, end, names[i]);
+                if (result > 0) {
+                    a = i + 1;
+                } else if (result < 0) {
+                    b = i - 1;
+                } else {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        PathNode addChild(String name) {
+            int pos = Arrays.binarySearch(names, name);
+            if (pos >= 0) {
+                return children[pos];
+            }
+            pos = -pos - 1;
+            String[] newNames = new String[names.length + 1];
+            PathNode[] newChildren = new PathNode[children.length + 1];
+            System.arraycopy(names, 0, newNames, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            newNames[pos] = name;
+            newChildren[pos] = new PathNode();
+            System.arraycopy(names, pos, newNames, pos + 1,
+                             names.length - pos);
+            System.arraycopy(children, pos, newChildren, pos + 1,
+                             children.length - pos);
+            names = newNames;
+            children = newChildren;
+            return newChildren[pos];
+        }
+
+    }
+
+
     // -------------------------------------------------------- Testing Methods
 
     // FIXME: Externalize this
@@ -0,0 +1,265 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.authenticator;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.catalina.Session;
+import org.apache.catalina.SessionEvent;
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardEngine;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.session.StandardSession;
+import org.apache.juli.logging.LogFactory;
+
+public class TestSingleSignOn extends TestCase {
+
+    private File directory;
+
+    protected void setUp() throws Exception {
+        directory = new File(System.getProperty("java.io.tmpdir"),
+                             "TestSingleSignOn" + System.nanoTime());
+    }
+
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                files[i].delete();
+            }
+        }
+        directory.delete();
+    }
+
+    public void testSessions() {
+        SingleSignOn sso = newSingleSignOn();
+        sso.register("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        Session s1 = newSession();
+        Session s2 = newSession();
+        sso.associate("ID1", s1);
+        sso.associate("ID1", s2);
+        sso.associate("ID1", s2);
+        assertEquals(2, sso.lookup("ID1").findSessions().length);
+        assertEquals("ID1", sso.reverse.get(s1));
+
+        passivate(sso, s1);
+        assertNull(sso.reverse.get(s1));
+        assertEquals(1, sso.lookup("ID1").findSessions().length);
+        passivate(sso, s2);
+        assertNull(sso.lookup("ID1"));
+        assertTrue(sso.reverse.isEmpty());
+    }
+
+    public void testExpire() throws Exception {
+        SingleSignOn sso = newSingleSignOn();
+        sso.register("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        Session session = newSession();
+        sso.associate("ID1", session);
+
+        sso.backgroundProcess();
+        assertNotNull(sso.lookup("ID1"));
+        sso.setMaxInactiveInterval(60);
+        sso.backgroundProcess();
+        assertNotNull(sso.lookup("ID1"));
+        sso.setMaxInactiveInterval(0);
+        Thread.sleep(10);
+        sso.backgroundProcess();
+        assertNull(sso.lookup("ID1"));
+        assertTrue(sso.reverse.isEmpty());
+    }
+
+    public void testStore() throws Exception {
+        SingleSignOn sso = newSingleSignOn();
+        sso.setStore(new FileSingleSignOnStore(directory));
+        sso.register("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        sso.register("ID2", new GenericPrincipal(null, "user", "pw"),
+                     Constants.DIGEST_METHOD, null, null);
+        assertTrue(new File(directory, "ID1.sso").exists());
+        assertFalse(new File(directory, "ID2.sso").exists());
+
+        // Another valve, or the same one after a restart
+        SingleSignOn other = newSingleSignOn();
+        other.setStore(new FileSingleSignOnStore(directory));
+        SingleSignOnEntry entry = other.lookup("ID1");
+        assertNotNull(entry);
+        assertNull(entry.getPrincipal());
+        assertEquals("user", entry.getUsername());
+        assertEquals("pw", entry.getPassword());
+        assertTrue(entry.getCanReauthenticate());
+        assertNull(other.lookup("ID2"));
+        assertNull(other.lookup("../ID1"));
+
+        other.update("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        assertNotNull(other.lookup("ID1").getPrincipal());
+
+        other.deregister("ID1");
+        assertFalse(new File(directory, "ID1.sso").exists());
+    }
+
+    public void testConcurrentSaves() throws Exception {
+        final FileSingleSignOnStore store = new FileSingleSignOnStore(directory);
+        final SingleSignOnEntry entry = new SingleSignOnEntry
+            (null, Constants.BASIC_METHOD, "user", "pw");
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 100; j++) {
+                            store.save("ID1", entry);
+                        }
+                    } catch (Exception e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        assertNull(failure[0]);
+        assertEquals("pw", store.load("ID1").getPassword());
+        assertEquals(1, directory.list().length);
+    }
+
+    public void testStoreExpiry() throws Exception {
+        SingleSignOn sso = newSingleSignOn();
+        sso.setStore(new FileSingleSignOnStore(directory));
+        sso.register("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        sso.register("ID2", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        // Saved entries expire even if no maximum inactive interval is set
+        File file = new File(directory, "ID1.sso");
+        assertTrue(file.setLastModified(System.currentTimeMillis()
+                - (SingleSignOn.DEFAULT_STORE_MAX_INACTIVE_INTERVAL + 60) * 1000L));
+        sso.backgroundProcess();
+        assertFalse(file.exists());
+        assertTrue(new File(directory, "ID2.sso").exists());
+    }
+
+    public void testStoreMisses() throws Exception {
+        final int[] loads = new int[1];
+        SingleSignOn sso = newSingleSignOn();
+        sso.setStore(new FileSingleSignOnStore(directory) {
+            public SingleSignOnEntry load(String ssoId) throws IOException {
+                loads[0]++;
+                return super.load(ssoId);
+            }
+        });
+        assertNull(sso.lookup("ID1"));
+        assertNull(sso.lookup("ID1"));
+        assertEquals(1, loads[0]);
+
+        sso.register("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        sso.cache.remove("ID1");
+        assertNotNull(sso.lookup("ID1"));
+        assertEquals(2, loads[0]);
+
+        for (int i = 0; i < SingleSignOn.MAX_MISSES * 2; i++) {
+            assertNull(sso.lookup("ID" + (i + 2)));
+        }
+        assertTrue(sso.misses.size() <= SingleSignOn.MAX_MISSES);
+    }
+
+    public void testStoreAfterStop() throws Exception {
+        SingleSignOn sso = newSingleSignOn();
+        sso.setStore(new FileSingleSignOnStore(directory));
+        StandardContext context = newContext();
+        StandardManager manager = new StandardManager();
+        manager.setContainer(context);
+        manager.setPathname(new File(directory, "SESSIONS.ser").getPath());
+        manager.start();
+        sso.register("ID1", new GenericPrincipal(null, "user", "pw"),
+                     Constants.BASIC_METHOD, "user", "pw");
+        sso.associate("ID1", manager.createSession(null));
+
+        // The sessions are passivated, which is not a logout
+        manager.stop();
+        assertNull(sso.cache.get("ID1"));
+        assertTrue(new File(directory, "ID1.sso").exists());
+        SingleSignOn other = newSingleSignOn();
+        other.setStore(new FileSingleSignOnStore(directory));
+        assertNotNull(other.lookup("ID1"));
+
+        // Nor is the expiry of the sessions of a stopped context
+        manager = new StandardManager();
+        manager.setContainer(context);
+        manager.setPathname(null);
+        manager.start();
+        other.associate("ID1", manager.createSession(null));
+        manager.stop();
+        assertNull(other.cache.get("ID1"));
+        assertTrue(new File(directory, "ID1.sso").exists());
+
+        // Unlike a logout
+        context.setAvailable(true);
+        manager = new StandardManager();
+        manager.setContainer(context);
+        manager.setPathname(null);
+        manager.start();
+        Session session = manager.createSession(null);
+        other.associate("ID1", session);
+        session.expire();
+        assertNull(other.cache.get("ID1"));
+        assertFalse(new File(directory, "ID1.sso").exists());
+    }
+
+    private static SingleSignOn newSingleSignOn() {
+        return new SingleSignOn() {
+            {
+                containerLog = LogFactory.getLog(TestSingleSignOn.class);
+            }
+        };
+    }
+
+    private static StandardContext newContext() {
+        StandardEngine engine = new StandardEngine();
+        engine.setName("Catalina");
+        StandardHost host = new StandardHost();
+        host.setName("localhost");
+        host.setParent(engine);
+        StandardContext context = new StandardContext();
+        context.setPath("/test");
+        context.setParent(host);
+        return context;
+    }
+
+    private static Session newSession() {
+        StandardSession session = new StandardSession(new StandardManager());
+        session.setValid(true);
+        return session;
+    }
+
+    private static void passivate(SingleSignOn sso, Session session) {
+        sso.sessionEvent(new SessionEvent(session,
+                Session.SESSION_PASSIVATED_EVENT, null));
+    }
+
+}
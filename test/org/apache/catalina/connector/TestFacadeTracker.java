@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.connector;
+
+import junit.framework.TestCase;
+
+public class TestFacadeTracker extends TestCase {
+
+    public void testRecycledFacade() {
+        Request request = new Request();
+        org.apache.coyote.Request coyoteRequest = new org.apache.coyote.Request();
+        coyoteRequest.requestURI().setString("/app/page");
+        request.setCoyoteRequest(coyoteRequest);
+        assertEquals(0, request.getGeneration());
+
+        RequestFacade facade = new RequestFacade(request);
+        request.recycle();
+        assertEquals(1, request.getGeneration());
+        facade.tracker = new FacadeTracker(request);
+        facade.clear();
+        request.recycle();
+
+        try {
+            facade.getAttribute("name");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().indexOf("/app/page") >= 0);
+            assertTrue(e.getMessage().indexOf(" 2 ") >= 0);
+        }
+    }
+
+    public void testClearedFacade() {
+        RequestFacade facade = new RequestFacade(new Request());
+        facade.clear();
+        try {
+            facade.getAttribute("name");
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(RequestFacade.sm.getString("requestFacade.nullRequest"),
+                         e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.connector;
+
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardWrapper;
+import org.apache.tomcat.util.buf.MessageBytes;
+import org.apache.tomcat.util.http.mapper.MappingData;
+
+import junit.framework.TestCase;
+
+public class TestMappingCache extends TestCase {
+
+    public void testGetPut() {
+        MappingCache cache = new MappingCache();
+        assertEquals(1024, cache.getSize());
+        MappingCache.Entry[] table = cache.getTable();
+        MessageBytes uri = bytes("/app/a%20b");
+        MessageBytes host = bytes("localhost");
+        assertNull(MappingCache.get(table, uri.getByteChunk(), host));
+
+        MappingData mappingData = new MappingData();
+        mappingData.host = "host";
+        mappingData.context = "context";
+        mappingData.wrapper = "wrapper";
+        mappingData.contextPath.setString("/app");
+        mappingData.wrapperPath.setString("/a b");
+        MessageBytes decodedURI = MessageBytes.newInstance();
+        decodedURI.setString("/app/a b");
+        MappingCache.put(table, uri.getByteChunk(), host, decodedURI,
+                mappingData);
+
+        MappingCache.Entry entry =
+            MappingCache.get(table, bytes("/app/a%20b").getByteChunk(),
+                    bytes("localhost"));
+        assertNotNull(entry);
+        assertNull(MappingCache.get(table, uri.getByteChunk(),
+                bytes("otherhost")));
+        assertNull(MappingCache.get(table, bytes("/app/a%20c").getByteChunk(),
+                host));
+
+        MappingData result = new MappingData();
+        MessageBytes resultURI = MessageBytes.newInstance();
+        entry.apply(resultURI, result);
+        assertEquals("/app/a b", resultURI.toString());
+        assertEquals("context", result.context);
+        assertEquals("wrapper", result.wrapper);
+        assertEquals("/app", result.contextPath.toString());
+        assertEquals("/a b", result.wrapperPath.toString());
+        assertTrue(result.pathInfo.isNull());
+    }
+
+    public void testClear() {
+        MappingCache cache = new MappingCache();
+        MappingCache.Entry[] table = cache.getTable();
+        MessageBytes uri = bytes("/app/x");
+        MessageBytes host = bytes("localhost");
+        cache.clear();
+        // A mapping done before the cache was cleared stays in the old table
+        MappingCache.put(table, uri.getByteChunk(), host, uri,
+                new MappingData());
+        assertNotNull(MappingCache.get(table, uri.getByteChunk(), host));
+        assertNull(MappingCache.get(cache.getTable(), uri.getByteChunk(),
+                host));
+    }
+
+    public void testSize() {
+        MappingCache cache = new MappingCache();
+        cache.setSize(100);
+        assertEquals(128, cache.getSize());
+        assertEquals(128, cache.getTable().length);
+        cache.setSize(0);
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getTable());
+        cache.clear();
+        assertNull(cache.getTable());
+    }
+
+    public void testDefaultServlet() {
+        StandardContext context = new StandardContext();
+        StandardWrapper defaultWrapper = new StandardWrapper();
+        defaultWrapper.setName("default");
+        context.addChild(defaultWrapper);
+        StandardWrapper jspWrapper = new StandardWrapper();
+        jspWrapper.setName("jsp");
+        context.addChild(jspWrapper);
+        context.addServletMapping("*.jsp", "jsp");
+
+        MappingData mappingData = new MappingData();
+        mappingData.context = context;
+        mappingData.wrapper = defaultWrapper;
+        assertFalse(CoyoteAdapter.isDefaultServlet(mappingData));
+        context.addServletMapping("/", "default");
+        // The mapping changes once a directory of that name is created
+        assertTrue(CoyoteAdapter.isDefaultServlet(mappingData));
+        mappingData.wrapper = jspWrapper;
+        assertFalse(CoyoteAdapter.isDefaultServlet(mappingData));
+    }
+
+    private static MessageBytes bytes(String value) {
+        MessageBytes mb = MessageBytes.newInstance();
+        byte[] b = value.getBytes();
+        mb.setBytes(b, 0, b.length);
+        return mb;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.GenericServlet;
+import javax.servlet.Servlet;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.deploy.FilterDef;
+import org.apache.catalina.deploy.FilterMap;
+
+import junit.framework.TestCase;
+
+public class TestApplicationFilterFactory extends TestCase {
+
+    private StandardContext context;
+    private StandardWrapper wrapper;
+    private Servlet servlet = new GenericServlet() {
+        public void service(ServletRequest req, ServletResponse res) {
+        }
+    };
+
+    protected void setUp() throws Exception {
+        context = new StandardContext();
+        context.setName("/test");
+        context.setIgnoreAnnotations(true);
+        addFilter("all", "/*", null, null);
+        addFilter("ext", "*.jsp", null, null);
+        addFilter("prefix", "/a/*", null, null);
+        addFilter("named", null, "servlet", null);
+        addFilter("forward", "/*", null, "FORWARD");
+        context.filterStart();
+        wrapper = new StandardWrapper();
+        wrapper.setName("servlet");
+        wrapper.setParent(context);
+    }
+
+    public void testMatching() throws Exception {
+        assertFilters("all,ext,named", "/x.jsp", ApplicationFilterFactory.REQUEST);
+        assertFilters("all,prefix,named", "/a/b", ApplicationFilterFactory.REQUEST);
+        assertFilters("all,prefix,named", "/a", ApplicationFilterFactory.REQUEST);
+        assertFilters("all,named", "/ab", ApplicationFilterFactory.REQUEST);
+        assertFilters("forward", "/a", ApplicationFilterFactory.FORWARD);
+        assertFilters("", null, ApplicationFilterFactory.INCLUDE);
+        assertFilters("", "/x", -1);
+    }
+
+    public void testCache() throws Exception {
+        ApplicationFilterFactory factory = ApplicationFilterFactory.getInstance();
+        ApplicationFilterConfig[] first = filters(factory.createFilterChain
+                (new TestRequest("/a/b", ApplicationFilterFactory.REQUEST),
+                 wrapper, servlet));
+        ApplicationFilterConfig[] second = filters(factory.createFilterChain
+                (new TestRequest("/a/b", ApplicationFilterFactory.REQUEST),
+                 wrapper, servlet));
+        assertSame(first, second);
+
+        // Changing the filter mappings invalidates the cache
+        addFilter("late", "/a/b", null, null);
+        context.filterStart();
+        assertFilters("all,prefix,late,named", "/a/b",
+                ApplicationFilterFactory.REQUEST);
+        FilterMap[] filterMaps = context.findFilterMaps();
+        context.removeFilterMap(filterMaps[filterMaps.length - 1]);
+        assertFilters("all,prefix,named", "/a/b",
+                ApplicationFilterFactory.REQUEST);
+    }
+
+    public void testCustomWrapper() throws Exception {
+        // A wrapper class which does not extend StandardWrapper
+        Wrapper custom = (Wrapper) Proxy.newProxyInstance
+            (Wrapper.class.getClassLoader(), new Class<?>[] { Wrapper.class },
+             new InvocationHandler() {
+                public Object invoke(Object proxy, Method method,
+                        Object[] args) {
+                    if (method.getName().equals("getName")) {
+                        return "servlet";
+                    } else if (method.getName().equals("getParent")) {
+                        return context;
+                    }
+                    return null;
+                }
+            });
+        ApplicationFilterChain chain = ApplicationFilterFactory.getInstance()
+            .createFilterChain(new TestRequest("/a/b",
+                    ApplicationFilterFactory.REQUEST), custom, servlet);
+        assertEquals(3, filters(chain).length);
+    }
+
+    public void testChainReuse() throws Exception {
+        ApplicationFilterChain chain = ApplicationFilterFactory.getInstance()
+            .createFilterChain(new TestRequest("/a/b",
+                    ApplicationFilterFactory.REQUEST), wrapper, servlet);
+        ApplicationFilterConfig[] shared = filters(chain);
+        chain.addFilter(shared[0]);
+        assertEquals(3, shared.length);
+        assertEquals(4, filters(chain).length);
+        chain.release();
+        assertEquals(0, filters(chain).length);
+        assertNotNull(shared[0]);
+    }
+
+    private void assertFilters(String expected, String path, int dispatcher)
+        throws Exception {
+        for (int i = 0; i < 2; i++) {
+            ApplicationFilterChain chain = ApplicationFilterFactory
+                .getInstance().createFilterChain
+                    (new TestRequest(path, dispatcher), wrapper, servlet);
+            ApplicationFilterConfig[] filters = filters(chain);
+            StringBuilder names = new StringBuilder();
+            for (int j = 0; j < filters.length; j++) {
+                if (j > 0) {
+                    names.append(',');
+                }
+                names.append(filters[j].getFilterName());
+            }
+            assertEquals(expected, names.toString());
+        }
+    }
+
+    private static ApplicationFilterConfig[] filters(ApplicationFilterChain chain)
+        throws Exception {
+        java.lang.reflect.Field filters =
+            ApplicationFilterChain.class.getDeclaredField("filters");
+        filters.setAccessible(true);
+        java.lang.reflect.Field n =
+            ApplicationFilterChain.class.getDeclaredField("n");
+        n.setAccessible(true);
+        ApplicationFilterConfig[] all =
+            (ApplicationFilterConfig[]) filters.get(chain);
+        int count = n.getInt(chain);
+        if (count == all.length) {
+            return all;
+        }
+        ApplicationFilterConfig[] result = new ApplicationFilterConfig[count];
+        System.arraycopy(all, 0, result, 0, count);
+        return result;
+    }
+
+    private void addFilter(String name, String urlPattern, String servletName,
+            String dispatcher) {
+        if (context.findFilterDef(name) == null) {
+            FilterDef filterDef = new FilterDef();
+            filterDef.setFilterName(name);
+            filterDef.setFilterClass(NoopFilter.class.getName());
+            context.addFilterDef(filterDef);
+        }
+        FilterMap filterMap = new FilterMap();
+        filterMap.setFilterName(name);
+        if (urlPattern != null) {
+            filterMap.addURLPattern(urlPattern);
+        }
+        if (servletName != null) {
+            filterMap.addServletName(servletName);
+        }
+        if (dispatcher != null) {
+            filterMap.setDispatcher(dispatcher);
+        }
+        context.addFilterMap(filterMap);
+    }
+
+    public static class NoopFilter implements Filter {
+        public void init(FilterConfig filterConfig) {
+        }
+        public void doFilter(ServletRequest request, ServletResponse response,
+                FilterChain chain) throws IOException, ServletException {
+            chain.doFilter(request, response);
+        }
+        public void destroy() {
+        }
+    }
+
+    private static class TestRequest extends DummyRequest {
+        private final String path;
+        private final Integer dispatcher;
+
+        TestRequest(String path, int dispatcher) {
+            this.path = path;
+            this.dispatcher = (dispatcher < 0) ? null : new Integer(dispatcher);
+        }
+
+        public Object getAttribute(String name) {
+            if (ApplicationFilterFactory.DISPATCHER_TYPE_ATTR.equals(name)) {
+                return dispatcher;
+            }
+            if (ApplicationFilterFactory.DISPATCHER_REQUEST_PATH_ATTR.equals(name)) {
+                return path;
+            }
+            return null;
+        }
+    }
+}
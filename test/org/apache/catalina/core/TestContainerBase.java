@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.apache.catalina.LifecycleException;
+
+public class TestContainerBase extends TestCase {
+
+    public void testParallelStart() throws Exception {
+        TesterContainer parent = new TesterContainer("parent", null, false);
+        parent.setStartStopThreads(2);
+        // Each child waits for the other one to be starting as well
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        TesterContainer child1 = new TesterContainer("child1", barrier, false);
+        TesterContainer child2 = new TesterContainer("child2", barrier, false);
+        parent.addChild(child1);
+        parent.addChild(child2);
+        parent.start();
+        assertTrue(child1.started);
+        assertTrue(child2.started);
+        assertNotNull(parent.getStartStopExecutor());
+        parent.stop();
+        assertNull(parent.getStartStopExecutor());
+    }
+
+    public void testChildFailure() throws Exception {
+        TesterContainer parent = new TesterContainer("parent", null, false);
+        parent.setStartStopThreads(2);
+        TesterContainer child1 = new TesterContainer("child1", null, false);
+        TesterContainer child2 = new TesterContainer("child2", null, true);
+        parent.addChild(child1);
+        parent.addChild(child2);
+        try {
+            parent.start();
+            fail();
+        } catch (LifecycleException e) {
+            assertEquals("child2", e.getThrowable().getMessage());
+        }
+        // The other child is started all the same
+        assertTrue(child1.started);
+        assertNull(parent.getStartStopExecutor());
+    }
+
+    private static class TesterContainer extends ContainerBase {
+
+        private final CyclicBarrier barrier;
+        private final boolean fail;
+
+        TesterContainer(String name, CyclicBarrier barrier, boolean fail) {
+            setName(name);
+            this.barrier = barrier;
+            this.fail = fail;
+        }
+
+        public synchronized void start() throws LifecycleException {
+            if (fail) {
+                throw new LifecycleException(getName());
+            }
+            if (barrier != null) {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new LifecycleException(e);
+                }
+            }
+            super.start();
+        }
+
+    }
+
+}
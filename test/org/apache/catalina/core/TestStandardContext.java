@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.AnnotationProcessor;
+import org.apache.catalina.Lifecycle;
+import org.apache.catalina.LifecycleEvent;
+import org.apache.catalina.LifecycleListener;
+import org.apache.catalina.loader.WebappClassLoader;
+import org.apache.catalina.loader.WebappLoader;
+
+import junit.framework.TestCase;
+
+public class TestStandardContext extends TestCase {
+
+    private File base;
+
+    protected void setUp() throws Exception {
+        base = new File(System.getProperty("java.io.tmpdir"),
+                        "TestStandardContext");
+        delete(base);
+        String name = Bean.class.getName().replace('.', '/') + ".class";
+        File file = new File(base, "ROOT/WEB-INF/classes/" + name);
+        file.getParentFile().mkdirs();
+        InputStream is =
+            getClass().getClassLoader().getResourceAsStream(name);
+        OutputStream os = new FileOutputStream(file);
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = is.read(buf)) > 0) {
+            os.write(buf, 0, n);
+        }
+        is.close();
+        os.close();
+    }
+
+    protected void tearDown() throws Exception {
+        delete(base);
+    }
+
+    public void testReloadReleasesAnnotatedClasses() throws Exception {
+        StandardEngine engine = new StandardEngine();
+        engine.setName("Catalina");
+        engine.setBaseDir(base.getAbsolutePath());
+        StandardHost host = new StandardHost();
+        host.setName("localhost");
+        host.setAppBase(base.getAbsolutePath());
+        host.setParent(engine);
+        StandardContext context = new StandardContext();
+        context.setPath("");
+        context.setDocBase(new File(base, "ROOT").getAbsolutePath());
+        context.setWorkDir(new File(base, "work").getAbsolutePath());
+        WebappLoader loader = new WebappLoader();
+        loader.setLoaderClass(TesterClassLoader.class.getName());
+        context.setLoader(loader);
+        context.addLifecycleListener(new LifecycleListener() {
+            public void lifecycleEvent(LifecycleEvent event) {
+                if (Lifecycle.START_EVENT.equals(event.getType())) {
+                    ((StandardContext) event.getLifecycle())
+                        .setConfigured(true);
+                }
+            }
+        });
+        context.setParent(host);
+
+        context.start();
+        WeakReference<ClassLoader> oldLoader = process(context);
+        context.stop();
+        context.start();
+        process(context);
+        for (int i = 0; i < 10 && oldLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(oldLoader.get());
+        context.stop();
+    }
+
+    private static WeakReference<ClassLoader> process(StandardContext context)
+        throws Exception {
+        ClassLoader loader = context.getLoader().getClassLoader();
+        Class<?> clazz = loader.loadClass(Bean.class.getName());
+        assertSame(loader, clazz.getClassLoader());
+        Object bean = clazz.newInstance();
+        AnnotationProcessor processor = context.getAnnotationProcessor();
+        processor.postConstruct(bean);
+        assertEquals(Boolean.TRUE, clazz.getField("initialized").get(bean));
+        return new WeakReference<ClassLoader>(loader);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Class loader which does not look for classes in the system class
+     * loader first, so that it loads its own copy of the classes of this
+     * test found in the web application.
+     */
+    public static class TesterClassLoader extends WebappClassLoader {
+        public TesterClassLoader(ClassLoader parent) {
+            super(parent);
+            system = getSystemClassLoader().getParent();
+        }
+    }
+
+    public static class Bean {
+        public Boolean initialized = Boolean.FALSE;
+        @PostConstruct
+        public void init() {
+            initialized = Boolean.TRUE;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.core;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+
+import org.apache.catalina.Valve;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import junit.framework.TestCase;
+
+public class TestValveTimer extends TestCase {
+
+    public void testSelfTime() throws Exception {
+        SpinValve inner = new SpinValve(5000000L);
+        SpinValve outer = new SpinValve(1000000L);
+        ValveTimer innerTimer = new ValveTimer(inner, 1);
+        ValveTimer outerTimer = new ValveTimer(outer, 1);
+        outer.setNext(innerTimer);
+
+        outerTimer.invoke(null, null);
+        assertEquals(1, outerTimer.getCount());
+        assertEquals(1, innerTimer.getCount());
+        assertTrue(innerTimer.getTotalTime() >= 5000000L);
+        assertTrue(outerTimer.getTotalTime() >= 1000000L);
+        // The time of the outer valve excludes the time of the inner one
+        assertTrue(outerTimer.getTotalTime() < 5000000L);
+        assertTrue(outerTimer.getPercentile(0.5) >= 1000L);
+        assertTrue(innerTimer.getPercentile(0.99) >= 4096L);
+
+        outerTimer.reset();
+        assertEquals(0, outerTimer.getCount());
+        assertEquals(0, outerTimer.getPercentile(0.5));
+    }
+
+    public void testSampling() throws Exception {
+        SpinValve inner = new SpinValve(0L);
+        SpinValve outer = new SpinValve(0L);
+        ValveTimer innerTimer = new ValveTimer(inner, 1);
+        ValveTimer outerTimer = new ValveTimer(outer, 4);
+        outer.setNext(innerTimer);
+
+        for (int i = 0; i < 8; i++) {
+            outerTimer.invoke(null, null);
+        }
+        assertEquals(8, inner.invocations);
+        // The rate of the first timer of the request applies
+        assertEquals(2, outerTimer.getCount());
+        assertEquals(2, innerTimer.getCount());
+    }
+
+    public void testPipeline() throws Exception {
+        StandardPipeline pipeline = new StandardPipeline();
+        SpinValve basic = new SpinValve(0L);
+        SpinValve first = new SpinValve(0L);
+        SpinValve second = new SpinValve(0L);
+        pipeline.setBasic(basic);
+        pipeline.addValve(first);
+        pipeline.addValve(second);
+        Valve[] valves = pipeline.getValves();
+        assertEquals(3, valves.length);
+        assertSame(first, valves[0]);
+        assertSame(second, valves[1]);
+        assertSame(basic, valves[2]);
+
+        pipeline.removeValve(first);
+        pipeline.getFirst().invoke(null, null);
+        assertEquals(0, first.invocations);
+        assertEquals(1, second.invocations);
+        assertEquals(1, basic.invocations);
+        assertEquals(2, pipeline.getValves().length);
+    }
+
+    private static final class SpinValve extends ValveBase {
+
+        private final long time;
+        int invocations = 0;
+
+        SpinValve(long time) {
+            this.time = time;
+        }
+
+        public void invoke(Request request, Response response)
+            throws IOException, ServletException {
+            invocations++;
+            long end = System.nanoTime() + time;
+            while (System.nanoTime() < end) {
+                // Spin
+            }
+            if (getNext() != null) {
+                getNext().invoke(request, response);
+            }
+        }
+    }
+
+}
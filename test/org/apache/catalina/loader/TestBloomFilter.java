@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.loader;
+
+import java.lang.reflect.Field;
+
+import junit.framework.TestCase;
+
+public class TestBloomFilter extends TestCase {
+
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("org/example/Class" + i + ".class");
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("org/example/Class" + i + ".class"));
+        }
+    }
+
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("org/example/Class" + i + ".class");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("org/example/Class" + i + "BeanInfo.class")) {
+                falsePositives++;
+            }
+        }
+        // Expected rate is about 1%
+        assertTrue("False positives: " + falsePositives, falsePositives < 300);
+    }
+
+    public void testDistinctProbes() throws Exception {
+        Field field = BloomFilter.class.getDeclaredField("bits");
+        field.setAccessible(true);
+        for (int i = 0; i < 1000; i++) {
+            // Sizes which are not a power of two are rounded up
+            BloomFilter filter = new BloomFilter(i);
+            long[] bits = (long[]) field.get(filter);
+            assertEquals(0, bits.length & (bits.length - 1));
+            filter.add("org/example/Class" + i + ".class");
+            int count = 0;
+            for (int j = 0; j < bits.length; j++) {
+                count += Long.bitCount(bits[j]);
+            }
+            assertEquals(7, count);
+        }
+    }
+
+    public void testEmpty() {
+        BloomFilter filter = new BloomFilter(0);
+        assertFalse(filter.mightContain(""));
+        assertFalse(filter.mightContain("META-INF/MANIFEST.MF"));
+    }
+}
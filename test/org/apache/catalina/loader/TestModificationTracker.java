@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Hashtable;
+
+import javax.naming.directory.DirContext;
+
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.naming.resources.FileDirContext;
+import org.apache.naming.resources.ProxyDirContext;
+
+import junit.framework.TestCase;
+
+public class TestModificationTracker extends TestCase {
+
+    private static final String[] PATHS = { "/a.txt", "/b.txt", "/c.txt" };
+
+    private File base;
+
+    protected void setUp() throws Exception {
+        base = new File(System.getProperty("java.io.tmpdir"),
+                        "TestModificationTracker");
+        ExpandWar.deleteDir(base);
+        base.mkdirs();
+        for (int i = 0; i < PATHS.length; i++) {
+            new FileOutputStream(new File(base, PATHS[i])).close();
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        ExpandWar.deleteDir(base);
+    }
+
+    public void testFileResources() throws Exception {
+        FileDirContext resources = new FileDirContext();
+        resources.setDocBase(base.getAbsolutePath());
+        ModificationTracker tracker = createTracker(
+                new ProxyDirContext(new Hashtable<String,String>(), resources));
+        assertEquals(base, tracker.getBase());
+        assertNull(tracker.findModified(0));
+        touch(PATHS[1]);
+        assertEquals(PATHS[1], tracker.findModified(0));
+    }
+
+    public void testOtherResources() throws Exception {
+        // Subclasses may map paths elsewhere, so their attributes are used
+        FileDirContext resources = new FileDirContext() {
+        };
+        resources.setDocBase(base.getAbsolutePath());
+        // Not through a ProxyDirContext, which would cache the attributes
+        ModificationTracker tracker = createTracker(resources);
+        assertNull(tracker.getBase());
+        assertNull(tracker.findModified(0));
+        touch(PATHS[1]);
+        assertEquals(PATHS[1], tracker.findModified(0));
+    }
+
+    public void testBatches() throws Exception {
+        FileDirContext resources = new FileDirContext();
+        resources.setDocBase(base.getAbsolutePath());
+        ModificationTracker tracker = createTracker(
+                new ProxyDirContext(new Hashtable<String,String>(), resources));
+        assertNull(tracker.findModified(2));
+        // Each check continues after the resources checked by the previous
+        // one, so the first resource is only checked again by the second
+        touch(PATHS[0]);
+        assertNull(tracker.findModified(1));
+        assertEquals(PATHS[0], tracker.findModified(1));
+    }
+
+    public void testRemoved() throws Exception {
+        FileDirContext resources = new FileDirContext();
+        resources.setDocBase(base.getAbsolutePath());
+        ModificationTracker tracker = createTracker(
+                new ProxyDirContext(new Hashtable<String,String>(), resources));
+        assertTrue(new File(base, PATHS[2]).delete());
+        assertEquals(PATHS[2], tracker.findModified(0));
+    }
+
+    private ModificationTracker createTracker(DirContext resources) {
+        ModificationTracker tracker = new ModificationTracker(resources);
+        for (int i = 0; i < PATHS.length; i++) {
+            tracker.add(PATHS[i], new File(base, PATHS[i]).lastModified());
+        }
+        assertEquals(PATHS.length, tracker.size());
+        return tracker;
+    }
+
+    private void touch(String path) {
+        File file = new File(base, path);
+        assertTrue(file.setLastModified(file.lastModified() - 10000L));
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.naming.resources.FileDirContext;
+import org.apache.naming.resources.ProxyDirContext;
+
+import junit.framework.TestCase;
+
+public class TestWebappClassLoader extends TestCase {
+
+    private static final String[] CLASSES = {
+        Loaded0.class.getName(), Loaded1.class.getName(),
+        Loaded2.class.getName(), Loaded3.class.getName()
+    };
+
+    private File base;
+    private WebappClassLoader loader;
+
+    protected void setUp() throws Exception {
+        base = new File(System.getProperty("java.io.tmpdir"),
+                        "TestWebappClassLoader");
+        ExpandWar.deleteDir(base);
+        File classes = new File(base, "WEB-INF/classes");
+        File lib = new File(base, "WEB-INF/lib");
+        lib.mkdirs();
+        // Half of the classes in a directory, the other half in a JAR
+        for (int i = 0; i < 2; i++) {
+            File file = new File(classes, getPath(CLASSES[i]));
+            file.getParentFile().mkdirs();
+            OutputStream out = new FileOutputStream(file);
+            try {
+                copy(CLASSES[i], out);
+            } finally {
+                out.close();
+            }
+        }
+        File jar = new File(lib, "test.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            for (int i = 2; i < CLASSES.length; i++) {
+                out.putNextEntry(new JarEntry(getPath(CLASSES[i])));
+                copy(CLASSES[i], out);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+
+        FileDirContext resources = new FileDirContext();
+        resources.setDocBase(base.getAbsolutePath());
+        // Neither the parent nor the system class loader see the test classes
+        ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+        loader = new WebappClassLoader(parent);
+        loader.system = parent;
+        loader.setResources(new ProxyDirContext(
+                new Hashtable<String,String>(), resources));
+        loader.addRepository("/WEB-INF/classes/", classes);
+        loader.setJarPath("/WEB-INF/lib");
+        loader.addJar("/WEB-INF/lib/test.jar", new JarFile(jar), jar);
+        loader.start();
+    }
+
+    protected void tearDown() throws Exception {
+        loader.stop();
+        ExpandWar.deleteDir(base);
+    }
+
+    public void testConcurrentLoading() throws Exception {
+        final int threadCount = 8;
+        final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+        final Class<?>[][] loaded = new Class<?>[threadCount][];
+        final Throwable[] errors = new Throwable[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        Class<?>[] result = new Class<?>[CLASSES.length];
+                        barrier.await(10, TimeUnit.SECONDS);
+                        // Each thread starts with a different class
+                        for (int j = 0; j < CLASSES.length; j++) {
+                            int k = (index + j) % CLASSES.length;
+                            result[k] = loader.loadClass(CLASSES[k]);
+                        }
+                        loaded[index] = result;
+                    } catch (Throwable t) {
+                        errors[index] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+            if (errors[i] != null) {
+                throw new Exception(errors[i]);
+            }
+        }
+
+        for (int j = 0; j < CLASSES.length; j++) {
+            Class<?> clazz = loaded[0][j];
+            assertSame(loader, clazz.getClassLoader());
+            assertNotSame(getClass().getClassLoader(), clazz.getClassLoader());
+            for (int i = 1; i < threadCount; i++) {
+                assertSame(clazz, loaded[i][j]);
+            }
+        }
+        // The locks are only held while classes are being defined
+        assertTrue(loader.classLoadingLocks.isEmpty());
+    }
+
+    public void testNotFoundResources() throws Exception {
+        assertNull(loader.getResource("missing.txt"));
+        assertTrue(loader.notFoundResources.containsKey("missing.txt"));
+        long hits = loader.getNotFoundResourcesHitCount();
+        assertNull(loader.getResource("missing.txt"));
+        assertEquals(hits + 1, loader.getNotFoundResourcesHitCount());
+
+        // A new JAR may provide the resources which were missing
+        File jar = new File(base, "WEB-INF/lib/missing.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry("missing.txt"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+        loader.addJar("/WEB-INF/lib/missing.jar", new JarFile(jar), jar);
+        assertFalse(loader.notFoundResources.containsKey("missing.txt"));
+        assertNotNull(loader.getResource("missing.txt"));
+    }
+
+    public void testModifiedClass() throws Exception {
+        loader.loadClass(CLASSES[0]);
+        assertFalse(loader.modified());
+        File file = new File(base, "WEB-INF/classes/" + getPath(CLASSES[0]));
+        assertTrue(file.setLastModified(file.lastModified() - 10000L));
+        assertTrue(loader.modified());
+    }
+
+    public void testAddedJar() throws Exception {
+        assertFalse(loader.modified());
+        new FileOutputStream(new File(base, "WEB-INF/lib/added.jar")).close();
+        assertTrue(loader.modified());
+    }
+
+    private static String getPath(String className) {
+        return className.replace('.', '/') + ".class";
+    }
+
+    private static void copy(String className, OutputStream out)
+            throws Exception {
+        InputStream in = TestWebappClassLoader.class.getResourceAsStream(
+                "/" + getPath(className));
+        try {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    public static class Loaded0 {
+    }
+
+    public static class Loaded1 {
+    }
+
+    public static class Loaded2 {
+    }
+
+    public static class Loaded3 {
+    }
+}
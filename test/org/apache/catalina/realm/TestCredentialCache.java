@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.realm;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TestCredentialCache extends TestCase {
+
+    public void testCache() throws Exception {
+        CredentialCache cache = new CredentialCache(10, 60000L);
+        Principal principal = new GenericPrincipal(null, "user", "secret");
+        cache.put("user", "secret", principal);
+        assertSame(principal, cache.get("user", "secret"));
+        assertNull(cache.get("user", "wrong"));
+        assertNull(cache.get("other", "secret"));
+        assertNull(cache.get("user", null));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        cache = new CredentialCache(10, -1L);
+        cache.put("user", "secret", principal);
+        assertNull(cache.get("user", "secret"));
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testMaxSize() {
+        CredentialCache cache = new CredentialCache(100, 60000L);
+        for (int i = 0; i < 1000; i++) {
+            cache.put("user" + i, "secret",
+                      new GenericPrincipal(null, "user" + i, "secret"));
+            assertTrue(cache.getSize() <= 100);
+        }
+        assertNotNull(cache.get("user999", "secret"));
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    public void testRealm() throws Exception {
+        TesterRealm realm = new TesterRealm();
+        realm.setDigest("SHA");
+        realm.setCredentialCacheSize(10);
+        realm.start();
+        try {
+            assertNotNull(realm.authenticate("user", "secret"));
+            assertNotNull(realm.authenticate("user", "secret"));
+            assertNull(realm.authenticate("user", "wrong"));
+            assertEquals(2, realm.lookups);
+            assertEquals(1, realm.getCredentialCacheHitCount());
+            assertEquals(1, realm.getCredentialCacheCount());
+            realm.clearCredentialCache();
+            assertNotNull(realm.authenticate("user", "secret"));
+            assertEquals(3, realm.lookups);
+        } finally {
+            realm.stop();
+        }
+    }
+
+    public void testConcurrentDigest() throws Exception {
+        final TesterRealm realm = new TesterRealm();
+        realm.setDigest("SHA");
+        realm.start();
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        if (!realm.password.equals(realm.digest("secret"))) {
+                            synchronized (failures) {
+                                failures.add(new Exception("Wrong digest"));
+                            }
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+        realm.stop();
+        assertTrue(failures.isEmpty());
+    }
+
+    private static class TesterRealm extends RealmBase {
+
+        private final String password =
+            RealmBase.Digest("secret", "SHA", null);
+        private int lookups;
+
+        public TesterRealm() {
+            containerLog = org.apache.juli.logging.LogFactory.getLog(
+                    TesterRealm.class);
+            // Not registered with JMX
+            initialized = true;
+        }
+
+        protected String getName() {
+            return "TesterRealm";
+        }
+
+        protected String getPassword(String username) {
+            lookups++;
+            return "user".equals(username) ? password : null;
+        }
+
+        protected Principal getPrincipal(String username) {
+            return new GenericPrincipal(this, username, password);
+        }
+
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.realm;
+
+import java.security.Principal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.directory.DirContext;
+
+import junit.framework.TestCase;
+
+import org.apache.juli.logging.LogFactory;
+
+public class TestJNDIRealm extends TestCase {
+
+    private static final int USERS = 200;
+
+    private JNDIRealm realm;
+
+    protected void setUp() throws Exception {
+        TesterLdapContextFactory.reset();
+        for (int i = 0; i < USERS; i++) {
+            TesterLdapContextFactory.addUser(dn(i), "pw" + i);
+        }
+        realm = new JNDIRealm();
+        realm.containerLog = LogFactory.getLog(TestJNDIRealm.class);
+        // Not registered with JMX
+        realm.initialized = true;
+        realm.setContextFactory(TesterLdapContextFactory.class.getName());
+        realm.setConnectionURL("ldap://localhost/dc=example");
+        realm.setUserPattern("uid={0},ou=people,dc=example");
+    }
+
+    protected void tearDown() throws Exception {
+        realm.stop();
+        TesterLdapContextFactory.reset();
+    }
+
+    public void testAuthenticate() throws Exception {
+        realm.start();
+        assertNotNull(realm.authenticate("user1", "pw1"));
+        assertNull(realm.authenticate("user1", "pw2"));
+        assertNull(realm.authenticate("nobody", "pw1"));
+        assertEquals(1, TesterLdapContextFactory.connections.get());
+    }
+
+    public void testBrokenConnection() throws Exception {
+        realm.setConnectionPoolSize(1);
+        realm.start();
+        assertNotNull(realm.authenticate("user1", "pw1"));
+        TesterLdapContextFactory.breakConnections();
+        // The broken connection is replaced, and the pool not exhausted
+        assertNotNull(realm.authenticate("user1", "pw1"));
+        assertNotNull(realm.authenticate("user2", "pw2"));
+        assertEquals(2, TesterLdapContextFactory.connections.get());
+    }
+
+    public void testUnexpectedException() throws Exception {
+        realm.setConnectionPoolSize(1);
+        realm.setConnectionPoolTimeout(1);
+        realm.start();
+        // Thrown again when the authentication is retried
+        TesterLdapContextFactory.failures.set(2);
+        try {
+            realm.authenticate("user1", "pw1");
+            fail();
+        } catch (NullPointerException e) {
+            // Expected
+        }
+        // The connection has been given back to the pool
+        assertNotNull(realm.authenticate("user1", "pw1"));
+    }
+
+    public void testPoolTimeout() throws Exception {
+        realm.setConnectionPoolSize(1);
+        realm.setConnectionPoolTimeout(1);
+        realm.start();
+        DirContext context = realm.open();
+        try {
+            assertNull(realm.authenticate("user1", "pw1"));
+        } finally {
+            realm.release(context);
+        }
+        assertNotNull(realm.authenticate("user1", "pw1"));
+    }
+
+    public void testUserPatterns() throws Exception {
+        realm.setUserPattern("(uid={0},ou=staff,dc=example)"
+                             + "(uid={0},ou=people,dc=example)");
+        realm.start();
+        assertNotNull(realm.authenticate("user1", "pw1"));
+        // As used by single sign on and client certificate authentication
+        Principal principal = realm.getPrincipal("user1");
+        assertNotNull(principal);
+        assertEquals("user1", principal.getName());
+        assertNull(realm.getPrincipal("nobody"));
+    }
+
+    public void testValidation() throws Exception {
+        realm.setConnectionValidationInterval(1);
+        realm.start();
+        assertNotNull(realm.authenticate("user1", "pw1"));
+        TesterLdapContextFactory.breakConnections();
+        Thread.sleep(1100);
+        int operations = TesterLdapContextFactory.operations.get();
+        assertNotNull(realm.authenticate("user1", "pw1"));
+        // One failed validation, then the lookup and the bind
+        assertEquals(operations + 3, TesterLdapContextFactory.operations.get());
+        assertEquals(2, TesterLdapContextFactory.connections.get());
+    }
+
+    public void testConcurrentLogins() throws Exception {
+        realm.setConnectionPoolSize(10);
+        realm.start();
+        TesterLdapContextFactory.latency = 1;
+
+        final int logins = 10;
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[USERS];
+        for (int i = 0; i < threads.length; i++) {
+            final int user = i;
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < logins; j++) {
+                        if (realm.authenticate("user" + user, "pw" + user)
+                                == null) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                }
+            };
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
+
+        assertEquals(0, failures.get());
+        assertTrue(TesterLdapContextFactory.connections.get() <= 10);
+        assertTrue(TesterLdapContextFactory.maxConcurrent.get() > 1);
+    }
+
+    private static String dn(int i) {
+        return "uid=user" + i + ",ou=people,dc=example";
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.realm;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.naming.AuthenticationException;
+import javax.naming.CommunicationException;
+import javax.naming.Context;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import javax.naming.OperationNotSupportedException;
+import javax.naming.directory.BasicAttributes;
+import javax.naming.directory.DirContext;
+import javax.naming.spi.InitialContextFactory;
+
+/**
+ * In-memory stand-in for an LDAP server, to be used as the context factory
+ * of a JNDIRealm. It holds the entries added with {@link #addUser} and
+ * supports the operations the realm performs when it binds as the user:
+ * reading an entry by its DN and binding by reading the root entry with
+ * the user's credentials. Each operation takes {@link #latency}
+ * milliseconds, and is refused on a connection once it has been broken with
+ * {@link #breakConnections()}. The next {@link #failures} operations throw a
+ * NullPointerException, as a broken provider would.
+ */
+public class TesterLdapContextFactory implements InitialContextFactory {
+
+    static final Map<String, String> passwords =
+        new ConcurrentHashMap<String, String>();
+
+    static final AtomicInteger connections = new AtomicInteger();
+    static final AtomicInteger operations = new AtomicInteger();
+    static final AtomicInteger concurrent = new AtomicInteger();
+    static final AtomicInteger maxConcurrent = new AtomicInteger();
+    static final AtomicInteger failures = new AtomicInteger();
+    static volatile int broken = 0;
+    static volatile long latency = 0;
+
+    static void addUser(String dn, String password) {
+        passwords.put(dn, password);
+    }
+
+    static void reset() {
+        passwords.clear();
+        connections.set(0);
+        operations.set(0);
+        concurrent.set(0);
+        maxConcurrent.set(0);
+        failures.set(0);
+        broken = 0;
+        latency = 0;
+    }
+
+    /**
+     * Break the connections opened so far.
+     */
+    static void breakConnections() {
+        broken = connections.get();
+    }
+
+    public Context getInitialContext(Hashtable<?,?> environment) {
+        return (Context) Proxy.newProxyInstance(
+                DirContext.class.getClassLoader(),
+                new Class<?>[] { DirContext.class },
+                new Connection(environment));
+    }
+
+    private static class Connection implements InvocationHandler {
+
+        private final Hashtable<Object,Object> environment;
+        private final int id;
+
+        Connection(Hashtable<?,?> environment) {
+            this.environment = new Hashtable<Object,Object>(environment);
+            this.id = connections.incrementAndGet();
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args)
+            throws Throwable {
+            String name = method.getName();
+            if (name.equals("addToEnvironment")) {
+                return environment.put(args[0], args[1]);
+            } else if (name.equals("removeFromEnvironment")) {
+                return environment.remove(args[0]);
+            } else if (name.equals("getEnvironment")) {
+                return environment.clone();
+            } else if (name.equals("close")) {
+                return null;
+            } else if (name.equals("getAttributes")) {
+                return getAttributes(args[0].toString());
+            } else if (method.getDeclaringClass() == Object.class) {
+                try {
+                    return method.invoke(this, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            throw new OperationNotSupportedException(name);
+        }
+
+        private Object getAttributes(String dn) throws NamingException {
+            int count = concurrent.incrementAndGet();
+            try {
+                int max = maxConcurrent.get();
+                while (count > max && !maxConcurrent.compareAndSet(max, count)) {
+                    max = maxConcurrent.get();
+                }
+                operations.incrementAndGet();
+                int failure = failures.get();
+                while (failure > 0
+                       && !failures.compareAndSet(failure, failure - 1)) {
+                    failure = failures.get();
+                }
+                if (failure > 0) {
+                    throw new NullPointerException();
+                }
+                if (id <= broken) {
+                    throw new CommunicationException("Connection " + id
+                                                     + " is broken");
+                }
+                if (latency > 0) {
+                    try {
+                        Thread.sleep(latency);
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                }
+                if (dn.length() == 0) {
+                    // Bind with the current credentials
+                    Object principal =
+                        environment.get(Context.SECURITY_PRINCIPAL);
+                    if (principal != null) {
+                        String password = passwords.get(principal);
+                        if (password == null || !password.equals(
+                                environment.get(Context.SECURITY_CREDENTIALS))) {
+                            throw new AuthenticationException();
+                        }
+                    }
+                    return new BasicAttributes(true);
+                }
+                if (!passwords.containsKey(dn)) {
+                    throw new NameNotFoundException(dn);
+                }
+                return new BasicAttributes(true);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+
+    }
+
+}
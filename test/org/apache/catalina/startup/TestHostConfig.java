@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.startup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.catalina.core.StandardContext;
+import org.apache.catalina.core.StandardHost;
+import org.apache.catalina.core.StandardWrapper;
+
+import junit.framework.TestCase;
+
+public class TestHostConfig extends TestCase {
+
+    private File base;
+    private File war;
+    private File docBase;
+    private StandardHost host;
+    private HostConfig hostConfig = new HostConfig();
+
+    protected void setUp() throws Exception {
+        base = new File(System.getProperty("java.io.tmpdir"),
+                        "TestHostConfig");
+        ExpandWar.deleteDir(base);
+        File appBase = new File(base, "webapps");
+        appBase.mkdirs();
+        war = new File(appBase, "app.war");
+        docBase = new File(appBase, "app");
+        host = new StandardHost();
+        host.setName("localhost");
+        host.setAppBase(appBase.getAbsolutePath());
+        host.setWorkDir(new File(base, "work").getAbsolutePath());
+    }
+
+    protected void tearDown() throws Exception {
+        ExpandWar.deleteDir(base);
+    }
+
+    public void testChangedJsp() throws Exception {
+        writeWar(new String[] { "index.jsp", "a", "style.css", "a" });
+        ExpandWar.expand(host, url(), "app");
+        writeWar(new String[] { "index.jsp", "b", "style.css", "a" });
+        List<String> changed = ExpandWar.update(host, url(), "app");
+        assertEquals(Arrays.asList(new String[] { "index.jsp" }), changed);
+        assertEquals("b", read(new File(docBase, "index.jsp")));
+        // The page has to be compiled again by a redeployed application
+        assertFalse(hostConfig.isStaticUpdate(null, changed));
+    }
+
+    public void testChangedStaticResources() throws Exception {
+        writeWar(new String[] { "index.jsp", "a", "style.css", "a",
+                                "old.html", "a" });
+        ExpandWar.expand(host, url(), "app");
+        writeWar(new String[] { "index.jsp", "a", "style.css", "b" });
+        List<String> changed = ExpandWar.update(host, url(), "app");
+        assertEquals(Arrays.asList(new String[] { "style.css", "old.html" }),
+                     changed);
+        assertEquals("b", read(new File(docBase, "style.css")));
+        assertFalse(new File(docBase, "old.html").exists());
+        assertTrue(hostConfig.isStaticUpdate(null, changed));
+
+        // Unless the context maps them to a servlet
+        StandardContext context = new StandardContext();
+        StandardWrapper wrapper = new StandardWrapper();
+        wrapper.setName("css");
+        context.addChild(wrapper);
+        context.addServletMapping("*.css", "css");
+        assertFalse(hostConfig.isStaticUpdate(context, changed));
+    }
+
+    public void testMissingChecksums() throws Exception {
+        writeWar(new String[] { "index.html", "a", "old.html", "a" });
+        ExpandWar.expand(host, url(), "app");
+        assertTrue(ExpandWar.getChecksumFile(host, "app").delete());
+        writeWar(new String[] { "index.html", "b" });
+        // The removed entries are unknown, so a full redeploy is needed
+        assertNull(ExpandWar.update(host, url(), "app"));
+        assertEquals("a", read(new File(docBase, "index.html")));
+    }
+
+    private URL url() throws Exception {
+        return new URL("jar:" + war.toURI().toURL() + "!/");
+    }
+
+    private void writeWar(String[] entries) throws Exception {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(war));
+        for (int i = 0; i < entries.length; i += 2) {
+            out.putNextEntry(new JarEntry(entries[i]));
+            out.write(entries[i + 1].getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        out.close();
+    }
+
+    private static String read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[(int) file.length()];
+            int n = 0;
+            while (n < buf.length) {
+                n += in.read(buf, n, buf.length - n);
+            }
+            return new String(buf, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package org.apache.catalina.tomcat.util.http; 
 
 import org.apache.tomcat.util.http.Cookies;
+import org.apache.tomcat.util.http.MimeHeaders;
 import org.apache.tomcat.util.http.ServerCookie;
 
 import junit.framework.Test;
@@ -125,6 +126,29 @@ public class TestCookies extends TestCase {
         test("$Version=0;foo=bar", 0);
     }
 
+    public void testNamedCookies() throws Exception {
+        String s = "a=1; JSESSIONID=abc; $Path=/x; b=\"q\\\"d\"; $Path=/y; JSESSIONID=\"d\\\"ef\"";
+        MimeHeaders headers = new MimeHeaders();
+        headers.addValue("Cookie").setBytes(s.getBytes(), 0, s.length());
+        Cookies cs = new Cookies(headers);
+
+        // Only the named cookies are parsed
+        assertEquals(2, cs.getCookieCount("JSESSIONID"));
+        assertEquals("abc", cs.getCookie(0).getValue().toString());
+        assertEquals("/x", cs.getCookie(0).getPath().toString());
+        assertEquals("d\"ef", cs.getCookie(1).getValue().toString());
+        assertNull(cs.getCookie(1).getPath().toString());
+        assertEquals(0, cs.getCookieCount("c"));
+
+        // The header is left intact for parsing all the cookies
+        assertEquals(4, cs.getCookieCount());
+        assertEquals("a", cs.getCookie(0).getName().toString());
+        assertEquals("q\"d", cs.getCookie(2).getValue().toString());
+        assertEquals("/y", cs.getCookie(2).getPath().toString());
+        assertEquals("d\"ef", cs.getCookie(3).getValue().toString());
+        assertEquals(4, cs.getCookieCount("JSESSIONID"));
+    }
+
     public static void test( String s, int val ) throws Exception {
         System.out.println("Processing [" + s + "]");
         Cookies cs=new Cookies(null);
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.catalina.util;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Hashtable;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.naming.NameNotFoundException;
+
+import org.apache.naming.NamingContext;
+
+import junit.framework.TestCase;
+
+public class TestDefaultAnnotationProcessor extends TestCase {
+
+    public void testInjection() throws Exception {
+        NamingContext context =
+            new NamingContext(new Hashtable<String,Object>(), "test");
+        context.bind("named", "a");
+        context.createSubcontext(Base.class.getName()).bind("base", "b");
+        context.createSubcontext(Sub.class.getName()).bind("Value", "c");
+        DefaultAnnotationProcessor processor =
+            new DefaultAnnotationProcessor(context);
+        for (int i = 0; i < 2; i++) {
+            Sub sub = new Sub();
+            processor.processAnnotations(sub);
+            assertEquals("a", sub.named);
+            assertEquals("b", sub.getBase());
+            assertEquals("c", sub.value);
+        }
+    }
+
+    public void testMultipleAnnotations() throws Exception {
+        NamingContext context =
+            new NamingContext(new Hashtable<String,Object>(), "test");
+        context.bind("named", "a");
+        DefaultAnnotationProcessor processor =
+            new DefaultAnnotationProcessor(context);
+        try {
+            // Each annotation is injected, including the missing resource
+            processor.processAnnotations(new Multiple());
+            fail();
+        } catch (NameNotFoundException e) {
+            // Expected
+        }
+        context.bind("ejb", "b");
+        Multiple multiple = new Multiple();
+        processor.processAnnotations(multiple);
+        assertEquals("b", multiple.value);
+    }
+
+    public void testClassLoaders() throws Exception {
+        DefaultAnnotationProcessor processor = new DefaultAnnotationProcessor
+            (null, TestDefaultAnnotationProcessor.class.getClassLoader());
+        processor.postConstruct(new Sub());
+        assertEquals(1, processor.metadataCache.size());
+
+        // Like the class loader of a JSP page
+        URL location = Sub.class.getProtectionDomain().getCodeSource()
+            .getLocation();
+        ClassLoader loader = new URLClassLoader(new URL[] { location },
+                TestDefaultAnnotationProcessor.class.getClassLoader()) {
+            protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+                if (name.equals(Invalid.class.getName())) {
+                    synchronized (this) {
+                        Class<?> clazz = findLoadedClass(name);
+                        return (clazz != null) ? clazz : findClass(name);
+                    }
+                }
+                return super.loadClass(name, resolve);
+            }
+        };
+        Object invalid =
+            loader.loadClass(Invalid.class.getName()).newInstance();
+        assertNotSame(Invalid.class, invalid.getClass());
+        processor.postConstruct(invalid);
+        assertEquals(1, processor.metadataCache.size());
+    }
+
+    public void testLifecycle() throws Exception {
+        DefaultAnnotationProcessor processor =
+            new DefaultAnnotationProcessor(null);
+        for (int i = 0; i < 2; i++) {
+            Sub sub = new Sub();
+            processor.processAnnotations(sub);
+            assertNull(sub.named);
+            processor.postConstruct(sub);
+            assertEquals("sub,base", sub.calls.toString());
+            processor.preDestroy(sub);
+            assertEquals("sub,base,destroy", sub.calls.toString());
+        }
+    }
+
+    public void testInvalidPreDestroy() throws Exception {
+        DefaultAnnotationProcessor processor =
+            new DefaultAnnotationProcessor(null);
+        Invalid invalid = new Invalid();
+        // Only the invalid method reports an error
+        processor.postConstruct(invalid);
+        for (int i = 0; i < 2; i++) {
+            try {
+                processor.preDestroy(invalid);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    public static class Base {
+        protected StringBuilder calls = new StringBuilder();
+        @Resource
+        private String base;
+        public String getBase() {
+            return base;
+        }
+        @PostConstruct
+        private void init() {
+            calls.append(",base");
+        }
+    }
+
+    public static class Sub extends Base {
+        @Resource(name = "named")
+        String named;
+        String value;
+        @Resource
+        public void setValue(String value) {
+            this.value = value;
+        }
+        @PostConstruct
+        public void subInit() {
+            calls.append("sub");
+        }
+        @PreDestroy
+        protected void destroy() {
+            calls.append(",destroy");
+        }
+    }
+
+    public static class Multiple {
+        @Resource(name = "named")
+        @EJB(name = "ejb")
+        String value;
+    }
+
+    public static class Invalid {
+        @PostConstruct
+        public void init() {
+        }
+        @PreDestroy
+        public static void destroy() {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.el.lang;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import junit.framework.TestCase;
+
+public class TestELArithmetic extends TestCase {
+
+    public void testAdd() {
+        assertEquals(Long.valueOf(3), ELArithmetic.add((Object) Integer.valueOf(1), Long.valueOf(2)));
+        assertEquals(Double.valueOf(3.5), ELArithmetic.add((Object) Integer.valueOf(1), Double.valueOf(2.5)));
+        assertEquals(Double.valueOf(3.5), ELArithmetic.add((Object) "1", Float.valueOf(2.5F)));
+        assertEquals(Long.valueOf(3), ELArithmetic.add((Object) "1", Short.valueOf((short) 2)));
+        assertEquals(BigInteger.valueOf(3), ELArithmetic.add((Object) BigInteger.ONE, Byte.valueOf((byte) 2)));
+        assertEquals(Long.valueOf(2), ELArithmetic.add((Object) null, Integer.valueOf(2)));
+    }
+
+    public void testSubtract() {
+        assertEquals(Long.valueOf(-1), ELArithmetic.subtract((Object) Integer.valueOf(1), Long.valueOf(2)));
+        assertEquals(Double.valueOf(-1.5), ELArithmetic.subtract((Object) Integer.valueOf(1), Double.valueOf(2.5)));
+    }
+
+    public void testMultiply() {
+        assertEquals(Long.valueOf(6), ELArithmetic.multiply((Object) Integer.valueOf(2), Integer.valueOf(3)));
+        assertEquals(Double.valueOf(5.0), ELArithmetic.multiply((Object) Integer.valueOf(2), Double.valueOf(2.5)));
+        assertEquals(new BigDecimal("4.0"), ELArithmetic.multiply((Object) new BigDecimal("2.0"), Long.valueOf(2)));
+    }
+
+    public void testDivide() {
+        assertEquals(Double.valueOf(0.5), ELArithmetic.divide((Object) Integer.valueOf(1), Long.valueOf(2)));
+        assertEquals(Double.valueOf(Double.POSITIVE_INFINITY), ELArithmetic.divide((Object) Integer.valueOf(1), Integer.valueOf(0)));
+    }
+
+    public void testMod() {
+        assertEquals(Long.valueOf(1), ELArithmetic.mod((Object) Integer.valueOf(7), Long.valueOf(3)));
+        assertEquals(Double.valueOf(1.5), ELArithmetic.mod((Object) Double.valueOf(7.5), Long.valueOf(3)));
+        try {
+            ELArithmetic.mod((Object) Integer.valueOf(7), Long.valueOf(0));
+            fail("Integral modulo by zero should fail");
+        } catch (ArithmeticException expected) {
+            // Same as the long delegate
+        }
+    }
+
+    public void testFastPathBoundaries() {
+        // Boxed primitives bypass the delegates but must agree with them
+        assertEquals(Long.valueOf(2147483648L), ELArithmetic.add((Object) Integer.valueOf(Integer.MAX_VALUE), Integer.valueOf(1)));
+        assertEquals(ELArithmetic.LONG.add(Long.valueOf(Long.MAX_VALUE), Long.valueOf(1)),
+                ELArithmetic.add((Object) Long.valueOf(Long.MAX_VALUE), Byte.valueOf((byte) 1)));
+        assertEquals(ELArithmetic.LONG.multiply(Long.valueOf(Long.MIN_VALUE), Long.valueOf(-1)),
+                ELArithmetic.multiply((Object) Long.valueOf(Long.MIN_VALUE), Integer.valueOf(-1)));
+        assertEquals(ELArithmetic.DOUBLE.add(Double.valueOf(0.1F), Double.valueOf(Long.MAX_VALUE)),
+                ELArithmetic.add((Object) Float.valueOf(0.1F), Long.valueOf(Long.MAX_VALUE)));
+        assertEquals(ELArithmetic.DOUBLE.subtract(Double.valueOf(Double.MIN_VALUE), Double.valueOf(Short.MIN_VALUE)),
+                ELArithmetic.subtract((Object) Double.valueOf(Double.MIN_VALUE), Short.valueOf(Short.MIN_VALUE)));
+        assertEquals(Double.valueOf(Double.NaN), ELArithmetic.mod((Object) Double.valueOf(1), Integer.valueOf(0)));
+    }
+
+    public void testDelegatePaths() {
+        // Operands other than boxed primitives still go through the delegates
+        assertEquals(new BigDecimal("2.5"), ELArithmetic.add((Object) new BigDecimal("0.5"), Integer.valueOf(2)));
+        assertEquals(Long.valueOf(99), ELArithmetic.add((Object) Character.valueOf('a'), Integer.valueOf(2)));
+        assertEquals(Double.valueOf(3.5), ELArithmetic.add((Object) "1.5", Integer.valueOf(2)));
+    }
+}
@@ -62,6 +62,35 @@ public class TestELSupport extends TestCase {
         assertEquals(input, output);
     }
 
+    public void testCoerceToPrimitive() {
+        assertEquals(Long.valueOf(4), ELSupport.coerceToType(Integer.valueOf(4), Long.TYPE));
+        assertEquals(Integer.valueOf(4), ELSupport.coerceToType("4", Integer.TYPE));
+        assertEquals(Boolean.TRUE, ELSupport.coerceToType("true", Boolean.TYPE));
+        assertEquals(Character.valueOf('a'), ELSupport.coerceToType("abc", Character.TYPE));
+        assertEquals(Double.valueOf(0), ELSupport.coerceToType(null, Double.TYPE));
+    }
+
+    public void testCoerceToString() {
+        assertEquals("4", ELSupport.coerceToType(Long.valueOf(4), String.class));
+        assertEquals("", ELSupport.coerceToType(null, String.class));
+    }
+
+    public void testCoerceBigIntegerToBigDecimal() {
+        assertEquals(new BigDecimal("12"), ELSupport.coerceToType(BigInteger.valueOf(12), BigDecimal.class));
+    }
+
+    public void testCoerceToOwnType() {
+        // Values which already have the target type are returned as they are
+        Object input = Integer.valueOf(4390241);
+        assertSame(input, ELSupport.coerceToType(input, Integer.class));
+        assertSame(input, ELSupport.coerceToType(input, Number.class));
+        assertSame(input, ELSupport.coerceToType(input, Object.class));
+        assertEquals(Long.valueOf(4390241), ELSupport.coerceToType(input, Long.class));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE),
+                ELSupport.coerceToType(Long.valueOf(Integer.MAX_VALUE + 1L), Integer.TYPE));
+        assertEquals(Integer.valueOf(0), ELSupport.coerceToType("", Integer.TYPE));
+    }
+
     private static void testIsSame(Object value) {
         assertEquals(value, ELSupport.coerceToNumber(value, value.getClass()));
     }
@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.el.parser;
+
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.el.ArrayELResolver;
+import javax.el.BeanELResolver;
+import javax.el.CompositeELResolver;
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+import javax.el.FunctionMapper;
+import javax.el.ListELResolver;
+import javax.el.MapELResolver;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+
+import org.apache.el.ExpressionFactoryImpl;
+import org.apache.el.lang.EvaluationContext;
+import org.apache.el.lang.FunctionMapperImpl;
+import org.apache.el.lang.VariableMapperImpl;
+
+import junit.framework.TestCase;
+
+/**
+ * The tests named testInline* evaluate the parsed expression with the inlined
+ * property access whatever the value of
+ * <code>org.apache.el.parser.INLINE_PROPERTY_ACCESS</code>.
+ */
+public class TestAstValue extends TestCase {
+
+    private static final ExpressionFactory factory = new ExpressionFactoryImpl();
+
+    public void testPropertyChain() {
+        ELContext ctx = createContext(new Outer(new Inner("a")));
+        ValueExpression ve = factory.createValueExpression(ctx,
+                "${bean.inner.name}", String.class);
+        assertEquals("a", ve.getValue(ctx));
+        assertEquals("a", ve.getValue(ctx));
+    }
+
+    public void testPolymorphicBase() {
+        Outer outer = new Outer(new Inner("a"));
+        ELContext ctx = createContext(outer);
+        ValueExpression ve = factory.createValueExpression(ctx,
+                "${bean.inner.name}", String.class);
+        for (int i = 0; i < 3; i++) {
+            outer.setInner(new Inner("a"));
+            assertEquals("a", ve.getValue(ctx));
+            outer.setInner(new OtherInner("b"));
+            assertEquals("b", ve.getValue(ctx));
+        }
+    }
+
+    public void testMapBase() {
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("name", "m");
+        Outer outer = new Outer(new Inner("a"));
+        ELContext ctx = createContext(outer);
+        ValueExpression ve = factory.createValueExpression(ctx,
+                "${bean.inner.name}", String.class);
+        assertEquals("a", ve.getValue(ctx));
+        outer.setInner(map);
+        assertEquals("m", ve.getValue(ctx));
+        map.put("name", "n");
+        assertEquals("n", ve.getValue(ctx));
+    }
+
+    public void testInlinePropertyChain() {
+        CountingBeanELResolver beans = new CountingBeanELResolver();
+        ELContext ctx = createContext(new Outer(new Inner("a")), beans);
+        AstValue node = parse("${bean.inner.name}");
+        assertEquals("a", getValueInline(node, ctx));
+        assertEquals(2, beans.count);
+        // Both suffixes are read through the cached methods
+        assertEquals("a", getValueInline(node, ctx));
+        assertEquals(2, beans.count);
+    }
+
+    public void testInlinePolymorphicBase() {
+        CountingBeanELResolver beans = new CountingBeanELResolver();
+        Outer outer = new Outer(new Inner("a"));
+        ELContext ctx = createContext(outer, beans);
+        AstValue node = parse("${bean.inner.name}");
+        assertEquals("a", getValueInline(node, ctx));
+        assertEquals(2, beans.count);
+        // The guard fails for another class and the resolvers are used again
+        outer.setInner(new OtherInner("b"));
+        assertEquals("b", getValueInline(node, ctx));
+        assertEquals(3, beans.count);
+        assertEquals("b", getValueInline(node, ctx));
+        assertEquals(3, beans.count);
+        outer.setInner(new Inner("c"));
+        assertEquals("c", getValueInline(node, ctx));
+        assertEquals(4, beans.count);
+    }
+
+    public void testInlineMapBase() {
+        CountingBeanELResolver beans = new CountingBeanELResolver();
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("name", "m");
+        Outer outer = new Outer(new Inner("a"));
+        ELContext ctx = createContext(outer, beans);
+        AstValue node = parse("${bean.inner.name}");
+        assertEquals("a", getValueInline(node, ctx));
+        outer.setInner(map);
+        assertEquals("m", getValueInline(node, ctx));
+        // Map entries are never cached
+        map.put("name", "n");
+        assertEquals("n", getValueInline(node, ctx));
+        outer.setInner(new Inner("a"));
+        assertEquals("a", getValueInline(node, ctx));
+    }
+
+    private static AstValue parse(String expr) {
+        // Not through ExpressionBuilder, whose cached nodes are shared
+        Node node;
+        try {
+            node = new ELParser(new StringReader(expr)).CompositeExpression();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        while (!(node instanceof AstValue)) {
+            node = node.jjtGetChild(0);
+        }
+        return (AstValue) node;
+    }
+
+    private static Object getValueInline(AstValue node, ELContext ctx) {
+        return node.getValue(new EvaluationContext(ctx,
+                ctx.getFunctionMapper(), ctx.getVariableMapper()), true);
+    }
+
+    private static ELContext createContext(Object bean) {
+        return createContext(bean, new BeanELResolver());
+    }
+
+    private static ELContext createContext(Object bean,
+            BeanELResolver beans) {
+        TestELContext ctx = new TestELContext(beans);
+        ctx.getVariableMapper().setVariable("bean",
+                factory.createValueExpression(bean, Object.class));
+        return ctx;
+    }
+
+    private static class TestELContext extends ELContext {
+        private final CompositeELResolver resolver = new CompositeELResolver();
+        private final FunctionMapper functionMapper = new FunctionMapperImpl();
+        private final VariableMapper variableMapper = new VariableMapperImpl();
+
+        public TestELContext(BeanELResolver beans) {
+            resolver.add(new MapELResolver());
+            resolver.add(new ListELResolver());
+            resolver.add(new ArrayELResolver());
+            resolver.add(beans);
+        }
+
+        public ELResolver getELResolver() {
+            return resolver;
+        }
+
+        public FunctionMapper getFunctionMapper() {
+            return functionMapper;
+        }
+
+        public VariableMapper getVariableMapper() {
+            return variableMapper;
+        }
+    }
+
+    private static class CountingBeanELResolver extends BeanELResolver {
+        private int count;
+
+        public Object getValue(ELContext context, Object base,
+                Object property) {
+            if (base != null && !(base instanceof Map)) {
+                count++;
+            }
+            return super.getValue(context, base, property);
+        }
+    }
+
+    public static class Outer {
+        private Object inner;
+
+        public Outer(Object inner) {
+            this.inner = inner;
+        }
+
+        public Object getInner() {
+            return inner;
+        }
+
+        public void setInner(Object inner) {
+            this.inner = inner;
+        }
+    }
+
+    public static class Inner {
+        private final String name;
+
+        public Inner(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    public static class OtherInner {
+        private final String name;
+
+        public OtherInner(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.el.util;
+
+import junit.framework.TestCase;
+
+public class TestConcurrentCache extends TestCase {
+
+    public void testHitAndMiss() {
+        ConcurrentCache<String, String> cache =
+            new ConcurrentCache<String, String>(10);
+        assertNull(cache.get("a"));
+        cache.put("a", "A");
+        assertEquals("A", cache.get("a"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    public void testBounded() {
+        ConcurrentCache<Integer, Integer> cache =
+            new ConcurrentCache<Integer, Integer>(10);
+        for (int i = 0; i < 100; i++) {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        assertTrue(cache.size() <= 20);
+        assertTrue(cache.getEvictionCount() > 0);
+        assertEquals(Integer.valueOf(99), cache.get(Integer.valueOf(99)));
+        assertNull(cache.get(Integer.valueOf(0)));
+    }
+
+    public void testEvictionCount() {
+        ConcurrentCache<Integer, Integer> cache =
+            new ConcurrentCache<Integer, Integer>(10);
+        for (int i = 0; i <= 10; i++) {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        assertEquals(0, cache.getEvictionCount());
+        // Promoted back to eden, so not evicted with the other survivors
+        assertEquals(Integer.valueOf(0), cache.get(Integer.valueOf(0)));
+        for (int i = 11; i <= 19; i++) {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+        }
+        assertEquals(9, cache.getEvictionCount());
+        assertEquals(Integer.valueOf(0), cache.get(Integer.valueOf(0)));
+    }
+
+    public void testWeakSurvivors() throws Exception {
+        ConcurrentCache<String, String> cache =
+            new ConcurrentCache<String, String>(1);
+        cache.put(new String("unused"), "A");
+        String used = new String("used");
+        cache.put(used, "B");
+        // The unused key is now only referenced by the survivors
+        for (int i = 0; i < 100 && cache.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, cache.size());
+        assertEquals("B", cache.get(used));
+    }
+
+    public void testSurvivorPromotion() {
+        ConcurrentCache<Integer, Integer> cache =
+            new ConcurrentCache<Integer, Integer>(10);
+        cache.put(Integer.valueOf(-1), Integer.valueOf(-1));
+        for (int i = 0; i < 100; i++) {
+            cache.put(Integer.valueOf(i), Integer.valueOf(i));
+            // Keep -1 in use
+            assertEquals(Integer.valueOf(-1), cache.get(Integer.valueOf(-1)));
+        }
+    }
+}
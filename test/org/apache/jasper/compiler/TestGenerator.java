@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.apache.catalina.startup.ExpandWar;
+import org.apache.jasper.JspC;
+
+import junit.framework.TestCase;
+
+public class TestGenerator extends TestCase {
+
+    private static final String PAGE =
+        "<html>\n" +
+        "${1 + 1}\n" +
+        "<p>a</p>\n" +
+        "${2 + 2}\n" +
+        "<% int local = 5; %>\n" +
+        "<p>b</p>\n" +
+        "<%= local %>\n" +
+        "</html>\n";
+
+    private File base;
+    private File docBase;
+
+    protected void setUp() throws Exception {
+        base = new File(System.getProperty("java.io.tmpdir"),
+                        "TestGenerator");
+        ExpandWar.deleteDir(base);
+        docBase = new File(base, "app");
+        docBase.mkdirs();
+        OutputStream out =
+            new FileOutputStream(new File(docBase, "index.jsp"));
+        try {
+            out.write(PAGE.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        ExpandWar.deleteDir(base);
+    }
+
+    public void testNoChunks() throws Exception {
+        String source = generate(0);
+        assertTrue(source.indexOf("_jspx_chunk_") < 0);
+    }
+
+    public void testChunks() throws Exception {
+        String source = generate(3);
+        int service = source.indexOf("public void _jspService(");
+        int methods = source.indexOf("private boolean _jspx_chunk_0(");
+        int call = source.indexOf("if (_jspx_chunk_0(_jspx_page_context))");
+        assertTrue(service < call);
+        assertTrue(call < methods);
+        // The scriptlet and the expression using its local variable stay in
+        // _jspService, the template text after them is moved again
+        int scriptlet = source.indexOf("int local = 5;");
+        int expression = source.indexOf("out.print( local );");
+        assertTrue(call < scriptlet);
+        assertTrue(scriptlet < expression);
+        assertTrue(expression < methods);
+        assertTrue(source.indexOf("local", methods) < 0);
+        assertTrue(source.indexOf("\\n</html>\\n", methods) > 0);
+        // No method holds more than three nodes
+        assertTrue(source.indexOf("${1 + 1}", methods)
+                < source.indexOf("private boolean _jspx_chunk_1("));
+        assertTrue(source.indexOf("${2 + 2}", methods)
+                > source.indexOf("private boolean _jspx_chunk_1("));
+    }
+
+    private String generate(int pageChunkSize) throws Exception {
+        File outputDir = new File(base, "work");
+        JspC jspc = new JspC();
+        jspc.setUriroot(docBase.getAbsolutePath());
+        jspc.setOutputDir(outputDir.getAbsolutePath());
+        jspc.setJspFiles("index.jsp");
+        jspc.setCompile(false);
+        jspc.setPageChunkSize(pageChunkSize);
+        // Jasper expects to run below a URLClassLoader, as in a web application
+        Thread thread = Thread.currentThread();
+        ClassLoader loader = thread.getContextClassLoader();
+        thread.setContextClassLoader(
+                new URLClassLoader(new URL[0], getClass().getClassLoader()));
+        try {
+            jspc.execute();
+        } finally {
+            thread.setContextClassLoader(loader);
+        }
+        return read(new File(outputDir, "org/apache/jsp/index_jsp.java"));
+    }
+
+    private static String read(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[(int) file.length()];
+            int n = 0;
+            while (n < buf.length) {
+                n += in.read(buf, n, buf.length - n);
+            }
+            return new String(buf, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jasper.runtime;
+
+import org.apache.jasper.Constants;
+
+import junit.framework.TestCase;
+
+public class TestBodyContentBufferPool extends TestCase {
+
+    private static final int MIN_SIZE = Constants.DEFAULT_TAG_BUFFER_SIZE;
+
+    public void testSizeClasses() {
+        assertEquals(MIN_SIZE, BodyContentBufferPool.allocate(1).length);
+        assertEquals(MIN_SIZE, BodyContentBufferPool.allocate(MIN_SIZE).length);
+        assertEquals(2 * MIN_SIZE,
+                BodyContentBufferPool.allocate(MIN_SIZE + 1).length);
+        assertEquals(8 * MIN_SIZE,
+                BodyContentBufferPool.allocate(5 * MIN_SIZE).length);
+    }
+
+    public void testReuse() {
+        int size = 4 * MIN_SIZE;
+        drain(size);
+        char[] buf = BodyContentBufferPool.allocate(size);
+        long reused = BodyContentBufferPool.getReusedCount();
+        long returned = BodyContentBufferPool.getReturnedCount();
+        BodyContentBufferPool.release(buf);
+        assertEquals(returned + 1, BodyContentBufferPool.getReturnedCount());
+        // Any request of the same size class gets the pooled buffer
+        assertSame(buf, BodyContentBufferPool.allocate(3 * MIN_SIZE + 1));
+        assertEquals(reused + 1, BodyContentBufferPool.getReusedCount());
+    }
+
+    public void testTrimming() {
+        // Buffers above the limit are neither rounded up nor pooled
+        int size = 65536 + 1;
+        char[] buf = BodyContentBufferPool.allocate(size);
+        assertEquals(size, buf.length);
+        long discarded = BodyContentBufferPool.getDiscardedCount();
+        BodyContentBufferPool.release(buf);
+        assertEquals(discarded + 1, BodyContentBufferPool.getDiscardedCount());
+        // Neither are buffers which do not belong to a size class
+        BodyContentBufferPool.release(new char[MIN_SIZE + 1]);
+        assertEquals(discarded + 2, BodyContentBufferPool.getDiscardedCount());
+    }
+
+    public void testFullPool() {
+        int size = 16 * MIN_SIZE;
+        drain(size);
+        long discarded = BodyContentBufferPool.getDiscardedCount();
+        for (int i = 0; i < 32; i++) {
+            BodyContentBufferPool.release(new char[size]);
+        }
+        assertEquals(discarded, BodyContentBufferPool.getDiscardedCount());
+        BodyContentBufferPool.release(new char[size]);
+        assertEquals(discarded + 1, BodyContentBufferPool.getDiscardedCount());
+        drain(size);
+    }
+
+    public void testBodyContent() throws Exception {
+        BodyContentImpl body = new BodyContentImpl(null);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3 * MIN_SIZE; i++) {
+            expected.append((char) ('a' + i % 26));
+        }
+        // Growing copies the content written so far into the larger buffer
+        body.write(expected.toString(), 0, MIN_SIZE - 1);
+        body.write(expected.toString(), MIN_SIZE - 1, 2 * MIN_SIZE + 1);
+        assertEquals(expected.toString(), body.getString());
+
+        long returned = BodyContentBufferPool.getReturnedCount();
+        body.recycle();
+        assertEquals(returned + 1, BodyContentBufferPool.getReturnedCount());
+        // Pushing the body content again gives it a new buffer
+        body.setWriter(null);
+        assertEquals("", body.getString());
+        body.write("abc");
+        assertEquals("abc", body.getString());
+        body.recycle();
+    }
+
+    /**
+     * Empty the size class of <code>size</code> so that the buffers pooled by
+     * earlier tests do not interfere.
+     */
+    private static void drain(int size) {
+        long reused = BodyContentBufferPool.getReusedCount();
+        while (true) {
+            BodyContentBufferPool.allocate(size);
+            if (BodyContentBufferPool.getReusedCount() == reused) {
+                return;
+            }
+            reused = BodyContentBufferPool.getReusedCount();
+        }
+    }
+}
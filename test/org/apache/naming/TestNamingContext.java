@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.naming;
+
+import java.util.Hashtable;
+
+import javax.naming.Context;
+import javax.naming.LinkRef;
+import javax.naming.NameNotFoundException;
+
+import junit.framework.TestCase;
+
+public class TestNamingContext extends TestCase {
+
+    public void testReadOnlyLookup() throws Exception {
+        NamingContext context = createContext("testReadOnlyLookup");
+        Context env = (Context) context.lookup("comp/env");
+        env.bind("value", "a");
+        ContextAccessController.setReadOnly("testReadOnlyLookup");
+        try {
+            assertEquals("a", context.lookup("comp/env/value"));
+            assertEquals("a", context.lookup("comp/env/value"));
+            assertNotNull(context.lookupCache);
+            assertEquals("a",
+                    context.lookupCache.entries.get("comp/env/value"));
+        } finally {
+            ContextAccessController.setWritable("testReadOnlyLookup", null);
+        }
+    }
+
+    public void testWritableLookup() throws Exception {
+        NamingContext context = createContext("testWritableLookup");
+        Context env = (Context) context.lookup("comp/env");
+        env.bind("value", "a");
+        assertEquals("a", context.lookup("comp/env/value"));
+        assertNull(context.lookupCache);
+
+        ContextAccessController.setReadOnly("testWritableLookup");
+        assertEquals("a", context.lookup("comp/env/value"));
+        ContextAccessController.setWritable("testWritableLookup", null);
+        env.rebind("value", "b");
+        assertEquals("b", context.lookup("comp/env/value"));
+        ContextAccessController.setReadOnly("testWritableLookup");
+        try {
+            assertEquals("b", context.lookup("comp/env/value"));
+        } finally {
+            ContextAccessController.setWritable("testWritableLookup", null);
+        }
+    }
+
+    public void testLinkNotCached() throws Exception {
+        NamingContext context = createContext("testLinkNotCached");
+        Context env = (Context) context.lookup("comp/env");
+        env.bind("value", "a");
+        env.bind("link", new LinkRef(".value"));
+        ContextAccessController.setReadOnly("testLinkNotCached");
+        try {
+            assertEquals("a", context.lookup("comp/env/link"));
+            assertFalse(context.lookupCache.entries.containsKey(
+                    "comp/env/link"));
+            // The object the link points to is cached under its own name
+            assertEquals("a", context.lookup("comp/env/value"));
+            assertEquals("a", context.lookupCache.entries.get(
+                    "comp/env/value"));
+            assertTrue(context.isCacheable(
+                    context.getNameParser("").parse("comp/env")));
+            assertFalse(context.isCacheable(
+                    context.getNameParser("").parse("comp/env/link")));
+            assertFalse(context.isCacheable(
+                    context.getNameParser("").parse("")));
+        } finally {
+            ContextAccessController.setWritable("testLinkNotCached", null);
+        }
+    }
+
+    public void testCacheHit() throws Exception {
+        NamingContext context = createContext("testCacheHit");
+        Context env = (Context) context.lookup("comp/env");
+        env.createSubcontext("jdbc").bind("db", "a");
+        ContextAccessController.setReadOnly("testCacheHit");
+        try {
+            // A miss resolves the name and caches the result
+            assertEquals("a", context.lookup("comp/env/jdbc/db"));
+            assertEquals("a",
+                    context.lookupCache.entries.get("comp/env/jdbc/db"));
+            // A hit is answered from the cache alone
+            context.lookupCache.entries.put("comp/env/jdbc/db", "cached");
+            assertEquals("cached", context.lookup("comp/env/jdbc/db"));
+            try {
+                context.lookup("comp/env/jdbc/missing");
+                fail();
+            } catch (NameNotFoundException e) {
+                // Expected
+            }
+            assertFalse(context.lookupCache.entries.containsKey(
+                    "comp/env/jdbc/missing"));
+        } finally {
+            ContextAccessController.setWritable("testCacheHit", null);
+        }
+        // Making the context read only again starts a new cache
+        ContextAccessController.setReadOnly("testCacheHit");
+        try {
+            assertEquals("a", context.lookup("comp/env/jdbc/db"));
+        } finally {
+            ContextAccessController.setWritable("testCacheHit", null);
+        }
+    }
+
+    private static NamingContext createContext(String name) throws Exception {
+        NamingContext context = new NamingContext(
+                new Hashtable<String,Object>(), name);
+        context.createSubcontext("comp").createSubcontext("env");
+        return context;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util;
+
+import junit.framework.TestCase;
+
+public class TestStartupProfiler extends TestCase {
+
+    private String thread;
+    private long threadId;
+
+    protected void setUp() {
+        StartupProfiler.clear();
+        thread = Thread.currentThread().getName();
+        threadId = Thread.currentThread().getId();
+    }
+
+    protected void tearDown() {
+        StartupProfiler.clear();
+    }
+
+    public void testJSON() {
+        StartupProfiler.add("Host", "parse", 2500000, 250000, null);
+        StartupProfiler.add("Context \"a\"", "start", 1000000, 12345678,
+                "line\n");
+        String json = StartupProfiler.toJSON();
+        assertTrue(json.startsWith("{\"origin\":"));
+        assertEquals(",\"events\":["
+                + "\n{\"component\":\"Context \\\"a\\\"\",\"phase\":\"start\""
+                + ",\"thread\":\"" + thread + "\",\"start\":1.000"
+                + ",\"duration\":12.345,\"detail\":\"line\\u000a\"},"
+                + "\n{\"component\":\"Host\",\"phase\":\"parse\""
+                + ",\"thread\":\"" + thread + "\",\"start\":2.500"
+                + ",\"duration\":0.250}"
+                + "\n]}\n", json.substring(json.indexOf(',')));
+    }
+
+    public void testChromeTrace() {
+        StartupProfiler.add("Host", "parse", 2500000, 250000, "x");
+        assertEquals("{\"traceEvents\":["
+                + "\n{\"name\":\"parse\",\"cat\":\"Host\",\"ph\":\"X\""
+                + ",\"pid\":1,\"tid\":" + threadId + ",\"ts\":2500"
+                + ",\"dur\":250,\"args\":{\"component\":\"Host\""
+                + ",\"detail\":\"x\"}},"
+                + "\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1"
+                + ",\"tid\":" + threadId + ",\"args\":{\"name\":\""
+                + thread + "\"}}"
+                + "\n]}\n", StartupProfiler.toChromeTrace());
+    }
+
+    public void testMaxEvents() {
+        for (int i = 0; i < StartupProfiler.MAX_EVENTS + 10; i++) {
+            StartupProfiler.add("Host", "event", i, 1, null);
+        }
+        assertEquals(StartupProfiler.MAX_EVENTS,
+                StartupProfiler.getEvents().length);
+        // Clearing the timeline allows recording again
+        StartupProfiler.clear();
+        StartupProfiler.add("Host", "event", 0, 1, null);
+        assertEquals(1, StartupProfiler.getEvents().length);
+    }
+}
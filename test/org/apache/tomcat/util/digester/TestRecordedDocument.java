@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.digester;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.InputSource;
+
+import junit.framework.TestCase;
+
+public class TestRecordedDocument extends TestCase {
+
+    private static final String XML =
+        "<config name=\"top\">\n" +
+        "  <item value=\"1\"/>\n" +
+        "  <item value=\"2\"/>\n" +
+        "  <nested><item value=\"3\"/></nested>\n" +
+        "  <label>some text</label>\n" +
+        "</config>";
+
+    public void testReplay() throws Exception {
+        RecordedDocument document = new RecordedDocument();
+
+        Config first = new Config();
+        Digester digester = createDigester();
+        digester.push(first);
+        digester.parse(new InputSource(new StringReader(XML)), document);
+        assertTrue(document.isComplete());
+
+        Config second = new Config();
+        digester = createDigester();
+        digester.push(second);
+        digester.parse(document);
+
+        assertEquals("top", first.getName());
+        assertEquals("some text", first.getLabel());
+        assertEquals("[1, 2, 3]", first.getItems().toString());
+        assertEquals(first.getName(), second.getName());
+        assertEquals(first.getLabel(), second.getLabel());
+        assertEquals(first.getItems(), second.getItems());
+    }
+
+    public void testMatchAfterAdd() {
+        RulesBase rules = new RulesBase();
+        Rule a = new SetNextRule("a");
+        Rule b = new SetNextRule("b");
+        rules.add("*/item", a);
+        assertEquals(1, rules.match(null, "config/item").size());
+        assertEquals(0, rules.match(null, "config/other").size());
+        rules.add("config/other", b);
+        assertEquals(1, rules.match(null, "config/other").size());
+        assertSame(rules.match(null, "config/item"),
+                rules.match(null, "config/item"));
+    }
+
+    private static Digester createDigester() {
+        Digester digester = new Digester();
+        digester.addSetProperties("config");
+        digester.addCallMethod("*/item", "addItem", 1);
+        digester.addCallParam("*/item", 0, "value");
+        digester.addCallMethod("config/label", "setLabel", 0);
+        return digester;
+    }
+
+    public static class Config {
+        private String name;
+        private String label;
+        private List<String> items = new ArrayList<String>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+
+        public List<String> getItems() {
+            return items;
+        }
+
+        public void addItem(String item) {
+            items.add(item);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class TestFastHttpDateFormat extends TestCase {
+
+    private SimpleDateFormat[] formats;
+
+    protected void setUp() throws Exception {
+        formats = new SimpleDateFormat[] {
+            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US),
+            new SimpleDateFormat("EEEEEE, dd-MMM-yy HH:mm:ss zzz", Locale.US),
+            new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy", Locale.US)
+        };
+        for (int i = 0; i < formats.length; i++) {
+            formats[i].setTimeZone(TimeZone.getTimeZone("GMT"));
+        }
+    }
+
+    public void testFormat() {
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT",
+                     FastHttpDateFormat.formatDate(784111777000L, null));
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT",
+                     FastHttpDateFormat.formatDate(0L, null));
+        assertEquals("Wed, 31 Dec 1969 23:59:59 GMT",
+                     FastHttpDateFormat.formatDate(-1L, null));
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long value = (random.nextLong() % 253402300799999L);
+            if (value < -11676096000000L) {
+                continue;
+            }
+            assertEquals(formats[0].format(new Date(value)),
+                         FastHttpDateFormat.formatDate(value, null));
+        }
+        // Outside of the range handled by hand
+        long old = -20000000000000L;
+        assertEquals(formats[0].format(new Date(old)),
+                     FastHttpDateFormat.formatDate(old, null));
+    }
+
+    public void testParse() {
+        assertEquals(784111777000L, parse("Sun, 06 Nov 1994 08:49:37 GMT"));
+        assertEquals(784111777000L, parse("Sunday, 06-Nov-94 08:49:37 GMT"));
+        assertEquals(784111777000L, parse("Sun Nov  6 08:49:37 1994"));
+        assertEquals(784111777000L, parse("Sun Nov 6 08:49:37 1994"));
+        assertEquals(951782400000L, parse("Tue, 29 Feb 2000 00:00:00 GMT"));
+        assertEquals(-1L, parse("not a date"));
+        assertEquals(-1L, parse("Sun, 06 Nov 1994"));
+
+        // Formats left to SimpleDateFormat give the same results as before
+        String[] values = {
+            "Sun, 06 Nov 1994 08:49:37 PST",
+            "Sun, 31 Feb 1994 08:49:37 GMT",
+            "Sun, 6 Nov 1994 8:49:37 GMT",
+            "Sunday, 06-Nov-1994 08:49:37 GMT"
+        };
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], parseWithFormats(values[i]),
+                         parse(values[i]));
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long value = (random.nextLong() % 253402300799999L) / 1000L * 1000L;
+            if (value < -11676096000000L) {
+                continue;
+            }
+            Date date = new Date(value);
+            assertEquals(value, parse(formats[0].format(date)));
+            assertEquals(value, parse(formats[2].format(date)));
+        }
+    }
+
+    public void testCurrentDate() {
+        String date = FastHttpDateFormat.getCurrentDate();
+        long value = parse(date);
+        assertTrue(Math.abs(System.currentTimeMillis() - value) < 2000L);
+    }
+
+    private long parse(String value) {
+        return FastHttpDateFormat.parseDate(value, null);
+    }
+
+    private long parseWithFormats(String value) {
+        for (int i = 0; i < formats.length; i++) {
+            try {
+                return ((DateFormat) formats[i]).parse(value).getTime();
+            } catch (Exception e) {
+                // Try the next format
+            }
+        }
+        return -1L;
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomcat.util.http.mapper;
+
+import org.apache.tomcat.util.buf.MessageBytes;
+
+import junit.framework.TestCase;
+
+public class TestMapper extends TestCase {
+
+    private Mapper mapper;
+
+    protected void setUp() throws Exception {
+        mapper = new Mapper();
+        mapper.addHost("sjbjdvwsbvhrb", new String[0], "blah1");
+        mapper.addHost("sjbjdvwsbvhr/", new String[0], "blah1");
+        mapper.addHost("wekhfewuifweuibf", new String[0], "blah2");
+        mapper.addHost("ylwrehirkuewh", new String[0], "blah3");
+        mapper.addHost("iohgeoihro", new String[0], "blah4");
+        mapper.addHost("fwehoihoihwfeo", new String[0], "blah5");
+        mapper.addHost("owefojiwefoi", new String[0], "blah6");
+        mapper.addHost("iowejoiejfoiew", new String[] { "alias1", "alias2" },
+                "blah7");
+        mapper.addHost("iowejoiejfoiew", new String[0], "blah17");
+        mapper.addHost("ohewoihfewoih", new String[0], "blah8");
+        mapper.setDefaultHostName("ylwrehirkuewh");
+
+        String[] welcomes = new String[2];
+        welcomes[0] = "boo/baba";
+        welcomes[1] = "bobou";
+
+        mapper.addContext("iowejoiejfoiew", "", "context0", new String[0],
+                null);
+        mapper.addContext("iowejoiejfoiew", "/foo", "context1",
+                new String[0], null);
+        mapper.addContext("iowejoiejfoiew", "/foo/bar", "context2",
+                welcomes, null);
+        mapper.addContext("iowejoiejfoiew", "/foo/bar/bla", "context3",
+                new String[0], null);
+
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "/fo/*", "wrapper0");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "/", "wrapper1");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "/blh", "wrapper2");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "*.jsp", "wrapper3");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "/blah/bou/*",
+                "wrapper4");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "/blah/bobou/*",
+                "wrapper5");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "*.htm", "wrapper6");
+        mapper.addWrapper("iowejoiejfoiew", "/foo/bar", "/bobou/*",
+                "wrapper7");
+    }
+
+    public void testAddHost() {
+        String[] hosts = mapper.getHosts();
+        assertEquals(11, hosts.length);
+        for (int i = 1; i < hosts.length; i++) {
+            assertTrue(hosts[i - 1].compareTo(hosts[i]) < 0);
+        }
+        // The first definition of a host is kept
+        assertEquals("blah7", map("iowejoiejfoiew", "/").host);
+        assertEquals("blah7", map("ALIAS2", "/").host);
+        // Unknown hosts are mapped to the default host
+        assertEquals("blah3", map("unknown", "/").host);
+    }
+
+    public void testContextMapping() {
+        assertMapping("/foo/bar/blah/bobou/foo", "context2", "/foo/bar",
+                "wrapper5", "/blah/bobou", "/foo");
+        assertEquals("context3", map("/foo/bar/bla/x").context);
+        assertEquals("context3", map("/foo/bar/bla").context);
+        assertEquals("context2", map("/foo/bar/blabla").context);
+        assertEquals("context1", map("/foo/ba").context);
+        assertEquals("context1", map("/foo").context);
+        assertEquals("context0", map("/foobar").context);
+        assertEquals("context0", map("/").context);
+    }
+
+    public void testWrapperMapping() {
+        // Exact match
+        assertMapping("/foo/bar/blh", "context2", "/foo/bar", "wrapper2",
+                "/blh", null);
+        // Prefix match, with and without path info
+        assertMapping("/foo/bar/fo", "context2", "/foo/bar", "wrapper0",
+                "/fo", null);
+        assertMapping("/foo/bar/fo/x/y.jsp", "context2", "/foo/bar",
+                "wrapper0", "/fo", "/x/y.jsp");
+        assertMapping("/foo/bar/blah/bou/x", "context2", "/foo/bar",
+                "wrapper4", "/blah/bou", "/x");
+        // Extension match, only in the last segment
+        assertMapping("/foo/bar/blah/x.jsp", "context2", "/foo/bar",
+                "wrapper3", "/blah/x.jsp", null);
+        assertMapping("/foo/bar/a.htm", "context2", "/foo/bar", "wrapper6",
+                "/a.htm", null);
+        assertMapping("/foo/bar/a.jsp/b", "context2", "/foo/bar", "wrapper1",
+                "/a.jsp/b", null);
+        // Welcome files
+        assertMapping("/foo/bar/", "context2", "/foo/bar", "wrapper7",
+                "/bobou", null);
+        // Default servlet
+        assertMapping("/foo/bar/fox", "context2", "/foo/bar", "wrapper1",
+                "/fox", null);
+    }
+
+    public void testRedirect() {
+        MappingData mappingData = map("/foo/bar");
+        assertEquals("context2", mappingData.context);
+        assertNull(mappingData.wrapper);
+        assertEquals("/foo/bar/", mappingData.redirectPath.toString());
+    }
+
+    public void testRemove() {
+        mapper.removeWrapper("iowejoiejfoiew", "/foo/bar", "/blah/bou/*");
+        assertMapping("/foo/bar/blah/bou/x", "context2", "/foo/bar",
+                "wrapper1", "/blah/bou/x", null);
+        mapper.removeContext("iowejoiejfoiew", "/foo/bar");
+        assertEquals("context1", map("/foo/bar/blah/bou/x").context);
+    }
+
+    public void testManyHosts() {
+        for (int i = 0; i < 3000; i++) {
+            mapper.addHost("host" + i, new String[] { "alias" + i },
+                    "host" + i);
+            mapper.addContext("host" + i, "/a/b/c" + i, "context" + i,
+                    new String[0], null);
+        }
+        assertEquals("context1234", map("host1234", "/a/b/c1234/x").context);
+        assertEquals("context42", map("alias42", "/a/b/c42/x").context);
+        // A context path only matches on a segment boundary
+        assertNull(map("host1234", "/a/b/c12345/x").context);
+        assertNull(map("host123", "/a/b/c1234/x").context);
+        assertEquals("context123", map("host123", "/a/b/c123").context);
+        // The existing hosts are still found among the new ones
+        assertEquals("wrapper5", map("/foo/bar/blah/bobou/foo").wrapper);
+    }
+
+    private void assertMapping(String path, String context,
+            String contextPath, String wrapper, String wrapperPath,
+            String pathInfo) {
+        MappingData mappingData = map(path);
+        assertEquals(context, mappingData.context);
+        assertEquals(contextPath, mappingData.contextPath.toString());
+        assertEquals(wrapper, mappingData.wrapper);
+        assertEquals(wrapperPath, mappingData.wrapperPath.toString());
+        assertEquals(pathInfo, mappingData.pathInfo.toString());
+    }
+
+    private MappingData map(String path) {
+        return map("iowejoiejfoiew", path);
+    }
+
+    private MappingData map(String hostName, String path) {
+        MessageBytes host = MessageBytes.newInstance();
+        host.setString(hostName);
+        MessageBytes uri = MessageBytes.newInstance();
+        uri.setString(path);
+        MappingData mappingData = new MappingData();
+        try {
+            mapper.map(host, uri, mappingData);
+        } catch (Exception e) {
+            throw new IllegalStateException(e.toString());
+        }
+        return mappingData;
+    }
+}